@@ -4,40 +4,79 @@ import com.microbenchmark.config.BenchmarkProfile;
 import com.microbenchmark.config.ConfigurationLoader;
 import com.microbenchmark.config.DatabaseConfig;
 import com.microbenchmark.config.MonitoringConfig;
+import com.microbenchmark.config.RetryPolicy;
+import com.microbenchmark.config.SpannerConfig;
+import com.microbenchmark.keys.KeyStrategy;
+import com.microbenchmark.metrics.JvmTelemetryRecorder;
 import com.microbenchmark.metrics.MetricsService;
+import com.microbenchmark.metrics.ServerStatsSampler;
+import com.microbenchmark.metrics.ServerStatsSource;
+import com.microbenchmark.metrics.SoakRecorder;
+import com.microbenchmark.benchmark.BatchSplitter;
 import com.microbenchmark.benchmark.BatchStatementExecutor;
+import com.microbenchmark.benchmark.BulkModificationBenchmark;
+import com.microbenchmark.benchmark.BulkModificationMode;
+import com.microbenchmark.benchmark.ChurnBenchmark;
+import com.microbenchmark.benchmark.ChurnMode;
+import com.microbenchmark.benchmark.ComparisonRunner;
 import com.microbenchmark.benchmark.ComplexQueryProvider;
+import com.microbenchmark.benchmark.ConnectionChurnBenchmark;
+import com.microbenchmark.benchmark.ConnectionMode;
+import com.microbenchmark.benchmark.ContentionBenchmark;
+import com.microbenchmark.benchmark.ContentionMode;
+import com.microbenchmark.benchmark.IndexVariantBenchmark;
+import com.microbenchmark.benchmark.ReactiveBatchExecutor;
+import com.microbenchmark.benchmark.PayloadBenchmark;
+import com.microbenchmark.benchmark.PayloadKind;
+import com.microbenchmark.benchmark.ReadConsistency;
+import com.microbenchmark.benchmark.ReadConsistencyBenchmark;
+import com.microbenchmark.benchmark.Reports;
+import com.microbenchmark.benchmark.ScanBenchmark;
+import com.microbenchmark.benchmark.ScanMode;
+import com.microbenchmark.benchmark.UpsertBenchmark;
+import com.microbenchmark.benchmark.UpsertMode;
+import com.microbenchmark.benchmark.ScenarioPhase;
+import com.microbenchmark.benchmark.ScenarioRunner;
+import com.microbenchmark.benchmark.SchemaDefinition;
+import com.microbenchmark.benchmark.SchemaVariant;
+import com.microbenchmark.report.HtmlReport;
+import com.microbenchmark.report.RecordedRun;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Random;
 
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
+    private static final List<String> VALID_DATABASES = List.of("spanner", "pgadapter", "pgadapter-embedded", "postgres", "null");
+    // Profiles that are not a single database: comparisons, dedicated workloads and the offline report
+    private static final List<String> OTHER_PROFILES = List.of(
+        "compare", "bulk", "indexes", "scan", "reads", "payloads", "upserts", "churn", "connections", "contention", "report");
 
     public static void main(String[] args) {
         if (args.length < 1) {
-            logger.error("Please provide a profile (spanner or postgres)");
+            logger.error("Please provide a profile ({})", validProfiles());
             System.exit(1);
         }
 
         String profileName = args[0].toLowerCase();
         Properties config = ConfigurationLoader.loadConfig();
-        DatabaseConfig dbConfig;
         
         try {
-            switch (profileName) {
-                case "spanner":
-                    dbConfig = ConfigurationLoader.createSpannerConfig(config);
-                    break;
-                case "postgres":
-                    dbConfig = ConfigurationLoader.createPostgresConfig(config);
-                    break;
-                default:
-                    logger.error("Invalid profile: {}. Valid profiles are: spanner, postgres", profileName);
-                    System.exit(1);
-                    return;
+            if (!OTHER_PROFILES.contains(profileName) && !VALID_DATABASES.contains(profileName)) {
+                logger.error("Invalid profile: {}. Valid profiles are: {}", profileName, validProfiles());
+                System.exit(1);
+                return;
+            }
+            if (profileName.equals("report")) {
+                writeReport(config, List.of(args).subList(1, args.length));
+                return;
             }
 
             // Create monitoring configuration
@@ -47,6 +86,64 @@ public class Main {
                 config.getProperty("metrics.prefix", "")
             );
 
+            // Create benchmark profile
+            BenchmarkProfile benchmarkProfile = new BenchmarkProfile(
+                Integer.parseInt(config.getProperty("batch.size", "100")),
+                Integer.parseInt(config.getProperty("total.operations", "10000")),
+                Duration.ofMinutes(Integer.parseInt(config.getProperty("duration.minutes", "5"))),
+                Boolean.parseBoolean(config.getProperty("batch.explicit.commit", "false"))
+            );
+
+            ComparisonRunner.ExecutorFactory executorFactory = createExecutorFactory(config);
+            KeyStrategy keyStrategy = KeyStrategy.valueOf(config.getProperty("key.strategy", "UUID_V4").trim().toUpperCase());
+            if (profileName.equals("compare")) {
+                runComparison(config, monitoringConfig, benchmarkProfile, executorFactory, keyStrategy);
+                return;
+            }
+            if (profileName.equals("bulk")) {
+                runBulkModification(config, monitoringConfig);
+                return;
+            }
+            if (profileName.equals("scan")) {
+                runScan(config, monitoringConfig);
+                return;
+            }
+            if (profileName.equals("churn")) {
+                runChurn(config, monitoringConfig);
+                return;
+            }
+            if (profileName.equals("connections")) {
+                runConnectionChurn(config, monitoringConfig);
+                return;
+            }
+            if (profileName.equals("contention")) {
+                runContention(config, monitoringConfig);
+                return;
+            }
+            if (profileName.equals("upserts")) {
+                runUpserts(config, monitoringConfig);
+                return;
+            }
+            if (profileName.equals("payloads")) {
+                runPayloads(config, monitoringConfig);
+                return;
+            }
+            if (profileName.equals("reads")) {
+                runReadConsistency(config, monitoringConfig);
+                return;
+            }
+            if (profileName.equals("indexes")) {
+                runIndexVariants(config, monitoringConfig, keyStrategy);
+                return;
+            }
+
+            DatabaseConfig dbConfig = ConfigurationLoader.createDatabaseConfig(profileName, config);
+            if (Boolean.parseBoolean(config.getProperty("scenario.enabled", "false"))) {
+                runScenario(config, profileName, dbConfig, monitoringConfig, keyStrategy, benchmarkProfile.getBatchSize());
+                dbConfig.close();
+                return;
+            }
+
             // Create metrics service
             MetricsService metricsService = new MetricsService(
                 monitoringConfig,
@@ -54,31 +151,599 @@ public class Main {
                 config.getProperty("google.cloud.project.id")
             );
 
-            // Create benchmark profile
-            BenchmarkProfile benchmarkProfile = new BenchmarkProfile(
-                Integer.parseInt(config.getProperty("batch.size", "100")),
-                Integer.parseInt(config.getProperty("total.operations", "10000")),
-                Duration.ofMinutes(Integer.parseInt(config.getProperty("duration.minutes", "5")))
-            );
-
             // Create complex query provider with mixed operations
-            ComplexQueryProvider queryProvider = new ComplexQueryProvider(ComplexQueryProvider.OperationType.MIXED);
-
-            // Create and run executor
-            BatchStatementExecutor executor = new BatchStatementExecutor(
-                dbConfig,
-                benchmarkProfile,
-                metricsService,
-                queryProvider
-            );
+            SchemaVariant schemaVariant = SchemaVariant.forDatabase(config.getProperty("schema.variant", "text"), profileName);
+            ComplexQueryProvider queryProvider = new ComplexQueryProvider(ComplexQueryProvider.OperationType.MIXED,
+                keyStrategy, schemaVariant);
+
+            // Closed in the finally block, so a failed run still writes its last window and sample
+            SoakRecorder soakRecorder = null;
+            JvmTelemetryRecorder jvmTelemetry = null;
+            ServerStatsSampler serverStats = null;
+            try {
+                // A soak run has no operation limit and lasts soak.duration.hours, recording in rolling windows
+                boolean soak = Boolean.parseBoolean(config.getProperty("soak.enabled", "false"));
+                if (soak) {
+                    long seed = new Random().nextLong();
+                    logger.info("Soak run with workload seed {}", seed);
+                    benchmarkProfile = new BenchmarkProfile(
+                        benchmarkProfile.getBatchSize(),
+                        benchmarkProfile.getTotalOperations(),
+                        Duration.ofMinutes((long) (Double.parseDouble(config.getProperty("soak.duration.hours", "24")) * 60)),
+                        benchmarkProfile.isExplicitCommit());
+                    queryProvider = new ComplexQueryProvider(ComplexQueryProvider.OperationType.MIXED, seed,
+                        benchmarkProfile.getBatchSize(), Long.MAX_VALUE, keyStrategy, schemaVariant);
+                    soakRecorder = new SoakRecorder(
+                        Duration.ofSeconds(Long.parseLong(config.getProperty("soak.window.seconds", "60"))),
+                        Integer.parseInt(config.getProperty("soak.baseline.windows", "5")),
+                        Integer.parseInt(config.getProperty("soak.trend.windows", "5")),
+                        Double.parseDouble(config.getProperty("soak.throughput.decay.threshold", "0.2")),
+                        Double.parseDouble(config.getProperty("soak.latency.creep.threshold", "0.5")),
+                        config.getProperty("soak.output.prefix", "soak"),
+                        String.format("%s, %s executor, %s keys, %s schema, batch size %d", profileName,
+                            config.getProperty("executor.type", "blocking"), keyStrategy, schemaVariant,
+                            benchmarkProfile.getBatchSize()));
+                    metricsService.addBatchListener(soakRecorder);
+                    soakRecorder.start();
+                }
 
-            logger.info("Starting benchmark with {} profile", profileName);
-            executor.execute();
-            logger.info("Benchmark completed successfully");
+                // Optionally stream JFR events from this JVM onto the same timeline as the batches
+                if (Boolean.parseBoolean(config.getProperty("jvm.telemetry.enabled", "false"))) {
+                    jvmTelemetry = new JvmTelemetryRecorder();
+                    metricsService.addBatchListener(jvmTelemetry);
+                    jvmTelemetry.start();
+                }
+
+                // Optionally poll the database's own statistics on a separate connection, next to the client metrics
+                if (Boolean.parseBoolean(config.getProperty("server.stats.enabled", "false"))) {
+                    ServerStatsSource source = ServerStatsSource.forDatabase(profileName);
+                    if (source == null) {
+                        logger.warn("The {} profile has no server statistics to sample", profileName);
+                    } else {
+                        serverStats = new ServerStatsSampler(dbConfig, source,
+                            Duration.ofSeconds(Long.parseLong(config.getProperty("server.stats.interval.seconds", "10"))),
+                            config.getProperty("server.stats.output", "server-stats.csv"));
+                        metricsService.addBatchListener(serverStats);
+                        serverStats.start();
+                    }
+                }
+
+                logger.info("Starting benchmark with {} profile using the {} executor, {} keys and the {} schema", profileName,
+                    config.getProperty("executor.type", "blocking"), keyStrategy, schemaVariant);
+
+                // Create and run executor
+                executorFactory.create(dbConfig, benchmarkProfile, metricsService, queryProvider).execute();
+                logger.info("Benchmark completed successfully");
+            } finally {
+                if (soakRecorder != null) {
+                    soakRecorder.close();
+                }
+                if (serverStats != null) {
+                    serverStats.close();
+                }
+                if (jvmTelemetry != null) {
+                    jvmTelemetry.stop();
+                }
+            }
+            metricsService.printMetrics();
+
+            if (jvmTelemetry != null) {
+                jvmTelemetry.printReport(metricsService.getCpuMicrosPerOperation());
+            }
+            metricsService.close();
+            dbConfig.close();
 
         } catch (Exception e) {
             logger.error("Benchmark failed", e);
             System.exit(1);
         }
     }
-}
\ No newline at end of file
+
+    private static String validProfiles() {
+        return String.join(", ", VALID_DATABASES) + ", " + String.join(", ", OTHER_PROFILES);
+    }
+
+    private static ComparisonRunner.ExecutorFactory createExecutorFactory(Properties config) {
+        RetryPolicy retryPolicy = ConfigurationLoader.createRetryPolicy(config);
+        String executorType = config.getProperty("executor.type", "blocking").toLowerCase();
+        return switch (executorType) {
+            case "blocking" -> {
+                boolean split = Boolean.parseBoolean(config.getProperty("batch.split.enabled", "false"));
+                SchemaDefinition schema = split
+                    ? SchemaDefinition.load(config.getProperty("batch.split.schema", "spanner-schema.sql"))
+                    : null;
+                int maxMutations = Integer.parseInt(config.getProperty("batch.split.max.mutations",
+                    String.valueOf(BatchSplitter.SPANNER_MAX_MUTATIONS)));
+                long maxRequestBytes = Long.parseLong(config.getProperty("batch.split.max.request.bytes",
+                    String.valueOf(BatchSplitter.SPANNER_MAX_REQUEST_BYTES)));
+                Map<String, String> schemaTables = new LinkedHashMap<>();
+                for (String mapping : config.getProperty("batch.split.tables", "oorder:orders").split(",")) {
+                    String[] names = mapping.trim().split(":");
+                    if (names.length == 2) {
+                        schemaTables.put(names[0].trim(), names[1].trim());
+                    }
+                }
+                yield (dbConfig, profile, metricsService, queryProvider) -> new BatchStatementExecutor(
+                    dbConfig, profile, metricsService, queryProvider, retryPolicy,
+                    split ? new BatchSplitter(schema, queryProvider.getStatements(), schemaTables,
+                        queryProvider.getMaxRowsPerCall(), maxMutations, maxRequestBytes) : null);
+            }
+            case "reactive" -> {
+                int concurrency = Integer.parseInt(config.getProperty("reactive.concurrency", "1"));
+                int maxInFlight = Integer.parseInt(config.getProperty("reactive.max.in.flight", "4"));
+                yield (dbConfig, profile, metricsService, queryProvider) -> new ReactiveBatchExecutor(
+                    dbConfig, profile, metricsService, queryProvider, concurrency, maxInFlight, retryPolicy);
+            }
+            default -> throw new IllegalArgumentException(
+                "Invalid executor.type: " + executorType + ". Valid types are: blocking, reactive");
+        };
+    }
+
+    /**
+     * Runs the same seeded MIXED workload against every database in compare.databases and reports them side by side.
+     */
+    private static void runComparison(Properties config, MonitoringConfig monitoringConfig,
+                                      BenchmarkProfile benchmarkProfile,
+                                      ComparisonRunner.ExecutorFactory executorFactory,
+                                      KeyStrategy keyStrategy) {
+        List<ComparisonRunner.Backend> backends = new ArrayList<>();
+        for (String name : config.getProperty("compare.databases", "spanner,pgadapter,postgres").split(",")) {
+            String database = name.trim().toLowerCase();
+            backends.add(new ComparisonRunner.Backend(database, ConfigurationLoader.createDatabaseConfig(database, config)));
+        }
+        long seed = Long.parseLong(config.getProperty("compare.seed", "42"));
+        long warmupOperations = Long.parseLong(config.getProperty("compare.warmup.operations", "10000"));
+        logger.info("Comparing {} with seed {} and {} warmup operations",
+            backends.stream().map(ComparisonRunner.Backend::name).toList(), seed, warmupOperations);
+
+        List<ComparisonRunner.RunSummary> summaries = new ComparisonRunner(
+            backends,
+            benchmarkProfile,
+            monitoringConfig,
+            config.getProperty("google.cloud.project.id"),
+            (database, workloadSeed, totalOperations) -> new ComplexQueryProvider(ComplexQueryProvider.OperationType.MIXED,
+                workloadSeed, benchmarkProfile.getBatchSize(), totalOperations, keyStrategy,
+                SchemaVariant.forDatabase(config.getProperty("schema.variant", "text"), database)),
+            executorFactory,
+            seed,
+            warmupOperations,
+            resetTables(config, "compare.reset.tables")
+        ).run();
+        Reports.write("comparison", ComparisonRunner.formatReport(summaries, seed),
+            config.getProperty("compare.report.path", ""));
+    }
+
+    /**
+     * Builds an HTML report from recorded soak runs, given as arguments or in report.inputs.
+     */
+    private static void writeReport(Properties config, List<String> inputs) {
+        if (inputs.isEmpty()) {
+            inputs = new ArrayList<>();
+            for (String input : config.getProperty("report.inputs", "soak").split(",")) {
+                inputs.add(input.trim());
+            }
+        }
+        // Each log is streamed on its own thread
+        List<RecordedRun> runs = inputs.parallelStream().map(RecordedRun::read).toList();
+        new HtmlReport(runs).write(config.getProperty("report.output", "report.html"));
+    }
+
+    /**
+     * Modifies every row of the Spanner orders table with each mode in bulk.modes, measuring foreground latency alongside.
+     */
+    private static void runBulkModification(Properties config, MonitoringConfig monitoringConfig) {
+        DatabaseConfig dbConfig = ConfigurationLoader.createSpannerConfig(config);
+        MetricsService metricsService = new MetricsService(monitoringConfig, "spanner",
+            config.getProperty("google.cloud.project.id"));
+        List<BulkModificationMode> modes = new ArrayList<>();
+        for (String mode : config.getProperty("bulk.modes", "PARTITIONED_DML,BATCH_DML,JDBC_BATCH").split(",")) {
+            modes.add(BulkModificationMode.valueOf(mode.trim().toUpperCase()));
+        }
+
+        BulkModificationBenchmark benchmark = new BulkModificationBenchmark(
+            dbConfig,
+            metricsService,
+            ConfigurationLoader.createRetryPolicy(config),
+            modes,
+            Integer.parseInt(config.getProperty("bulk.workers", "4")),
+            Integer.parseInt(config.getProperty("bulk.chunk.size", "500")),
+            Double.parseDouble(config.getProperty("bulk.foreground.rate", "20")),
+            Duration.ofSeconds(Long.parseLong(config.getProperty("bulk.foreground.baseline.seconds", "10")))
+        );
+        long populateRows = Long.parseLong(config.getProperty("bulk.populate.rows", "0"));
+        if (populateRows > 0) {
+            benchmark.populate(populateRows);
+        }
+        benchmark.run();
+        metricsService.printMetrics();
+        benchmark.printReport();
+        metricsService.close();
+        dbConfig.close();
+    }
+
+    /**
+     * Recreates the schema with each variant in indexes.variants and runs the same inserts and updates against it.
+     */
+    private static void runIndexVariants(Properties config, MonitoringConfig monitoringConfig, KeyStrategy keyStrategy) {
+        String database = config.getProperty("indexes.database", "postgres").trim().toLowerCase();
+        DatabaseConfig dbConfig = ConfigurationLoader.createDatabaseConfig(database, config);
+        MetricsService metricsService = new MetricsService(monitoringConfig, database,
+            config.getProperty("google.cloud.project.id"));
+        List<String> allIndexes = SchemaDefinition.load(database.equals("spanner") ? "spanner-schema.sql" : "schema.sql")
+            .getIndexNames();
+        List<IndexVariantBenchmark.Variant> variants = new ArrayList<>();
+        for (String name : config.getProperty("indexes.variants", "none,all").split(",")) {
+            variants.add(indexVariant(config, name.trim(), allIndexes));
+        }
+
+        IndexVariantBenchmark benchmark = new IndexVariantBenchmark(
+            dbConfig,
+            metricsService,
+            database,
+            variants,
+            keyStrategy,
+            Long.parseLong(config.getProperty("indexes.seed", "42")),
+            Integer.parseInt(config.getProperty("indexes.seed.users", "10000")),
+            Integer.parseInt(config.getProperty("indexes.seed.orders", "10000")),
+            Integer.parseInt(config.getProperty("indexes.operations", "5000")),
+            Integer.parseInt(config.getProperty("indexes.batch.size", "100"))
+        );
+        benchmark.run();
+        metricsService.printMetrics();
+        Reports.write("index variant", benchmark.formatReport(), config.getProperty("indexes.report.path", ""));
+        metricsService.close();
+        dbConfig.close();
+    }
+
+    /**
+     * A variant's indexes come from indexes.variant.NAME; without it, "none" has no indexes, "all" has every
+     * index in the schema file and any other name is a single index.
+     */
+    private static IndexVariantBenchmark.Variant indexVariant(Properties config, String name, List<String> allIndexes) {
+        String prefix = "indexes.variant." + name;
+        String indexList = config.getProperty(prefix);
+        List<String> indexes = new ArrayList<>();
+        if (indexList != null) {
+            for (String index : indexList.split(",")) {
+                if (index.trim().equals("all")) {
+                    indexes.addAll(allIndexes);
+                } else if (!index.isBlank()) {
+                    indexes.add(index.trim());
+                }
+            }
+        } else if (name.equals("all")) {
+            indexes.addAll(allIndexes);
+        } else if (!name.equals("none")) {
+            indexes.add(name);
+        }
+        return new IndexVariantBenchmark.Variant(name, indexes,
+            Integer.parseInt(config.getProperty(prefix + ".fillfactor", "0")),
+            Boolean.parseBoolean(config.getProperty(prefix + ".interleave", "false")));
+    }
+
+    /**
+     * Runs the phases in scenario.phases in order against one database, each with its own rate, workers and workload.
+     */
+    private static void runScenario(Properties config, String profileName, DatabaseConfig dbConfig,
+                                    MonitoringConfig monitoringConfig, KeyStrategy keyStrategy, int defaultBatchSize) {
+        List<ScenarioPhase> phases = new ArrayList<>();
+        for (String name : config.getProperty("scenario.phases", "").split(",")) {
+            if (!name.isBlank()) {
+                phases.add(scenarioPhase(config, name.trim(), defaultBatchSize));
+            }
+        }
+        SchemaVariant schemaVariant = SchemaVariant.forDatabase(config.getProperty("schema.variant", "text"), profileName);
+        ScenarioRunner runner = new ScenarioRunner(
+            dbConfig,
+            profileName,
+            monitoringConfig,
+            config.getProperty("google.cloud.project.id"),
+            phases,
+            (phase, seed) -> new ComplexQueryProvider(phase.getWorkload(), seed, phase.getBatchSize(), Long.MAX_VALUE,
+                keyStrategy, schemaVariant),
+            Long.parseLong(config.getProperty("scenario.seed", "42")),
+            Double.parseDouble(config.getProperty("scenario.settle.tolerance", "0.2")),
+            resetTables(config, "scenario.reset.tables")
+        );
+        runner.run();
+        Reports.write("scenario", runner.formatReport(), config.getProperty("scenario.report.path", ""));
+    }
+
+    /**
+     * @return The tables in the property, by default the ones ComplexQueryProvider writes, referencing tables first;
+     *         an empty property keeps the data
+     */
+    private static List<String> resetTables(Properties config, String property) {
+        List<String> tables = new ArrayList<>();
+        for (String table : config.getProperty(property, "oorder,users").split(",")) {
+            if (!table.isBlank()) {
+                tables.add(table.trim());
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * A phase is defined by scenario.phase.NAME.* properties; .rate sets a constant rate, .rate.start and .rate.end a ramp.
+     */
+    private static ScenarioPhase scenarioPhase(Properties config, String name, int defaultBatchSize) {
+        String prefix = "scenario.phase." + name + ".";
+        String seconds = config.getProperty(prefix + "seconds");
+        if (seconds == null) {
+            throw new IllegalArgumentException("Scenario phase " + name + " has no " + prefix + "seconds");
+        }
+        String rate = config.getProperty(prefix + "rate", "0");
+        return new ScenarioPhase(
+            name,
+            Duration.ofMillis((long) (Double.parseDouble(seconds) * 1000)),
+            Double.parseDouble(config.getProperty(prefix + "rate.start", rate)),
+            Double.parseDouble(config.getProperty(prefix + "rate.end", rate)),
+            Integer.parseInt(config.getProperty(prefix + "concurrency", "1")),
+            ComplexQueryProvider.OperationType.valueOf(config.getProperty(prefix + "workload", "MIXED").trim().toUpperCase()),
+            Integer.parseInt(config.getProperty(prefix + "batch.size", String.valueOf(defaultBatchSize))));
+    }
+
+    /**
+     * Streams the orders table of scan.database with each mode in scan.modes and fetch size in scan.fetch.sizes.
+     */
+    private static void runScan(Properties config, MonitoringConfig monitoringConfig) {
+        String database = config.getProperty("scan.database", "postgres").trim().toLowerCase();
+        DatabaseConfig dbConfig = ConfigurationLoader.createDatabaseConfig(database, config);
+        MetricsService metricsService = new MetricsService(monitoringConfig, database,
+            config.getProperty("google.cloud.project.id"));
+        boolean spannerJdbc = database.equals("spanner");
+        List<ScanMode> modes = new ArrayList<>();
+        for (String mode : config.getProperty("scan.modes", "BUFFERED,CURSOR").split(",")) {
+            ScanMode scanMode = ScanMode.valueOf(mode.trim().toUpperCase());
+            if (scanMode == ScanMode.PARTITIONED && !Boolean.parseBoolean(config.getProperty("allow.partition.scan", "true"))) {
+                logger.warn("Skipping PARTITIONED scans, as allow.partition.scan is false");
+                continue;
+            }
+            modes.add(scanMode);
+        }
+        List<Integer> fetchSizes = new ArrayList<>();
+        for (String size : config.getProperty("scan.fetch.sizes", "100,1000,10000").split(",")) {
+            fetchSizes.add(Integer.parseInt(size.trim()));
+        }
+
+        ScanBenchmark benchmark = new ScanBenchmark(
+            dbConfig,
+            metricsService,
+            spannerJdbc,
+            config.getProperty("scan.table", spannerJdbc ? "orders" : "oorder"),
+            modes,
+            fetchSizes,
+            Long.parseLong(config.getProperty("scan.limit", "0")),
+            Integer.parseInt(config.getProperty("scan.partition.parallelism", "0"))
+        );
+        benchmark.run();
+        Reports.write("scan", benchmark.formatReport(), config.getProperty("scan.report.path", ""));
+        metricsService.close();
+        dbConfig.close();
+    }
+
+    /**
+     * Inserts and deletes orders of churn.database at churn.rate, holding the table at churn.target.rows.
+     */
+    private static void runChurn(Properties config, MonitoringConfig monitoringConfig) {
+        String database = config.getProperty("churn.database", "postgres").trim().toLowerCase();
+        DatabaseConfig dbConfig = ConfigurationLoader.createDatabaseConfig(database, config);
+        MetricsService metricsService = new MetricsService(monitoringConfig, database,
+            config.getProperty("google.cloud.project.id"));
+
+        ChurnBenchmark benchmark = new ChurnBenchmark(
+            dbConfig,
+            metricsService,
+            database,
+            ChurnMode.valueOf(config.getProperty("churn.mode", "OLDEST").trim().toUpperCase()),
+            Long.parseLong(config.getProperty("churn.target.rows", "100000")),
+            Double.parseDouble(config.getProperty("churn.rate", "500")),
+            Integer.parseInt(config.getProperty("churn.batch.size", "50")),
+            Duration.ofMinutes(Long.parseLong(config.getProperty("churn.duration.minutes", "30"))),
+            Duration.ofSeconds(Long.parseLong(config.getProperty("churn.window.seconds", "60"))),
+            Double.parseDouble(config.getProperty("churn.foreground.rate", "10"))
+        );
+        benchmark.run();
+        metricsService.printMetrics();
+        Reports.write("churn", benchmark.formatReport(), config.getProperty("churn.report.path", ""));
+        metricsService.close();
+        dbConfig.close();
+    }
+
+    /**
+     * Opens, uses and closes connections to each database in connection.databases, with each mode in connection.modes,
+     * concurrency in connection.concurrency and rate in connection.open.rates.
+     */
+    private static void runConnectionChurn(Properties config, MonitoringConfig monitoringConfig) {
+        List<Integer> concurrencies = new ArrayList<>();
+        for (String concurrency : config.getProperty("connection.concurrency", "1,8,32").split(",")) {
+            concurrencies.add(Integer.parseInt(concurrency.trim()));
+        }
+        int poolSize = Integer.parseInt(config.getProperty("connection.pool.size", "0"));
+        // One Spanner session per open connection, so statements are not measured queueing for a session
+        int connections = Math.max(poolSize, concurrencies.stream().mapToInt(Integer::intValue).max().orElse(1));
+        Map<String, DatabaseConfig> databases = new LinkedHashMap<>();
+        for (String database : config.getProperty("connection.databases", "postgres").split(",")) {
+            String name = database.trim().toLowerCase();
+            DatabaseConfig dbConfig = ConfigurationLoader.createDatabaseConfig(name, config);
+            databases.put(name, dbConfig instanceof SpannerConfig spanner ? spanner.withMaxSessionsAtLeast(connections) : dbConfig);
+        }
+        MetricsService metricsService = new MetricsService(monitoringConfig, "connections",
+            config.getProperty("google.cloud.project.id"));
+        List<ConnectionMode> modes = new ArrayList<>();
+        for (String mode : config.getProperty("connection.modes", "NEW,POOLED").split(",")) {
+            modes.add(ConnectionMode.valueOf(mode.trim().toUpperCase()));
+        }
+        List<Double> openRates = new ArrayList<>();
+        for (String rate : config.getProperty("connection.open.rates", "0").split(",")) {
+            openRates.add(Double.parseDouble(rate.trim()));
+        }
+
+        ConnectionChurnBenchmark benchmark = new ConnectionChurnBenchmark(
+            databases,
+            metricsService,
+            modes,
+            concurrencies,
+            openRates,
+            poolSize,
+            Long.parseLong(config.getProperty("connection.duration.seconds", "30")),
+            Integer.parseInt(config.getProperty("connection.cold.samples", "5"))
+        );
+        benchmark.run();
+        metricsService.printMetrics();
+        Reports.write("connection churn", benchmark.formatReport(), config.getProperty("connection.report.path", ""));
+        metricsService.close();
+        databases.values().forEach(DatabaseConfig::close);
+    }
+
+    /**
+     * Increments hot rows of each database in contention.databases, with each mode in contention.modes, number of
+     * hot rows in contention.hot.rows and number of workers in contention.workers.
+     */
+    private static void runContention(Properties config, MonitoringConfig monitoringConfig) {
+        List<Integer> workers = new ArrayList<>();
+        for (String count : config.getProperty("contention.workers", "1,4,16,64").split(",")) {
+            workers.add(Integer.parseInt(count.trim()));
+        }
+        // One Spanner session per worker, so workers contend for rows rather than for sessions
+        int maxWorkers = workers.stream().mapToInt(Integer::intValue).max().orElse(1);
+        Map<String, DatabaseConfig> databases = new LinkedHashMap<>();
+        for (String database : config.getProperty("contention.databases", "postgres").split(",")) {
+            String name = database.trim().toLowerCase();
+            DatabaseConfig dbConfig = ConfigurationLoader.createDatabaseConfig(name, config);
+            databases.put(name, dbConfig instanceof SpannerConfig spanner ? spanner.withMaxSessionsAtLeast(maxWorkers) : dbConfig);
+        }
+        MetricsService metricsService = new MetricsService(monitoringConfig, "contention",
+            config.getProperty("google.cloud.project.id"));
+        List<ContentionMode> modes = new ArrayList<>();
+        for (String mode : config.getProperty("contention.modes", "READ_MODIFY_WRITE,SINGLE_UPDATE").split(",")) {
+            modes.add(ContentionMode.valueOf(mode.trim().toUpperCase()));
+        }
+        List<Integer> hotRows = new ArrayList<>();
+        for (String rows : config.getProperty("contention.hot.rows", "1,10,100").split(",")) {
+            hotRows.add(Integer.parseInt(rows.trim()));
+        }
+
+        ContentionBenchmark benchmark = new ContentionBenchmark(
+            databases,
+            metricsService,
+            modes,
+            hotRows,
+            workers,
+            Duration.ofSeconds(Long.parseLong(config.getProperty("contention.duration.seconds", "120"))),
+            ConfigurationLoader.createRetryPolicy(config)
+        );
+        benchmark.run();
+        metricsService.printMetrics();
+        Reports.write("contention", benchmark.formatReport(), config.getProperty("contention.report.path", ""));
+        metricsService.close();
+        databases.values().forEach(DatabaseConfig::close);
+    }
+
+    /**
+     * Upserts users of upsert.database with each mode in upsert.modes and conflict ratio in upsert.conflict.ratios.
+     */
+    private static void runUpserts(Properties config, MonitoringConfig monitoringConfig) {
+        String database = config.getProperty("upsert.database", "postgres").trim().toLowerCase();
+        DatabaseConfig dbConfig = ConfigurationLoader.createDatabaseConfig(database, config);
+        MetricsService metricsService = new MetricsService(monitoringConfig, database,
+            config.getProperty("google.cloud.project.id"));
+        List<UpsertMode> modes = new ArrayList<>();
+        for (String mode : config.getProperty("upsert.modes", "DML").split(",")) {
+            modes.add(UpsertMode.valueOf(mode.trim().toUpperCase()));
+        }
+        List<Double> conflictRatios = new ArrayList<>();
+        for (String ratio : config.getProperty("upsert.conflict.ratios", "0,0.25,0.5,0.75,1").split(",")) {
+            conflictRatios.add(Double.parseDouble(ratio.trim()));
+        }
+
+        UpsertBenchmark benchmark = new UpsertBenchmark(
+            dbConfig,
+            metricsService,
+            database,
+            modes,
+            conflictRatios,
+            Integer.parseInt(config.getProperty("upsert.seed.rows", "10000")),
+            Integer.parseInt(config.getProperty("upsert.operations", "5000")),
+            Integer.parseInt(config.getProperty("upsert.batch.size", "100")),
+            Long.parseLong(config.getProperty("upsert.seed", "42"))
+        );
+        benchmark.run();
+        metricsService.printMetrics();
+        Reports.write("upsert", benchmark.formatReport(), config.getProperty("upsert.report.path", ""));
+        metricsService.close();
+        dbConfig.close();
+    }
+
+    /**
+     * Inserts rows with payloads of each size distribution in payload.sizes, with each batch size in payload.batch.sizes.
+     */
+    private static void runPayloads(Properties config, MonitoringConfig monitoringConfig) {
+        String database = config.getProperty("payload.database", "postgres").trim().toLowerCase();
+        DatabaseConfig dbConfig = ConfigurationLoader.createDatabaseConfig(database, config);
+        MetricsService metricsService = new MetricsService(monitoringConfig, database,
+            config.getProperty("google.cloud.project.id"));
+        List<String> sizes = new ArrayList<>();
+        for (String distribution : config.getProperty("payload.sizes", "fixed:1024,fixed:16384,fixed:65536").split(",")) {
+            sizes.add(distribution.trim());
+        }
+        List<Integer> batchSizes = new ArrayList<>();
+        for (String size : config.getProperty("payload.batch.sizes", "1,10,50,100,250").split(",")) {
+            batchSizes.add(Integer.parseInt(size.trim()));
+        }
+
+        PayloadBenchmark benchmark = new PayloadBenchmark(
+            dbConfig,
+            metricsService,
+            database,
+            PayloadKind.valueOf(config.getProperty("payload.kind", "JSON").trim().toUpperCase()),
+            sizes,
+            batchSizes,
+            Integer.parseInt(config.getProperty("payload.rows", "5000")),
+            Integer.parseInt(config.getProperty("payload.pool.size", "256")),
+            Long.parseLong(config.getProperty("payload.seed", "42")),
+            Double.parseDouble(config.getProperty("payload.batch.min.gain", "0.1"))
+        );
+        benchmark.run();
+        Reports.write("payload", benchmark.formatReport(), config.getProperty("payload.report.path", ""));
+        metricsService.close();
+        dbConfig.close();
+    }
+
+    /**
+     * Reads the Spanner orders table with each API in read.clients and mode in read.modes, under a fixed write load.
+     */
+    private static void runReadConsistency(Properties config, MonitoringConfig monitoringConfig) {
+        int readers = Integer.parseInt(config.getProperty("read.concurrency", "8"));
+        int writers = Integer.parseInt(config.getProperty("read.writers", "2"));
+        // One session per reader and writer, so no API or mode is measured queueing for a session
+        SpannerConfig spannerConfig = ConfigurationLoader.createSpannerConfig(config).withMaxSessionsAtLeast(readers + writers);
+        MetricsService metricsService = new MetricsService(monitoringConfig, "spanner",
+            config.getProperty("google.cloud.project.id"));
+        List<ReadConsistencyBenchmark.Api> apis = new ArrayList<>();
+        for (String api : config.getProperty("read.clients", "JDBC,NATIVE").split(",")) {
+            apis.add(ReadConsistencyBenchmark.Api.valueOf(api.trim().toUpperCase()));
+        }
+        List<ReadConsistency> modes = new ArrayList<>();
+        for (String mode : config.getProperty("read.modes", "STRONG,EXACT_STALENESS,MAX_STALENESS,READ_ONLY_TRANSACTION").split(",")) {
+            modes.add(ReadConsistency.valueOf(mode.trim().toUpperCase()));
+        }
+
+        ReadConsistencyBenchmark benchmark = new ReadConsistencyBenchmark(
+            spannerConfig,
+            metricsService,
+            apis,
+            modes,
+            Duration.ofSeconds(Long.parseLong(config.getProperty("read.staleness.seconds", "10"))),
+            readers,
+            Integer.parseInt(config.getProperty("read.transaction.reads", "5")),
+            Duration.ofSeconds(Long.parseLong(config.getProperty("read.duration.seconds", "60"))),
+            writers,
+            Double.parseDouble(config.getProperty("read.write.rate", "50"))
+        );
+        benchmark.run();
+        Reports.write("read consistency", benchmark.formatReport(), config.getProperty("read.report.path", ""));
+        metricsService.close();
+        spannerConfig.close();
+    }
+}
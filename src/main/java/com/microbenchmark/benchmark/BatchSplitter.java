@@ -0,0 +1,255 @@
+package com.microbenchmark.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps JDBC batches under Spanner's per-commit mutation limit and per-request size limit. A batch of
+ * {@code batchSize} provider calls can hold thousands of rows, each of which counts as a mutation per
+ * written column plus one per column of every secondary index entry it adds or replaces. The splitter
+ * estimates both per row from the statements and the schema file, taking the most expensive statement a
+ * provider can bind, and the executor starts a new sub-batch before the next call could cross either limit.
+ * Estimates are upper bounds: strings are counted at their declared length.
+ */
+public class BatchSplitter {
+    private static final Logger logger = LoggerFactory.getLogger(BatchSplitter.class);
+    // Spanner's limit on mutations in one commit
+    public static final int SPANNER_MAX_MUTATIONS = 80_000;
+    // Spanner's limit on the size of one request such as ExecuteBatchDml
+    public static final long SPANNER_MAX_REQUEST_BYTES = 10L * 1024 * 1024;
+    // Protobuf framing, parameter name and type of each bound value
+    private static final int PARAMETER_OVERHEAD_BYTES = 16;
+    // Declared sizes of unbounded types, which can't be known from the schema
+    private static final int UNBOUNDED_BYTES = 1024;
+
+    private static final Pattern INSERT = Pattern.compile("(?is)^\\s*INSERT\\s+(?:OR\\s+\\w+\\s+)?INTO\\s+(\\w+)\\s*\\(([^)]*)\\)");
+    private static final Pattern UPDATE = Pattern.compile("(?is)^\\s*UPDATE\\s+(\\w+)\\s+SET\\s+(.*?)\\s+WHERE\\s+(.*)$");
+    private static final Pattern DELETE = Pattern.compile("(?is)^\\s*DELETE\\s+FROM\\s+(\\w+)\\s+WHERE\\s+(.*)$");
+    private static final Pattern BOUND_COLUMN = Pattern.compile("(\\w+)\\s*=\\s*\\?");
+    private static final Pattern SIZE = Pattern.compile("\\((\\d+)");
+
+    /**
+     * The cost of one bound row of a statement.
+     */
+    record RowEstimate(String table, int mutations, int bytes) {
+    }
+
+    private final RowEstimate perRow;
+    private final int maxRowsPerCall;
+    private final int rowLimit;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder splitBatches = new LongAdder();
+    private final LongAdder subBatches = new LongAdder();
+    private final LongAdder splitOperations = new LongAdder();
+    private final LongAdder splitNanos = new LongAdder();
+    private final LongAdder wholeOperations = new LongAdder();
+    private final LongAdder wholeNanos = new LongAdder();
+
+    public BatchSplitter(SchemaDefinition schema, List<String> statements, int maxRowsPerCall, int maxMutations,
+                         long maxRequestBytes) {
+        this(schema, statements, Map.of(), maxRowsPerCall, maxMutations, maxRequestBytes);
+    }
+
+    /**
+     * @param statements Every statement the provider binds rows for
+     * @param schemaTables The schema table of each statement table named differently, e.g. oorder to orders
+     * @param maxRowsPerCall The most rows one call of the provider's setParameters binds
+     * @throws IllegalArgumentException If a statement's table is not in the schema, as its index entries could not be counted
+     */
+    public BatchSplitter(SchemaDefinition schema, List<String> statements, Map<String, String> schemaTables,
+                         int maxRowsPerCall, int maxMutations, long maxRequestBytes) {
+        int mutations = 1;
+        int bytes = 1;
+        for (String sql : statements) {
+            RowEstimate estimate = estimate(schema, sql, schemaTables);
+            if (!schema.getTables().containsKey(estimate.table())) {
+                throw new IllegalArgumentException("Table " + estimate.table() + " is not in the schema file, so the "
+                    + "mutations of its index entries can't be estimated; map it to a schema table with batch.split.tables");
+            }
+            mutations = Math.max(mutations, estimate.mutations());
+            bytes = Math.max(bytes, estimate.bytes());
+        }
+        this.perRow = new RowEstimate(null, mutations, bytes);
+        this.maxRowsPerCall = maxRowsPerCall;
+        this.rowLimit = (int) Math.max(1, Math.min(maxMutations / mutations, maxRequestBytes / bytes));
+        logger.info("Splitting batches at {} rows: up to {} mutations and {} bytes per row, limits {} mutations and {} bytes",
+            rowLimit, mutations, bytes, maxMutations, maxRequestBytes);
+    }
+
+    /**
+     * @return Whether one more provider call can be bound to a sub-batch that already holds {@code pendingRows}
+     *         rows; an empty sub-batch always takes one call, so a batch always makes progress
+     */
+    public boolean hasRoomFor(int pendingRows) {
+        return pendingRows == 0 || pendingRows + maxRowsPerCall <= rowLimit;
+    }
+
+    /**
+     * Records one batch of provider calls, executed as {@code parts} sub-batches.
+     */
+    public void recordBatch(int parts, long operations, long nanos) {
+        batches.increment();
+        subBatches.add(parts);
+        if (parts > 1) {
+            splitBatches.increment();
+            splitOperations.add(operations);
+            splitNanos.add(nanos);
+        } else {
+            wholeOperations.add(operations);
+            wholeNanos.add(nanos);
+        }
+    }
+
+    public int getRowLimit() {
+        return rowLimit;
+    }
+
+    public long getSplitBatches() {
+        return splitBatches.sum();
+    }
+
+    /**
+     * @return How often batches were split, into how many parts, and the time per provider call of split
+     *         batches against batches that fit in one request
+     */
+    public String summary() {
+        long total = batches.sum();
+        long split = splitBatches.sum();
+        return String.format(Locale.ROOT, "%d of %d batches split (%.1f%%) into %.1f sub-batches on average, "
+                + "%.3f ms per call when split, %.3f ms when not; limit %d rows (%d mutations, %d bytes per row)",
+            split, total, total > 0 ? 100.0 * split / total : 0,
+            split > 0 ? (double) (subBatches.sum() - (total - split)) / split : 0,
+            millisPerOperation(splitNanos.sum(), splitOperations.sum()),
+            millisPerOperation(wholeNanos.sum(), wholeOperations.sum()),
+            rowLimit, perRow.mutations(), perRow.bytes());
+    }
+
+    private static double millisPerOperation(long nanos, long operations) {
+        return operations > 0 ? nanos / 1_000_000.0 / operations : Double.NaN;
+    }
+
+    /**
+     * Estimates the mutations and request bytes of one row of an INSERT, UPDATE or DELETE:
+     * <ul>
+     *   <li>INSERT: one mutation per column, plus one per column of each index entry (its columns and the table key)</li>
+     *   <li>UPDATE: one per set or key column, plus twice an index entry for each index on a set column,
+     *       as the old entry is removed and a new one added</li>
+     *   <li>DELETE: one, plus one per index entry removed</li>
+     * </ul>
+     * Bytes are the SQL text, sent with every statement of a batch, plus each bound value at its declared size.
+     * Columns of tables missing from the schema count one mutation each, without index entries.
+     */
+    static RowEstimate estimate(SchemaDefinition schema, String sql) {
+        return estimate(schema, sql, Map.of());
+    }
+
+    /**
+     * @param schemaTables The schema table of each statement table named differently
+     */
+    static RowEstimate estimate(SchemaDefinition schema, String sql, Map<String, String> schemaTables) {
+        Matcher insert = INSERT.matcher(sql);
+        Matcher update = UPDATE.matcher(sql);
+        Matcher delete = DELETE.matcher(sql);
+        String table;
+        List<String> written;
+        List<String> bound = new ArrayList<>();
+        if (insert.find()) {
+            table = insert.group(1);
+            written = columns(insert.group(2));
+            // Only count columns bound with ?, not CURRENT_TIMESTAMP and the like
+            String[] values = sql.substring(insert.end()).replaceFirst("(?is)^\\s*VALUES\\s*\\(", "").split(",");
+            for (int i = 0; i < written.size() && i < values.length; i++) {
+                if (values[i].contains("?")) {
+                    bound.add(written.get(i));
+                }
+            }
+        } else if (update.find()) {
+            table = update.group(1);
+            written = boundColumns(update.group(2));
+            bound.addAll(written);
+            bound.addAll(boundColumns(update.group(3)));
+        } else if (delete.find()) {
+            table = delete.group(1);
+            written = List.of();
+            bound.addAll(boundColumns(delete.group(2)));
+        } else {
+            throw new IllegalArgumentException("Only INSERT, UPDATE and DELETE statements can be split: " + sql);
+        }
+        table = schemaTables.getOrDefault(table, table);
+
+        Map<String, String> types = schema.getColumns(table);
+        List<String> key = schema.getPrimaryKey(table);
+        String statement = sql.trim().substring(0, 6).toUpperCase();
+        Set<String> changed = new HashSet<>(written);
+        if (statement.equals("UPDATE")) {
+            changed.addAll(key);
+        }
+        int mutations = statement.equals("DELETE") ? 1 : changed.size();
+        for (String index : schema.getIndexNames()) {
+            if (!table.equals(schema.getIndexedTable(index))) {
+                continue;
+            }
+            List<String> indexColumns = schema.getIndexColumns(index);
+            int entry = indexColumns.size() + key.size();
+            switch (statement) {
+                case "INSERT" -> mutations += entry;
+                case "DELETE" -> mutations += 1;
+                default -> mutations += indexColumns.stream().anyMatch(written::contains) ? 2 * entry : 0;
+            }
+        }
+
+        int bytes = sql.length();
+        for (String column : bound) {
+            bytes += PARAMETER_OVERHEAD_BYTES + valueBytes(types.getOrDefault(column, ""));
+        }
+        return new RowEstimate(table, mutations, bytes);
+    }
+
+    /**
+     * The size of a value as sent in a request: strings at their declared length, binary as base64,
+     * and everything else as the text Spanner encodes it with.
+     */
+    static int valueBytes(String type) {
+        Matcher size = SIZE.matcher(type);
+        int declared = size.find() ? Integer.parseInt(size.group(1)) : UNBOUNDED_BYTES;
+        String base = type.replaceFirst("\\(.*", "");
+        return switch (base) {
+            case "STRING", "VARCHAR", "CHAR", "TEXT", "JSON", "JSONB" -> declared;
+            case "BYTES", "BYTEA" -> (declared + 2) / 3 * 4;
+            case "TIMESTAMP", "TIMESTAMPTZ" -> 30;
+            case "DATE" -> 10;
+            case "UUID" -> 36;
+            case "NUMERIC" -> 40;
+            case "BOOL", "BOOLEAN" -> 5;
+            // INT64, FLOAT64, INT, BIGINT and anything unknown
+            default -> 24;
+        };
+    }
+
+    private static List<String> columns(String list) {
+        List<String> columns = new ArrayList<>();
+        for (String column : list.split(",")) {
+            columns.add(column.trim());
+        }
+        return columns;
+    }
+
+    private static List<String> boundColumns(String clause) {
+        List<String> columns = new ArrayList<>();
+        Matcher column = BOUND_COLUMN.matcher(clause);
+        while (column.find()) {
+            columns.add(column.group(1));
+        }
+        return columns;
+    }
+}
@@ -2,57 +2,240 @@ package com.microbenchmark.benchmark;
 
 import com.microbenchmark.config.BenchmarkProfile;
 import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.config.RetryPolicy;
+import com.microbenchmark.metrics.BatchExecutionEvent;
+import com.microbenchmark.metrics.BatchPhase;
 import com.microbenchmark.metrics.MetricsService;
+import org.postgresql.PGConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Duration;
 import java.time.Instant;
 
-public class BatchStatementExecutor {
+public class BatchStatementExecutor implements BenchmarkExecutor {
     private static final Logger logger = LoggerFactory.getLogger(BatchStatementExecutor.class);
     private final DatabaseConfig databaseConfig;
     private final BenchmarkProfile profile;
     private final MetricsService metricsService;
     private final QueryProvider queryProvider;
+    private final RetryPolicy retryPolicy;
+    private final BatchSplitter splitter;
 
-    public BatchStatementExecutor(DatabaseConfig databaseConfig, BenchmarkProfile profile, 
+    public BatchStatementExecutor(DatabaseConfig databaseConfig, BenchmarkProfile profile,
                                 MetricsService metricsService, QueryProvider queryProvider) {
+        this(databaseConfig, profile, metricsService, queryProvider, RetryPolicy.defaultPolicy());
+    }
+
+    public BatchStatementExecutor(DatabaseConfig databaseConfig, BenchmarkProfile profile,
+                                MetricsService metricsService, QueryProvider queryProvider,
+                                RetryPolicy retryPolicy) {
+        this(databaseConfig, profile, metricsService, queryProvider, retryPolicy, null);
+    }
+
+    /**
+     * @param splitter Splits batches that could exceed Spanner's limits into sub-batches, or null to never split
+     */
+    public BatchStatementExecutor(DatabaseConfig databaseConfig, BenchmarkProfile profile,
+                                MetricsService metricsService, QueryProvider queryProvider,
+                                RetryPolicy retryPolicy, BatchSplitter splitter) {
         this.databaseConfig = databaseConfig;
         this.profile = profile;
         this.metricsService = metricsService;
         this.queryProvider = queryProvider;
+        this.retryPolicy = retryPolicy;
+        this.splitter = splitter;
     }
 
+    @Override
     public void execute() {
+        metricsService.startRun();
+        queryProvider.setPhaseListener(metricsService::recordPhase);
+        long acquireStart = System.nanoTime();
         try (Connection conn = databaseConfig.createConnection()) {
+            metricsService.recordPhase(BatchPhase.ACQUIRE, queryProvider.getStatementType(), System.nanoTime() - acquireStart);
+            if (profile.isExplicitCommit()) {
+                conn.setAutoCommit(false);
+            }
             String sql = queryProvider.getSql();
             int batchSize = queryProvider.getBatchSize();
             long totalOperations = queryProvider.getTotalOperations();
             Duration maxDuration = profile.getMaxDuration();
             Instant startTime = Instant.now();
+            String connectionId = connectionId(conn);
 
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                for (long i = 0; i < totalOperations && Duration.between(startTime, Instant.now()).compareTo(maxDuration) < 0; i++) {
-                    queryProvider.setParameters(stmt, i);
-
-                    if ((i + 1) % batchSize == 0) {
-                        Instant batchStart = Instant.now();
-                        stmt.executeBatch();
-                        Duration batchDuration = Duration.between(batchStart, Instant.now());
-                        metricsService.recordBatchExecution(batchSize, batchDuration);
+                for (long from = 0; from < totalOperations && Duration.between(startTime, Instant.now()).compareTo(maxDuration) < 0; from += batchSize) {
+                    long to = Math.min(from + batchSize, totalOperations);
+                    long batchStart = System.nanoTime();
+                    int parts = 0;
+                    for (long next = from; next < to; parts++) {
+                        next = executeWithRetry(conn, stmt, from / batchSize, next, to, connectionId);
+                    }
+                    if (splitter != null) {
+                        splitter.recordBatch(parts, to - from, System.nanoTime() - batchStart);
                     }
                 }
-
-                // Execute any remaining statements
-                stmt.executeBatch();
             }
         } catch (SQLException e) {
             logger.error("Error executing batch statements", e);
             throw new RuntimeException("Batch execution failed", e);
+        } finally {
+            metricsService.finishRun();
+            if (splitter != null) {
+                logger.info("Batch splitting: {}", splitter.summary());
+            }
+        }
+    }
+
+    /**
+     * Binds and executes operations [from, to) as one batch, or as many of them as the splitter lets into one
+     * sub-batch. Retryable failures are retried with backoff, re-binding the same operations; other failures
+     * are recorded and the run continues.
+     * @return The first operation not executed, {@code to} unless the batch was split
+     * @throws SQLException only if the connection itself is no longer usable
+     */
+    private long executeWithRetry(Connection conn, PreparedStatement stmt, long batchIndex, long from, long to,
+                                  String connectionId) throws SQLException {
+        String statementType = queryProvider.getStatementType();
+        for (int attempt = 1; ; attempt++) {
+            int rows = (int) (to - from);
+            try {
+                long bindStart = System.nanoTime();
+                for (long i = from; i < to; i++) {
+                    if (splitter != null && !splitter.hasRoomFor(pendingRows(i - from))) {
+                        // A retry re-binds no more than this attempt did
+                        to = i;
+                        rows = (int) (to - from);
+                        break;
+                    }
+                    queryProvider.setParameters(stmt, i);
+                }
+                metricsService.recordPhase(BatchPhase.BIND, statementType, System.nanoTime() - bindStart);
+                if (queryProvider.getPendingRowCount() >= 0) {
+                    rows = queryProvider.getPendingRowCount();
+                }
+
+                Instant batchStart = Instant.now();
+                int[] counts = executeBatch(stmt, batchIndex, connectionId);
+                Duration batchDuration = Duration.between(batchStart, Instant.now());
+                metricsService.recordPhase(BatchPhase.EXECUTE, statementType, batchDuration.toNanos());
+                if (profile.isExplicitCommit()) {
+                    long commitStart = System.nanoTime();
+                    conn.commit();
+                    metricsService.recordPhase(BatchPhase.COMMIT, statementType, System.nanoTime() - commitStart);
+                }
+                metricsService.recordBatchExecution(counts.length, batchDuration);
+                metricsService.incrementTotalOperations(counts.length);
+                metricsService.incrementSucceededOperations(succeededRows(counts));
+                return to;
+            } catch (SQLException e) {
+                ErrorCategory category = ErrorCategory.classify(e);
+                int[] partialCounts = e instanceof BatchUpdateException batchError ? batchError.getUpdateCounts() : null;
+                // In explicit-commit mode the partial results are rolled back with the transaction
+                long succeeded = partialCounts != null && !profile.isExplicitCommit() ? succeededRows(partialCounts) : 0;
+                metricsService.incrementTotalOperations(rows);
+                metricsService.incrementSucceededOperations(succeeded);
+                queryProvider.clearBatch(stmt);
+                if (profile.isExplicitCommit()) {
+                    rollback(conn);
+                }
+
+                boolean connectionLost = conn.isClosed() || !conn.isValid(5);
+                if (category.isRetryable() && attempt < retryPolicy.getMaxAttempts() && !connectionLost) {
+                    Duration backoff = retryPolicy.backoff(attempt);
+                    logger.debug("Batch {} attempt {} failed with {}, retrying in {} ms: {}",
+                        batchIndex, attempt, category, backoff.toMillis(), e.getMessage());
+                    metricsService.recordRetry(category.name());
+                    sleep(backoff);
+                    continue;
+                }
+
+                logger.warn("Batch {} failed after {} attempt(s) with {}: {}", batchIndex, attempt, category, e.getMessage());
+                metricsService.recordFailedBatch(category.name(), rows - succeeded);
+                if (connectionLost) {
+                    throw e;
+                }
+                return to;
+            }
+        }
+    }
+
+    /**
+     * @return The rows bound by the provider so far, or an upper bound if it doesn't track them
+     */
+    private int pendingRows(long calls) {
+        int pending = queryProvider.getPendingRowCount();
+        return pending >= 0 ? pending : (int) calls * queryProvider.getMaxRowsPerCall();
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            logger.debug("Rollback after failed batch failed", e);
+        }
+    }
+
+    private int[] executeBatch(PreparedStatement stmt, long batchIndex, String connectionId) throws SQLException {
+        BatchExecutionEvent event = new BatchExecutionEvent();
+        event.begin();
+        event.outcome = "FAILED";
+        try {
+            int[] counts = queryProvider.executeBatch(stmt);
+            event.rowCount = counts.length;
+            event.outcome = "SUCCESS";
+            return counts;
+        } finally {
+            event.end();
+            // Only fill in the string fields when a recording actually wants this event
+            if (event.shouldCommit()) {
+                event.batchIndex = batchIndex;
+                event.statementType = queryProvider.getStatementType();
+                event.connectionId = connectionId;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * @return The rows that were applied: explicit counts and SUCCESS_NO_INFO, but not EXECUTE_FAILED
+     */
+    static long succeededRows(int[] counts) {
+        long succeeded = 0;
+        for (int count : counts) {
+            if (count >= 0 || count == Statement.SUCCESS_NO_INFO) {
+                succeeded++;
+            }
+        }
+        return succeeded;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis(), duration.toNanosPart() % 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The PostgreSQL backend PID when available, so events can be matched with pg_stat_activity,
+     *         otherwise an identifier that is stable for the lifetime of the connection
+     */
+    static String connectionId(Connection conn) {
+        try {
+            if (conn.isWrapperFor(PGConnection.class)) {
+                return "pid-" + conn.unwrap(PGConnection.class).getBackendPID();
+            }
+        } catch (SQLException e) {
+            logger.debug("Could not determine backend PID", e);
         }
+        return conn.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(conn));
     }
-} 
\ No newline at end of file
+}
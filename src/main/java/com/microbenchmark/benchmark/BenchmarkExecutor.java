@@ -0,0 +1,8 @@
+package com.microbenchmark.benchmark;
+
+/**
+ * Runs a workload to completion, recording into the MetricsService it was created with.
+ */
+public interface BenchmarkExecutor {
+    void execute();
+}
@@ -0,0 +1,421 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.config.RetryPolicy;
+import com.microbenchmark.metrics.BatchPhase;
+import com.microbenchmark.metrics.MetricsService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Modifies every row of the Spanner {@code orders} table with each {@link BulkModificationMode} in turn,
+ * while a foreground client keeps doing paced point reads. Reports rows/s per mode and the foreground
+ * latency during each mode against a baseline without bulk work.
+ * Uses the Spanner JDBC driver; the key-range partitioning assumes hex ids such as UUIDs.
+ */
+public class BulkModificationBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(BulkModificationBenchmark.class);
+    private static final String BASELINE = "BASELINE";
+    private static final String UPDATE_SET = "UPDATE orders SET items_count = items_count + 1, updated_at = CURRENT_TIMESTAMP()";
+    private static final String HEX_DIGITS = "0123456789abcdef";
+    private static final int FOREGROUND_SAMPLE_IDS = 1000;
+
+    private final DatabaseConfig databaseConfig;
+    private final MetricsService metricsService;
+    private final RetryPolicy retryPolicy;
+    private final List<BulkModificationMode> modes;
+    private final int workers;
+    private final int chunkSize;
+    private final double foregroundRate;
+    private final Duration baselineDuration;
+    private final Map<String, ModeResult> results = new LinkedHashMap<>();
+
+    private record ModeResult(long rows, double seconds) {
+    }
+
+    /**
+     * @param workers Workers for BATCH_DML; each owns an equal share of the key space
+     * @param chunkSize Rows per BatchDML transaction and per JDBC batch
+     * @param foregroundRate Foreground point reads per second
+     * @param baselineDuration How long to measure foreground latency before any bulk work
+     */
+    public BulkModificationBenchmark(DatabaseConfig databaseConfig, MetricsService metricsService, RetryPolicy retryPolicy,
+                                     List<BulkModificationMode> modes, int workers, int chunkSize,
+                                     double foregroundRate, Duration baselineDuration) {
+        if (workers < 1 || workers > HEX_DIGITS.length() * HEX_DIGITS.length()) {
+            throw new IllegalArgumentException("workers must be between 1 and 256");
+        }
+        this.databaseConfig = databaseConfig;
+        this.metricsService = metricsService;
+        this.retryPolicy = retryPolicy;
+        this.modes = modes;
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+        this.foregroundRate = foregroundRate;
+        this.baselineDuration = baselineDuration;
+    }
+
+    /**
+     * Inserts one user and {@code rows} orders belonging to it, so there is something to modify.
+     */
+    public void populate(long rows) {
+        logger.info("Populating orders with {} rows", rows);
+        try (Connection conn = databaseConfig.createConnection()) {
+            String userId = UUID.randomUUID().toString();
+            Timestamp now = Timestamp.from(Instant.now());
+            try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO users (id, name, email, status, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)")) {
+                stmt.setString(1, userId);
+                stmt.setString(2, "Bulk owner");
+                stmt.setString(3, "bulk-" + userId + "@example.com");
+                stmt.setString(4, "ACTIVE");
+                stmt.setTimestamp(5, now);
+                stmt.setTimestamp(6, now);
+                stmt.executeUpdate();
+            }
+            Random random = new Random();
+            try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO orders (id, user_id, order_status, total_amount, items_count, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (long i = 0; i < rows; i++) {
+                    stmt.setString(1, UUID.randomUUID().toString());
+                    stmt.setString(2, userId);
+                    stmt.setString(3, "PENDING");
+                    stmt.setBigDecimal(4, BigDecimal.valueOf(random.nextInt(100_000), 2));
+                    stmt.setLong(5, 1 + random.nextInt(10));
+                    stmt.setTimestamp(6, now);
+                    stmt.setTimestamp(7, now);
+                    stmt.addBatch();
+                    if ((i + 1) % chunkSize == 0 || i == rows - 1) {
+                        stmt.executeBatch();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to populate orders", e);
+        }
+    }
+
+    public void run() {
+        List<String> sampleIds = sampleIds();
+        if (sampleIds.isEmpty()) {
+            throw new IllegalStateException("The orders table is empty; set bulk.populate.rows to create rows first");
+        }
+
+        metricsService.startRun();
+        try {
+            logger.info("Measuring baseline foreground latency for {} seconds", baselineDuration.toSeconds());
+            ForegroundLoad baseline = ForegroundLoad.start(this, sampleIds, BASELINE);
+            sleep(baselineDuration);
+            baseline.stop();
+
+            for (BulkModificationMode mode : modes) {
+                logger.info("Modifying all orders with {}", mode);
+                ForegroundLoad foreground = ForegroundLoad.start(this, sampleIds, mode.name());
+                long start = System.nanoTime();
+                long rows;
+                try {
+                    rows = switch (mode) {
+                        case PARTITIONED_DML -> runPartitionedDml();
+                        case BATCH_DML -> runBatchDml();
+                        case JDBC_BATCH -> runJdbcBatch();
+                    };
+                } finally {
+                    foreground.stop();
+                }
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                results.put(mode.name(), new ModeResult(rows, seconds));
+                logger.info(String.format("%s modified %d rows in %.2f seconds", mode, rows, seconds));
+            }
+        } finally {
+            metricsService.finishRun();
+        }
+    }
+
+    private List<String> sampleIds() {
+        List<String> ids = new ArrayList<>();
+        try (Connection conn = databaseConfig.createConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM orders TABLESAMPLE RESERVOIR (" + FOREGROUND_SAMPLE_IDS + " ROWS)")) {
+            while (rs.next()) {
+                ids.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to sample order ids", e);
+        }
+        return ids;
+    }
+
+    private long runPartitionedDml() {
+        try (Connection conn = databaseConfig.createConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("SET AUTOCOMMIT_DML_MODE = 'PARTITIONED_NON_ATOMIC'");
+            long start = System.nanoTime();
+            // Partitioned DML returns a lower bound of the modified rows
+            long rows = stmt.executeLargeUpdate(UPDATE_SET + " WHERE TRUE");
+            metricsService.recordPhase(BatchPhase.EXECUTE, BulkModificationMode.PARTITIONED_DML.name(), System.nanoTime() - start);
+            recordRows(rows);
+            return rows;
+        } catch (SQLException e) {
+            metricsService.recordFailedBatch(ErrorCategory.classify(e).name(), 0);
+            throw new RuntimeException("Partitioned DML failed", e);
+        }
+    }
+
+    private long runBatchDml() {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            int prefixes = HEX_DIGITS.length() * HEX_DIGITS.length();
+            for (int w = 0; w < workers; w++) {
+                String lower = w == 0 ? null : prefix(w * prefixes / workers);
+                String upper = w == workers - 1 ? null : prefix((w + 1) * prefixes / workers);
+                futures.add(executor.submit(() -> updateRange(BulkModificationMode.BATCH_DML, lower, upper, false)));
+            }
+            long rows = 0;
+            for (Future<Long> future : futures) {
+                rows += future.get();
+            }
+            return rows;
+        } catch (Exception e) {
+            throw new RuntimeException("BatchDML workers failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long runJdbcBatch() {
+        try {
+            return updateRange(BulkModificationMode.JDBC_BATCH, null, null, true);
+        } catch (SQLException e) {
+            throw new RuntimeException("JDBC batch update failed", e);
+        }
+    }
+
+    private static String prefix(int index) {
+        return "" + HEX_DIGITS.charAt(index / HEX_DIGITS.length()) + HEX_DIGITS.charAt(index % HEX_DIGITS.length());
+    }
+
+    /**
+     * Walks the key range [lower, upper) in id order, updating one chunk of rows at a time. In autocommit mode
+     * each chunk is one JDBC batch; otherwise the chunk is read and updated in one read-write transaction,
+     * which the Spanner driver sends as a single BatchDML request.
+     * @param lower Inclusive lower bound, or null for the start of the table
+     * @param upper Exclusive upper bound, or null for the end of the table
+     */
+    private long updateRange(BulkModificationMode mode, String lower, String upper, boolean autocommit) throws SQLException {
+        long rows = 0;
+        try (Connection conn = databaseConfig.createConnection();
+             PreparedStatement update = conn.prepareStatement(UPDATE_SET + " WHERE id = ?")) {
+            conn.setAutoCommit(autocommit);
+            String cursor = lower;
+            boolean inclusive = true;
+            while (true) {
+                List<String> ids = null;
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        ids = readChunk(conn, cursor, inclusive, upper);
+                        if (!ids.isEmpty()) {
+                            updateChunk(conn, update, mode, ids, autocommit);
+                        }
+                        break;
+                    } catch (SQLException e) {
+                        ErrorCategory category = ErrorCategory.classify(e);
+                        update.clearBatch();
+                        if (!autocommit) {
+                            conn.rollback();
+                        }
+                        if (!category.isRetryable() || attempt >= retryPolicy.getMaxAttempts()) {
+                            metricsService.recordFailedBatch(category.name(), ids != null ? ids.size() : 0);
+                            throw e;
+                        }
+                        metricsService.recordRetry(category.name());
+                        sleep(retryPolicy.backoff(attempt));
+                    }
+                }
+                if (ids.isEmpty()) {
+                    return rows;
+                }
+                rows += ids.size();
+                cursor = ids.get(ids.size() - 1);
+                inclusive = false;
+            }
+        }
+    }
+
+    private List<String> readChunk(Connection conn, String cursor, boolean inclusive, String upper) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id FROM orders WHERE TRUE");
+        if (cursor != null) {
+            sql.append(inclusive ? " AND id >= ?" : " AND id > ?");
+        }
+        if (upper != null) {
+            sql.append(" AND id < ?");
+        }
+        sql.append(" ORDER BY id LIMIT ").append(chunkSize);
+        List<String> ids = new ArrayList<>(chunkSize);
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            if (cursor != null) {
+                stmt.setString(index++, cursor);
+            }
+            if (upper != null) {
+                stmt.setString(index, upper);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void updateChunk(Connection conn, PreparedStatement update, BulkModificationMode mode, List<String> ids,
+                             boolean autocommit) throws SQLException {
+        String statementType = mode.name();
+        long bindStart = System.nanoTime();
+        for (String id : ids) {
+            update.setString(1, id);
+            update.addBatch();
+        }
+        metricsService.recordPhase(BatchPhase.BIND, statementType, System.nanoTime() - bindStart);
+        Instant executeStart = Instant.now();
+        int[] counts = update.executeBatch();
+        Duration executeDuration = Duration.between(executeStart, Instant.now());
+        metricsService.recordPhase(BatchPhase.EXECUTE, statementType, executeDuration.toNanos());
+        if (!autocommit) {
+            long commitStart = System.nanoTime();
+            conn.commit();
+            metricsService.recordPhase(BatchPhase.COMMIT, statementType, System.nanoTime() - commitStart);
+        }
+        metricsService.recordBatchExecution(counts.length, executeDuration);
+        recordRows(BatchStatementExecutor.succeededRows(counts));
+    }
+
+    private void recordRows(long rows) {
+        metricsService.incrementTotalOperations(rows);
+        metricsService.incrementSucceededOperations(rows);
+    }
+
+    private Timer foregroundTimer(String phase) {
+        return metricsService.getQueryTimer("FOREGROUND_" + phase);
+    }
+
+    /**
+     * Point reads of random sampled ids at a fixed rate on their own connection. The schedule is fixed up front,
+     * so a slow read delays the next ones instead of lowering the offered load.
+     */
+    private static class ForegroundLoad {
+        private final Thread thread;
+        private volatile boolean running = true;
+        private final AtomicLong errors = new AtomicLong();
+
+        private ForegroundLoad(BulkModificationBenchmark benchmark, List<String> ids, String phase) {
+            Timer timer = benchmark.foregroundTimer(phase);
+            this.thread = new Thread(() -> {
+                Random random = new Random();
+                long intervalNanos = (long) (1_000_000_000L / benchmark.foregroundRate);
+                try (Connection conn = benchmark.databaseConfig.createConnection();
+                     PreparedStatement stmt = conn.prepareStatement(
+                         "SELECT id, order_status, items_count FROM orders WHERE id = ?")) {
+                    long next = System.nanoTime();
+                    while (running) {
+                        LockSupport.parkNanos(next - System.nanoTime());
+                        stmt.setString(1, ids.get(random.nextInt(ids.size())));
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            rs.next();
+                        } catch (SQLException e) {
+                            errors.incrementAndGet();
+                        }
+                        // Latency is measured from the scheduled start, to avoid coordinated omission
+                        timer.record(System.nanoTime() - next, TimeUnit.NANOSECONDS);
+                        next += intervalNanos;
+                    }
+                } catch (SQLException e) {
+                    logger.warn("Foreground load for {} failed: {}", phase, e.getMessage());
+                }
+            }, "foreground-" + phase);
+            thread.setDaemon(true);
+        }
+
+        static ForegroundLoad start(BulkModificationBenchmark benchmark, List<String> ids, String phase) {
+            ForegroundLoad load = new ForegroundLoad(benchmark, ids, phase);
+            load.thread.start();
+            return load;
+        }
+
+        void stop() {
+            running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (errors.get() > 0) {
+                logger.warn("{} foreground reads failed during {}", errors.get(), thread.getName());
+            }
+        }
+    }
+
+    public void printReport() {
+        logger.info("\nBulk Modification Report:");
+        logger.info("-------------------------");
+        logger.info(String.format("%-16s %12s %10s %12s %14s %14s %14s",
+            "mode", "rows", "seconds", "rows/s", "fg reads", "fg p50 (ms)", "fg p99 (ms)"));
+        logForeground(BASELINE, null);
+        results.forEach((mode, result) -> logForeground(mode, result));
+    }
+
+    private void logForeground(String phase, ModeResult result) {
+        Timer timer = foregroundTimer(phase);
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        double p50 = Double.NaN;
+        double p99 = Double.NaN;
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            if (percentile.percentile() == 0.5) {
+                p50 = percentile.value(TimeUnit.MILLISECONDS);
+            } else if (percentile.percentile() == 0.99) {
+                p99 = percentile.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        logger.info(String.format("%-16s %12s %10s %12s %14d %14.2f %14.2f",
+            phase,
+            result != null ? String.valueOf(result.rows()) : "-",
+            result != null ? String.format("%.2f", result.seconds()) : "-",
+            result != null ? String.format("%.0f", result.rows() / result.seconds()) : "-",
+            timer.count(), p50, p99));
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.microbenchmark.benchmark;
+
+/**
+ * Ways to modify every row of a large Spanner table.
+ */
+public enum BulkModificationMode {
+    PARTITIONED_DML,  // one Partitioned DML statement, split and run by Spanner itself
+    BATCH_DML,        // workers each own a key range and update it in chunked BatchDML transactions
+    JDBC_BATCH        // one connection updating rows by id in autocommit JDBC batches, like the other workloads
+}
@@ -0,0 +1,381 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.keys.KeyGenerator;
+import com.microbenchmark.keys.KeyStrategy;
+import com.microbenchmark.metrics.MetricsService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Holds the orders table near a target size by deleting rows as fast as it inserts them, so a long run
+ * measures a steady-state table instead of an ever-growing one. The table is emptied and seeded with the
+ * target number of orders, their creation times spread over one TTL, and then rows are inserted at a fixed
+ * rate and deleted according to the {@link ChurnMode}. Alongside, a foreground query reads the oldest live
+ * orders, the rows next to the deleted ones, which is where dead tuples (PostgreSQL, until vacuum) and old
+ * versions (Spanner, until version GC) have to be skipped. Every window reports insert, delete and
+ * foreground latency, with PostgreSQL's dead tuple and vacuum counts. The foreground query relies on the
+ * schema file's idx_orders_created_at index.
+ * Supports the postgres profile with schema.sql and the spanner profile with spanner-schema.sql.
+ */
+public class ChurnBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(ChurnBenchmark.class);
+    private static final int OLDEST_ORDERS = 100;
+
+    private record Window(double elapsedSeconds, double seconds, long rows, long inserted, long deleted,
+                          Histogram insertLatency, Histogram deleteLatency, Histogram foregroundLatency,
+                          long deadTuples, long vacuums) {
+    }
+
+    private final DatabaseConfig databaseConfig;
+    private final MetricsService metricsService;
+    private final boolean spanner;
+    private final String ordersTable;
+    private final ChurnMode mode;
+    private final long targetRows;
+    private final double rate;
+    private final int batchSize;
+    private final Duration duration;
+    private final Duration window;
+    private final double foregroundRate;
+    private final Duration ttl;
+    private final List<Window> windows = new ArrayList<>();
+    private final Recorder insertLatency = new Recorder(3);
+    private final Recorder deleteLatency = new Recorder(3);
+    private final Recorder foregroundLatency = new Recorder(3);
+    // The live orders, oldest first; only kept for OLDEST
+    private final ArrayDeque<String> liveIds = new ArrayDeque<>();
+    private String[] userIds;
+    private String versionRetention;
+    private long rows;
+
+    /**
+     * @param database postgres or spanner
+     * @param targetRows Orders kept in the table
+     * @param rate Orders inserted, and deleted, per second
+     * @param foregroundRate Foreground queries per second
+     */
+    public ChurnBenchmark(DatabaseConfig databaseConfig, MetricsService metricsService, String database, ChurnMode mode,
+                          long targetRows, double rate, int batchSize, Duration duration, Duration window,
+                          double foregroundRate) {
+        this.spanner = switch (database) {
+            case "spanner" -> true;
+            case "postgres" -> false;
+            default -> throw new IllegalArgumentException(
+                "Invalid churn.database: " + database + ". Valid databases are: postgres, spanner");
+        };
+        if (targetRows < 1 || rate <= 0 || batchSize < 1 || foregroundRate <= 0) {
+            throw new IllegalArgumentException("The target size, rates and batch size must be positive");
+        }
+        this.databaseConfig = databaseConfig;
+        this.metricsService = metricsService;
+        this.ordersTable = spanner ? "orders" : "oorder";
+        this.mode = mode;
+        this.targetRows = targetRows;
+        this.rate = rate;
+        this.batchSize = batchSize;
+        this.duration = duration;
+        this.window = window;
+        this.foregroundRate = foregroundRate;
+        // The age at which a row expires, if the table is to stay at its target size
+        this.ttl = Duration.ofNanos((long) (targetRows / rate * 1_000_000_000L));
+    }
+
+    public void run() {
+        metricsService.startRun();
+        try (Connection conn = databaseConfig.createConnection();
+             Connection statsConn = databaseConfig.createConnection()) {
+            conn.setAutoCommit(true);
+            clear(conn);
+            seed(conn);
+            versionRetention = spanner ? versionRetention(statsConn) : null;
+
+            long start = System.nanoTime();
+            long deadline = start + duration.toNanos();
+            Thread foreground = new Thread(() -> queryOldest(deadline), "churn-foreground");
+            foreground.start();
+            try {
+                churn(conn, statsConn, start, deadline);
+            } finally {
+                foreground.join();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Churn benchmark failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the foreground query", e);
+        } finally {
+            metricsService.finishRun();
+        }
+    }
+
+    private void clear(Connection conn) throws SQLException {
+        Tables.deleteAll(conn, List.of(ordersTable));
+    }
+
+    /**
+     * Inserts the users the orders belong to and the target number of orders, created one insert interval
+     * apart so the oldest is one TTL old, as if the churn had been running all along.
+     */
+    private void seed(Connection conn) throws SQLException {
+        // Unseeded, as users of earlier runs are still in the table
+        Random random = new Random();
+        KeyGenerator keys = KeyStrategy.UUID_V4.create(random);
+        char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+        long start = System.nanoTime();
+        userIds = new String[Math.max(1, (int) Math.min(1000, targetRows / 10))];
+        try (PreparedStatement stmt = conn.prepareStatement(
+            "INSERT INTO users (id, name, email, status, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)")) {
+            Timestamp now = Timestamp.from(Instant.now());
+            for (int i = 0; i < userIds.length; i++) {
+                userIds[i] = new String(buffer, 0, keys.next(buffer));
+                stmt.setString(1, userIds[i]);
+                stmt.setString(2, "Churn user " + i);
+                stmt.setString(3, userIds[i] + "@example.com");
+                stmt.setString(4, "ACTIVE");
+                stmt.setTimestamp(5, now);
+                stmt.setTimestamp(6, now);
+                stmt.addBatch();
+                if ((i + 1) % batchSize == 0 || i == userIds.length - 1) {
+                    stmt.executeBatch();
+                }
+            }
+        }
+        Instant oldest = Instant.now().minus(ttl);
+        try (PreparedStatement stmt = conn.prepareStatement(insertSql())) {
+            for (long i = 0; i < targetRows; i++) {
+                bindOrder(stmt, new String(buffer, 0, keys.next(buffer)),
+                    Timestamp.from(oldest.plusNanos((long) (i / rate * 1_000_000_000L))), random);
+                stmt.addBatch();
+                if ((i + 1) % batchSize == 0 || i == targetRows - 1) {
+                    stmt.executeBatch();
+                }
+            }
+        }
+        rows = targetRows;
+        logger.info("Seeded {} users and {} orders in {} ms", userIds.length, targetRows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private String versionRetention(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT OPTION_VALUE FROM INFORMATION_SCHEMA.DATABASE_OPTIONS "
+                 + "WHERE OPTION_NAME = 'version_retention_period'")) {
+            return rs.next() ? rs.getString(1) : "1h";
+        } catch (SQLException e) {
+            logger.warn("Could not read the version retention period: {}", e.getMessage());
+            return "unknown";
+        }
+    }
+
+    private String insertSql() {
+        return "INSERT INTO " + ordersTable + " (id, user_id, order_status, total_amount, items_count, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    private void bindOrder(PreparedStatement stmt, String id, Timestamp createdAt, Random random) throws SQLException {
+        Rows.bindOrder(stmt, id, userIds[random.nextInt(userIds.length)], createdAt, random);
+        if (mode == ChurnMode.OLDEST) {
+            liveIds.addLast(id);
+        }
+    }
+
+    private void churn(Connection conn, Connection statsConn, long start, long deadline) throws SQLException {
+        Random random = new Random();
+        KeyGenerator keys = KeyStrategy.UUID_V4.create(random);
+        char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+        long intervalNanos = (long) (batchSize / rate * 1_000_000_000L);
+        long windowNanos = window.toNanos();
+        long windowStart = start;
+        long inserted = 0;
+        long deleted = 0;
+        long next = start;
+        long failures = 0;
+        try (PreparedStatement insert = conn.prepareStatement(insertSql());
+             PreparedStatement delete = conn.prepareStatement(mode == ChurnMode.OLDEST
+                 ? "DELETE FROM " + ordersTable + " WHERE id = ?"
+                 : "DELETE FROM " + ordersTable + " WHERE created_at < ?")) {
+            while (next < deadline) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                Timestamp now = Timestamp.from(Instant.now());
+                for (int i = 0; i < batchSize; i++) {
+                    bindOrder(insert, new String(buffer, 0, keys.next(buffer)), now, random);
+                    insert.addBatch();
+                }
+                long insertStart = System.nanoTime();
+                long insertedRows = 0;
+                try {
+                    insertedRows = BatchStatementExecutor.succeededRows(insert.executeBatch());
+                    long nanos = System.nanoTime() - insertStart;
+                    record(insertLatency, "CHURN_INSERT", nanos);
+                    metricsService.recordBatchExecution(batchSize, Duration.ofNanos(nanos));
+                    metricsService.incrementSucceededOperations(insertedRows);
+                } catch (SQLException e) {
+                    insert.clearBatch();
+                    if (mode == ChurnMode.OLDEST) {
+                        // The batch is one implicit transaction, so none of its rows exist
+                        for (int i = 0; i < batchSize; i++) {
+                            liveIds.pollLast();
+                        }
+                    }
+                    failed(e, "insert", batchSize, failures++);
+                }
+                metricsService.incrementTotalOperations(batchSize);
+
+                long deleteStart = System.nanoTime();
+                long deletedRows = 0;
+                List<String> deleting = new ArrayList<>();
+                try {
+                    if (mode == ChurnMode.OLDEST) {
+                        long excess = liveIds.size() - targetRows;
+                        for (long i = 0; i < excess; i++) {
+                            String id = liveIds.pollFirst();
+                            deleting.add(id);
+                            delete.setString(1, id);
+                            delete.addBatch();
+                        }
+                        deletedRows = excess > 0 ? BatchStatementExecutor.succeededRows(delete.executeBatch()) : 0;
+                    } else {
+                        delete.setTimestamp(1, Timestamp.from(Instant.now().minus(ttl)));
+                        deletedRows = delete.executeUpdate();
+                    }
+                    record(deleteLatency, "CHURN_DELETE_" + mode, System.nanoTime() - deleteStart);
+                } catch (SQLException e) {
+                    delete.clearBatch();
+                    // Still the oldest rows, so they are deleted first next time
+                    for (int i = deleting.size() - 1; i >= 0; i--) {
+                        liveIds.addFirst(deleting.get(i));
+                    }
+                    // Deletes are not counted as operations, like the foreground queries
+                    failed(e, "delete", 0, failures++);
+                }
+                inserted += insertedRows;
+                deleted += deletedRows;
+                rows += insertedRows - deletedRows;
+                next += intervalNanos;
+
+                long windowEnd = System.nanoTime();
+                if (windowEnd - windowStart >= windowNanos || next >= deadline) {
+                    windows.add(closeWindow(statsConn, start, windowStart, windowEnd, inserted, deleted));
+                    inserted = 0;
+                    deleted = 0;
+                    windowStart = windowEnd;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a failed insert or delete batch; the run goes on with the next batch.
+     * @param previousFailures Failures before this one; only the first is logged, so a failing database does not flood the log
+     */
+    private void failed(SQLException e, String statement, long rows, long previousFailures) {
+        if (previousFailures == 0) {
+            logger.warn("A churn {} failed, counting it and continuing: {}", statement, e.getMessage());
+        }
+        metricsService.recordFailedBatch(ErrorCategory.classify(e).name(), rows);
+    }
+
+    private Window closeWindow(Connection statsConn, long start, long windowStart, long now, long inserted, long deleted) {
+        long deadTuples = -1;
+        long vacuums = -1;
+        if (!spanner) {
+            try (PreparedStatement stmt = statsConn.prepareStatement(
+                "SELECT n_dead_tup, vacuum_count + autovacuum_count FROM pg_stat_user_tables WHERE relname = ?")) {
+                stmt.setString(1, ordersTable);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        deadTuples = rs.getLong(1);
+                        vacuums = rs.getLong(2);
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warn("Could not read pg_stat_user_tables: {}", e.getMessage());
+            }
+        }
+        Window result = new Window((now - start) / 1_000_000_000.0, (now - windowStart) / 1_000_000_000.0, rows,
+            inserted, deleted, insertLatency.getIntervalHistogram(), deleteLatency.getIntervalHistogram(),
+            foregroundLatency.getIntervalHistogram(), deadTuples, vacuums);
+        logger.info(String.format("%.0f s: %d rows, delete p99 %.2f ms, oldest orders p99 %.2f ms%s", result.elapsedSeconds(),
+            rows, Reports.millis(result.deleteLatency(), 99), Reports.millis(result.foregroundLatency(), 99),
+            deadTuples >= 0 ? ", " + deadTuples + " dead tuples" : ""));
+        return result;
+    }
+
+    /**
+     * Reads the oldest live orders at the foreground rate until the deadline.
+     */
+    private void queryOldest(long deadline) {
+        long intervalNanos = (long) (1_000_000_000L / foregroundRate);
+        // Spanner only reads the created_at index in order when told to
+        String sql = "SELECT id, order_status FROM " + ordersTable + (spanner ? "@{FORCE_INDEX=idx_orders_created_at}" : "")
+            + " ORDER BY created_at LIMIT " + OLDEST_ORDERS;
+        try (Connection conn = databaseConfig.createConnection();
+             Statement stmt = conn.createStatement()) {
+            long next = System.nanoTime();
+            while (next < deadline) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                long start = System.nanoTime();
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        rs.getString(2);
+                    }
+                    record(foregroundLatency, "CHURN_OLDEST_ORDERS", System.nanoTime() - start);
+                } catch (SQLException e) {
+                    metricsService.recordFailedBatch(ErrorCategory.classify(e).name(), 0);
+                }
+                next += intervalNanos;
+            }
+        } catch (SQLException e) {
+            logger.warn("Foreground query stopped: {}", e.getMessage());
+        }
+    }
+
+    private void record(Recorder recorder, String statementType, long nanos) {
+        recorder.recordValue(Reports.micros(nanos));
+        metricsService.getQueryTimer(statementType).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Churn Report (%s, %s, %d target rows, %.1f rows/s, TTL %d s%s)%n",
+            spanner ? "spanner" : "postgres", mode, targetRows, rate, ttl.toSeconds(),
+            versionRetention != null ? ", version retention " + versionRetention : ""));
+        report.append(String.format("%10s %12s %12s %12s %14s %14s %14s %14s %12s %10s%n",
+            "elapsed s", "rows", "inserts/s", "deletes/s", "insert p99", "delete p99", "oldest p50", "oldest p99",
+            "dead tuples", "vacuums"));
+        for (Window w : windows) {
+            report.append(String.format("%10.0f %12d %12.1f %12.1f %14.2f %14.2f %14.2f %14.2f %12s %10s%n",
+                w.elapsedSeconds(), w.rows(), w.inserted() / w.seconds(), w.deleted() / w.seconds(),
+                Reports.millis(w.insertLatency(), 99), Reports.millis(w.deleteLatency(), 99),
+                Reports.millis(w.foregroundLatency(), 50), Reports.millis(w.foregroundLatency(), 99),
+                w.deadTuples() >= 0 ? String.valueOf(w.deadTuples()) : "-", w.vacuums() >= 0 ? String.valueOf(w.vacuums()) : "-"));
+        }
+        if (windows.size() > 1) {
+            double first = Reports.millis(windows.get(0).foregroundLatency(), 99);
+            double last = Reports.millis(windows.get(windows.size() - 1).foregroundLatency(), 99);
+            if (first > 0 && !Double.isNaN(last)) {
+                report.append(String.format("Oldest orders p99 changed %+.1f%% from the first window to the last%n",
+                    (last - first) / first * 100));
+            }
+        }
+        report.append("Latencies in ms\n");
+        return report.toString();
+    }
+}
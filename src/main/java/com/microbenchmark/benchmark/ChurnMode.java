@@ -0,0 +1,9 @@
+package com.microbenchmark.benchmark;
+
+/**
+ * How the churn workload deletes rows to keep the orders table at its target size.
+ */
+public enum ChurnMode {
+    OLDEST,   // after each insert batch, delete as many of the oldest rows by id, as a queue consumer would
+    EXPIRED   // after each insert batch, delete every row older than the TTL with one range delete on created_at
+}
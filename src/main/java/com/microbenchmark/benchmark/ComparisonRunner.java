@@ -0,0 +1,164 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.BenchmarkProfile;
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.config.MonitoringConfig;
+import com.microbenchmark.metrics.MetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the same seeded workload against several databases in turn and compares them. Every database
+ * starts from empty workload tables and gets an identical warmup followed by an identical measured run,
+ * each recorded into a fresh MetricsService; the report shows each database relative to the first one.
+ * Emptying the tables first keeps the seeded keys from colliding with an earlier run's, including
+ * one against the same database under another name, such as spanner and pgadapter.
+ */
+public class ComparisonRunner {
+    private static final Logger logger = LoggerFactory.getLogger(ComparisonRunner.class);
+    // Warmup data is generated from a different seed, so it never collides with the measured rows
+    private static final long WARMUP_SEED_OFFSET = 0x5DEECE66DL;
+
+    private final List<Backend> backends;
+    private final BenchmarkProfile profile;
+    private final MonitoringConfig monitoringConfig;
+    private final String projectId;
+    private final WorkloadFactory workloadFactory;
+    private final ExecutorFactory executorFactory;
+    private final long seed;
+    private final long warmupOperations;
+    private final List<String> resetTables;
+
+    public record Backend(String name, DatabaseConfig config) {
+    }
+
+    /**
+     * Creates the query provider for one run against the named database; the same seed must produce the same rows.
+     */
+    public interface WorkloadFactory {
+        QueryProvider create(String database, long seed, long totalOperations);
+    }
+
+    public interface ExecutorFactory {
+        BenchmarkExecutor create(DatabaseConfig config, BenchmarkProfile profile, MetricsService metricsService,
+                                 QueryProvider queryProvider);
+    }
+
+    public record RunSummary(String backend, long totalOperations, long succeededOperations, long failedOperations,
+                             double wallTimeSeconds, double p50Millis, double p95Millis, double p99Millis,
+                             double cpuMicrosPerOperation) {
+        public double throughput() {
+            return totalOperations / wallTimeSeconds;
+        }
+
+        public double goodput() {
+            return succeededOperations / wallTimeSeconds;
+        }
+
+        public double errorRate() {
+            return totalOperations == 0 ? 0 : (double) failedOperations / totalOperations;
+        }
+    }
+
+    public ComparisonRunner(List<Backend> backends, BenchmarkProfile profile, MonitoringConfig monitoringConfig,
+                            String projectId, WorkloadFactory workloadFactory, ExecutorFactory executorFactory,
+                            long seed, long warmupOperations, List<String> resetTables) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one database is required for a comparison");
+        }
+        this.backends = backends;
+        this.profile = profile;
+        this.monitoringConfig = monitoringConfig;
+        this.projectId = projectId;
+        this.workloadFactory = workloadFactory;
+        this.executorFactory = executorFactory;
+        this.seed = seed;
+        this.warmupOperations = warmupOperations;
+        this.resetTables = resetTables;
+    }
+
+    public List<RunSummary> run() {
+        List<RunSummary> summaries = new ArrayList<>();
+        for (Backend backend : backends) {
+            reset(backend);
+            if (warmupOperations > 0) {
+                logger.info("Warming up {} with {} operations", backend.name(), warmupOperations);
+                // Warmup metrics are discarded and never exported
+                MetricsService warmupMetrics = new MetricsService(monitoringConfig, backend.name(), null);
+                executorFactory.create(backend.config(), profile, warmupMetrics,
+                    workloadFactory.create(backend.name(), seed + WARMUP_SEED_OFFSET, warmupOperations)).execute();
+                warmupMetrics.close();
+            }
+
+            logger.info("Running measured workload against {}", backend.name());
+            MetricsService metricsService = new MetricsService(monitoringConfig, backend.name(), projectId);
+            executorFactory.create(backend.config(), profile, metricsService,
+                workloadFactory.create(backend.name(), seed, profile.getTotalOperations())).execute();
+            metricsService.printMetrics();
+            summaries.add(summarize(backend.name(), metricsService));
+            metricsService.close();
+            // Stop anything the database started in-process, so it does not skew the next database's run
+            backend.config().close();
+        }
+        return summaries;
+    }
+
+    private void reset(Backend backend) {
+        if (resetTables.isEmpty()) {
+            return;
+        }
+        logger.info("Emptying {} on {}", resetTables, backend.name());
+        try (Connection conn = backend.config().createConnection()) {
+            conn.setAutoCommit(true);
+            Tables.deleteAll(conn, resetTables);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to empty the workload tables on " + backend.name(), e);
+        }
+    }
+
+    private static RunSummary summarize(String backend, MetricsService metricsService) {
+        return new RunSummary(
+            backend,
+            metricsService.getTotalOperations(),
+            metricsService.getSucceededOperations(),
+            metricsService.getFailedOperations(),
+            metricsService.getWallTimeSeconds(),
+            metricsService.getBatchLatencyPercentile(0.5, TimeUnit.MILLISECONDS),
+            metricsService.getBatchLatencyPercentile(0.95, TimeUnit.MILLISECONDS),
+            metricsService.getBatchLatencyPercentile(0.99, TimeUnit.MILLISECONDS),
+            metricsService.getCpuMicrosPerOperation());
+    }
+
+    /**
+     * @return A plain-text table with one row per database; every row after the first also shows
+     *         its relative difference to the first database
+     */
+    public static String formatReport(List<RunSummary> summaries, long seed) {
+        RunSummary baseline = summaries.get(0);
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Comparison Report (seed %d, baseline %s)%n", seed, baseline.backend()));
+        report.append(String.format("%-20s %22s %22s %22s %22s %22s %12s %20s%n",
+            "database", "throughput (ops/s)", "goodput (ops/s)", "p50 (ms)", "p95 (ms)", "p99 (ms)",
+            "error rate", "client CPU (us/op)"));
+        for (RunSummary summary : summaries) {
+            boolean isBaseline = summary == baseline;
+            report.append(String.format("%-20s %22s %22s %22s %22s %22s %12s %20s%n",
+                summary.backend(),
+                Reports.withDelta(summary.throughput(), baseline.throughput(), isBaseline),
+                Reports.withDelta(summary.goodput(), baseline.goodput(), isBaseline),
+                Reports.withDelta(summary.p50Millis(), baseline.p50Millis(), isBaseline),
+                Reports.withDelta(summary.p95Millis(), baseline.p95Millis(), isBaseline),
+                Reports.withDelta(summary.p99Millis(), baseline.p99Millis(), isBaseline),
+                String.format("%.2f%%", summary.errorRate() * 100),
+                summary.cpuMicrosPerOperation() < 0 ? "n/a"
+                    : Reports.withDelta(summary.cpuMicrosPerOperation(), baseline.cpuMicrosPerOperation(), isBaseline)));
+        }
+        return report.toString();
+    }
+}
@@ -1,11 +1,22 @@
 package com.microbenchmark.benchmark;
 
+import com.microbenchmark.keys.KeyGenerator;
+import com.microbenchmark.keys.KeyStrategy;
+import com.microbenchmark.metrics.BatchPhase;
+import com.microbenchmark.metrics.BatchPhaseListener;
+import com.microbenchmark.metrics.StatementExecutionEvent;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.UUID;
 
 public class ComplexQueryProvider implements QueryProvider {
     private static final int MIN_STATEMENTS = 5;
@@ -13,11 +24,21 @@ public class ComplexQueryProvider implements QueryProvider {
     private static final int BATCH_SIZE = 1000;
     private static final long TOTAL_OPERATIONS = 1_000_000;
     
-    private static final String[] USER_STATUSES = {"ACTIVE", "INACTIVE", "SUSPENDED"};
-    private static final String[] ORDER_STATUSES = {"NEW", "PROCESSING", "COMPLETED", "CANCELLED"};
     
     private final Random random;
     private final OperationType operationType;
+    private final int batchSize;
+    private final long totalOperations;
+    private final KeyStrategy keyStrategy;
+    private final SchemaVariant schemaVariant;
+    private final KeyGenerator keyGenerator;
+    // Updates and order user_ids refer to rows by random id, whatever the key strategy of new rows
+    private final KeyGenerator referenceKeys;
+    private final char[] keyBuffer = new char[KeyGenerator.MAX_LENGTH];
+    private final Map<OperationType, PreparedStatement> mixedStatements = new EnumMap<>(OperationType.class);
+    private final long[] bindNanos = new long[OperationType.values().length];
+    private BatchPhaseListener phaseListener;
+    private int pendingRows;
 
     public enum OperationType {
         USER_INSERT,
@@ -28,21 +49,41 @@ public class ComplexQueryProvider implements QueryProvider {
     }
 
     public ComplexQueryProvider(OperationType operationType) {
-        this.random = new Random();
+        this(operationType, KeyStrategy.UUID_V4, SchemaVariant.TEXT);
+    }
+
+    public ComplexQueryProvider(OperationType operationType, KeyStrategy keyStrategy, SchemaVariant schemaVariant) {
+        this(operationType, new Random(), BATCH_SIZE, TOTAL_OPERATIONS, keyStrategy, schemaVariant);
+    }
+
+    /**
+     * Creates a provider whose generated rows, ids and batch shapes are fully determined by the seed,
+     * so the same workload can be replayed against several databases.
+     */
+    public ComplexQueryProvider(OperationType operationType, long seed, int batchSize, long totalOperations) {
+        this(operationType, seed, batchSize, totalOperations, KeyStrategy.UUID_V4, SchemaVariant.TEXT);
+    }
+
+    public ComplexQueryProvider(OperationType operationType, long seed, int batchSize, long totalOperations,
+                                KeyStrategy keyStrategy, SchemaVariant schemaVariant) {
+        this(operationType, new Random(seed), batchSize, totalOperations, keyStrategy, schemaVariant);
+    }
+
+    private ComplexQueryProvider(OperationType operationType, Random random, int batchSize, long totalOperations,
+                                 KeyStrategy keyStrategy, SchemaVariant schemaVariant) {
+        this.random = random;
         this.operationType = operationType;
+        this.batchSize = batchSize;
+        this.totalOperations = totalOperations;
+        this.keyStrategy = keyStrategy;
+        this.schemaVariant = schemaVariant;
+        this.keyGenerator = keyStrategy.create(random);
+        this.referenceKeys = KeyStrategy.UUID_V4.create(random);
     }
 
     @Override
     public String getSql() {
-        return switch (operationType) {
-            case USER_INSERT -> "INSERT INTO users (id, name, email, status, created_at, updated_at) " +
-                              "VALUES (?, ?, ?, ?, ?, ?)";
-            case ORDER_INSERT -> "INSERT INTO oorder (id, user_id, order_status, total_amount, items_count, created_at, updated_at) " +
-                               "VALUES (?, ?, ?, ?, ?, ?, ?)";
-            case USER_UPDATE -> "UPDATE users SET status = ?, updated_at = ? WHERE id = ?";
-            case ORDER_UPDATE -> "UPDATE oorder SET order_status = ?, total_amount = ?, items_count = ?, updated_at = ? WHERE id = ?";
-            case MIXED -> throw new IllegalStateException("MIXED type requires multiple statements and cannot provide a single SQL");
-        };
+        return getSqlForType(operationType);
     }
 
     @Override
@@ -50,98 +91,255 @@ public class ComplexQueryProvider implements QueryProvider {
         int statementsInBatch = random.nextInt(MIN_STATEMENTS, MAX_STATEMENTS + 1);
         
         if (operationType == OperationType.MIXED) {
-            executeMixedBatch(stmt, batchIndex, statementsInBatch);
+            bindMixedRows(stmt, batchIndex, statementsInBatch);
         } else {
             for (int i = 0; i < statementsInBatch; i++) {
-                setParametersForType(stmt, batchIndex, i);
+                setParametersForType(stmt, operationType, batchIndex, i);
                 stmt.addBatch();
             }
         }
+        pendingRows += statementsInBatch;
     }
 
-    private void executeMixedBatch(PreparedStatement stmt, long batchIndex, int statementsInBatch) throws SQLException {
-        // For MIXED type, we'll need to prepare and execute different types of statements
-        try (PreparedStatement userInsertStmt = stmt.getConnection().prepareStatement(getSqlForType(OperationType.USER_INSERT));
-             PreparedStatement orderInsertStmt = stmt.getConnection().prepareStatement(getSqlForType(OperationType.ORDER_INSERT));
-             PreparedStatement userUpdateStmt = stmt.getConnection().prepareStatement(getSqlForType(OperationType.USER_UPDATE));
-             PreparedStatement orderUpdateStmt = stmt.getConnection().prepareStatement(getSqlForType(OperationType.ORDER_UPDATE))) {
-            
-            for (int i = 0; i < statementsInBatch; i++) {
-                // Randomly choose operation type
-                OperationType type = OperationType.values()[random.nextInt(4)]; // Excluding MIXED
-                PreparedStatement currentStmt = switch (type) {
-                    case USER_INSERT -> userInsertStmt;
-                    case ORDER_INSERT -> orderInsertStmt;
-                    case USER_UPDATE -> userUpdateStmt;
-                    case ORDER_UPDATE -> orderUpdateStmt;
-                    default -> throw new IllegalStateException("Unexpected value: " + type);
-                };
-                
-                setParametersForType(currentStmt, batchIndex, i);
-                currentStmt.addBatch();
+    private void bindMixedRows(PreparedStatement stmt, long batchIndex, int statementsInBatch) throws SQLException {
+        // User inserts go into the executor's statement; the other types are prepared once per connection
+        // and flushed together in executeBatch
+        prepareMixedStatements(stmt);
+        for (int i = 0; i < statementsInBatch; i++) {
+            // Randomly choose operation type
+            OperationType type = OperationType.values()[random.nextInt(4)]; // Excluding MIXED
+            PreparedStatement currentStmt = mixedStatements.get(type);
+            long bindStart = phaseListener != null ? System.nanoTime() : 0;
+            setParametersForType(currentStmt, type, batchIndex, i);
+            currentStmt.addBatch();
+            if (phaseListener != null) {
+                bindNanos[type.ordinal()] += System.nanoTime() - bindStart;
+            }
+        }
+    }
+
+    private void prepareMixedStatements(PreparedStatement stmt) throws SQLException {
+        if (mixedStatements.get(OperationType.USER_INSERT) == stmt) {
+            return;
+        }
+        Connection connection = stmt.getConnection();
+        mixedStatements.clear();
+        mixedStatements.put(OperationType.USER_INSERT, stmt);
+        for (OperationType type : List.of(OperationType.ORDER_INSERT, OperationType.USER_UPDATE, OperationType.ORDER_UPDATE)) {
+            mixedStatements.put(type, connection.prepareStatement(getSqlForType(type)));
+        }
+    }
+
+    @Override
+    public int[] executeBatch(PreparedStatement stmt) throws SQLException {
+        pendingRows = 0;
+        if (operationType != OperationType.MIXED || mixedStatements.isEmpty()) {
+            return stmt.executeBatch();
+        }
+
+        String connectionId = BatchStatementExecutor.connectionId(stmt.getConnection());
+        reportBindPhases();
+        int[][] counts = new int[mixedStatements.size()][];
+        int index = 0;
+        try {
+            for (Map.Entry<OperationType, PreparedStatement> entry : mixedStatements.entrySet()) {
+                long executeStart = System.nanoTime();
+                counts[index] = executeStatementBatch(entry.getValue(), entry.getKey(), connectionId);
+                if (phaseListener != null && counts[index].length > 0) {
+                    phaseListener.onPhase(BatchPhase.EXECUTE, entry.getKey().name(), System.nanoTime() - executeStart);
+                }
+                index++;
+            }
+        } catch (SQLException e) {
+            // Anything not yet executed must not leak into the next attempt
+            clearBatch(stmt);
+            // Report the statement types that did run, so their rows still count as applied
+            if (e instanceof BatchUpdateException batchError) {
+                counts[index] = batchError.getUpdateCounts();
+            }
+            throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), concat(counts), e);
+        }
+        return concat(counts);
+    }
+
+    private static int[] concat(int[][] counts) {
+        int total = 0;
+        for (int[] typeCounts : counts) {
+            total += typeCounts != null ? typeCounts.length : 0;
+        }
+        int[] result = new int[total];
+        int offset = 0;
+        for (int[] typeCounts : counts) {
+            if (typeCounts != null) {
+                System.arraycopy(typeCounts, 0, result, offset, typeCounts.length);
+                offset += typeCounts.length;
+            }
+        }
+        return result;
+    }
+
+    private void reportBindPhases() {
+        for (OperationType type : OperationType.values()) {
+            if (phaseListener != null && bindNanos[type.ordinal()] > 0) {
+                phaseListener.onPhase(BatchPhase.BIND, type.name(), bindNanos[type.ordinal()]);
+            }
+            bindNanos[type.ordinal()] = 0;
+        }
+    }
+
+    @Override
+    public void clearBatch(PreparedStatement stmt) throws SQLException {
+        pendingRows = 0;
+        Arrays.fill(bindNanos, 0);
+        stmt.clearBatch();
+        for (PreparedStatement mixedStmt : mixedStatements.values()) {
+            mixedStmt.clearBatch();
+        }
+    }
+
+    @Override
+    public int getPendingRowCount() {
+        return pendingRows;
+    }
+
+    @Override
+    public List<String> getStatements() {
+        if (operationType != OperationType.MIXED) {
+            return List.of(getSql());
+        }
+        return List.of(OperationType.USER_INSERT, OperationType.ORDER_INSERT, OperationType.USER_UPDATE, OperationType.ORDER_UPDATE)
+            .stream().map(ComplexQueryProvider::getSqlForType).toList();
+    }
+
+    @Override
+    public int getMaxRowsPerCall() {
+        return MAX_STATEMENTS;
+    }
+
+    @Override
+    public void setPhaseListener(BatchPhaseListener listener) {
+        this.phaseListener = listener;
+    }
+
+    private int[] executeStatementBatch(PreparedStatement stmt, OperationType type, String connectionId) throws SQLException {
+        StatementExecutionEvent event = new StatementExecutionEvent();
+        event.begin();
+        event.outcome = "FAILED";
+        try {
+            int[] counts = stmt.executeBatch();
+            event.rowCount = counts.length;
+            event.outcome = "SUCCESS";
+            return counts;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.statementType = type.name();
+                event.connectionId = connectionId;
+                event.commit();
             }
-            
-            // Execute all batches
-            userInsertStmt.executeBatch();
-            orderInsertStmt.executeBatch();
-            userUpdateStmt.executeBatch();
-            orderUpdateStmt.executeBatch();
         }
     }
 
-    private String getSqlForType(OperationType type) {
-        return new ComplexQueryProvider(type).getSql();
+    private static String getSqlForType(OperationType type) {
+        return switch (type) {
+            case USER_INSERT -> "INSERT INTO users (id, name, email, status, created_at, updated_at) " +
+                              "VALUES (?, ?, ?, ?, ?, ?)";
+            case ORDER_INSERT -> "INSERT INTO oorder (id, user_id, order_status, total_amount, items_count, created_at, updated_at) " +
+                               "VALUES (?, ?, ?, ?, ?, ?, ?)";
+            case USER_UPDATE -> "UPDATE users SET status = ?, updated_at = ? WHERE id = ?";
+            case ORDER_UPDATE -> "UPDATE oorder SET order_status = ?, total_amount = ?, items_count = ?, updated_at = ? WHERE id = ?";
+            // MIXED batches start with user inserts on the executor's statement; see bindMixedRows
+            case MIXED -> getSqlForType(OperationType.USER_INSERT);
+        };
     }
 
-    private void setParametersForType(PreparedStatement stmt, long batchIndex, int index) throws SQLException {
+    private void setParametersForType(PreparedStatement stmt, OperationType type, long batchIndex, int index) throws SQLException {
         Timestamp now = Timestamp.from(Instant.now());
-        String id = UUID.randomUUID().toString();
-        
-        switch (operationType) {
+
+        switch (type) {
             case USER_INSERT -> {
-                stmt.setString(1, id);
+                bindKey(stmt, 1, keyGenerator);
                 stmt.setString(2, "User" + batchIndex + "_" + index);
                 stmt.setString(3, "user" + batchIndex + "_" + index + "@example.com");
-                stmt.setString(4, USER_STATUSES[random.nextInt(USER_STATUSES.length)]);
+                stmt.setString(4, Rows.userStatus(random));
                 stmt.setTimestamp(5, now);
                 stmt.setTimestamp(6, now);
             }
             case ORDER_INSERT -> {
-                stmt.setString(1, id);
-                stmt.setString(2, UUID.randomUUID().toString()); // random user_id
-                stmt.setString(3, ORDER_STATUSES[random.nextInt(ORDER_STATUSES.length)]);
-                stmt.setDouble(4, random.nextDouble() * 1000.0); // random amount up to 1000
+                bindKey(stmt, 1, keyGenerator);
+                bindKey(stmt, 2, referenceKeys); // random user_id
+                stmt.setString(3, Rows.orderStatus(random));
+                bindAmount(stmt, 4); // random amount up to 1000
                 stmt.setInt(5, random.nextInt(1, 11)); // 1-10 items
                 stmt.setTimestamp(6, now);
                 stmt.setTimestamp(7, now);
             }
             case USER_UPDATE -> {
-                stmt.setString(1, USER_STATUSES[random.nextInt(USER_STATUSES.length)]);
+                stmt.setString(1, Rows.userStatus(random));
                 stmt.setTimestamp(2, now);
-                stmt.setString(3, UUID.randomUUID().toString());
+                bindKey(stmt, 3, referenceKeys);
             }
             case ORDER_UPDATE -> {
-                stmt.setString(1, ORDER_STATUSES[random.nextInt(ORDER_STATUSES.length)]);
-                stmt.setDouble(2, random.nextDouble() * 1000.0);
+                stmt.setString(1, Rows.orderStatus(random));
+                bindAmount(stmt, 2);
                 stmt.setInt(3, random.nextInt(1, 11));
                 stmt.setTimestamp(4, now);
-                stmt.setString(5, UUID.randomUUID().toString());
+                bindKey(stmt, 5, referenceKeys);
             }
-            default -> throw new IllegalStateException("Unexpected operation type: " + operationType);
+            default -> throw new IllegalStateException("Unexpected operation type: " + type);
+        }
+    }
+
+    /**
+     * Binds the next key of the generator in the form of the schema variant. Keys are drawn from this
+     * provider's random source so seeded runs produce the same ids; the bound String, array or UUID is
+     * the only allocation.
+     */
+    private void bindKey(PreparedStatement stmt, int index, KeyGenerator generator) throws SQLException {
+        switch (schemaVariant) {
+            case TEXT -> stmt.setString(index, new String(keyBuffer, 0, generator.next(keyBuffer)));
+            // Sent by the PostgreSQL drivers as 16 binary bytes
+            case COMPACT_UUID -> stmt.setObject(index, generator.nextUuid());
+            case COMPACT_BYTES -> stmt.setBytes(index, generator.nextBytes());
+        }
+    }
+
+    /**
+     * Binds an amount up to 1000, as a double for NUMERIC columns or as a long number of cents, which
+     * needs no decimal conversion in the driver or the database.
+     */
+    private void bindAmount(PreparedStatement stmt, int index) throws SQLException {
+        if (schemaVariant == SchemaVariant.TEXT) {
+            stmt.setDouble(index, random.nextDouble() * 1000.0);
+        } else {
+            stmt.setLong(index, random.nextLong(100_000));
         }
     }
 
     @Override
     public int getBatchSize() {
-        return BATCH_SIZE;
+        return batchSize;
     }
 
     @Override
     public long getTotalOperations() {
-        return TOTAL_OPERATIONS;
+        return totalOperations;
+    }
+
+    @Override
+    public String getStatementType() {
+        return operationType.name();
     }
 
     public OperationType getOperationType() {
         return operationType;
     }
+
+    public KeyStrategy getKeyStrategy() {
+        return keyStrategy;
+    }
+
+    public SchemaVariant getSchemaVariant() {
+        return schemaVariant;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,326 @@
+package com.microbenchmark.benchmark;
+
+import com.google.cloud.spanner.connection.SpannerPool;
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.config.SpannerConfig;
+import com.microbenchmark.config.SpannerConnectionType;
+import com.microbenchmark.metrics.MetricsService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures what a connection costs before and after the work it is opened for: connect latency, the latency of
+ * the first statement on the new connection, and teardown. Each database runs each {@link ConnectionMode} at each
+ * concurrency and open rate for the same time. Before that, cold starts measure a connection that finds nothing
+ * to reuse: on Spanner the JDBC driver's Spanner instance and session pool are closed first, and the embedded
+ * pgAdapter is restarted, so the first statement pays for session creation.
+ */
+public class ConnectionChurnBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionChurnBenchmark.class);
+    private static final String FIRST_STATEMENT = "SELECT 1";
+
+    private record Result(String database, ConnectionMode mode, int concurrency, double openRate, long operations,
+                          long errors, double seconds, Histogram connect, Histogram firstStatement, Histogram teardown,
+                          Histogram total) {
+    }
+
+    private record ColdStart(String database, boolean reset, Histogram connect, Histogram firstStatement) {
+    }
+
+    private final Map<String, DatabaseConfig> databases;
+    private final MetricsService metricsService;
+    private final List<ConnectionMode> modes;
+    private final List<Integer> concurrencies;
+    private final List<Double> openRates;
+    private final int poolSize;
+    private final long durationNanos;
+    private final int coldSamples;
+    private final List<Result> results = new ArrayList<>();
+    private final List<ColdStart> coldStarts = new ArrayList<>();
+
+    /**
+     * @param databases The databases to connect to, by name, in report order
+     * @param concurrencies Workers opening connections at the same time
+     * @param openRates Operations per second shared by the workers, or 0 for each worker back to back
+     * @param poolSize Connections in the pool of POOLED mode, or 0 for one per worker
+     * @param durationSeconds How long each mode, concurrency and open rate combination runs
+     * @param coldSamples Cold starts per database that can be reset; other databases get one
+     */
+    public ConnectionChurnBenchmark(Map<String, DatabaseConfig> databases, MetricsService metricsService,
+                                    List<ConnectionMode> modes, List<Integer> concurrencies, List<Double> openRates,
+                                    int poolSize, long durationSeconds, int coldSamples) {
+        if (concurrencies.stream().anyMatch(c -> c < 1)) {
+            throw new IllegalArgumentException("Every concurrency must be at least 1: " + concurrencies);
+        }
+        if (openRates.stream().anyMatch(r -> r < 0)) {
+            throw new IllegalArgumentException("Open rates can't be negative: " + openRates);
+        }
+        this.databases = databases;
+        this.metricsService = metricsService;
+        this.modes = modes;
+        this.concurrencies = concurrencies;
+        this.openRates = openRates;
+        this.poolSize = poolSize;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.coldSamples = coldSamples;
+    }
+
+    public void run() {
+        metricsService.startRun();
+        try {
+            for (Map.Entry<String, DatabaseConfig> database : databases.entrySet()) {
+                coldStarts.add(coldStart(database.getKey(), database.getValue()));
+                for (ConnectionMode mode : modes) {
+                    for (int concurrency : concurrencies) {
+                        for (double openRate : openRates) {
+                            logger.info("Connecting to {} with {} connections, {} workers at {} opens/s, for {} seconds",
+                                database.getKey(), mode, concurrency, openRate > 0 ? openRate : "unlimited",
+                                TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+                            Result result = runSlot(database.getKey(), database.getValue(), mode, concurrency, openRate);
+                            results.add(result);
+                            logger.info(String.format("%s %s x%d: %.1f ops/s, connect p99 %.2f ms, %d errors",
+                                database.getKey(), mode, concurrency, result.operations() / result.seconds(),
+                                Reports.millis(result.connect(), 99), result.errors()));
+                        }
+                    }
+                }
+            }
+        } finally {
+            metricsService.finishRun();
+        }
+    }
+
+    /**
+     * Connects and runs the first statement with nothing left to reuse from earlier connections, where the
+     * database allows resetting that state. Otherwise this is just the first connection of the run.
+     */
+    private ColdStart coldStart(String name, DatabaseConfig dbConfig) {
+        SpannerConfig spanner = dbConfig instanceof SpannerConfig config ? config : null;
+        SpannerConnectionType type = spanner != null ? spanner.getConnectionType() : null;
+        boolean reset = type == SpannerConnectionType.JDBC_DIRECT || type == SpannerConnectionType.PGADAPTER_EMBEDDED;
+        Histogram connect = new Histogram(Reports.MAX_LATENCY_MICROS, 3);
+        Histogram firstStatement = new Histogram(Reports.MAX_LATENCY_MICROS, 3);
+        for (int sample = 0; sample < (reset ? coldSamples : 1); sample++) {
+            if (type == SpannerConnectionType.JDBC_DIRECT) {
+                // Closes the Spanner instances, and their session pools, that the driver shares between connections
+                SpannerPool.closeSpannerPool();
+            } else if (type == SpannerConnectionType.PGADAPTER_EMBEDDED) {
+                // Restarts the embedded pgAdapter before the clock starts, so its startup is not counted as connecting
+                spanner.restartEmbeddedPgAdapter();
+            }
+            long start = System.nanoTime();
+            try (Connection conn = dbConfig.createConnection()) {
+                long connected = System.nanoTime();
+                firstStatement(conn);
+                connect.recordValue(Reports.micros(connected - start));
+                firstStatement.recordValue(Reports.micros(System.nanoTime() - connected));
+            } catch (SQLException e) {
+                logger.warn("Cold start {} of {} failed: {}", sample + 1, name, e.getMessage());
+                metricsService.recordFailedBatch(ErrorCategory.classify(e).name(), 1);
+            }
+        }
+        logger.info(String.format("%s cold start: connect p50 %.2f ms, first statement p50 %.2f ms", name,
+            Reports.millis(connect, 50), Reports.millis(firstStatement, 50)));
+        return new ColdStart(name, reset, connect, firstStatement);
+    }
+
+    private Result runSlot(String name, DatabaseConfig dbConfig, ConnectionMode mode, int concurrency, double openRate) {
+        Recorder connect = new Recorder(3);
+        Recorder firstStatement = new Recorder(3);
+        Recorder teardown = new Recorder(3);
+        Recorder total = new Recorder(3);
+        AtomicLong operations = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        BlockingQueue<Connection> pool = mode == ConnectionMode.POOLED ? openPool(dbConfig, concurrency) : null;
+        warmUp(dbConfig);
+
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < concurrency; w++) {
+            long intervalNanos = openRate > 0 ? (long) (1_000_000_000L * concurrency / openRate) : 0;
+            threads.add(new Thread(() -> {
+                long next = System.nanoTime();
+                while (next < deadline) {
+                    LockSupport.parkNanos(next - System.nanoTime());
+                    long scheduled = intervalNanos > 0 ? next : System.nanoTime();
+                    try {
+                        if (pool != null) {
+                            borrow(pool, connect, firstStatement, teardown);
+                        } else {
+                            open(dbConfig, connect, firstStatement, teardown);
+                        }
+                        long nanos = System.nanoTime() - scheduled;
+                        total.recordValue(Reports.micros(nanos));
+                        metricsService.getQueryTimer(mode.name()).record(nanos, TimeUnit.NANOSECONDS);
+                        operations.incrementAndGet();
+                    } catch (SQLException e) {
+                        errors.incrementAndGet();
+                        metricsService.recordFailedBatch(ErrorCategory.classify(e).name(), 1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    next = intervalNanos > 0 ? next + intervalNanos : System.nanoTime();
+                }
+            }, "connector-" + w));
+        }
+        threads.forEach(Thread::start);
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while connecting to " + name, e);
+        } finally {
+            if (pool != null) {
+                pool.forEach(ConnectionChurnBenchmark::closeQuietly);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        metricsService.incrementTotalOperations(operations.get() + errors.get());
+        metricsService.incrementSucceededOperations(operations.get());
+        return new Result(name, mode, concurrency, openRate, operations.get(), errors.get(), seconds,
+            connect.getIntervalHistogram(), firstStatement.getIntervalHistogram(), teardown.getIntervalHistogram(),
+            total.getIntervalHistogram());
+    }
+
+    private static void open(DatabaseConfig dbConfig, Recorder connect, Recorder firstStatement, Recorder teardown)
+            throws SQLException {
+        long start = System.nanoTime();
+        Connection conn = dbConfig.createConnection();
+        long connected = System.nanoTime();
+        try {
+            firstStatement(conn);
+        } catch (SQLException e) {
+            closeQuietly(conn);
+            throw e;
+        }
+        long executed = System.nanoTime();
+        conn.close();
+        connect.recordValue(Reports.micros(connected - start));
+        firstStatement.recordValue(Reports.micros(executed - connected));
+        teardown.recordValue(Reports.micros(System.nanoTime() - executed));
+    }
+
+    /**
+     * Connect is the wait for a free connection, and teardown is returning it.
+     */
+    private static void borrow(BlockingQueue<Connection> pool, Recorder connect, Recorder firstStatement,
+                               Recorder teardown) throws SQLException, InterruptedException {
+        long start = System.nanoTime();
+        Connection conn = pool.take();
+        long borrowed = System.nanoTime();
+        try {
+            firstStatement(conn);
+        } catch (SQLException e) {
+            pool.put(conn);
+            throw e;
+        }
+        long executed = System.nanoTime();
+        pool.put(conn);
+        connect.recordValue(Reports.micros(borrowed - start));
+        firstStatement.recordValue(Reports.micros(executed - borrowed));
+        teardown.recordValue(Reports.micros(System.nanoTime() - executed));
+    }
+
+    private BlockingQueue<Connection> openPool(DatabaseConfig dbConfig, int concurrency) {
+        int size = poolSize > 0 ? poolSize : concurrency;
+        BlockingQueue<Connection> pool = new ArrayBlockingQueue<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                Connection conn = dbConfig.createConnection();
+                pool.add(conn);
+                firstStatement(conn);
+            }
+        } catch (SQLException e) {
+            pool.forEach(ConnectionChurnBenchmark::closeQuietly);
+            throw new RuntimeException("Failed to open a pool of " + size + " connections", e);
+        }
+        return pool;
+    }
+
+    /**
+     * Opens one untimed connection, so a slot doesn't start with whatever the previous one closed.
+     */
+    private static void warmUp(DatabaseConfig dbConfig) {
+        try (Connection conn = dbConfig.createConnection()) {
+            firstStatement(conn);
+        } catch (SQLException e) {
+            logger.warn("Warm-up connection failed: {}", e.getMessage());
+        }
+    }
+
+    private static void firstStatement(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(FIRST_STATEMENT)) {
+            while (rs.next()) {
+                rs.getLong(1);
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            logger.debug("Closing a connection failed", e);
+        }
+    }
+
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Connection Churn Report (%d s per run, pool of %s connections)%n",
+            TimeUnit.NANOSECONDS.toSeconds(durationNanos), poolSize > 0 ? poolSize : "one per worker"));
+        // The Spanner session pool decides whether a first statement waits for a session
+        for (Map.Entry<String, DatabaseConfig> database : databases.entrySet()) {
+            if (database.getValue() instanceof SpannerConfig spanner) {
+                report.append(String.format("%s: %s%n", database.getKey(), spanner.getClientOptions().describe()));
+            }
+        }
+        report.append(String.format("%-20s %-6s %8s %12s %12s %12s %12s %15s%n",
+            "database", "cold", "samples", "connect p50", "connect max", "first p50", "first max", "warm total p50"));
+        for (ColdStart cold : coldStarts) {
+            Result warm = results.stream()
+                .filter(r -> r.database().equals(cold.database()) && r.mode() == ConnectionMode.NEW)
+                .findFirst().orElse(null);
+            report.append(String.format("%-20s %-6s %8d %12.2f %12.2f %12.2f %12.2f %15.2f%n",
+                cold.database(), cold.reset() ? "reset" : "first", cold.connect().getTotalCount(),
+                Reports.millis(cold.connect(), 50), Reports.millis(cold.connect(), 100),
+                Reports.millis(cold.firstStatement(), 50), Reports.millis(cold.firstStatement(), 100),
+                warm != null ? Reports.millis(warm.total(), 50) : Double.NaN));
+        }
+        report.append(System.lineSeparator());
+        report.append(String.format("%-20s %-7s %7s %10s %10s %12s %12s %12s %12s %12s %12s %12s %8s%n",
+            "database", "mode", "workers", "opens/s", "ops/s", "connect p50", "connect p99", "first p50", "first p99",
+            "close p50", "close p99", "total p99", "errors"));
+        for (Result result : results) {
+            report.append(String.format("%-20s %-7s %7d %10s %10.1f %12.2f %12.2f %12.2f %12.2f %12.2f %12.2f %12.2f %8d%n",
+                result.database(), result.mode(), result.concurrency(),
+                result.openRate() > 0 ? String.format("%.1f", result.openRate()) : "max",
+                result.operations() / result.seconds(),
+                Reports.millis(result.connect(), 50), Reports.millis(result.connect(), 99),
+                Reports.millis(result.firstStatement(), 50), Reports.millis(result.firstStatement(), 99),
+                Reports.millis(result.teardown(), 50), Reports.millis(result.teardown(), 99),
+                Reports.millis(result.total(), 99), result.errors()));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,9 @@
+package com.microbenchmark.benchmark;
+
+/**
+ * How the connection churn workload gets a connection for each operation.
+ */
+public enum ConnectionMode {
+    NEW,     // open a connection, run one statement and close it, as a serverless caller without a pool does
+    POOLED   // borrow an open connection from a fixed pool and return it, so only the statement reaches the database
+}
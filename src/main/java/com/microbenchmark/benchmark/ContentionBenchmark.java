@@ -0,0 +1,419 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.config.RetryPolicy;
+import com.microbenchmark.config.SpannerConfig;
+import com.microbenchmark.metrics.MetricsService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Has workers increment a small set of hot rows, as many clients updating the same counters or inventory rows do,
+ * for each {@link ContentionMode}, number of hot rows and number of workers. Each run shows throughput, how far it
+ * falls short of the lowest worker count scaled up, lock wait, and the share of attempts aborted and retried.
+ * Lock wait on PostgreSQL is sampled from pg_stat_activity, and on Spanner read from
+ * SPANNER_SYS.LOCK_STATS_TOTAL_MINUTE for the whole minutes inside each run, after all runs.
+ * Supports the postgres and spanner profiles, and drops and recreates the hot_rows table on each.
+ */
+public class ContentionBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(ContentionBenchmark.class);
+    private static final String TABLE = "hot_rows";
+    private static final long LOCK_SAMPLE_MILLIS = 100;
+
+    /**
+     * @param failedWorkers Workers that could not connect or set up their connection, and so never ran
+     * @param lockWaiters Mean number of transactions waiting for a lock during the run, or NaN if unknown
+     * @param lostUpdates Committed increments missing from the rows afterwards
+     */
+    private record Result(String database, ContentionMode mode, int hotRows, int workers, int failedWorkers,
+                          long operations, long failed, long attempts, long aborts, double seconds, Histogram latency,
+                          Histogram lockStatement, double lockWaiters, long lostUpdates, Instant start, Instant end) {
+        double operationsPerSecond() {
+            return seconds > 0 ? operations / seconds : 0;
+        }
+
+        int activeWorkers() {
+            return workers - failedWorkers;
+        }
+
+        /**
+         * @return Lock wait per committed operation, from the mean number of waiters over the run
+         */
+        double lockWaitMillisPerOperation() {
+            return operations > 0 ? lockWaiters * seconds * 1000 / operations : Double.NaN;
+        }
+
+        Result withLockWaiters(double waiters) {
+            return new Result(database, mode, hotRows, workers, failedWorkers, operations, failed, attempts, aborts, seconds,
+                latency, lockStatement, waiters, lostUpdates, start, end);
+        }
+    }
+
+    private final Map<String, DatabaseConfig> databases;
+    private final MetricsService metricsService;
+    private final List<ContentionMode> modes;
+    private final List<Integer> hotRowCounts;
+    private final List<Integer> workerCounts;
+    private final Duration duration;
+    private final RetryPolicy retryPolicy;
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * @param databases postgres and/or spanner, by name, in report order
+     * @param hotRowCounts Numbers of rows the workers spread their increments over
+     * @param workerCounts Numbers of concurrent workers, each with its own connection
+     * @param duration How long each mode, hot row count and worker count combination runs
+     * @param retryPolicy How aborted transactions are retried
+     */
+    public ContentionBenchmark(Map<String, DatabaseConfig> databases, MetricsService metricsService,
+                               List<ContentionMode> modes, List<Integer> hotRowCounts, List<Integer> workerCounts,
+                               Duration duration, RetryPolicy retryPolicy) {
+        for (String database : databases.keySet()) {
+            if (!database.equals("postgres") && !database.equals("spanner")) {
+                throw new IllegalArgumentException(
+                    "Invalid contention database: " + database + ". Valid databases are: postgres, spanner");
+            }
+        }
+        if (hotRowCounts.stream().anyMatch(n -> n < 1) || workerCounts.stream().anyMatch(n -> n < 1)) {
+            throw new IllegalArgumentException("Hot row and worker counts must be at least 1");
+        }
+        this.databases = databases;
+        this.metricsService = metricsService;
+        this.modes = modes;
+        this.hotRowCounts = hotRowCounts;
+        this.workerCounts = workerCounts.stream().sorted().toList();
+        this.duration = duration;
+        this.retryPolicy = retryPolicy;
+    }
+
+    public void run() {
+        metricsService.startRun();
+        try {
+            for (Map.Entry<String, DatabaseConfig> database : databases.entrySet()) {
+                boolean spanner = database.getKey().equals("spanner");
+                DatabaseConfig dbConfig = database.getValue();
+                List<Result> databaseResults = new ArrayList<>();
+                createTable(dbConfig, spanner, Collections.max(hotRowCounts));
+                for (ContentionMode mode : modes) {
+                    for (int hotRows : hotRowCounts) {
+                        for (int workers : workerCounts) {
+                            logger.info("Incrementing {} hot rows of {} with {} workers using {} for {} seconds",
+                                hotRows, database.getKey(), workers, mode, duration.toSeconds());
+                            Result result = runSlot(database.getKey(), dbConfig, spanner, mode, hotRows, workers);
+                            databaseResults.add(result);
+                            logger.info(String.format("%s %s, %d rows, %d workers: %.1f ops/s, p99 %.2f ms, %d aborts",
+                                database.getKey(), mode, hotRows, workers, result.operationsPerSecond(),
+                                Reports.millis(result.latency(), 99), result.aborts()));
+                        }
+                    }
+                }
+                results.addAll(spanner ? withSpannerLockStats(dbConfig, databaseResults) : databaseResults);
+            }
+        } finally {
+            metricsService.finishRun();
+        }
+    }
+
+    private void createTable(DatabaseConfig dbConfig, boolean spanner, int rows) {
+        try (Connection conn = dbConfig.createConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + TABLE);
+            stmt.execute(spanner
+                ? "CREATE TABLE " + TABLE + " (id INT64 NOT NULL, counter INT64 NOT NULL, updated_at TIMESTAMP) PRIMARY KEY (id)"
+                : "CREATE TABLE " + TABLE + " (id BIGINT PRIMARY KEY, counter BIGINT NOT NULL, updated_at TIMESTAMPTZ)");
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO " + TABLE + " (id, counter) VALUES (?, 0)")) {
+                for (int id = 0; id < rows; id++) {
+                    insert.setLong(1, id);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to create the " + TABLE + " table", e);
+        }
+    }
+
+    private Result runSlot(String name, DatabaseConfig dbConfig, boolean spanner, ContentionMode mode, int hotRows,
+                           int workers) {
+        Recorder latency = new Recorder(3);
+        Recorder lockStatement = new Recorder(3);
+        AtomicLong operations = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong attempts = new AtomicLong();
+        AtomicLong aborts = new AtomicLong();
+        AtomicInteger failedWorkers = new AtomicInteger();
+        AtomicLong lockSamples = new AtomicLong();
+        AtomicLong lockWaiters = new AtomicLong();
+        long before = total(dbConfig, hotRows);
+
+        Instant startTime = Instant.now();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            threads.add(new Thread(() -> increment(dbConfig, spanner, mode, hotRows, deadline, latency, lockStatement,
+                operations, failed, attempts, aborts, failedWorkers), "contender-" + w));
+        }
+        if (!spanner) {
+            threads.add(new Thread(() -> sampleLockWaiters(dbConfig, deadline, lockSamples, lockWaiters), "lock-sampler"));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while incrementing hot rows of " + name, e);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        Instant endTime = Instant.now();
+        long lostUpdates = operations.get() - (total(dbConfig, hotRows) - before);
+        if (failedWorkers.get() > 0) {
+            logger.warn("{} of {} workers could not start, so {} {} ran with {} workers", failedWorkers.get(), workers,
+                name, mode, workers - failedWorkers.get());
+        }
+
+        metricsService.incrementTotalOperations(operations.get() + failed.get());
+        metricsService.incrementSucceededOperations(operations.get());
+        return new Result(name, mode, hotRows, workers, failedWorkers.get(), operations.get(), failed.get(), attempts.get(),
+            aborts.get(), seconds, latency.getIntervalHistogram(), lockStatement.getIntervalHistogram(),
+            lockSamples.get() > 0 ? (double) lockWaiters.get() / lockSamples.get() : Double.NaN, lostUpdates,
+            startTime, endTime);
+    }
+
+    /**
+     * Increments random hot rows back to back until the deadline. Aborted attempts are retried with the retry
+     * policy's backoff; other failures, and aborts on the last attempt, count the operation as failed. A worker
+     * that can't connect or set up its connection counts itself in {@code failedWorkers}.
+     */
+    private void increment(DatabaseConfig dbConfig, boolean spanner, ContentionMode mode, int hotRows, long deadline,
+                           Recorder latency, Recorder lockStatement, AtomicLong operations, AtomicLong failed,
+                           AtomicLong attempts, AtomicLong aborts, AtomicInteger failedWorkers) {
+        boolean started = false;
+        boolean transaction = mode == ContentionMode.READ_MODIFY_WRITE;
+        String readSql = "SELECT counter FROM " + TABLE + " WHERE id = ?" + (spanner ? "" : " FOR UPDATE");
+        String now = spanner ? "CURRENT_TIMESTAMP()" : "CURRENT_TIMESTAMP";
+        String writeSql = transaction
+            ? "UPDATE " + TABLE + " SET counter = ?, updated_at = " + now + " WHERE id = ?"
+            : "UPDATE " + TABLE + " SET counter = counter + 1, updated_at = " + now + " WHERE id = ?";
+        try (Connection conn = dbConfig.createConnection();
+             PreparedStatement read = conn.prepareStatement(readSql);
+             PreparedStatement write = conn.prepareStatement(writeSql)) {
+            if (spanner) {
+                try (Statement settings = conn.createStatement()) {
+                    // Let aborts reach the benchmark, so they are counted and retried with the retry policy
+                    settings.execute("SET RETRY_ABORTS_INTERNALLY = false");
+                }
+            }
+            conn.setAutoCommit(!transaction);
+            started = true;
+            while (System.nanoTime() < deadline) {
+                long id = ThreadLocalRandom.current().nextInt(hotRows);
+                long start = System.nanoTime();
+                for (int attempt = 1; ; attempt++) {
+                    attempts.incrementAndGet();
+                    try {
+                        long lockStart = System.nanoTime();
+                        if (transaction) {
+                            read.setLong(1, id);
+                            long counter;
+                            try (ResultSet rs = read.executeQuery()) {
+                                rs.next();
+                                counter = rs.getLong(1);
+                            }
+                            lockStatement.recordValue(Reports.micros(System.nanoTime() - lockStart));
+                            write.setLong(1, counter + 1);
+                            write.setLong(2, id);
+                            write.executeUpdate();
+                            conn.commit();
+                        } else {
+                            write.setLong(1, id);
+                            write.executeUpdate();
+                            lockStatement.recordValue(Reports.micros(System.nanoTime() - lockStart));
+                        }
+                        long nanos = System.nanoTime() - start;
+                        latency.recordValue(Reports.micros(nanos));
+                        metricsService.getQueryTimer(mode.name()).record(nanos, TimeUnit.NANOSECONDS);
+                        operations.incrementAndGet();
+                        break;
+                    } catch (SQLException e) {
+                        ErrorCategory category = ErrorCategory.classify(e);
+                        if (transaction) {
+                            rollback(conn);
+                        }
+                        if (category == ErrorCategory.ABORTED) {
+                            aborts.incrementAndGet();
+                        }
+                        if (category.isRetryable() && attempt < retryPolicy.getMaxAttempts()
+                                && System.nanoTime() < deadline) {
+                            metricsService.recordRetry(category.name());
+                            sleep(retryPolicy.backoff(attempt));
+                            continue;
+                        }
+                        failed.incrementAndGet();
+                        metricsService.recordFailedBatch(category.name(), 1);
+                        break;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            if (started) {
+                // Only closing the connection can fail once the worker has started
+                logger.debug("Closing a contention worker's connection failed", e);
+            } else {
+                failedWorkers.incrementAndGet();
+                logger.warn("Contention worker could not start: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Counts the sessions of this database waiting for a lock every {@link #LOCK_SAMPLE_MILLIS} ms.
+     */
+    private static void sampleLockWaiters(DatabaseConfig dbConfig, long deadline, AtomicLong samples, AtomicLong waiters) {
+        try (Connection conn = dbConfig.createConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT count(*) FROM pg_stat_activity "
+                 + "WHERE wait_event_type = 'Lock' AND datname = current_database()")) {
+            while (System.nanoTime() < deadline) {
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    waiters.addAndGet(rs.getLong(1));
+                    samples.incrementAndGet();
+                }
+                sleep(Duration.ofMillis(LOCK_SAMPLE_MILLIS));
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not sample pg_stat_activity: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Fills in the mean lock waiters of each run from the minute intervals of SPANNER_SYS.LOCK_STATS_TOTAL_MINUTE
+     * that lie entirely inside it, first waiting for the interval the last run ended in to be published.
+     */
+    private List<Result> withSpannerLockStats(DatabaseConfig dbConfig, List<Result> slots) {
+        Instant published = slots.get(slots.size() - 1).end().truncatedTo(ChronoUnit.MINUTES)
+            .plusSeconds(90);
+        if (Instant.now().isBefore(published)) {
+            logger.info("Waiting until {} for Spanner lock statistics", published);
+            sleep(Duration.between(Instant.now(), published));
+        }
+        List<Result> filled = new ArrayList<>();
+        try (Connection conn = dbConfig.createConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT interval_end, total_lock_wait_seconds "
+                 + "FROM SPANNER_SYS.LOCK_STATS_TOTAL_MINUTE WHERE interval_end > ? ORDER BY interval_end")) {
+            stmt.setTimestamp(1, Timestamp.from(slots.get(0).start()));
+            List<Instant> ends = new ArrayList<>();
+            List<Double> waits = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ends.add(rs.getTimestamp(1).toInstant());
+                    waits.add(rs.getDouble(2));
+                }
+            }
+            for (Result slot : slots) {
+                double waitSeconds = 0;
+                int minutes = 0;
+                for (int i = 0; i < ends.size(); i++) {
+                    if (!ends.get(i).minusSeconds(60).isBefore(slot.start()) && !ends.get(i).isAfter(slot.end())) {
+                        waitSeconds += waits.get(i);
+                        minutes++;
+                    }
+                }
+                filled.add(slot.withLockWaiters(minutes > 0 ? waitSeconds / (minutes * 60.0) : Double.NaN));
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not read SPANNER_SYS.LOCK_STATS_TOTAL_MINUTE: {}", e.getMessage());
+            return slots;
+        }
+        return filled;
+    }
+
+    /**
+     * @return The sum of the first rows' counters, to check that no committed increment was lost
+     */
+    private static long total(DatabaseConfig dbConfig, int rows) {
+        try (Connection conn = dbConfig.createConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT COALESCE(SUM(counter), 0) FROM " + TABLE + " WHERE id < ?")) {
+            stmt.setLong(1, rows);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to sum the " + TABLE + " table", e);
+        }
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            logger.debug("Rollback after failed increment failed", e);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis(), duration.toNanosPart() % 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Contention Report (%d s per run, up to %d attempts per increment)%n",
+            duration.toSeconds(), retryPolicy.getMaxAttempts()));
+        for (Map.Entry<String, DatabaseConfig> database : databases.entrySet()) {
+            if (database.getValue() instanceof SpannerConfig spanner) {
+                report.append(String.format("%s: %s%n", database.getKey(), spanner.getClientOptions().describe()));
+            }
+        }
+        report.append(String.format("%-9s %-17s %8s %8s %10s %10s %10s %10s %10s %12s %10s %10s %8s %8s%n",
+            "database", "mode", "hot rows", "workers", "ops/s", "scaling", "p50 (ms)", "p99 (ms)", "lock p99",
+            "lock wait/op", "abort rate", "retries/op", "failed", "lost"));
+        for (Result result : results) {
+            // Throughput the lowest worker count would reach if it scaled linearly, by the workers that actually ran
+            Result baseline = results.stream()
+                .filter(r -> r.database().equals(result.database()) && r.mode() == result.mode()
+                    && r.hotRows() == result.hotRows())
+                .findFirst().orElse(result);
+            double linear = baseline.activeWorkers() > 0
+                ? baseline.operationsPerSecond() * result.activeWorkers() / baseline.activeWorkers() : 0;
+            report.append(String.format("%-9s %-17s %8d %8s %10.1f %9.0f%% %10.2f %10.2f %10.2f %12.2f %9.1f%% %10.2f %8d %8d%n",
+                result.database(), result.mode(), result.hotRows(),
+                result.failedWorkers() > 0 ? result.activeWorkers() + "/" + result.workers() : String.valueOf(result.workers()),
+                result.operationsPerSecond(),
+                linear > 0 ? 100 * result.operationsPerSecond() / linear : Double.NaN,
+                Reports.millis(result.latency(), 50), Reports.millis(result.latency(), 99),
+                Reports.millis(result.lockStatement(), 99), result.lockWaitMillisPerOperation(),
+                result.attempts() > 0 ? 100.0 * result.aborts() / result.attempts() : 0,
+                result.operations() > 0
+                    ? (double) (result.attempts() - result.operations() - result.failed()) / result.operations() : 0,
+                result.failed(), result.lostUpdates()));
+        }
+        return report.toString();
+    }
+}
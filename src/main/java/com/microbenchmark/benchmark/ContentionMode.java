@@ -0,0 +1,9 @@
+package com.microbenchmark.benchmark;
+
+/**
+ * How the contention workload increments a hot row.
+ */
+public enum ContentionMode {
+    READ_MODIFY_WRITE,  // read the value in a transaction (FOR UPDATE on PostgreSQL), then write it back incremented
+    SINGLE_UPDATE       // one autocommit UPDATE ... SET value = value + 1
+}
@@ -0,0 +1,73 @@
+package com.microbenchmark.benchmark;
+
+import com.google.cloud.spanner.jdbc.JdbcSqlException;
+import io.r2dbc.spi.R2dbcException;
+
+import java.sql.SQLException;
+
+/**
+ * Coarse classification of batch failures, based on the SQLState for PostgreSQL and PGAdapter
+ * and on the gRPC status code for the Spanner JDBC driver.
+ */
+public enum ErrorCategory {
+    ABORTED(true),              // serialization failures, deadlocks and Spanner transaction aborts
+    UNAVAILABLE(true),          // connection failures and unavailable servers
+    TIMEOUT(true),              // statement timeouts and deadlines
+    RESOURCE_EXHAUSTED(true),   // server out of resources or throttling
+    CONSTRAINT_VIOLATION(false),
+    INVALID_STATEMENT(false),   // syntax errors, unknown tables or columns
+    OTHER(false);
+
+    private final boolean retryable;
+
+    ErrorCategory(boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    public static ErrorCategory classify(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof JdbcSqlException spannerError) {
+                return fromSpannerCode(spannerError.getCode());
+            }
+            if (t instanceof SQLException sqlError && sqlError.getSQLState() != null) {
+                return fromSqlState(sqlError.getSQLState());
+            }
+            if (t instanceof R2dbcException r2dbcError && r2dbcError.getSqlState() != null) {
+                return fromSqlState(r2dbcError.getSqlState());
+            }
+        }
+        return OTHER;
+    }
+
+    static ErrorCategory fromSqlState(String sqlState) {
+        if (sqlState.equals("40001") || sqlState.equals("40P01")) {
+            return ABORTED;
+        }
+        if (sqlState.equals("57014")) {
+            return TIMEOUT;
+        }
+        return switch (sqlState.length() >= 2 ? sqlState.substring(0, 2) : sqlState) {
+            case "08", "57" -> UNAVAILABLE;
+            case "53" -> RESOURCE_EXHAUSTED;
+            case "23" -> CONSTRAINT_VIOLATION;
+            case "42" -> INVALID_STATEMENT;
+            default -> OTHER;
+        };
+    }
+
+    static ErrorCategory fromSpannerCode(com.google.rpc.Code code) {
+        return switch (code) {
+            case ABORTED -> ABORTED;
+            case UNAVAILABLE -> UNAVAILABLE;
+            case DEADLINE_EXCEEDED, CANCELLED -> TIMEOUT;
+            case RESOURCE_EXHAUSTED -> RESOURCE_EXHAUSTED;
+            case ALREADY_EXISTS, FAILED_PRECONDITION, OUT_OF_RANGE -> CONSTRAINT_VIOLATION;
+            case INVALID_ARGUMENT, NOT_FOUND -> INVALID_STATEMENT;
+            default -> OTHER;
+        };
+    }
+}
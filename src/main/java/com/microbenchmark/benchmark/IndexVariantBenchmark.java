@@ -0,0 +1,377 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.keys.KeyGenerator;
+import com.microbenchmark.keys.KeyStrategy;
+import com.microbenchmark.metrics.MetricsService;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures what secondary indexes and table options cost at write time. For each {@link Variant} the
+ * tables are dropped and recreated with only the variant's indexes, seeded with the same rows, and then
+ * the same inserts and updates of users and orders are run against them. The report shows throughput and
+ * batch latency per variant and operation, with the change against the first variant.
+ * Supports the postgres profile with schema.sql and the spanner profile with spanner-schema.sql.
+ * The benchmark drops and recreates the users and orders tables.
+ */
+public class IndexVariantBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(IndexVariantBenchmark.class);
+    private static final String USERS = "users";
+    private static final ComplexQueryProvider.OperationType[] PHASES = {
+        ComplexQueryProvider.OperationType.USER_INSERT,
+        ComplexQueryProvider.OperationType.ORDER_INSERT,
+        ComplexQueryProvider.OperationType.USER_UPDATE,
+        ComplexQueryProvider.OperationType.ORDER_UPDATE
+    };
+
+    /**
+     * @param indexes Names of the schema file's indexes to create
+     * @param fillfactor Postgres table and index fillfactor in percent, or 0 for the default
+     * @param interleaved Spanner only: interleave orders in users, keyed by (user_id, id) without a foreign key
+     */
+    public record Variant(String name, List<String> indexes, int fillfactor, boolean interleaved) {
+    }
+
+    private record PhaseResult(long rows, long failedRows, double seconds, Histogram latency) {
+        double throughput() {
+            return seconds > 0 ? rows / seconds : 0;
+        }
+    }
+
+    private final DatabaseConfig databaseConfig;
+    private final MetricsService metricsService;
+    private final boolean spanner;
+    private final SchemaDefinition schema;
+    private final String ordersTable;
+    private final List<Variant> variants;
+    private final KeyStrategy keyStrategy;
+    private final long seed;
+    private final int seedUsers;
+    private final int seedOrders;
+    private final int operations;
+    private final int batchSize;
+    private final Map<String, Map<ComplexQueryProvider.OperationType, PhaseResult>> results = new LinkedHashMap<>();
+
+    // The seeded rows, the same for every variant; the workload updates them and inserts orders for them
+    private String[] userIds;
+    private String[] orderIds;
+    private String[] orderUserIds;
+
+    /**
+     * @param database postgres or spanner
+     * @param operations Rows inserted or updated by each of the four operations, per variant
+     */
+    public IndexVariantBenchmark(DatabaseConfig databaseConfig, MetricsService metricsService, String database,
+                                 List<Variant> variants, KeyStrategy keyStrategy, long seed,
+                                 int seedUsers, int seedOrders, int operations, int batchSize) {
+        this.spanner = switch (database) {
+            case "spanner" -> true;
+            case "postgres" -> false;
+            default -> throw new IllegalArgumentException(
+                "Invalid indexes.database: " + database + ". Valid databases are: postgres, spanner");
+        };
+        if (variants.isEmpty()) {
+            throw new IllegalArgumentException("At least one variant is required");
+        }
+        if (seedUsers < 1 || seedOrders < 1) {
+            throw new IllegalArgumentException("At least one user and one order must be seeded");
+        }
+        this.databaseConfig = databaseConfig;
+        this.metricsService = metricsService;
+        this.schema = SchemaDefinition.load(spanner ? "spanner-schema.sql" : "schema.sql");
+        this.ordersTable = schema.getTables().keySet().stream()
+            .filter(table -> !table.equals(USERS))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("The schema file has no orders table"));
+        for (Variant variant : variants) {
+            for (String index : variant.indexes()) {
+                if (!schema.getIndexes().containsKey(index)) {
+                    throw new IllegalArgumentException("Variant " + variant.name() + " uses unknown index " + index
+                        + ". Known indexes are: " + schema.getIndexNames());
+                }
+            }
+            if (variant.fillfactor() != 0 && (variant.fillfactor() < 10 || variant.fillfactor() > 100)) {
+                throw new IllegalArgumentException("Variant " + variant.name() + " fillfactor must be between 10 and 100");
+            }
+            if (variant.fillfactor() != 0 && spanner) {
+                logger.warn("Variant {}: Spanner has no fillfactor, ignoring it", variant.name());
+            }
+            if (variant.interleaved() && !spanner) {
+                logger.warn("Variant {}: interleaving is Spanner only, ignoring it", variant.name());
+            }
+        }
+        this.variants = variants;
+        this.keyStrategy = keyStrategy;
+        this.seed = seed;
+        this.seedUsers = seedUsers;
+        this.seedOrders = seedOrders;
+        this.operations = operations;
+        this.batchSize = batchSize;
+    }
+
+    public void run() {
+        metricsService.startRun();
+        try {
+            for (Variant variant : variants) {
+                logger.info("Variant {}: indexes {}{}{}", variant.name(), variant.indexes(),
+                    variant.fillfactor() != 0 ? ", fillfactor " + variant.fillfactor() : "",
+                    variant.interleaved() ? ", interleaved" : "");
+                boolean interleaved = spanner && variant.interleaved();
+                try (Connection conn = databaseConfig.createConnection()) {
+                    conn.setAutoCommit(true);
+                    dropTables(conn);
+                    executeDdl(conn, tableDdl(variant));
+                    seed(conn, interleaved);
+                    long start = System.nanoTime();
+                    executeDdl(conn, indexDdl(variant));
+                    if (!spanner) {
+                        try (Statement stmt = conn.createStatement()) {
+                            stmt.execute("ANALYZE");
+                        }
+                    }
+                    logger.info("Variant {}: created {} indexes in {} ms", variant.name(), variant.indexes().size(),
+                        (System.nanoTime() - start) / 1_000_000);
+
+                    Map<ComplexQueryProvider.OperationType, PhaseResult> phases = new EnumMap<>(ComplexQueryProvider.OperationType.class);
+                    for (ComplexQueryProvider.OperationType phase : PHASES) {
+                        PhaseResult result = runPhase(conn, variant, phase, interleaved);
+                        phases.put(phase, result);
+                        logger.info(String.format("Variant %s: %s %.0f rows/s, p99 %.2f ms, %d failed rows",
+                            variant.name(), phase, result.throughput(), Reports.millis(result.latency(), 99), result.failedRows()));
+                    }
+                    results.put(variant.name(), phases);
+                } catch (SQLException e) {
+                    throw new RuntimeException("Variant " + variant.name() + " failed", e);
+                }
+            }
+        } finally {
+            metricsService.finishRun();
+        }
+    }
+
+    private void dropTables(Connection conn) throws SQLException {
+        List<String> tables = new ArrayList<>(schema.getTables().keySet());
+        List<String> statements = new ArrayList<>();
+        if (spanner) {
+            // Spanner refuses to drop a table that still has indexes
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES "
+                + "WHERE TABLE_SCHEMA = '' AND TABLE_NAME = ? AND INDEX_TYPE = 'INDEX' AND NOT SPANNER_IS_MANAGED")) {
+                for (String table : tables) {
+                    stmt.setString(1, table);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            statements.add("DROP INDEX " + rs.getString(1));
+                        }
+                    }
+                }
+            }
+        }
+        // Children before parents
+        for (int i = tables.size() - 1; i >= 0; i--) {
+            statements.add("DROP TABLE IF EXISTS " + tables.get(i) + (spanner ? "" : " CASCADE"));
+        }
+        executeDdl(conn, statements);
+    }
+
+    List<String> tableDdl(Variant variant) {
+        return tableDdl(schema, ordersTable, variant, spanner);
+    }
+
+    static List<String> tableDdl(SchemaDefinition schema, String ordersTable, Variant variant, boolean spanner) {
+        List<String> statements = new ArrayList<>();
+        for (Map.Entry<String, String> table : schema.getTables().entrySet()) {
+            String ddl = table.getValue();
+            if (spanner && variant.interleaved()) {
+                ddl = table.getKey().equals(USERS) ? renameUserKey(ddl) : table.getKey().equals(ordersTable) ? interleave(ddl) : ddl;
+            } else if (!spanner && variant.fillfactor() != 0) {
+                ddl += " WITH (fillfactor = " + variant.fillfactor() + ")";
+            }
+            statements.add(ddl);
+        }
+        return statements;
+    }
+
+    private List<String> indexDdl(Variant variant) {
+        List<String> statements = new ArrayList<>();
+        for (String index : variant.indexes()) {
+            String ddl = schema.getIndexes().get(index);
+            if (!spanner && variant.fillfactor() != 0) {
+                ddl += " WITH (fillfactor = " + variant.fillfactor() + ")";
+            }
+            statements.add(ddl);
+        }
+        return statements;
+    }
+
+    /**
+     * A child table's key must start with its parent's key columns, under the same names, so users.id becomes user_id.
+     */
+    static String renameUserKey(String createUsers) {
+        return createUsers
+            .replaceFirst("\\(\\s*id ", "(\n    user_id ")
+            .replace("PRIMARY KEY (id)", "PRIMARY KEY (user_id)");
+    }
+
+    /**
+     * Keys orders by (user_id, id) and stores them with their user. The foreign key is dropped, as the parent
+     * relationship already guarantees the user exists.
+     */
+    static String interleave(String createOrders) {
+        return createOrders
+            .replaceFirst(",\\s*CONSTRAINT \\w+ FOREIGN KEY[^\\n]*", "")
+            .replace("PRIMARY KEY (id)", "PRIMARY KEY (user_id, id),\n    INTERLEAVE IN PARENT " + USERS + " ON DELETE CASCADE");
+    }
+
+    private void executeDdl(Connection conn, List<String> statements) throws SQLException {
+        if (statements.isEmpty()) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            // Spanner applies a DDL batch as one schema change, which is much faster than one change per statement
+            if (spanner) {
+                stmt.execute("START BATCH DDL");
+            }
+            for (String ddl : statements) {
+                stmt.execute(ddl);
+            }
+            if (spanner) {
+                stmt.execute("RUN BATCH");
+            }
+        }
+    }
+
+    private void seed(Connection conn, boolean interleaved) throws SQLException {
+        Random random = new Random(seed);
+        KeyGenerator keys = KeyStrategy.UUID_V4.create(random);
+        char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+        userIds = new String[seedUsers];
+        orderIds = new String[seedOrders];
+        orderUserIds = new String[seedOrders];
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = conn.prepareStatement(insertUserSql(interleaved))) {
+            for (int i = 0; i < seedUsers; i++) {
+                userIds[i] = new String(buffer, 0, keys.next(buffer));
+                Rows.bindUser(stmt, userIds[i], random);
+                stmt.addBatch();
+                if ((i + 1) % batchSize == 0 || i == seedUsers - 1) {
+                    stmt.executeBatch();
+                }
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(insertOrderSql())) {
+            for (int i = 0; i < seedOrders; i++) {
+                orderIds[i] = new String(buffer, 0, keys.next(buffer));
+                orderUserIds[i] = userIds[random.nextInt(seedUsers)];
+                Rows.bindOrder(stmt, orderIds[i], orderUserIds[i], Timestamp.from(Instant.now()), random);
+                stmt.addBatch();
+                if ((i + 1) % batchSize == 0 || i == seedOrders - 1) {
+                    stmt.executeBatch();
+                }
+            }
+        }
+        logger.info("Seeded {} users and {} orders in {} ms", seedUsers, seedOrders, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private PhaseResult runPhase(Connection conn, Variant variant, ComplexQueryProvider.OperationType phase,
+                                 boolean interleaved) throws SQLException {
+        // Every variant gets the same rows and the same values for each phase
+        Random random = new Random(seed + 1 + phase.ordinal());
+        KeyGenerator keys = keyStrategy.create(random);
+        char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+        String userKey = interleaved ? "user_id" : "id";
+        String sql = switch (phase) {
+            case USER_INSERT -> insertUserSql(interleaved);
+            case ORDER_INSERT -> insertOrderSql();
+            case USER_UPDATE -> "UPDATE users SET status = ?, name = ?, updated_at = ? WHERE " + userKey + " = ?";
+            // Orders are looked up by their full key, which is (user_id, id) when interleaved
+            case ORDER_UPDATE -> "UPDATE " + ordersTable + " SET order_status = ?, total_amount = ?, updated_at = ? "
+                + "WHERE user_id = ? AND id = ?";
+            default -> throw new IllegalArgumentException("Unsupported phase " + phase);
+        };
+        MeasuredBatches batches = new MeasuredBatches(metricsService, variant.name() + "_" + phase,
+            "Variant " + variant.name() + ": " + phase + " batch");
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int pending = 0;
+            for (int i = 0; i < operations; i++) {
+                switch (phase) {
+                    case USER_INSERT -> Rows.bindUser(stmt, new String(buffer, 0, keys.next(buffer)), random);
+                    case ORDER_INSERT -> Rows.bindOrder(stmt, new String(buffer, 0, keys.next(buffer)),
+                        userIds[random.nextInt(userIds.length)], Timestamp.from(Instant.now()), random);
+                    case USER_UPDATE -> {
+                        stmt.setString(1, Rows.userStatus(random));
+                        stmt.setString(2, "User " + random.nextInt(1_000_000));
+                        stmt.setTimestamp(3, Timestamp.from(Instant.now()));
+                        stmt.setString(4, userIds[random.nextInt(userIds.length)]);
+                    }
+                    default -> {
+                        int order = random.nextInt(orderIds.length);
+                        stmt.setString(1, Rows.orderStatus(random));
+                        stmt.setBigDecimal(2, BigDecimal.valueOf(random.nextInt(100_000), 2));
+                        stmt.setTimestamp(3, Timestamp.from(Instant.now()));
+                        stmt.setString(4, orderUserIds[order]);
+                        stmt.setString(5, orderIds[order]);
+                    }
+                }
+                stmt.addBatch();
+                pending++;
+                if (pending == batchSize || i == operations - 1) {
+                    batches.executeBatch(stmt, pending);
+                    pending = 0;
+                }
+            }
+        }
+        return new PhaseResult(batches.getRows(), batches.getFailedRows(), (System.nanoTime() - start) / 1_000_000_000.0,
+            batches.getLatency());
+    }
+
+    private static String insertUserSql(boolean interleaved) {
+        return "INSERT INTO users (" + (interleaved ? "user_id" : "id") + ", name, email, status, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    }
+
+    private String insertOrderSql() {
+        return "INSERT INTO " + ordersTable + " (id, user_id, order_status, total_amount, items_count, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        String baseline = variants.get(0).name();
+        report.append(String.format("Index Variant Report (%s, seed %d, %d operations per phase, batch size %d, baseline %s)%n",
+            spanner ? "spanner" : "postgres", seed, operations, batchSize, baseline));
+        report.append(String.format("%-24s %-14s %22s %22s %22s %12s%n",
+            "variant", "operation", "throughput (rows/s)", "p50 (ms)", "p99 (ms)", "failed rows"));
+        for (Map.Entry<String, Map<ComplexQueryProvider.OperationType, PhaseResult>> variant : results.entrySet()) {
+            boolean isBaseline = variant.getKey().equals(baseline);
+            for (ComplexQueryProvider.OperationType phase : PHASES) {
+                PhaseResult result = variant.getValue().get(phase);
+                PhaseResult base = results.get(baseline).get(phase);
+                report.append(String.format("%-24s %-14s %22s %22s %22s %12d%n",
+                    variant.getKey(), phase,
+                    Reports.withDelta(result.throughput(), base.throughput(), isBaseline),
+                    Reports.withDelta(Reports.millis(result.latency(), 50), Reports.millis(base.latency(), 50), isBaseline),
+                    Reports.withDelta(Reports.millis(result.latency(), 99), Reports.millis(base.latency(), 99), isBaseline),
+                    result.failedRows()));
+            }
+        }
+        return report.toString();
+    }
+}
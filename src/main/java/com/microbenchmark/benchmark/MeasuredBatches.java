@@ -0,0 +1,94 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.metrics.MetricsService;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Executes the batches of one measured run, recording each batch's latency and rows in a histogram of its own
+ * and in the metrics. A failed batch counts all its rows as failed and the run goes on; only the run's first
+ * failure is logged.
+ */
+final class MeasuredBatches {
+    private static final Logger logger = LoggerFactory.getLogger(MeasuredBatches.class);
+
+    @FunctionalInterface
+    interface Batch {
+        /**
+         * @return The rows that succeeded
+         */
+        long execute() throws SQLException;
+    }
+
+    private final MetricsService metricsService;
+    private final String statementType;
+    private final String description;
+    private final Histogram latency = new Histogram(3);
+    private long rows;
+    private long failedRows;
+
+    /**
+     * @param description What a batch is, for the failure warning, e.g. "DML batch with 25% conflicts"
+     */
+    MeasuredBatches(MetricsService metricsService, String statementType, String description) {
+        this.metricsService = metricsService;
+        this.statementType = statementType;
+        this.description = description;
+    }
+
+    /**
+     * @param batchRows Rows in the batch
+     * @return The rows that succeeded, or -1 if the batch failed
+     */
+    long execute(int batchRows, Batch batch) {
+        long start = System.nanoTime();
+        try {
+            long succeeded = batch.execute();
+            long nanos = System.nanoTime() - start;
+            latency.recordValue(Reports.micros(nanos));
+            metricsService.recordBatchExecution(batchRows, Duration.ofNanos(nanos));
+            metricsService.getQueryTimer(statementType).record(Duration.ofNanos(nanos));
+            metricsService.incrementTotalOperations(batchRows);
+            metricsService.incrementSucceededOperations(succeeded);
+            rows += succeeded;
+            return succeeded;
+        } catch (SQLException | RuntimeException e) {
+            if (failedRows == 0) {
+                logger.warn("{} failed: {}", description, e.getMessage());
+            }
+            metricsService.incrementTotalOperations(batchRows);
+            metricsService.recordFailedBatch(ErrorCategory.classify(e).name(), batchRows);
+            failedRows += batchRows;
+            return -1;
+        }
+    }
+
+    /**
+     * Executes the rows added to the statement, discarding them if the batch fails.
+     * @return The rows that succeeded, or -1 if the batch failed
+     */
+    long executeBatch(PreparedStatement stmt, int batchRows) throws SQLException {
+        long succeeded = execute(batchRows, () -> BatchStatementExecutor.succeededRows(stmt.executeBatch()));
+        if (succeeded < 0) {
+            stmt.clearBatch();
+        }
+        return succeeded;
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    long getFailedRows() {
+        return failedRows;
+    }
+
+    Histogram getLatency() {
+        return latency;
+    }
+}
@@ -0,0 +1,212 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.keys.KeyGenerator;
+import com.microbenchmark.keys.KeyStrategy;
+import com.microbenchmark.metrics.MetricsService;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Inserts rows with a payload column, for each payload size distribution and batch size, to show how
+ * throughput and latency scale with row size and from which batch size larger batches stop paying off.
+ * Payloads come from a {@link PayloadPool}, so the client spends the same on a row whatever its size.
+ * Supports the postgres and spanner profiles. The benchmark drops and recreates the payloads table before
+ * every run, so each run inserts into an empty table.
+ */
+public class PayloadBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(PayloadBenchmark.class);
+    private static final String TABLE = "payloads";
+    private static final double MB = 1024 * 1024;
+
+    private record Result(String sizes, double meanSize, int batchSize, long rows, long bytes, long failedRows,
+                          double seconds, Histogram latency) {
+        double rowsPerSecond() {
+            return seconds > 0 ? rows / seconds : 0;
+        }
+
+        double megabytesPerSecond() {
+            return seconds > 0 ? bytes / MB / seconds : 0;
+        }
+    }
+
+    private final DatabaseConfig databaseConfig;
+    private final MetricsService metricsService;
+    private final boolean spanner;
+    private final PayloadKind kind;
+    private final List<String> sizeDistributions;
+    private final List<Integer> batchSizes;
+    private final int rows;
+    private final int poolSize;
+    private final long seed;
+    private final double minimumGain;
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * @param database postgres or spanner
+     * @param sizeDistributions Payload size distributions, as accepted by {@link PayloadPool}
+     * @param rows Rows inserted for each size distribution and batch size
+     * @param poolSize Payloads generated for each size distribution
+     * @param minimumGain Throughput gain over the previous batch size below which a larger batch no longer pays off
+     */
+    public PayloadBenchmark(DatabaseConfig databaseConfig, MetricsService metricsService, String database,
+                            PayloadKind kind, List<String> sizeDistributions, List<Integer> batchSizes, int rows,
+                            int poolSize, long seed, double minimumGain) {
+        this.spanner = switch (database) {
+            case "spanner" -> true;
+            case "postgres" -> false;
+            default -> throw new IllegalArgumentException(
+                "Invalid payload.database: " + database + ". Valid databases are: postgres, spanner");
+        };
+        if (sizeDistributions.isEmpty() || batchSizes.isEmpty() || batchSizes.stream().anyMatch(size -> size < 1)) {
+            throw new IllegalArgumentException("At least one size distribution and one positive batch size are required");
+        }
+        this.databaseConfig = databaseConfig;
+        this.metricsService = metricsService;
+        this.kind = kind;
+        this.sizeDistributions = sizeDistributions;
+        this.batchSizes = batchSizes.stream().sorted().toList();
+        this.rows = rows;
+        this.poolSize = poolSize;
+        this.seed = seed;
+        this.minimumGain = minimumGain;
+    }
+
+    public void run() {
+        metricsService.startRun();
+        try (Connection conn = databaseConfig.createConnection()) {
+            conn.setAutoCommit(true);
+            for (String sizes : sizeDistributions) {
+                long start = System.nanoTime();
+                PayloadPool pool = new PayloadPool(kind, sizes, poolSize, seed);
+                logger.info(String.format("Generated %d %s payloads of %s, mean %.0f bytes, in %d ms", poolSize, kind,
+                    sizes, pool.getMeanSize(), (System.nanoTime() - start) / 1_000_000));
+                for (int batchSize : batchSizes) {
+                    // Every run starts from an empty table, so later runs do not pay for the rows and index of earlier ones
+                    createTable(conn);
+                    Result result = insert(conn, pool, batchSize);
+                    results.add(result);
+                    logger.info(String.format("%s, batch size %d: %.0f rows/s, %.2f MB/s, batch p99 %.2f ms, %d failed rows",
+                        sizes, batchSize, result.rowsPerSecond(), result.megabytesPerSecond(), Reports.millis(result.latency(), 99),
+                        result.failedRows()));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Payload benchmark failed", e);
+        } finally {
+            metricsService.finishRun();
+        }
+    }
+
+    private void createTable(Connection conn) throws SQLException {
+        String type = switch (kind) {
+            case JSON -> spanner ? "JSON" : "JSONB";
+            case BYTES -> spanner ? "BYTES(MAX)" : "BYTEA";
+        };
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + TABLE);
+            stmt.execute(spanner
+                ? "CREATE TABLE " + TABLE + " (id STRING(36) NOT NULL, payload_size INT64 NOT NULL, payload " + type
+                    + " NOT NULL, created_at TIMESTAMP NOT NULL) PRIMARY KEY (id)"
+                : "CREATE TABLE " + TABLE + " (id VARCHAR(36) PRIMARY KEY, payload_size INT NOT NULL, payload " + type
+                    + " NOT NULL, created_at TIMESTAMPTZ NOT NULL)");
+        }
+    }
+
+    private String insertSql() {
+        // JSON is bound as a string, which each database has to be told to parse
+        String payload = kind == PayloadKind.BYTES ? "?" : spanner ? "PARSE_JSON(?)" : "CAST(? AS jsonb)";
+        return "INSERT INTO " + TABLE + " (id, payload_size, payload, created_at) VALUES (?, ?, " + payload + ", ?)";
+    }
+
+    private Result insert(Connection conn, PayloadPool pool, int batchSize) throws SQLException {
+        // A different seed for every run, so runs do not repeat the same ids and payloads
+        Random random = new Random(seed + 1 + results.size());
+        KeyGenerator keys = KeyStrategy.UUID_V4.create(random);
+        char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+        MeasuredBatches batches = new MeasuredBatches(metricsService, "PAYLOAD_" + kind + "_" + batchSize,
+            pool.getSpec() + " batch of " + batchSize);
+        long bytes = 0;
+        long pendingBytes = 0;
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = conn.prepareStatement(insertSql())) {
+            int pending = 0;
+            for (int i = 0; i < rows; i++) {
+                stmt.setString(1, new String(buffer, 0, keys.next(buffer)));
+                int size = pool.bind(stmt, 3, random);
+                stmt.setInt(2, size);
+                stmt.setTimestamp(4, Timestamp.from(Instant.now()));
+                stmt.addBatch();
+                pending++;
+                pendingBytes += size;
+                if (pending == batchSize || i == rows - 1) {
+                    long succeeded = batches.executeBatch(stmt, pending);
+                    if (succeeded > 0) {
+                        bytes += succeeded == pending ? pendingBytes : pendingBytes * succeeded / pending;
+                    }
+                    pending = 0;
+                    pendingBytes = 0;
+                }
+            }
+        }
+        return new Result(pool.getSpec(), pool.getMeanSize(), batchSize, batches.getRows(), bytes, batches.getFailedRows(),
+            (System.nanoTime() - start) / 1_000_000_000.0, batches.getLatency());
+    }
+
+    /**
+     * @param batchSizes Batch sizes in increasing order
+     * @param throughput Rows per second at each batch size
+     * @return The index of the last batch size that was at least minimumGain faster than the one before it,
+     *         or 0 if no larger batch paid off
+     */
+    static int lastPayingBatch(List<Integer> batchSizes, double[] throughput, double minimumGain) {
+        int last = 0;
+        for (int i = 1; i < batchSizes.size(); i++) {
+            if (throughput[i - 1] <= 0 || throughput[i] / throughput[i - 1] - 1 < minimumGain) {
+                break;
+            }
+            last = i;
+        }
+        return last;
+    }
+
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Payload Report (%s, %s, %d rows per run, pool of %d payloads)%n",
+            spanner ? "spanner" : "postgres", kind, rows, poolSize));
+        report.append(String.format("%-24s %12s %10s %12s %10s %10s %12s %12s %14s %12s%n",
+            "sizes", "mean (B)", "batch", "rows/s", "MB/s", "gain", "p50 (ms)", "p99 (ms)", "p50/row (ms)", "failed rows"));
+        for (String sizes : sizeDistributions) {
+            List<Result> runs = results.stream().filter(result -> result.sizes().equals(sizes)).toList();
+            if (runs.isEmpty()) {
+                continue;
+            }
+            double[] throughput = runs.stream().mapToDouble(Result::rowsPerSecond).toArray();
+            for (int i = 0; i < runs.size(); i++) {
+                Result result = runs.get(i);
+                report.append(String.format("%-24s %12.0f %10d %12.0f %10.2f %10s %12.2f %12.2f %14.3f %12d%n",
+                    sizes, result.meanSize(), result.batchSize(), result.rowsPerSecond(), result.megabytesPerSecond(),
+                    i == 0 || throughput[i - 1] <= 0 ? "-" : String.format("%+.1f%%", (throughput[i] / throughput[i - 1] - 1) * 100),
+                    Reports.millis(result.latency(), 50), Reports.millis(result.latency(), 99),
+                    Reports.millis(result.latency(), 50) / result.batchSize(), result.failedRows()));
+            }
+            int last = lastPayingBatch(batchSizes.subList(0, runs.size()), throughput, minimumGain);
+            report.append(last == runs.size() - 1
+                ? String.format("%s: every larger batch gained at least %.0f%% throughput%n", sizes, minimumGain * 100)
+                : String.format("%s: batches beyond %d rows gained less than %.0f%% throughput%n",
+                    sizes, batchSizes.get(last), minimumGain * 100));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,9 @@
+package com.microbenchmark.benchmark;
+
+/**
+ * Column types of the payload benchmark.
+ */
+public enum PayloadKind {
+    JSON,   // jsonb on PostgreSQL, JSON on Spanner; the database parses every document
+    BYTES   // bytea on PostgreSQL, BYTES(MAX) on Spanner; stored as is
+}
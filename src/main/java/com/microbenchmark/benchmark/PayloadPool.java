@@ -0,0 +1,140 @@
+package com.microbenchmark.benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * A fixed set of payloads, generated once with sizes drawn from a distribution and bound to row after row,
+ * so producing a 64KB row costs the client no more than producing a tiny one. The pool is large enough to
+ * represent the distribution; rows pick a payload at random. JSON payloads are strings the same length in
+ * bytes as their size, shaped like an order document, and BYTES payloads are random, so they don't compress.
+ */
+public class PayloadPool {
+    // The shortest JSON document generated: {"items":[],"note":""}
+    static final int MIN_SIZE = 22;
+    // Spanner's limit for a single cell
+    static final int MAX_SIZE = 10 * 1024 * 1024;
+    private static final String ITEM = "{\"sku\":\"%s\",\"qty\":%d}";
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+    private final PayloadKind kind;
+    private final String spec;
+    private final String[] json;
+    private final byte[][] bytes;
+    private final int[] sizes;
+
+    /**
+     * @param spec The size distribution in bytes: fixed:SIZE, uniform:MIN-MAX or lognormal:MEDIAN:SIGMA
+     */
+    public PayloadPool(PayloadKind kind, String spec, int poolSize, long seed) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("The payload pool needs at least one payload");
+        }
+        Random random = new Random(seed);
+        IntSupplier distribution = sizeDistribution(spec, random);
+        this.kind = kind;
+        this.spec = spec;
+        this.sizes = new int[poolSize];
+        this.json = kind == PayloadKind.JSON ? new String[poolSize] : null;
+        this.bytes = kind == PayloadKind.BYTES ? new byte[poolSize][] : null;
+        for (int i = 0; i < poolSize; i++) {
+            sizes[i] = Math.max(MIN_SIZE, Math.min(MAX_SIZE, distribution.getAsInt()));
+            if (kind == PayloadKind.JSON) {
+                json[i] = jsonDocument(sizes[i], random);
+            } else {
+                bytes[i] = new byte[sizes[i]];
+                random.nextBytes(bytes[i]);
+            }
+        }
+    }
+
+    static IntSupplier sizeDistribution(String spec, Random random) {
+        String[] parts = spec.trim().toLowerCase().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed" -> {
+                    int size = Integer.parseInt(parts[1]);
+                    return () -> size;
+                }
+                case "uniform" -> {
+                    String[] range = parts[1].split("-");
+                    int min = Integer.parseInt(range[0]);
+                    int max = Integer.parseInt(range[1]);
+                    return () -> random.nextInt(min, max + 1);
+                }
+                case "lognormal" -> {
+                    double mu = Math.log(Integer.parseInt(parts[1]));
+                    double sigma = Double.parseDouble(parts[2]);
+                    return () -> (int) Math.min(MAX_SIZE, Math.exp(mu + sigma * random.nextGaussian()));
+                }
+                default -> {
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid payload size distribution: " + spec, e);
+        }
+        throw new IllegalArgumentException("Invalid payload size distribution: " + spec
+            + ". Valid distributions are: fixed:SIZE, uniform:MIN-MAX, lognormal:MEDIAN:SIGMA");
+    }
+
+    /**
+     * An order-like document of exactly {@code size} ASCII characters: as many 28 character items as fit,
+     * padded with a note.
+     */
+    static String jsonDocument(int size, Random random) {
+        StringBuilder document = new StringBuilder(size).append("{\"items\":[");
+        int items = Math.max(0, (size - MIN_SIZE + 1) / 29);
+        char[] sku = new char[8];
+        for (int i = 0; i < items; i++) {
+            for (int c = 0; c < sku.length; c++) {
+                sku[c] = ALPHABET[random.nextInt(ALPHABET.length)];
+            }
+            document.append(i > 0 ? "," : "").append(String.format(ITEM, new String(sku), random.nextInt(100, 1000)));
+        }
+        document.append("],\"note\":\"");
+        while (document.length() < size - 2) {
+            document.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return document.append("\"}").toString();
+    }
+
+    /**
+     * Binds a random payload of the pool, without copying it.
+     * @return The payload's size in bytes
+     */
+    public int bind(PreparedStatement stmt, int index, Random random) throws SQLException {
+        int payload = random.nextInt(sizes.length);
+        if (kind == PayloadKind.JSON) {
+            stmt.setString(index, json[payload]);
+        } else {
+            stmt.setBytes(index, bytes[payload]);
+        }
+        return sizes[payload];
+    }
+
+    public PayloadKind getKind() {
+        return kind;
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    public double getMeanSize() {
+        long total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return (double) total / sizes.length;
+    }
+
+    String json(int payload) {
+        return json[payload];
+    }
+
+    int[] sizes() {
+        return sizes;
+    }
+}
@@ -1,7 +1,10 @@
 package com.microbenchmark.benchmark;
 
+import com.microbenchmark.metrics.BatchPhaseListener;
+
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
 
 public interface QueryProvider {
     String getSql();
@@ -23,4 +26,59 @@ public interface QueryProvider {
      * @return The total number of operations to perform
      */
     long getTotalOperations();
+
+    /**
+     * Executes every row bound since the previous call. Providers that bind into more than one
+     * statement override this to flush all of them.
+     * @param stmt The prepared statement passed to {@link #setParameters}
+     * @return One update count per row, as defined by {@link PreparedStatement#executeBatch()}
+     * @throws SQLException if the batch fails; a {@link java.sql.BatchUpdateException} carries partial counts
+     */
+    default int[] executeBatch(PreparedStatement stmt) throws SQLException {
+        return stmt.executeBatch();
+    }
+
+    /**
+     * Discards every row bound since the previous {@link #executeBatch}, e.g. before a failed batch is retried.
+     */
+    default void clearBatch(PreparedStatement stmt) throws SQLException {
+        stmt.clearBatch();
+    }
+
+    /**
+     * @return The number of rows bound since the previous {@link #executeBatch} or {@link #clearBatch},
+     *         or -1 if the provider does not track it
+     */
+    default int getPendingRowCount() {
+        return -1;
+    }
+
+    /**
+     * Providers that mix statement types report bind and execute phases per type to this listener,
+     * in addition to the per-batch phases the executor records under {@link #getStatementType()}.
+     */
+    default void setPhaseListener(BatchPhaseListener listener) {
+    }
+
+    /**
+     * @return Every statement this provider binds rows for, which is more than {@link #getSql()} for providers
+     *         that mix statement types
+     */
+    default List<String> getStatements() {
+        return List.of(getSql());
+    }
+
+    /**
+     * @return The most rows one call of {@link #setParameters} binds
+     */
+    default int getMaxRowsPerCall() {
+        return 1;
+    }
+
+    /**
+     * @return The kind of statement this provider generates, used to label events and metrics
+     */
+    default String getStatementType() {
+        return getClass().getSimpleName();
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,295 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.BenchmarkProfile;
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.config.RetryPolicy;
+import com.microbenchmark.metrics.BatchExecutionEvent;
+import com.microbenchmark.metrics.BatchPhase;
+import com.microbenchmark.metrics.MetricsService;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the same {@link QueryProvider} workloads as {@link BatchStatementExecutor}, but over a
+ * non-blocking R2DBC driver. Each of the {@code concurrency} connections pipelines up to
+ * {@code maxInFlight} batches; new batches are only generated when an in-flight one completes,
+ * so the in-flight depth is bounded by backpressure rather than by thread count.
+ */
+public class ReactiveBatchExecutor implements BenchmarkExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveBatchExecutor.class);
+    private final DatabaseConfig databaseConfig;
+    private final BenchmarkProfile profile;
+    private final MetricsService metricsService;
+    private final QueryProvider queryProvider;
+    private final int concurrency;
+    private final int maxInFlight;
+    private final RetryPolicy retryPolicy;
+
+    public ReactiveBatchExecutor(DatabaseConfig databaseConfig, BenchmarkProfile profile,
+                                 MetricsService metricsService, QueryProvider queryProvider,
+                                 int concurrency, int maxInFlight) {
+        this(databaseConfig, profile, metricsService, queryProvider, concurrency, maxInFlight, RetryPolicy.defaultPolicy());
+    }
+
+    public ReactiveBatchExecutor(DatabaseConfig databaseConfig, BenchmarkProfile profile,
+                                 MetricsService metricsService, QueryProvider queryProvider,
+                                 int concurrency, int maxInFlight, RetryPolicy retryPolicy) {
+        if (concurrency < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("concurrency and maxInFlight must be at least 1");
+        }
+        this.databaseConfig = databaseConfig;
+        this.profile = profile;
+        this.metricsService = metricsService;
+        this.queryProvider = queryProvider;
+        this.concurrency = concurrency;
+        this.maxInFlight = maxInFlight;
+        this.retryPolicy = retryPolicy;
+    }
+
+    @Override
+    public void execute() {
+        ConnectionFactory connectionFactory = databaseConfig.createConnectionFactory();
+        int batchSize = queryProvider.getBatchSize();
+        long totalOperations = queryProvider.getTotalOperations();
+        Instant deadline = Instant.now().plus(profile.getMaxDuration());
+        AtomicLong nextOperation = new AtomicLong();
+
+        logger.info("Running reactive executor with {} connections and up to {} in-flight batches per connection",
+            concurrency, maxInFlight);
+
+        metricsService.startRun();
+        try {
+            Flux.range(0, concurrency)
+                .flatMap(worker -> Flux.usingWhen(
+                    acquire(connectionFactory),
+                    conn -> batchRanges(nextOperation, batchSize, totalOperations, deadline)
+                        .flatMap(start -> executeBatch(conn, "r2dbc-" + worker, start / batchSize,
+                                start, Math.min(start + batchSize, totalOperations)),
+                            maxInFlight, 1),
+                    Connection::close))
+                .blockLast();
+        } catch (RuntimeException e) {
+            logger.error("Error executing reactive batch statements", e);
+            throw new RuntimeException("Reactive batch execution failed", e);
+        } finally {
+            metricsService.finishRun();
+        }
+    }
+
+    private Mono<Connection> acquire(ConnectionFactory connectionFactory) {
+        return Mono.defer(() -> {
+            long acquireStart = System.nanoTime();
+            return Mono.from(connectionFactory.create())
+                .doOnNext(conn -> metricsService.recordPhase(BatchPhase.ACQUIRE, queryProvider.getStatementType(),
+                    System.nanoTime() - acquireStart));
+        });
+    }
+
+    /**
+     * Hands out batch start offsets on demand, so a connection only claims a batch once it has
+     * room in its pipeline.
+     */
+    private Flux<Long> batchRanges(AtomicLong nextOperation, int batchSize, long totalOperations, Instant deadline) {
+        return Flux.generate(sink -> {
+            long start = nextOperation.getAndAdd(batchSize);
+            if (start >= totalOperations || Instant.now().isAfter(deadline)) {
+                sink.complete();
+            } else {
+                sink.next(start);
+            }
+        });
+    }
+
+    /**
+     * Executes one batch, retrying retryable failures with backoff. A batch that still fails is recorded
+     * and completes empty, so the rest of the run continues.
+     */
+    private Mono<Long> executeBatch(Connection conn, String connectionId, long batchIndex, long start, long end) {
+        return attemptBatch(conn, connectionId, batchIndex, start, end)
+            .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                ErrorCategory category = ErrorCategory.classify(signal.failure());
+                int attempt = (int) signal.totalRetries() + 1;
+                if (!category.isRetryable() || attempt >= retryPolicy.getMaxAttempts()) {
+                    return Mono.error(signal.failure());
+                }
+                metricsService.recordRetry(category.name());
+                return Mono.delay(retryPolicy.backoff(attempt));
+            })))
+            .onErrorResume(e -> {
+                ErrorCategory category = ErrorCategory.classify(e);
+                logger.warn("Batch {} failed with {}: {}", batchIndex, category, e.getMessage());
+                metricsService.recordFailedBatch(category.name(), failedRows(e));
+                return Mono.empty();
+            });
+    }
+
+    private Mono<Long> attemptBatch(Connection conn, String connectionId, long batchIndex, long start, long end) {
+        return Mono.defer(() -> {
+            long bindStart = System.nanoTime();
+            Map<String, List<Object[]>> statements = recordBatch(start, end);
+            metricsService.recordPhase(BatchPhase.BIND, queryProvider.getStatementType(), System.nanoTime() - bindStart);
+            int rowCount = statements.values().stream().mapToInt(List::size).sum();
+            BatchExecutionEvent event = new BatchExecutionEvent();
+            event.begin();
+            Instant batchStart = Instant.now();
+            return Flux.fromIterable(statements.entrySet())
+                .concatMap(entry -> Flux.from(bindRows(conn.createStatement(toNativeSql(entry.getKey())), entry.getValue())
+                    .execute()))
+                // Drains each result; like BatchStatementExecutor.succeededRows, a row succeeds when its statement
+                // runs without an error, whether or not it matched anything
+                .concatMap(Result::getRowsUpdated)
+                .then(Mono.just((long) rowCount))
+                .doOnSuccess(rows -> {
+                    Duration batchDuration = Duration.between(batchStart, Instant.now());
+                    metricsService.recordPhase(BatchPhase.EXECUTE, queryProvider.getStatementType(), batchDuration.toNanos());
+                    metricsService.recordBatchExecution(rowCount, batchDuration);
+                    metricsService.incrementTotalOperations(rowCount);
+                    metricsService.incrementSucceededOperations(rowCount);
+                })
+                .onErrorMap(e -> {
+                    metricsService.incrementTotalOperations(rowCount);
+                    return new FailedBatchException(rowCount, e);
+                })
+                .doOnEach(signal -> {
+                    if (signal.isOnNext() || signal.isOnError()) {
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.batchIndex = batchIndex;
+                            event.statementType = queryProvider.getStatementType();
+                            event.rowCount = rowCount;
+                            event.connectionId = connectionId;
+                            event.outcome = signal.isOnError() ? "FAILED" : "SUCCESS";
+                            event.commit();
+                        }
+                    }
+                });
+        });
+    }
+
+    private static long failedRows(Throwable e) {
+        return e instanceof FailedBatchException failed ? failed.rows : 0;
+    }
+
+    /**
+     * Carries the row count of a failed attempt; the cause is kept for classification.
+     */
+    private static class FailedBatchException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int rows;
+
+        FailedBatchException(int rows, Throwable cause) {
+            super(cause.getMessage(), cause);
+            this.rows = rows;
+        }
+    }
+
+    private Map<String, List<Object[]>> recordBatch(long start, long end) {
+        StatementRecorder recorder = new StatementRecorder();
+        PreparedStatement stmt = recorder.prepare(queryProvider::getSql);
+        // Providers keep per-batch state, so batches are generated one at a time
+        synchronized (queryProvider) {
+            try {
+                for (long i = start; i < end; i++) {
+                    queryProvider.setParameters(stmt, i);
+                }
+                Map<String, List<Object[]>> statements = recorder.drain();
+                // The rows are already captured; this only resets the provider's pending state
+                queryProvider.clearBatch(stmt);
+                return statements;
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to generate parameters for batch at " + start, e);
+            }
+        }
+    }
+
+    private Statement bindRows(Statement statement, List<Object[]> rows) {
+        for (int r = 0; r < rows.size(); r++) {
+            if (r > 0) {
+                statement.add();
+            }
+            Object[] row = rows.get(r);
+            for (int i = 0; i < row.length; i++) {
+                if (row[i] instanceof StatementRecorder.NullValue nullValue) {
+                    statement.bindNull(i, javaType(nullValue.sqlType()));
+                } else if (row[i] == null) {
+                    statement.bindNull(i, String.class);
+                } else {
+                    statement.bind(i, toR2dbcValue(row[i]));
+                }
+            }
+        }
+        return statement;
+    }
+
+    private static Object toR2dbcValue(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toInstant();
+        } else if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        } else if (value instanceof java.sql.Time time) {
+            return time.toLocalTime();
+        } else if (value instanceof byte[] bytes) {
+            return ByteBuffer.wrap(bytes);
+        }
+        return value;
+    }
+
+    private static Class<?> javaType(int sqlType) {
+        return switch (sqlType) {
+            case Types.INTEGER, Types.SMALLINT, Types.TINYINT -> Integer.class;
+            case Types.BIGINT -> Long.class;
+            case Types.DOUBLE, Types.FLOAT, Types.REAL -> Double.class;
+            case Types.NUMERIC, Types.DECIMAL -> BigDecimal.class;
+            case Types.BOOLEAN, Types.BIT -> Boolean.class;
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> Instant.class;
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY -> ByteBuffer.class;
+            default -> String.class;
+        };
+    }
+
+    /**
+     * Rewrites JDBC {@code ?} placeholders into the {@code $n} form used by the PostgreSQL wire protocol,
+     * leaving quoted literals and identifiers untouched.
+     */
+    static String toNativeSql(String sql) {
+        StringBuilder result = new StringBuilder(sql.length() + 16);
+        int parameter = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                result.append(c);
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                result.append(c);
+            } else if (c == '?') {
+                result.append('$').append(++parameter);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,11 @@
+package com.microbenchmark.benchmark;
+
+/**
+ * Consistency modes of Spanner reads.
+ */
+public enum ReadConsistency {
+    STRONG,                 // single-use read of the latest committed data
+    EXACT_STALENESS,        // single-use read at a timestamp exactly the staleness in the past
+    MAX_STALENESS,          // single-use read at any timestamp up to the staleness in the past, chosen by Spanner
+    READ_ONLY_TRANSACTION   // several strong reads in one read-only transaction, all at the same timestamp
+}
@@ -0,0 +1,325 @@
+package com.microbenchmark.benchmark;
+
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.ReadOnlyTransaction;
+import com.google.cloud.spanner.Spanner;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.TimestampBound;
+import com.microbenchmark.config.SpannerConfig;
+import com.microbenchmark.metrics.MetricsService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs point reads of the Spanner {@code orders} table in each {@link ReadConsistency} mode, through the
+ * JDBC driver and through the native client, while writers keep updating the same rows at a fixed rate.
+ * Each combination runs for the same time with the same number of readers, and the report shows them side
+ * by side, relative to the first mode of the same API, so it shows where staleness buys latency.
+ */
+public class ReadConsistencyBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(ReadConsistencyBenchmark.class);
+    private static final String READ_SQL = "SELECT id, order_status, items_count FROM orders WHERE id = ?";
+    private static final String NATIVE_READ_SQL = "SELECT id, order_status, items_count FROM orders WHERE id = @id";
+    private static final String WRITE_SQL = "UPDATE orders SET items_count = items_count + 1, updated_at = CURRENT_TIMESTAMP() WHERE id = ?";
+    private static final int SAMPLE_IDS = 1000;
+
+    public enum Api {
+        JDBC,     // the Spanner JDBC driver, with READ_ONLY_STALENESS and read-only connections
+        NATIVE    // the client library's DatabaseClient, with TimestampBound
+    }
+
+    private record Result(Api api, ReadConsistency mode, long operations, long errors, double seconds, Histogram latency,
+                          long writes, long writeErrors, Histogram writeLatency) {
+    }
+
+    private final SpannerConfig spannerConfig;
+    private final MetricsService metricsService;
+    private final List<Api> apis;
+    private final List<ReadConsistency> modes;
+    private final Duration staleness;
+    private final int readers;
+    private final int transactionReads;
+    private final Duration duration;
+    private final int writers;
+    private final double writeRate;
+    private final List<Result> results = new ArrayList<>();
+    private List<String> ids;
+
+    /**
+     * @param staleness For EXACT_STALENESS and MAX_STALENESS
+     * @param readers Concurrent readers, each reading back to back
+     * @param transactionReads Reads per READ_ONLY_TRANSACTION; every other mode reads one row per operation
+     * @param duration How long each API and mode combination runs
+     * @param writers Writer connections, sharing writeRate between them
+     * @param writeRate Updates per second of the rows being read, or 0 for no write load
+     */
+    public ReadConsistencyBenchmark(SpannerConfig spannerConfig, MetricsService metricsService, List<Api> apis,
+                                    List<ReadConsistency> modes, Duration staleness, int readers, int transactionReads,
+                                    Duration duration, int writers, double writeRate) {
+        if (readers < 1 || transactionReads < 1) {
+            throw new IllegalArgumentException("At least one reader and one read per transaction are required");
+        }
+        if (writeRate > 0 && writers < 1) {
+            throw new IllegalArgumentException("A write rate needs at least one writer");
+        }
+        this.spannerConfig = spannerConfig;
+        this.metricsService = metricsService;
+        this.apis = apis;
+        this.modes = modes;
+        this.staleness = staleness;
+        this.readers = readers;
+        this.transactionReads = transactionReads;
+        this.duration = duration;
+        this.writers = writers;
+        this.writeRate = writeRate;
+    }
+
+    public void run() {
+        ids = sampleIds();
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("The orders table is empty; set bulk.populate.rows and run the bulk profile first");
+        }
+        Spanner spanner = apis.contains(Api.NATIVE) ? spannerConfig.createSpanner() : null;
+        metricsService.startRun();
+        try {
+            DatabaseClient client = spanner != null ? spanner.getDatabaseClient(spannerConfig.getDatabaseId()) : null;
+            for (Api api : apis) {
+                for (ReadConsistency mode : modes) {
+                    logger.info("Reading with {} in {} mode for {} seconds", api, mode, duration.toSeconds());
+                    Result result = runSlot(api, mode, client);
+                    results.add(result);
+                    logger.info(String.format("%s %s: %.1f ops/s, p99 %.2f ms, %d errors", api, mode,
+                        result.operations() / result.seconds(), Reports.millis(result.latency(), 99), result.errors()));
+                }
+            }
+        } finally {
+            metricsService.finishRun();
+            if (spanner != null) {
+                spanner.close();
+            }
+        }
+    }
+
+    private List<String> sampleIds() {
+        List<String> sample = new ArrayList<>();
+        try (Connection conn = spannerConfig.createConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM orders TABLESAMPLE RESERVOIR (" + SAMPLE_IDS + " ROWS)")) {
+            while (rs.next()) {
+                sample.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to sample order ids", e);
+        }
+        return sample;
+    }
+
+    private Result runSlot(Api api, ReadConsistency mode, DatabaseClient client) {
+        Recorder readLatency = new Recorder(3);
+        Recorder writeLatency = new Recorder(3);
+        AtomicLong operations = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        AtomicLong writeErrors = new AtomicLong();
+        String statementType = api + "_" + mode;
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < (writeRate > 0 ? writers : 0); w++) {
+            threads.add(new Thread(() -> write(deadline, writeLatency, writes, writeErrors), "writer-" + w));
+        }
+        for (int r = 0; r < readers; r++) {
+            Runnable reader = api == Api.JDBC
+                ? () -> readJdbc(mode, deadline, readLatency, operations, errors)
+                : () -> readNative(mode, client, deadline, readLatency, operations, errors);
+            threads.add(new Thread(reader, "reader-" + r));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while reading with " + statementType, e);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        Histogram latency = readLatency.getIntervalHistogram();
+        metricsService.incrementTotalOperations(operations.get() + errors.get());
+        metricsService.incrementSucceededOperations(operations.get());
+        return new Result(api, mode, operations.get(), errors.get(), seconds, latency,
+            writes.get(), writeErrors.get(), writeLatency.getIntervalHistogram());
+    }
+
+    private void readJdbc(ReadConsistency mode, long deadline, Recorder latency, AtomicLong operations, AtomicLong errors) {
+        boolean transaction = mode == ReadConsistency.READ_ONLY_TRANSACTION;
+        try (Connection conn = spannerConfig.createConnection();
+             PreparedStatement stmt = conn.prepareStatement(READ_SQL)) {
+            conn.setReadOnly(true);
+            if (transaction) {
+                conn.setAutoCommit(false);
+            } else {
+                try (Statement settings = conn.createStatement()) {
+                    settings.execute("SET READ_ONLY_STALENESS = '" + jdbcStaleness(mode) + "'");
+                }
+            }
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                try {
+                    for (int i = 0; i < (transaction ? transactionReads : 1); i++) {
+                        stmt.setString(1, randomId());
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                rs.getLong(3);
+                            }
+                        }
+                    }
+                    if (transaction) {
+                        conn.commit();
+                    }
+                    record(mode, Api.JDBC, latency, System.nanoTime() - start);
+                    operations.incrementAndGet();
+                } catch (SQLException e) {
+                    errors.incrementAndGet();
+                    metricsService.recordFailedBatch(ErrorCategory.classify(e).name(), 1);
+                    if (transaction) {
+                        rollback(conn);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("JDBC reader for {} failed: {}", mode, e.getMessage());
+        }
+    }
+
+    private void readNative(ReadConsistency mode, DatabaseClient client, long deadline, Recorder latency,
+                            AtomicLong operations, AtomicLong errors) {
+        TimestampBound bound = nativeBound(mode);
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            try {
+                if (mode == ReadConsistency.READ_ONLY_TRANSACTION) {
+                    try (ReadOnlyTransaction transaction = client.readOnlyTransaction(bound)) {
+                        for (int i = 0; i < transactionReads; i++) {
+                            readNativeRow(transaction.executeQuery(nativeRead()));
+                        }
+                    }
+                } else {
+                    readNativeRow(client.singleUse(bound).executeQuery(nativeRead()));
+                }
+                record(mode, Api.NATIVE, latency, System.nanoTime() - start);
+                operations.incrementAndGet();
+            } catch (SpannerException e) {
+                errors.incrementAndGet();
+                metricsService.recordFailedBatch(e.getErrorCode().name(), 1);
+            }
+        }
+    }
+
+    private com.google.cloud.spanner.Statement nativeRead() {
+        return com.google.cloud.spanner.Statement.newBuilder(NATIVE_READ_SQL).bind("id").to(randomId()).build();
+    }
+
+    private static void readNativeRow(com.google.cloud.spanner.ResultSet rs) {
+        try (rs) {
+            while (rs.next()) {
+                rs.getLong(2);
+            }
+        }
+    }
+
+    /**
+     * Updates random sampled rows at this writer's share of the write rate, measuring latency from the scheduled start.
+     */
+    private void write(long deadline, Recorder latency, AtomicLong writes, AtomicLong errors) {
+        long intervalNanos = (long) (1_000_000_000L * writers / writeRate);
+        try (Connection conn = spannerConfig.createConnection();
+             PreparedStatement stmt = conn.prepareStatement(WRITE_SQL)) {
+            long next = System.nanoTime();
+            while (next < deadline) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                stmt.setString(1, randomId());
+                try {
+                    stmt.executeUpdate();
+                    writes.incrementAndGet();
+                } catch (SQLException e) {
+                    errors.incrementAndGet();
+                }
+                latency.recordValue(Reports.micros((System.nanoTime() - next)));
+                next += intervalNanos;
+            }
+        } catch (SQLException e) {
+            logger.warn("Writer failed: {}", e.getMessage());
+        }
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            logger.debug("Rollback after failed read failed", e);
+        }
+    }
+
+    private void record(ReadConsistency mode, Api api, Recorder latency, long nanos) {
+        latency.recordValue(Reports.micros(nanos));
+        metricsService.getQueryTimer(api + "_" + mode).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private String randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private String jdbcStaleness(ReadConsistency mode) {
+        return switch (mode) {
+            case STRONG, READ_ONLY_TRANSACTION -> "STRONG";
+            case EXACT_STALENESS -> "EXACT_STALENESS " + staleness.toMillis() + "ms";
+            case MAX_STALENESS -> "MAX_STALENESS " + staleness.toMillis() + "ms";
+        };
+    }
+
+    private TimestampBound nativeBound(ReadConsistency mode) {
+        return switch (mode) {
+            case STRONG, READ_ONLY_TRANSACTION -> TimestampBound.strong();
+            case EXACT_STALENESS -> TimestampBound.ofExactStaleness(staleness.toMillis(), TimeUnit.MILLISECONDS);
+            case MAX_STALENESS -> TimestampBound.ofMaxStaleness(staleness.toMillis(), TimeUnit.MILLISECONDS);
+        };
+    }
+
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Read Consistency Report (%d readers, staleness %d ms, %d reads per read-only transaction, "
+            + "%.1f writes/s, %s)%n", readers, staleness.toMillis(), transactionReads, writeRate,
+            spannerConfig.getClientOptions().describe()));
+        report.append(String.format("%-8s %-22s %12s %20s %20s %12s %12s %10s %12s %14s%n",
+            "api", "mode", "ops/s", "p50 (ms)", "p99 (ms)", "p99.9 (ms)", "max (ms)", "errors", "writes/s", "write p99 (ms)"));
+        for (Result result : results) {
+            Result baseline = results.stream().filter(r -> r.api() == result.api()).findFirst().orElse(result);
+            boolean isBaseline = baseline == result;
+            report.append(String.format("%-8s %-22s %12.1f %20s %20s %12.2f %12.2f %10d %12.1f %14.2f%n",
+                result.api(), result.mode(), result.operations() / result.seconds(),
+                Reports.withDelta(Reports.millis(result.latency(), 50), Reports.millis(baseline.latency(), 50), isBaseline),
+                Reports.withDelta(Reports.millis(result.latency(), 99), Reports.millis(baseline.latency(), 99), isBaseline),
+                Reports.millis(result.latency(), 99.9), Reports.millis(result.latency(), 100), result.errors(),
+                result.writes() / result.seconds(), Reports.millis(result.writeLatency(), 99)));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package com.microbenchmark.benchmark;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency recording and formatting shared by the benchmark reports, and writing them out.
+ */
+public final class Reports {
+    private static final Logger logger = LoggerFactory.getLogger(Reports.class);
+    // Latencies are recorded in microseconds and clamped to this, so one stalled operation cannot resize a histogram
+    static final long MAX_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private Reports() {
+    }
+
+    /**
+     * @return The duration in microseconds to record in a latency histogram, between 1 and {@link #MAX_LATENCY_MICROS}
+     */
+    static long micros(long nanos) {
+        return Math.min(MAX_LATENCY_MICROS, Math.max(1, nanos / 1000));
+    }
+
+    /**
+     * @return The percentile of a histogram recorded in microseconds, in milliseconds, or NaN if it is empty
+     */
+    static double millis(Histogram histogram, double percentile) {
+        return histogram.getTotalCount() == 0 ? Double.NaN : histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * @return The value, followed by its difference from the baseline in percent unless it is the baseline
+     */
+    static String withDelta(double value, double baseline, boolean isBaseline) {
+        if (isBaseline || baseline <= 0 || Double.isNaN(value) || Double.isNaN(baseline)) {
+            return String.format("%.2f", value);
+        }
+        return String.format("%.2f (%+.1f%%)", value, (value - baseline) / baseline * 100);
+    }
+
+    /**
+     * Logs the report and, if a path is given, also writes it to that file.
+     * @param name What the report is about, e.g. "scan", for the log and error messages
+     */
+    public static void write(String name, String report, String path) {
+        logger.info("\n{}", report);
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+        try {
+            Files.writeString(Path.of(path), report);
+            logger.info("The {} report was written to {}", name, path);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write the " + name + " report to " + path, e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.microbenchmark.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Random;
+
+/**
+ * Binds generated users and orders, shared by the benchmarks that write them, so every workload writes
+ * the same columns with the same statuses.
+ */
+public final class Rows {
+    static final String[] USER_STATUSES = {"ACTIVE", "INACTIVE", "SUSPENDED"};
+    static final String[] ORDER_STATUSES = {"NEW", "PROCESSING", "COMPLETED", "CANCELLED"};
+
+    private Rows() {
+    }
+
+    static String userStatus(Random random) {
+        return USER_STATUSES[random.nextInt(USER_STATUSES.length)];
+    }
+
+    static String orderStatus(Random random) {
+        return ORDER_STATUSES[random.nextInt(ORDER_STATUSES.length)];
+    }
+
+    /**
+     * Binds (id, name, email, status, created_at, updated_at), created now.
+     */
+    static void bindUser(PreparedStatement stmt, String id, Random random) throws SQLException {
+        Timestamp now = Timestamp.from(Instant.now());
+        stmt.setString(1, id);
+        stmt.setString(2, "User " + random.nextInt(1_000_000));
+        stmt.setString(3, id + "@example.com");
+        stmt.setString(4, userStatus(random));
+        stmt.setTimestamp(5, now);
+        stmt.setTimestamp(6, now);
+    }
+
+    /**
+     * Binds (id, user_id, order_status, total_amount, items_count, created_at, updated_at).
+     */
+    static void bindOrder(PreparedStatement stmt, String id, String userId, Timestamp createdAt, Random random)
+            throws SQLException {
+        stmt.setString(1, id);
+        stmt.setString(2, userId);
+        stmt.setString(3, orderStatus(random));
+        stmt.setBigDecimal(4, BigDecimal.valueOf(random.nextInt(100_000), 2));
+        stmt.setLong(5, 1 + random.nextInt(10));
+        stmt.setTimestamp(6, createdAt);
+        stmt.setTimestamp(7, createdAt);
+    }
+}
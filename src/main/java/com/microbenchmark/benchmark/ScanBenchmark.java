@@ -0,0 +1,219 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.metrics.BatchPhase;
+import com.microbenchmark.metrics.MetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a large range of the orders table with each {@link ScanMode} and fetch size, processing every
+ * row as it arrives, and reports rows/s, time to the first row and the client's retained heap, so fetch
+ * sizes can be tuned for reporting jobs. The retained heap is the largest heap in use after any GC during
+ * the scan, including one forced after the last row while the result set is still open, so garbage the
+ * scan allocated and dropped does not count, only what it kept alive.
+ */
+public class ScanBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(ScanBenchmark.class);
+    private static final String COLUMNS = "id, user_id, order_status, total_amount, items_count, created_at";
+    private static final double MB = 1024 * 1024;
+    // Rows between checks of the heap left after the latest GC
+    private static final int RETAINED_SAMPLE_ROWS = 1000;
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP)
+        .toList();
+
+    private final DatabaseConfig databaseConfig;
+    private final MetricsService metricsService;
+    private final boolean spannerJdbc;
+    private final String table;
+    private final List<ScanMode> modes;
+    private final List<Integer> fetchSizes;
+    private final long limit;
+    private final int partitionParallelism;
+    private final List<ScanResult> results = new ArrayList<>();
+
+    private record ScanResult(ScanMode mode, int fetchSize, long rows, double seconds, double firstRowMillis,
+                              long baselineHeapBytes, long retainedHeapBytes, long gcCount, long gcMillis) {
+        double rowsPerSecond() {
+            return seconds > 0 ? rows / seconds : 0;
+        }
+    }
+
+    /**
+     * @param spannerJdbc Whether the database is Spanner through its JDBC driver, which always streams and can
+     *                    run partitioned queries; PostgreSQL and PGAdapter use the PostgreSQL driver
+     * @param fetchSizes Fetch sizes to try with CURSOR and PARTITIONED; BUFFERED runs once without one
+     * @param limit Rows to read, or 0 for the whole table; partitioned queries cannot be limited
+     * @param partitionParallelism Partitions read at the same time by PARTITIONED, or 0 for the driver's default
+     */
+    public ScanBenchmark(DatabaseConfig databaseConfig, MetricsService metricsService, boolean spannerJdbc, String table,
+                         List<ScanMode> modes, List<Integer> fetchSizes, long limit, int partitionParallelism) {
+        if (modes.contains(ScanMode.PARTITIONED) && !spannerJdbc) {
+            throw new IllegalArgumentException("PARTITIONED scans are only supported with the spanner profile");
+        }
+        if (fetchSizes.isEmpty() || fetchSizes.stream().anyMatch(size -> size < 1)) {
+            throw new IllegalArgumentException("At least one fetch size is required, and fetch sizes must be positive");
+        }
+        this.databaseConfig = databaseConfig;
+        this.metricsService = metricsService;
+        this.spannerJdbc = spannerJdbc;
+        this.table = table;
+        this.modes = modes;
+        this.fetchSizes = fetchSizes;
+        this.limit = limit;
+        this.partitionParallelism = partitionParallelism;
+    }
+
+    public void run() {
+        metricsService.startRun();
+        try {
+            for (ScanMode mode : modes) {
+                for (int fetchSize : mode == ScanMode.BUFFERED ? List.of(0) : fetchSizes) {
+                    ScanResult result = scan(mode, fetchSize);
+                    results.add(result);
+                    logger.info(String.format("%s fetch size %d: %d rows in %.2f s, first row after %.1f ms, retained heap %.1f MB",
+                        mode, fetchSize, result.rows(), result.seconds(), result.firstRowMillis(), result.retainedHeapBytes() / MB));
+                    if (result.rows() == 0) {
+                        logger.warn("{} is empty; populate it (e.g. with the bulk profile) before scanning", table);
+                    }
+                }
+            }
+        } finally {
+            metricsService.finishRun();
+        }
+    }
+
+    private ScanResult scan(ScanMode mode, int fetchSize) {
+        String sql = "SELECT " + COLUMNS + " FROM " + table;
+        if (limit > 0 && mode != ScanMode.PARTITIONED) {
+            sql += " LIMIT " + limit;
+        }
+        String statementType = "SCAN_" + mode;
+        try (Connection conn = databaseConfig.createConnection();
+             Statement stmt = conn.createStatement()) {
+            if (spannerJdbc) {
+                // A single-use read-only transaction, which streams however the result is read
+                conn.setReadOnly(true);
+            } else {
+                conn.setAutoCommit(mode == ScanMode.BUFFERED);
+            }
+            if (mode == ScanMode.PARTITIONED) {
+                if (partitionParallelism > 0) {
+                    stmt.execute("SET MAX_PARTITIONED_PARALLELISM = " + partitionParallelism);
+                }
+                sql = "RUN PARTITIONED QUERY " + sql;
+            }
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+
+            long baselineHeap = collectAndMeasureHeap();
+            long retainedHeap = baselineHeap;
+            long gcCountBefore = gcCount();
+            long gcMillisBefore = gcMillis();
+            long rows = 0;
+            long items = 0;
+            long firstRowNanos = -1;
+            long start = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    if (firstRowNanos < 0) {
+                        firstRowNanos = System.nanoTime() - start;
+                    }
+                    // Touch every column, as a reporting job would, without keeping anything
+                    for (int column = 1; column <= 6; column++) {
+                        rs.getObject(column);
+                    }
+                    items += rs.getLong(5);
+                    rows++;
+                    if (rows % RETAINED_SAMPLE_ROWS == 0) {
+                        retainedHeap = Math.max(retainedHeap, heapAfterLastGc());
+                    }
+                }
+                // Whatever the driver still buffers for the open result set is retained by the scan
+                long gcStart = System.nanoTime();
+                retainedHeap = Math.max(retainedHeap, collectAndMeasureHeap());
+                start += System.nanoTime() - gcStart;
+            }
+            long nanos = System.nanoTime() - start;
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+            logger.debug("{} read {} items", statementType, items);
+
+            metricsService.recordPhase(BatchPhase.EXECUTE, statementType, nanos);
+            if (firstRowNanos >= 0) {
+                metricsService.getQueryTimer(statementType + "_FIRST_ROW").record(firstRowNanos, TimeUnit.NANOSECONDS);
+            }
+            metricsService.incrementTotalOperations(rows);
+            metricsService.incrementSucceededOperations(rows);
+            return new ScanResult(mode, fetchSize, rows, nanos / 1_000_000_000.0,
+                firstRowNanos < 0 ? Double.NaN : firstRowNanos / 1_000_000.0,
+                baselineHeap, retainedHeap, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+        } catch (SQLException e) {
+            metricsService.recordFailedBatch(ErrorCategory.classify(e).name(), 0);
+            throw new RuntimeException(mode + " scan with fetch size " + fetchSize + " failed", e);
+        }
+    }
+
+    /**
+     * Runs a GC, which the JVM does synchronously unless told otherwise, and measures what survived it.
+     */
+    private static long collectAndMeasureHeap() {
+        System.gc();
+        return heapAfterLastGc();
+    }
+
+    /**
+     * @return The heap in use right after the latest GC, which leaves out garbage that GC collected
+     */
+    private static long heapAfterLastGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : HEAP_POOLS) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+            .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(count -> count > 0).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+            .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(time -> time > 0).sum();
+    }
+
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Scan Report (%s%s)%n", table, limit > 0 ? ", limit " + limit : ""));
+        report.append(String.format("%-12s %10s %12s %10s %14s %16s %16s %16s %8s %10s%n",
+            "mode", "fetch size", "rows", "seconds", "rows/s", "first row (ms)", "heap base (MB)", "retained (MB)",
+            "GCs", "GC (ms)"));
+        for (ScanResult result : results) {
+            report.append(String.format("%-12s %10s %12d %10.2f %14.0f %16.1f %16.1f %16.1f %8d %10d%n",
+                result.mode(), result.fetchSize() == 0 ? "-" : String.valueOf(result.fetchSize()), result.rows(),
+                result.seconds(), result.rowsPerSecond(), result.firstRowMillis(), result.baselineHeapBytes() / MB,
+                result.retainedHeapBytes() / MB, result.gcCount(), result.gcMillis()));
+        }
+        return report.toString();
+    }
+}
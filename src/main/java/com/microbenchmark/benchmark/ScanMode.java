@@ -0,0 +1,10 @@
+package com.microbenchmark.benchmark;
+
+/**
+ * Ways to read a large result set.
+ */
+public enum ScanMode {
+    BUFFERED,     // autocommit without a fetch size: the PostgreSQL driver reads the whole result before returning
+    CURSOR,       // a fetch size per round trip; PostgreSQL only uses a cursor inside a transaction, so autocommit is off
+    PARTITIONED   // Spanner JDBC only: RUN PARTITIONED QUERY reads the partitions in parallel into one result set
+}
@@ -0,0 +1,98 @@
+package com.microbenchmark.benchmark;
+
+import java.time.Duration;
+
+/**
+ * One stage of a load scenario: a workload run for a fixed time by a number of workers, at a target
+ * rate that is constant or changes linearly from the start rate to the end rate. A spike is a short
+ * phase at a much higher rate than its neighbours.
+ */
+public class ScenarioPhase {
+    private final String name;
+    private final Duration duration;
+    private final double startRate;
+    private final double endRate;
+    private final int concurrency;
+    private final ComplexQueryProvider.OperationType workload;
+    private final int batchSize;
+
+    /**
+     * @param startRate Target batches per second at the start of the phase, across all workers
+     * @param endRate Target batches per second at the end of the phase; both rates 0 means as fast as the workers can go
+     * @param concurrency Workers, each with its own connection
+     * @param batchSize Operations per batch, as in {@link com.microbenchmark.config.BenchmarkProfile}
+     */
+    public ScenarioPhase(String name, Duration duration, double startRate, double endRate, int concurrency,
+                         ComplexQueryProvider.OperationType workload, int batchSize) {
+        if (duration.isZero() || duration.isNegative()) {
+            throw new IllegalArgumentException("Phase " + name + " needs a positive duration");
+        }
+        if (startRate < 0 || endRate < 0) {
+            throw new IllegalArgumentException("Phase " + name + " rates must not be negative");
+        }
+        if (concurrency < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Phase " + name + " needs at least one worker and one operation per batch");
+        }
+        this.name = name;
+        this.duration = duration;
+        this.startRate = startRate;
+        this.endRate = endRate;
+        this.concurrency = concurrency;
+        this.workload = workload;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return Whether the phase has a target rate, rather than running closed-loop
+     */
+    public boolean isPaced() {
+        return startRate > 0 || endRate > 0;
+    }
+
+    /**
+     * The scheduled start of batch {@code index} (0-based), counted across all workers of a paced phase. The rate
+     * is linear in time, so the batches due by time t are {@code a*t + b*t*t/2} and this solves that for t.
+     * @return Seconds from the start of the phase, or infinity if the rate falls to 0 before the batch is due
+     */
+    public double scheduledStart(long index) {
+        if (index == 0) {
+            return 0;
+        }
+        double a = startRate;
+        double b = (endRate - startRate) / (duration.toNanos() / 1_000_000_000.0);
+        double discriminant = a * a + 2 * b * index;
+        if (discriminant < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // The same root as (-a + sqrt(d)) / b, without cancellation when b is close to 0
+        return 2 * index / (a + Math.sqrt(discriminant));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public double getStartRate() {
+        return startRate;
+    }
+
+    public double getEndRate() {
+        return endRate;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public ComplexQueryProvider.OperationType getWorkload() {
+        return workload;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
@@ -0,0 +1,320 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.config.MonitoringConfig;
+import com.microbenchmark.metrics.BatchPhase;
+import com.microbenchmark.metrics.MetricsService;
+import io.micrometer.core.instrument.Tags;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a load scenario: an ordered list of {@link ScenarioPhase}s, each with its own workers, workload
+ * and target rate, back to back against one database. Each phase records into its own MetricsService,
+ * tagged with the phase name. Paced phases schedule every batch up front and measure latency from the
+ * scheduled start, so a backlog built up during a spike shows as latency within the spike itself: a phase
+ * runs every batch scheduled inside it, however late, and only then does the next phase start, with no
+ * client backlog. Latency in the phases after a spike therefore only shows what the spike left behind on
+ * the server. The report includes how long each phase overran its duration draining its backlog, and how
+ * long it took to settle, i.e. for the per-second P99 to come back to the phase's steady state.
+ * The workload tables are emptied before the first phase, so the seeded keys never collide with an earlier run's.
+ * Uses JDBC in autocommit mode; failed batches are counted but not retried, as a retry would shift the schedule.
+ */
+public class ScenarioRunner {
+    private static final Logger logger = LoggerFactory.getLogger(ScenarioRunner.class);
+    // A phase has settled once this many consecutive seconds have a P99 within the tolerance of its steady state
+    private static final int SETTLE_SECONDS = 3;
+
+    private final DatabaseConfig databaseConfig;
+    private final String databaseType;
+    private final MonitoringConfig monitoringConfig;
+    private final String projectId;
+    private final List<ScenarioPhase> phases;
+    private final WorkloadFactory workloadFactory;
+    private final long seed;
+    private final double settleTolerance;
+    private final List<String> resetTables;
+    private final List<PhaseResult> results = new ArrayList<>();
+
+    /**
+     * Creates the query provider for one worker of a phase; each worker gets its own seed.
+     */
+    public interface WorkloadFactory {
+        QueryProvider create(ScenarioPhase phase, long seed);
+    }
+
+    public record PhaseResult(ScenarioPhase phase, long batches, long operations, long failedOperations,
+                              double seconds, Histogram latency, double settleSeconds) {
+        double batchesPerSecond() {
+            return seconds > 0 ? batches / seconds : 0;
+        }
+
+        /**
+         * @return Seconds the phase ran past its duration, running batches scheduled inside it that were late
+         */
+        double drainSeconds() {
+            return Math.max(0, seconds - phase.getDuration().toMillis() / 1000.0);
+        }
+    }
+
+    /**
+     * @param settleTolerance How far above its steady-state P99 a second's P99 may be for the phase to count as settled,
+     *                        e.g. 0.2 for 20%
+     * @param resetTables Tables emptied before the first phase, referencing tables first, or none to keep the data
+     */
+    public ScenarioRunner(DatabaseConfig databaseConfig, String databaseType, MonitoringConfig monitoringConfig,
+                          String projectId, List<ScenarioPhase> phases, WorkloadFactory workloadFactory,
+                          long seed, double settleTolerance, List<String> resetTables) {
+        if (phases.isEmpty()) {
+            throw new IllegalArgumentException("A scenario needs at least one phase");
+        }
+        this.databaseConfig = databaseConfig;
+        this.databaseType = databaseType;
+        this.monitoringConfig = monitoringConfig;
+        this.projectId = projectId;
+        this.phases = phases;
+        this.workloadFactory = workloadFactory;
+        this.seed = seed;
+        this.settleTolerance = settleTolerance;
+        this.resetTables = resetTables;
+    }
+
+    public List<PhaseResult> run() {
+        if (!resetTables.isEmpty()) {
+            logger.info("Emptying {}", resetTables);
+            try (Connection conn = databaseConfig.createConnection()) {
+                conn.setAutoCommit(true);
+                Tables.deleteAll(conn, resetTables);
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to empty the workload tables", e);
+            }
+        }
+        for (int i = 0; i < phases.size(); i++) {
+            ScenarioPhase phase = phases.get(i);
+            logger.info(String.format("Phase %s: %s for %d seconds with %d workers at %s",
+                phase.getName(), phase.getWorkload(), phase.getDuration().toSeconds(), phase.getConcurrency(),
+                formatRate(phase)));
+            MetricsService metricsService = new MetricsService(monitoringConfig, databaseType, projectId,
+                Tags.of("scenario_phase", phase.getName()));
+            // Workers of phase i use seeds from seed + i * 2^20, so no two workers share a seed
+            PhaseResult result = runPhase(phase, seed + ((long) i << 20), metricsService);
+            results.add(result);
+            metricsService.printMetrics();
+            metricsService.close();
+            logger.info(String.format("Phase %s: %.1f batches/s, p99 %.2f ms, drained for %.1f s, settled after %s",
+                phase.getName(), result.batchesPerSecond(), Reports.millis(result.latency(), 99), result.drainSeconds(),
+                formatSettle(result)));
+        }
+        return results;
+    }
+
+    private PhaseResult runPhase(ScenarioPhase phase, long phaseSeed, MetricsService metricsService) {
+        Recorder recorder = new Recorder(3);
+        Histogram latency = new Histogram(3);
+        List<Double> secondP99s = new ArrayList<>();
+        AtomicLong nextBatch = new AtomicLong();
+        CountDownLatch connected = new CountDownLatch(phase.getConcurrency());
+        CountDownLatch start = new CountDownLatch(1);
+        long[] phaseStart = new long[1];
+        ExecutorService workers = Executors.newFixedThreadPool(phase.getConcurrency());
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        Runnable tick = () -> {
+            synchronized (latency) {
+                Histogram second = recorder.getIntervalHistogram();
+                latency.add(second);
+                secondP99s.add(second.getTotalCount() == 0 ? Double.NaN : second.getValueAtPercentile(99) / 1000.0);
+            }
+        };
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < phase.getConcurrency(); w++) {
+                QueryProvider provider = workloadFactory.create(phase, phaseSeed + w);
+                futures.add(workers.submit(() -> {
+                    runWorker(phase, provider, metricsService, recorder, nextBatch, connected, start, phaseStart);
+                    return null;
+                }));
+            }
+            // Connections are opened before the phase starts, so connecting is not part of its duration
+            connected.await();
+            metricsService.startRun();
+            phaseStart[0] = System.nanoTime();
+            start.countDown();
+            ticker.scheduleAtFixedRate(tick, 1, 1, TimeUnit.SECONDS);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Phase " + phase.getName() + " failed", e);
+        } finally {
+            start.countDown();
+            ticker.shutdownNow();
+            workers.shutdownNow();
+            metricsService.finishRun();
+        }
+        tick.run();
+        double[] p99s = secondP99s.stream().mapToDouble(Double::doubleValue).toArray();
+        return new PhaseResult(phase, latency.getTotalCount(), metricsService.getTotalOperations(),
+            metricsService.getFailedOperations(), metricsService.getWallTimeSeconds(), latency,
+            settleSeconds(p99s, settleTolerance));
+    }
+
+    private void runWorker(ScenarioPhase phase, QueryProvider provider, MetricsService metricsService, Recorder recorder,
+                           AtomicLong nextBatch, CountDownLatch connected, CountDownLatch start, long[] phaseStart)
+        throws SQLException, InterruptedException {
+        Connection conn;
+        try {
+            conn = databaseConfig.createConnection();
+        } finally {
+            connected.countDown();
+        }
+        provider.setPhaseListener(metricsService::recordPhase);
+        String statementType = provider.getStatementType();
+        PreparedStatement stmt = conn.prepareStatement(provider.getSql());
+        try {
+            start.await();
+            long durationNanos = phase.getDuration().toNanos();
+            long operation = 0;
+            while (true) {
+                long scheduled;
+                if (phase.isPaced()) {
+                    double offset = phase.scheduledStart(nextBatch.getAndIncrement());
+                    if (offset * 1_000_000_000L >= durationNanos) {
+                        return;
+                    }
+                    scheduled = phaseStart[0] + (long) (offset * 1_000_000_000L);
+                    for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                } else {
+                    scheduled = System.nanoTime();
+                    if (scheduled - phaseStart[0] >= durationNanos) {
+                        return;
+                    }
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+
+                int rows = phase.getBatchSize();
+                try {
+                    long bindStart = System.nanoTime();
+                    for (int i = 0; i < phase.getBatchSize(); i++) {
+                        provider.setParameters(stmt, operation++);
+                    }
+                    metricsService.recordPhase(BatchPhase.BIND, statementType, System.nanoTime() - bindStart);
+                    if (provider.getPendingRowCount() >= 0) {
+                        rows = provider.getPendingRowCount();
+                    }
+                    long executeStart = System.nanoTime();
+                    int[] counts = provider.executeBatch(stmt);
+                    long end = System.nanoTime();
+                    metricsService.recordPhase(BatchPhase.EXECUTE, statementType, end - executeStart);
+                    metricsService.recordBatchExecution(counts.length, Duration.ofNanos(end - executeStart));
+                    metricsService.incrementTotalOperations(counts.length);
+                    metricsService.incrementSucceededOperations(BatchStatementExecutor.succeededRows(counts));
+                    recorder.recordValue(Reports.micros((end - scheduled)));
+                } catch (SQLException e) {
+                    ErrorCategory category = ErrorCategory.classify(e);
+                    logger.debug("Phase {} batch failed with {}: {}", phase.getName(), category, e.getMessage());
+                    provider.clearBatch(stmt);
+                    metricsService.incrementTotalOperations(rows);
+                    metricsService.recordFailedBatch(category.name(), rows);
+                    if (conn.isClosed() || !conn.isValid(5)) {
+                        logger.warn("Phase {} lost a connection, reconnecting", phase.getName());
+                        closeQuietly(conn);
+                        conn = databaseConfig.createConnection();
+                        stmt = conn.prepareStatement(provider.getSql());
+                    }
+                }
+            }
+        } finally {
+            closeQuietly(conn);
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            logger.debug("Closing connection failed", e);
+        }
+    }
+
+    /**
+     * The steady state is the median per-second P99 of the second half of the phase. The phase has settled at the
+     * first second that starts {@link #SETTLE_SECONDS} consecutive seconds within the tolerance of it; a second
+     * without any completed batch does not count as settled.
+     * @param secondP99s P99 latency of each second of the phase, NaN for seconds without batches
+     * @return Seconds from the start of the phase until it settled, or NaN if it never did
+     */
+    static double settleSeconds(double[] secondP99s, double tolerance) {
+        double[] steady = Arrays.stream(secondP99s, secondP99s.length / 2, secondP99s.length)
+            .filter(p99 -> !Double.isNaN(p99))
+            .sorted()
+            .toArray();
+        if (steady.length == 0) {
+            return Double.NaN;
+        }
+        double threshold = steady[steady.length / 2] * (1 + tolerance);
+        int streak = 0;
+        for (int second = 0; second < secondP99s.length; second++) {
+            streak = secondP99s[second] <= threshold ? streak + 1 : 0;
+            if (streak == SETTLE_SECONDS || (streak > 0 && second == secondP99s.length - 1)) {
+                return second - streak + 1;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static String formatRate(ScenarioPhase phase) {
+        if (!phase.isPaced()) {
+            return "unthrottled";
+        }
+        if (phase.getStartRate() == phase.getEndRate()) {
+            return String.format("%.1f batches/s", phase.getStartRate());
+        }
+        return String.format("%.1f -> %.1f batches/s", phase.getStartRate(), phase.getEndRate());
+    }
+
+    private static String formatSettle(PhaseResult result) {
+        return Double.isNaN(result.settleSeconds()) ? "-" : String.format("%.0f s", result.settleSeconds());
+    }
+
+    /**
+     * @return A plain-text table with one row per phase, in order
+     */
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Scenario Report (%s, seed %d)%n", databaseType, seed));
+        report.append(String.format("%-16s %-14s %8s %8s %9s %24s %14s %12s %10s %10s %10s %12s %8s%n",
+            "phase", "workload", "workers", "seconds", "drain (s)", "target", "batches/s", "operations", "p50 (ms)",
+            "p99 (ms)", "max (ms)", "failed ops", "settled"));
+        for (PhaseResult result : results) {
+            ScenarioPhase phase = result.phase();
+            report.append(String.format("%-16s %-14s %8d %8.0f %9.1f %24s %14.1f %12d %10.2f %10.2f %10.2f %12d %8s%n",
+                phase.getName(), phase.getWorkload(), phase.getConcurrency(), result.seconds(), result.drainSeconds(),
+                formatRate(phase),
+                result.batchesPerSecond(), result.operations(), Reports.millis(result.latency(), 50), Reports.millis(result.latency(), 99),
+                Reports.millis(result.latency(), 100), result.failedOperations(), formatSettle(result)));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,194 @@
+package com.microbenchmark.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The tables and indexes of a schema file such as schema.sql, with the indexes by name so that a
+ * variant of the schema can create only some of them.
+ */
+public class SchemaDefinition {
+    private static final Pattern CREATE_TABLE = Pattern.compile("(?is)^CREATE\\s+TABLE\\s+(\\w+)");
+    private static final Pattern CREATE_INDEX = Pattern.compile("(?is)^CREATE\\s+(?:UNIQUE\\s+)?(?:NULL_FILTERED\\s+)?INDEX\\s+(\\w+)\\s+ON\\s+(\\w+)");
+    private static final Pattern INDEX_COLUMNS = Pattern.compile("(?is)\\sON\\s+\\w+\\s*\\(([^)]*)\\)");
+    private static final Pattern STORING = Pattern.compile("(?is)\\sSTORING\\s*\\(([^)]*)\\)");
+    private static final Pattern PRIMARY_KEY = Pattern.compile("(?is)^PRIMARY\\s+KEY\\s*\\(([^)]*)\\)");
+
+    private final Map<String, String> tables = new LinkedHashMap<>();
+    private final Map<String, String> indexes = new LinkedHashMap<>();
+    private final Map<String, String> indexedTables = new LinkedHashMap<>();
+
+    /**
+     * @param resource A schema file on the classpath, e.g. schema.sql
+     */
+    public static SchemaDefinition load(String resource) {
+        try (InputStream input = SchemaDefinition.class.getClassLoader().getResourceAsStream(resource)) {
+            if (input == null) {
+                throw new IllegalArgumentException("Schema file not found: " + resource);
+            }
+            return parse(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read schema file " + resource, e);
+        }
+    }
+
+    static SchemaDefinition parse(String sql) {
+        SchemaDefinition schema = new SchemaDefinition();
+        for (String statement : sql.replaceAll("--[^\n]*", "").split(";")) {
+            statement = statement.trim();
+            if (statement.isEmpty()) {
+                continue;
+            }
+            Matcher table = CREATE_TABLE.matcher(statement);
+            Matcher index = CREATE_INDEX.matcher(statement);
+            if (table.find()) {
+                schema.tables.put(table.group(1), statement);
+            } else if (index.find()) {
+                schema.indexes.put(index.group(1), statement);
+                schema.indexedTables.put(index.group(1), index.group(2));
+            } else {
+                throw new IllegalArgumentException("Only CREATE TABLE and CREATE INDEX are supported: " + statement);
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * @return CREATE TABLE statements by table name, in the order of the file
+     */
+    public Map<String, String> getTables() {
+        return tables;
+    }
+
+    /**
+     * @return CREATE INDEX statements by index name, in the order of the file
+     */
+    public Map<String, String> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * @return The table an index is defined on
+     */
+    public String getIndexedTable(String indexName) {
+        return indexedTables.get(indexName);
+    }
+
+    public List<String> getIndexNames() {
+        return new ArrayList<>(indexes.keySet());
+    }
+
+    /**
+     * @return The column types of a table by column name, in the order of the CREATE TABLE statement,
+     *         or an empty map for an unknown table
+     */
+    public Map<String, String> getColumns(String table) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        String ddl = tables.get(table);
+        if (ddl == null) {
+            return columns;
+        }
+        for (String definition : columnDefinitions(ddl)) {
+            String[] words = definition.split("\\s+");
+            if (!isConstraint(words[0])) {
+                columns.put(words[0], words.length > 1 ? words[1].toUpperCase() : "");
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @return The primary key columns of a table, declared inline as in PostgreSQL or after the columns as in Spanner
+     */
+    public List<String> getPrimaryKey(String table) {
+        String ddl = tables.get(table);
+        if (ddl == null) {
+            return List.of();
+        }
+        for (String definition : columnDefinitions(ddl)) {
+            if (!isConstraint(definition.split("\\s+")[0]) && definition.toUpperCase().contains("PRIMARY KEY")) {
+                return List.of(definition.split("\\s+")[0]);
+            }
+            Matcher key = PRIMARY_KEY.matcher(definition);
+            if (key.find()) {
+                return columnList(key.group(1));
+            }
+        }
+        Matcher key = PRIMARY_KEY.matcher(ddl.substring(closingParenthesis(ddl) + 1).trim());
+        return key.find() ? columnList(key.group(1)) : List.of();
+    }
+
+    /**
+     * @return The columns of an index's entries besides the table's key: its key columns and any STORING columns
+     */
+    public List<String> getIndexColumns(String indexName) {
+        String ddl = indexes.get(indexName);
+        if (ddl == null) {
+            return List.of();
+        }
+        List<String> columns = new ArrayList<>();
+        Matcher key = INDEX_COLUMNS.matcher(ddl);
+        if (key.find()) {
+            columns.addAll(columnList(key.group(1)));
+        }
+        Matcher storing = STORING.matcher(ddl);
+        if (storing.find()) {
+            columns.addAll(columnList(storing.group(1)));
+        }
+        return columns;
+    }
+
+    private static boolean isConstraint(String word) {
+        return List.of("CONSTRAINT", "PRIMARY", "FOREIGN", "UNIQUE", "CHECK").contains(word.toUpperCase());
+    }
+
+    private static List<String> columnList(String columns) {
+        List<String> names = new ArrayList<>();
+        for (String column : columns.split(",")) {
+            // Drop ASC or DESC
+            names.add(column.trim().split("\\s+")[0]);
+        }
+        return names;
+    }
+
+    /**
+     * Splits the parenthesized part of a CREATE TABLE statement on the commas between definitions, but not
+     * on those inside types such as NUMERIC(10,2).
+     */
+    private static List<String> columnDefinitions(String ddl) {
+        List<String> definitions = new ArrayList<>();
+        int start = ddl.indexOf('(') + 1;
+        int end = closingParenthesis(ddl);
+        int depth = 0;
+        for (int i = start; i < end; i++) {
+            char c = ddl.charAt(i);
+            depth += c == '(' ? 1 : c == ')' ? -1 : 0;
+            if (c == ',' && depth == 0) {
+                definitions.add(ddl.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        definitions.add(ddl.substring(start, end).trim());
+        definitions.removeIf(String::isEmpty);
+        return definitions;
+    }
+
+    private static int closingParenthesis(String ddl) {
+        int depth = 0;
+        for (int i = ddl.indexOf('('); i < ddl.length(); i++) {
+            char c = ddl.charAt(i);
+            depth += c == '(' ? 1 : c == ')' ? -1 : 0;
+            if (depth == 0) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unbalanced parentheses in " + ddl);
+    }
+}
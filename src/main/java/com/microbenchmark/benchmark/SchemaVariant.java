@@ -0,0 +1,24 @@
+package com.microbenchmark.benchmark;
+
+/**
+ * How ids and amounts are stored, and so how they are bound. The compact variants store ids as 16 binary
+ * bytes and amounts as whole cents, which avoids converting every value to and from text.
+ */
+public enum SchemaVariant {
+    TEXT,           // ids as 36 character strings, amounts as NUMERIC from a double (schema.sql, spanner-schema.sql)
+    COMPACT_UUID,   // ids as native uuid, amounts as BIGINT cents (schema-compact.sql)
+    COMPACT_BYTES;  // ids as BYTES(16) or bytea, amounts as INT64 cents (spanner-schema-compact.sql)
+
+    /**
+     * @param variant  The schema.variant setting, text or compact
+     * @param database The database profile; only PostgreSQL has a uuid type, so Spanner stores compact ids as bytes
+     */
+    public static SchemaVariant forDatabase(String variant, String database) {
+        return switch (variant.trim().toLowerCase()) {
+            case "text" -> TEXT;
+            case "compact" -> database.equals("postgres") || database.equals("null") ? COMPACT_UUID : COMPACT_BYTES;
+            default -> throw new IllegalArgumentException(
+                "Invalid schema.variant: " + variant + ". Valid variants are: text, compact");
+        };
+    }
+}
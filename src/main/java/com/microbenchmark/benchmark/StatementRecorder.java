@@ -0,0 +1,153 @@
+package com.microbenchmark.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Captures the rows a {@link QueryProvider} binds through JDBC without talking to a database,
+ * so that the same workloads can be replayed by executors that do not use JDBC.
+ * Only the parameter setters, addBatch/clearBatch/executeBatch and prepareStatement are supported.
+ */
+public class StatementRecorder {
+    private final List<RecordedStatement> statements = new ArrayList<>();
+    private final Map<String, RecordedStatement> preparedBySql = new LinkedHashMap<>();
+    private final Connection connection;
+
+    public StatementRecorder() {
+        this.connection = (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            this::invokeConnection);
+    }
+
+    /**
+     * Returns a recording statement whose SQL is only resolved once a row has been added to it,
+     * so providers that never bind to their primary statement (e.g. MIXED) still work.
+     */
+    public PreparedStatement prepare(Supplier<String> sql) {
+        return new RecordedStatement(sql).proxy;
+    }
+
+    /**
+     * @return The recorded statements in first-use order, keyed by SQL; only statements with rows are included
+     */
+    public Map<String, List<Object[]>> drain() {
+        Map<String, List<Object[]>> result = new LinkedHashMap<>();
+        for (RecordedStatement statement : statements) {
+            if (!statement.rows.isEmpty()) {
+                result.computeIfAbsent(statement.sql(), sql -> new ArrayList<>()).addAll(statement.rows);
+                statement.rows.clear();
+            }
+            statement.pendingRows = 0;
+        }
+        return result;
+    }
+
+    private Object invokeConnection(Object proxy, Method method, Object[] args) throws Throwable {
+        return switch (method.getName()) {
+            case "prepareStatement" -> {
+                String sql = (String) args[0];
+                yield preparedBySql.computeIfAbsent(sql, s -> new RecordedStatement(() -> s)).proxy;
+            }
+            case "close" -> null;
+            case "isClosed" -> false;
+            case "getAutoCommit" -> true;
+            case "isWrapperFor" -> false;
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> "StatementRecorder connection";
+            default -> throw new SQLFeatureNotSupportedException("Not supported while recording: " + method.getName());
+        };
+    }
+
+    /**
+     * A placeholder for a parameter bound with setNull, carrying the java.sql.Types code.
+     */
+    public record NullValue(int sqlType) {
+    }
+
+    private class RecordedStatement implements InvocationHandler {
+        private final Supplier<String> sqlSupplier;
+        private final List<Object[]> rows = new ArrayList<>();
+        private final PreparedStatement proxy;
+        private Object[] current = new Object[0];
+        private int pendingRows;
+        private String sql;
+
+        RecordedStatement(Supplier<String> sqlSupplier) {
+            this.sqlSupplier = sqlSupplier;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class},
+                this);
+            statements.add(this);
+        }
+
+        String sql() {
+            if (sql == null) {
+                sql = sqlSupplier.get();
+            }
+            return sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                Object value = name.equals("setNull") ? new NullValue((Integer) args[1]) : args[1];
+                bind(index, value);
+                return null;
+            }
+            return switch (name) {
+                case "addBatch" -> {
+                    sql();
+                    // JDBC keeps parameter values after addBatch, so record a copy
+                    rows.add(current.clone());
+                    pendingRows++;
+                    yield null;
+                }
+                case "clearBatch" -> {
+                    rows.subList(rows.size() - pendingRows, rows.size()).clear();
+                    pendingRows = 0;
+                    yield null;
+                }
+                case "executeBatch" -> {
+                    // Rows stay recorded until drained; report them as succeeded without a count
+                    int[] counts = new int[pendingRows];
+                    Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                    pendingRows = 0;
+                    yield counts;
+                }
+                case "clearParameters" -> {
+                    Arrays.fill(current, null);
+                    yield null;
+                }
+                case "getConnection" -> connection;
+                case "close" -> null;
+                case "isClosed" -> false;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "Recorded statement: " + sql;
+                default -> throw new SQLFeatureNotSupportedException("Not supported while recording: " + name);
+            };
+        }
+
+        private void bind(int index, Object value) {
+            if (index > current.length) {
+                current = Arrays.copyOf(current, index);
+            }
+            current[index - 1] = value;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.microbenchmark.benchmark;
+
+import com.google.cloud.spanner.jdbc.CloudSpannerJdbcConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Resets the tables a benchmark writes to, so a run starts from the same state whatever ran before it.
+ */
+public final class Tables {
+    private Tables() {
+    }
+
+    /**
+     * Deletes every row of the tables: with partitioned DML on the Spanner JDBC driver, which has no TRUNCATE,
+     * and with TRUNCATE otherwise, which pgAdapter also runs as a partitioned delete.
+     * @param tables Tables in an order that deletes referencing rows first
+     */
+    public static void deleteAll(Connection conn, List<String> tables) throws SQLException {
+        if (tables.isEmpty()) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            if (conn.isWrapperFor(CloudSpannerJdbcConnection.class)) {
+                stmt.execute("SET AUTOCOMMIT_DML_MODE = 'PARTITIONED_NON_ATOMIC'");
+                for (String table : tables) {
+                    stmt.executeLargeUpdate("DELETE FROM " + table + " WHERE TRUE");
+                }
+                stmt.execute("SET AUTOCOMMIT_DML_MODE = 'TRANSACTIONAL'");
+            } else {
+                stmt.execute("TRUNCATE " + String.join(", ", tables));
+            }
+        }
+    }
+}
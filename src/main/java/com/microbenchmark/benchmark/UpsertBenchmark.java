@@ -0,0 +1,233 @@
+package com.microbenchmark.benchmark;
+
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.jdbc.CloudSpannerJdbcConnection;
+import com.microbenchmark.config.DatabaseConfig;
+import com.microbenchmark.keys.KeyGenerator;
+import com.microbenchmark.keys.KeyStrategy;
+import com.microbenchmark.metrics.MetricsService;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Upserts users, for each {@link UpsertMode} and conflict ratio, to show how the share of rows that
+ * already exist changes throughput. The benchmark first inserts its own set of users; a conflicting upsert
+ * rewrites one of them and any other upsert inserts a new user. Within a batch no user is upserted twice,
+ * as PostgreSQL refuses to update a row twice in one statement once the driver rewrites the batch.
+ * User ids come from a random generator that is not seeded, as users of earlier runs are still in the table;
+ * the seed only fixes the values, the conflicts and their order.
+ * Supports the postgres profile with schema.sql and the spanner profile with spanner-schema.sql.
+ * On PostgreSQL a conflict keeps created_at; Spanner's INSERT OR UPDATE and insertOrUpdate write every column.
+ */
+public class UpsertBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(UpsertBenchmark.class);
+    private static final String COLUMNS = "id, name, email, status, created_at, updated_at";
+
+    private record Result(UpsertMode mode, double conflictRatio, long rows, long conflicts, long failedRows,
+                          double seconds, Histogram latency) {
+        double throughput() {
+            return seconds > 0 ? rows / seconds : 0;
+        }
+    }
+
+    private final DatabaseConfig databaseConfig;
+    private final MetricsService metricsService;
+    private final boolean spanner;
+    private final List<UpsertMode> modes;
+    private final List<Double> conflictRatios;
+    private final int seedRows;
+    private final int operations;
+    private final int batchSize;
+    private final long seed;
+    // Unseeded, so a run never reuses the ids of an earlier one
+    private final Random idRandom = new Random();
+    private final List<Result> results = new ArrayList<>();
+    private String[] existingIds;
+
+    /**
+     * @param database postgres or spanner
+     * @param conflictRatios Fractions of upserts that hit an existing user, each between 0 and 1
+     * @param seedRows Users inserted before the upserts, which conflicting upserts pick from
+     * @param operations Rows upserted for each mode and conflict ratio
+     */
+    public UpsertBenchmark(DatabaseConfig databaseConfig, MetricsService metricsService, String database,
+                           List<UpsertMode> modes, List<Double> conflictRatios, int seedRows, int operations,
+                           int batchSize, long seed) {
+        this.spanner = switch (database) {
+            case "spanner" -> true;
+            case "postgres" -> false;
+            default -> throw new IllegalArgumentException(
+                "Invalid upsert.database: " + database + ". Valid databases are: postgres, spanner");
+        };
+        if (modes.contains(UpsertMode.MUTATION) && !spanner) {
+            throw new IllegalArgumentException("MUTATION upserts are only supported with the spanner profile");
+        }
+        if (conflictRatios.isEmpty() || conflictRatios.stream().anyMatch(ratio -> ratio < 0 || ratio > 1)) {
+            throw new IllegalArgumentException("At least one conflict ratio is required, and ratios must be between 0 and 1");
+        }
+        if (seedRows < batchSize) {
+            throw new IllegalArgumentException("At least a batch of users must be seeded, so a batch never upserts a user twice");
+        }
+        this.databaseConfig = databaseConfig;
+        this.metricsService = metricsService;
+        this.modes = modes;
+        this.conflictRatios = conflictRatios;
+        this.seedRows = seedRows;
+        this.operations = operations;
+        this.batchSize = batchSize;
+        this.seed = seed;
+    }
+
+    public void run() {
+        metricsService.startRun();
+        try (Connection conn = databaseConfig.createConnection()) {
+            conn.setAutoCommit(true);
+            seed(conn);
+            for (UpsertMode mode : modes) {
+                for (double ratio : conflictRatios) {
+                    Result result = upsert(conn, mode, ratio);
+                    results.add(result);
+                    logger.info(String.format("%s with %.0f%% conflicts: %.0f rows/s, p99 %.2f ms, %d failed rows",
+                        mode, ratio * 100, result.throughput(), Reports.millis(result.latency(), 99), result.failedRows()));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Upsert benchmark failed", e);
+        } finally {
+            metricsService.finishRun();
+        }
+    }
+
+    private void seed(Connection conn) throws SQLException {
+        Random random = new Random(seed);
+        KeyGenerator keys = KeyStrategy.UUID_V4.create(idRandom);
+        char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+        existingIds = new String[seedRows];
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO users (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < seedRows; i++) {
+                existingIds[i] = new String(buffer, 0, keys.next(buffer));
+                Rows.bindUser(stmt, existingIds[i], random);
+                stmt.addBatch();
+                if ((i + 1) % batchSize == 0 || i == seedRows - 1) {
+                    stmt.executeBatch();
+                }
+            }
+        }
+        logger.info("Seeded {} users in {} ms", seedRows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private String upsertSql() {
+        return spanner
+            ? "INSERT OR UPDATE INTO users (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)"
+            : "INSERT INTO users (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO UPDATE SET "
+                + "name = EXCLUDED.name, email = EXCLUDED.email, status = EXCLUDED.status, updated_at = EXCLUDED.updated_at";
+    }
+
+    private Result upsert(Connection conn, UpsertMode mode, double conflictRatio) throws SQLException {
+        // A different seed for every run, so runs don't repeat each other's values and conflicts
+        Random random = new Random(seed + 1 + results.size());
+        KeyGenerator keys = KeyStrategy.UUID_V4.create(idRandom);
+        char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+        MeasuredBatches batches = new MeasuredBatches(metricsService, "UPSERT_" + mode + "_" + Math.round(conflictRatio * 100),
+            String.format("%s batch with %.0f%% conflicts", mode, conflictRatio * 100));
+        // Conflicting users are taken in turn from a shuffled copy, reshuffled only between batches, so a batch
+        // never repeats one
+        String[] conflicting = existingIds.clone();
+        int nextConflict = conflicting.length;
+        long conflicts = 0;
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = mode == UpsertMode.DML ? conn.prepareStatement(upsertSql()) : null) {
+            List<Mutation> mutations = new ArrayList<>(batchSize);
+            int pending = 0;
+            int pendingConflicts = 0;
+            for (int i = 0; i < operations; i++) {
+                if (pending == 0 && conflicting.length - nextConflict < batchSize) {
+                    shuffle(conflicting, random);
+                    nextConflict = 0;
+                }
+                String id;
+                if (random.nextDouble() < conflictRatio) {
+                    id = conflicting[nextConflict++];
+                    pendingConflicts++;
+                } else {
+                    id = new String(buffer, 0, keys.next(buffer));
+                }
+                if (mode == UpsertMode.DML) {
+                    Rows.bindUser(stmt, id, random);
+                    stmt.addBatch();
+                } else {
+                    mutations.add(userMutation(id, random));
+                }
+                pending++;
+                if (pending == batchSize || i == operations - 1) {
+                    int batchRows = pending;
+                    long succeeded = mode == UpsertMode.DML
+                        ? batches.executeBatch(stmt, batchRows)
+                        : batches.execute(batchRows, () -> {
+                            conn.unwrap(CloudSpannerJdbcConnection.class).write(mutations);
+                            return batchRows;
+                        });
+                    if (succeeded >= 0) {
+                        conflicts += pendingConflicts;
+                    }
+                    mutations.clear();
+                    pending = 0;
+                    pendingConflicts = 0;
+                }
+            }
+        }
+        return new Result(mode, conflictRatio, batches.getRows(), conflicts, batches.getFailedRows(),
+            (System.nanoTime() - start) / 1_000_000_000.0, batches.getLatency());
+    }
+
+    private static void shuffle(String[] ids, Random random) {
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+
+    private static Mutation userMutation(String id, Random random) {
+        com.google.cloud.Timestamp now = com.google.cloud.Timestamp.now();
+        return Mutation.newInsertOrUpdateBuilder("users")
+            .set("id").to(id)
+            .set("name").to("User " + random.nextInt(1_000_000))
+            .set("email").to(id + "@example.com")
+            .set("status").to(Rows.userStatus(random))
+            .set("created_at").to(now)
+            .set("updated_at").to(now)
+            .build();
+    }
+
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Upsert Report (%s, seed %d, %d seeded users, %d rows per run, batch size %d)%n",
+            spanner ? "spanner" : "postgres", seed, seedRows, operations, batchSize));
+        report.append(String.format("%-10s %10s %12s %22s %22s %22s %12s%n",
+            "mode", "conflicts", "actual", "throughput (rows/s)", "p50 (ms)", "p99 (ms)", "failed rows"));
+        for (Result result : results) {
+            // Each mode is compared with its own first conflict ratio
+            Result base = results.stream().filter(r -> r.mode() == result.mode()).findFirst().orElse(result);
+            boolean isBaseline = base == result;
+            report.append(String.format("%-10s %9.0f%% %11.1f%% %22s %22s %22s %12d%n",
+                result.mode(), result.conflictRatio() * 100,
+                result.rows() == 0 ? 0 : 100.0 * result.conflicts() / result.rows(),
+                Reports.withDelta(result.throughput(), base.throughput(), isBaseline),
+                Reports.withDelta(Reports.millis(result.latency(), 50), Reports.millis(base.latency(), 50), isBaseline),
+                Reports.withDelta(Reports.millis(result.latency(), 99), Reports.millis(base.latency(), 99), isBaseline),
+                result.failedRows()));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,9 @@
+package com.microbenchmark.benchmark;
+
+/**
+ * Ways to write a row whether or not it already exists.
+ */
+public enum UpsertMode {
+    DML,      // INSERT ... ON CONFLICT (id) DO UPDATE on PostgreSQL, INSERT OR UPDATE on Spanner, in JDBC batches
+    MUTATION  // Spanner only: insertOrUpdate mutations, one write per batch, which skips the query engine
+}
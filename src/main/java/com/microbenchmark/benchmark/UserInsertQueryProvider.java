@@ -22,6 +22,7 @@ public class UserInsertQueryProvider implements QueryProvider {
         stmt.setString(1, id);
         stmt.setString(2, name);
         stmt.setString(3, email);
+        stmt.addBatch();
     }
 
     @Override
@@ -33,4 +34,9 @@ public class UserInsertQueryProvider implements QueryProvider {
     public long getTotalOperations() {
         return TOTAL_OPERATIONS;
     }
+
+    @Override
+    public String getStatementType() {
+        return "USER_INSERT";
+    }
 } 
\ No newline at end of file
@@ -11,6 +11,7 @@ public class VariableBatchQueryProvider implements QueryProvider {
     private static final int BATCH_SIZE = 1000;  // Number of batches to process
     private static final long TOTAL_OPERATIONS = 1_000_000;
     private final Random random;
+    private int pendingRows;
 
     public VariableBatchQueryProvider() {
         this.random = new Random();
@@ -37,6 +38,29 @@ public class VariableBatchQueryProvider implements QueryProvider {
             stmt.setString(3, email);
             stmt.addBatch();
         }
+        pendingRows += statementsInBatch;
+    }
+
+    @Override
+    public int[] executeBatch(PreparedStatement stmt) throws SQLException {
+        pendingRows = 0;
+        return stmt.executeBatch();
+    }
+
+    @Override
+    public void clearBatch(PreparedStatement stmt) throws SQLException {
+        pendingRows = 0;
+        stmt.clearBatch();
+    }
+
+    @Override
+    public int getPendingRowCount() {
+        return pendingRows;
+    }
+
+    @Override
+    public int getMaxRowsPerCall() {
+        return MAX_STATEMENTS;
     }
 
     @Override
@@ -49,6 +73,11 @@ public class VariableBatchQueryProvider implements QueryProvider {
         return TOTAL_OPERATIONS;
     }
 
+    @Override
+    public String getStatementType() {
+        return "USER_INSERT";
+    }
+
     public int getMinStatements() {
         return MIN_STATEMENTS;
     }
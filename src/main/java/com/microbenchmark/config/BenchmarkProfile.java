@@ -6,11 +6,20 @@ public class BenchmarkProfile {
     private final int batchSize;
     private final int totalOperations;
     private final Duration maxDuration;
+    private final boolean explicitCommit;
 
     public BenchmarkProfile(int batchSize, int totalOperations, Duration maxDuration) {
+        this(batchSize, totalOperations, maxDuration, false);
+    }
+
+    /**
+     * @param explicitCommit Run each batch in its own transaction and commit it explicitly, instead of autocommit
+     */
+    public BenchmarkProfile(int batchSize, int totalOperations, Duration maxDuration, boolean explicitCommit) {
         this.batchSize = batchSize;
         this.totalOperations = totalOperations;
         this.maxDuration = maxDuration;
+        this.explicitCommit = explicitCommit;
     }
 
     public int getBatchSize() {
@@ -24,4 +33,8 @@ public class BenchmarkProfile {
     public Duration getMaxDuration() {
         return maxDuration;
     }
+
+    public boolean isExplicitCommit() {
+        return explicitCommit;
+    }
 } 
\ No newline at end of file
@@ -1,7 +1,11 @@
 package com.microbenchmark.config;
 
+import com.microbenchmark.network.ImpairmentProxy;
+import com.microbenchmark.network.NetworkImpairment;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.Properties;
 
 public class ConfigurationLoader {
@@ -20,15 +24,106 @@ public class ConfigurationLoader {
         return props;
     }
 
-    public static DatabaseConfig createSpannerConfig(Properties config) {
+    public static SpannerConfig createSpannerConfig(Properties config) {
+        return new SpannerConfig(
+            config.getProperty("project.id"),
+            config.getProperty("instance.id"),
+            config.getProperty("database.id"),
+            SpannerConnectionType.JDBC_DIRECT,  // Default to direct JDBC
+            PgAdapterOptions.defaults(),
+            createSpannerClientOptions(config)
+        );
+    }
+
+    public static DatabaseConfig createPgAdapterConfig(Properties config) {
         return new SpannerConfig(
             config.getProperty("project.id"),
             config.getProperty("instance.id"),
             config.getProperty("database.id"),
-            SpannerConnectionType.JDBC_DIRECT  // Default to direct JDBC
+            SpannerConnectionType.PGADAPTER_JDBC,
+            createPgAdapterOptions(config, "pgadapter.port", "5432"),
+            createSpannerClientOptions(config)
         );
     }
 
+    public static DatabaseConfig createEmbeddedPgAdapterConfig(Properties config) {
+        return new SpannerConfig(
+            config.getProperty("project.id"),
+            config.getProperty("instance.id"),
+            config.getProperty("database.id"),
+            SpannerConnectionType.PGADAPTER_EMBEDDED,
+            createPgAdapterOptions(config, "pgadapter.embedded.port", "0"),
+            createSpannerClientOptions(config)
+        );
+    }
+
+    private static SpannerClientOptions createSpannerClientOptions(Properties config) {
+        return new SpannerClientOptions(
+            config.getProperty("credentials.file"),
+            Integer.parseInt(config.getProperty("min.sessions", "100")),
+            Integer.parseInt(config.getProperty("max.sessions", "400"))
+        );
+    }
+
+    private static PgAdapterOptions createPgAdapterOptions(Properties config, String portProperty, String defaultPort) {
+        return new PgAdapterOptions(
+            config.getProperty("pgadapter.host", "localhost"),
+            Integer.parseInt(config.getProperty(portProperty, defaultPort)),
+            config.getProperty("pgadapter.embedded.socket.dir"),
+            config.getProperty("spanner.emulator.host")
+        );
+    }
+
+    /**
+     * @param name One of spanner, pgadapter, pgadapter-embedded, postgres or null
+     */
+    public static DatabaseConfig createDatabaseConfig(String name, Properties config) {
+        if (Boolean.parseBoolean(config.getProperty("impair.enabled", "false"))) {
+            return createImpairedConfig(name, config);
+        }
+        return switch (name) {
+            case "spanner" -> createSpannerConfig(config);
+            case "pgadapter" -> createPgAdapterConfig(config);
+            case "pgadapter-embedded" -> createEmbeddedPgAdapterConfig(config);
+            case "postgres" -> createPostgresConfig(config);
+            case "null" -> createNullDatabaseConfig(config);
+            default -> throw new IllegalArgumentException(
+                "Invalid database: " + name + ". Valid databases are: spanner, pgadapter, pgadapter-embedded, postgres, null");
+        };
+    }
+
+    /**
+     * Starts an impairment proxy in front of the database's host and port, and points the config at the proxy.
+     * Only databases reached over a plain TCP endpoint (postgres and pgadapter) can be impaired.
+     */
+    private static DatabaseConfig createImpairedConfig(String name, Properties config) {
+        String prefix = switch (name) {
+            case "postgres", "pgadapter" -> name;
+            default -> throw new IllegalArgumentException(
+                "impair.enabled is only supported for postgres and pgadapter, not " + name);
+        };
+        NetworkImpairment impairment = new NetworkImpairment(
+            Duration.ofMillis(Long.parseLong(config.getProperty("impair.latency.ms", "0"))),
+            Duration.ofMillis(Long.parseLong(config.getProperty("impair.jitter.ms", "0"))),
+            Long.parseLong(config.getProperty("impair.bandwidth.bytes.per.second", "0")),
+            Duration.ofSeconds(Long.parseLong(config.getProperty("impair.reset.mean.seconds", "0"))),
+            Long.parseLong(config.getProperty("impair.seed", "42"))
+        );
+        ImpairmentProxy proxy = new ImpairmentProxy(
+            config.getProperty(prefix + ".host", "localhost"),
+            Integer.parseInt(config.getProperty(prefix + ".port", "5432")),
+            impairment
+        );
+        proxy.start();
+
+        Properties proxied = new Properties();
+        proxied.putAll(config);
+        proxied.setProperty("impair.enabled", "false");
+        proxied.setProperty(prefix + ".host", "localhost");
+        proxied.setProperty(prefix + ".port", String.valueOf(proxy.getPort()));
+        return new ImpairedDatabaseConfig(createDatabaseConfig(name, proxied), proxy);
+    }
+
     public static DatabaseConfig createPostgresConfig(Properties config) {
         String jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s",
             config.getProperty("postgres.host", "localhost"),
@@ -41,4 +136,40 @@ public class ConfigurationLoader {
             config.getProperty("postgres.password")
         );
     }
-} 
\ No newline at end of file
+
+    public static NullDatabaseConfig createNullDatabaseConfig(Properties config) {
+        Duration latency = millis(config.getProperty("null.latency.ms", "1"));
+        long seed = Long.parseLong(config.getProperty("null.seed", "42"));
+        String distribution = config.getProperty("null.latency.distribution", "fixed").toLowerCase();
+        LatencyDistribution base = switch (distribution) {
+            case "fixed", "bimodal" -> LatencyDistribution.fixed(latency);
+            case "lognormal" -> LatencyDistribution.logNormal(latency,
+                Double.parseDouble(config.getProperty("null.latency.sigma", "0.5")), seed);
+            default -> throw new IllegalArgumentException(
+                "Invalid null.latency.distribution: " + distribution + ". Valid distributions are: fixed, lognormal, bimodal");
+        };
+        if (distribution.equals("bimodal")) {
+            base = LatencyDistribution.bimodal(base,
+                millis(config.getProperty("null.stall.ms", "200")),
+                Double.parseDouble(config.getProperty("null.stall.probability", "0.001")),
+                seed);
+        }
+        return new NullDatabaseConfig(base);
+    }
+
+    private static Duration millis(String value) {
+        return Duration.ofNanos((long) (Double.parseDouble(value) * 1_000_000));
+    }
+
+    public static RetryPolicy createRetryPolicy(Properties config) {
+        RetryPolicy defaults = RetryPolicy.defaultPolicy();
+        return new RetryPolicy(
+            Integer.parseInt(config.getProperty("retry.max.attempts", String.valueOf(defaults.getMaxAttempts()))),
+            Duration.ofMillis(Long.parseLong(config.getProperty("retry.initial.backoff.ms",
+                String.valueOf(defaults.getInitialBackoff().toMillis())))),
+            Duration.ofMillis(Long.parseLong(config.getProperty("retry.max.backoff.ms",
+                String.valueOf(defaults.getMaxBackoff().toMillis())))),
+            Double.parseDouble(config.getProperty("retry.backoff.multiplier", String.valueOf(defaults.getMultiplier())))
+        );
+    }
+}
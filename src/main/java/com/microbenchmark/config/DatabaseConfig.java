@@ -1,10 +1,12 @@
 package com.microbenchmark.config;
 
+import io.r2dbc.spi.ConnectionFactory;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 
-public interface DatabaseConfig {
+public interface DatabaseConfig extends AutoCloseable {
     String getJdbcUrl();
     String getUsername();
     String getPassword();
@@ -12,4 +14,19 @@ public interface DatabaseConfig {
     default Connection createConnection() throws SQLException {
         return DriverManager.getConnection(getJdbcUrl(), getUsername(), getPassword());
     }
-} 
\ No newline at end of file
+
+    /**
+     * @return A non-blocking R2DBC connection factory for the same database
+     * @throws UnsupportedOperationException if the database has no R2DBC driver
+     */
+    default ConnectionFactory createConnectionFactory() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support reactive connections");
+    }
+
+    /**
+     * Releases anything the config started itself, such as an embedded proxy. Connections are closed by their users.
+     */
+    @Override
+    default void close() {
+    }
+}
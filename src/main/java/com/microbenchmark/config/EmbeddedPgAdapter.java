@@ -0,0 +1,93 @@
+package com.microbenchmark.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs pgAdapter inside the benchmark JVM, so PostgreSQL clients reach Spanner without a separate proxy process.
+ * pgAdapter is an optional dependency (enable the {@code embedded-pgadapter} Maven profile); it is loaded
+ * reflectively so the benchmark still builds and runs without it.
+ */
+public class EmbeddedPgAdapter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedPgAdapter.class);
+    private static final String OPTIONS_CLASS = "com.google.cloud.spanner.pgadapter.metadata.OptionsMetadata";
+    private static final String SERVER_CLASS = "com.google.cloud.spanner.pgadapter.ProxyServer";
+
+    private final Object server;
+    private final Class<?> serverClass;
+    private final int port;
+
+    private EmbeddedPgAdapter(Class<?> serverClass, Object server, int port) {
+        this.serverClass = serverClass;
+        this.server = server;
+        this.port = port;
+    }
+
+    public static EmbeddedPgAdapter start(String projectId, String instanceId, PgAdapterOptions options,
+                                          SpannerClientOptions clientOptions) {
+        if (options.isUnixSocket() && options.getPort() == 0) {
+            // The socket file is named after the port, so clients need to know it up front
+            throw new IllegalArgumentException("An embedded pgAdapter on a Unix domain socket needs a fixed port");
+        }
+        List<String> args = new ArrayList<>(List.of(
+            "-p", projectId,
+            "-i", instanceId,
+            "-s", String.valueOf(options.getPort()),
+            // An empty directory disables the Unix domain socket
+            "-dir", options.isUnixSocket() ? options.getUnixSocketDirectory() : ""));
+        if (clientOptions.getCredentialsFile() != null) {
+            args.addAll(List.of("-c", clientOptions.getCredentialsFile()));
+        }
+        // Connection properties pgAdapter passes on to the Spanner client it creates
+        String properties = "minSessions=" + clientOptions.getMinSessions() + ";maxSessions=" + clientOptions.getMaxSessions();
+        if (options.getEmulatorHost() != null) {
+            args.addAll(List.of("-e", options.getEmulatorHost()));
+            properties += ";autoConfigEmulator=true";
+        }
+        args.addAll(List.of("-r", properties));
+
+        try {
+            Class<?> optionsClass = Class.forName(OPTIONS_CLASS);
+            Class<?> serverClass = Class.forName(SERVER_CLASS);
+            Object metadata = optionsClass.getConstructor(String[].class).newInstance((Object) args.toArray(new String[0]));
+            Object server = serverClass.getConstructor(optionsClass).newInstance(metadata);
+            serverClass.getMethod("startServer").invoke(server);
+            int port = (int) serverClass.getMethod("getLocalPort").invoke(server);
+            logger.info("Started embedded pgAdapter on {}",
+                options.isUnixSocket() ? socketPath(options.getUnixSocketDirectory(), port) : "port " + port);
+            return new EmbeddedPgAdapter(serverClass, server, port);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(
+                "pgAdapter is not on the classpath; build with -Pembedded-pgadapter to use PGADAPTER_EMBEDDED", e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Failed to start embedded pgAdapter", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to start embedded pgAdapter", e);
+        }
+    }
+
+    /**
+     * @return The path of the Unix domain socket pgAdapter creates for a port, following the PostgreSQL naming scheme
+     */
+    public static String socketPath(String directory, int port) {
+        return directory + "/.s.PGSQL." + port;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverClass.getMethod("stopServer").invoke(server);
+            logger.info("Stopped embedded pgAdapter");
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Failed to stop embedded pgAdapter", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.microbenchmark.config;
+
+import com.microbenchmark.network.ImpairmentProxy;
+import io.r2dbc.spi.ConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A database reached through an {@link ImpairmentProxy}. The delegate must already point at the proxy;
+ * this only ties the proxy's lifetime to the config.
+ */
+public class ImpairedDatabaseConfig implements DatabaseConfig {
+    private final DatabaseConfig delegate;
+    private final ImpairmentProxy proxy;
+
+    public ImpairedDatabaseConfig(DatabaseConfig delegate, ImpairmentProxy proxy) {
+        this.delegate = delegate;
+        this.proxy = proxy;
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return delegate.getJdbcUrl();
+    }
+
+    @Override
+    public String getUsername() {
+        return delegate.getUsername();
+    }
+
+    @Override
+    public String getPassword() {
+        return delegate.getPassword();
+    }
+
+    @Override
+    public Connection createConnection() throws SQLException {
+        return delegate.createConnection();
+    }
+
+    @Override
+    public ConnectionFactory createConnectionFactory() {
+        return delegate.createConnectionFactory();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+        proxy.close();
+    }
+}
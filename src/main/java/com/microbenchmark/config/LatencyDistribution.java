@@ -0,0 +1,38 @@
+package com.microbenchmark.config;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Service time of a simulated database round trip. Distributions are seeded, so a run with the same
+ * seed and the same call order sees the same latencies.
+ */
+public interface LatencyDistribution {
+    long sampleNanos();
+
+    static LatencyDistribution fixed(Duration latency) {
+        long nanos = latency.toNanos();
+        return () -> nanos;
+    }
+
+    /**
+     * A lognormal distribution, the usual shape of a healthy service's latency.
+     * @param median The median latency
+     * @param sigma The standard deviation of the underlying normal distribution; larger values give a longer tail
+     */
+    static LatencyDistribution logNormal(Duration median, double sigma, long seed) {
+        Random random = new Random(seed);
+        double mu = Math.log(median.toNanos());
+        return () -> (long) Math.exp(mu + sigma * random.nextGaussian());
+    }
+
+    /**
+     * Mostly {@code base}, but with the given probability a call stalls for {@code stall} instead,
+     * as with a lock wait, a leader change or a GC pause on the server.
+     */
+    static LatencyDistribution bimodal(LatencyDistribution base, Duration stall, double stallProbability, long seed) {
+        Random random = new Random(seed);
+        long stallNanos = stall.toNanos();
+        return () -> random.nextDouble() < stallProbability ? stallNanos : base.sampleNanos();
+    }
+}
@@ -0,0 +1,238 @@
+package com.microbenchmark.config;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An in-memory database that accepts any statement and answers after a simulated latency, without
+ * storing anything. Running a workload against it measures the ceiling of the harness itself: the
+ * executor, metrics and providers. Both JDBC and R2DBC connections are supported. As nothing is stored,
+ * UPDATE and DELETE statements report that they matched no rows.
+ */
+public class NullDatabaseConfig implements DatabaseConfig {
+    private final LatencyDistribution latency;
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    public NullDatabaseConfig(LatencyDistribution latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return "jdbc:null:";
+    }
+
+    @Override
+    public String getUsername() {
+        return null;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    /**
+     * @return Statement executions, where each executeBatch counts as one round trip
+     */
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    /**
+     * @return The most round trips that were in progress at the same time
+     */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    private void beginRoundTrip() {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    }
+
+    private void endRoundTrip(long rowCount) {
+        inFlight.decrementAndGet();
+        roundTrips.incrementAndGet();
+        rows.addAndGet(rowCount);
+    }
+
+    private int[] roundTrip(int rowCount, int rowsUpdated) {
+        beginRoundTrip();
+        try {
+            LockSupport.parkNanos(latency.sampleNanos());
+        } finally {
+            endRoundTrip(rowCount);
+        }
+        int[] counts = new int[rowCount];
+        Arrays.fill(counts, rowsUpdated);
+        return counts;
+    }
+
+    /**
+     * @return The rows each execution of the statement updates: none for UPDATE and DELETE, one otherwise
+     */
+    private static int rowsUpdated(String sql) {
+        String verb = sql == null ? "" : sql.stripLeading().toUpperCase(Locale.ROOT);
+        return verb.startsWith("UPDATE") || verb.startsWith("DELETE") ? 0 : 1;
+    }
+
+    @Override
+    public Connection createConnection() {
+        return proxy(Connection.class, (proxy, method, args) -> switch (method.getName()) {
+            case "prepareStatement", "prepareCall" -> createStatement((Connection) proxy, rowsUpdated((String) args[0]));
+            case "createStatement" -> createStatement((Connection) proxy, 1);
+            case "isValid" -> true;
+            case "unwrap" -> throw new SQLException("Not a wrapper for " + args[0]);
+            default -> defaultValue(proxy, method, args);
+        });
+    }
+
+    private PreparedStatement createStatement(Connection connection, int rowsUpdated) {
+        int[] pendingRows = new int[1];
+        boolean[] bound = new boolean[1];
+        return proxy(PreparedStatement.class, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bound[0] = true;
+                return null;
+            }
+            return switch (name) {
+                case "addBatch" -> {
+                    pendingRows[0]++;
+                    bound[0] = false;
+                    yield null;
+                }
+                case "clearBatch" -> {
+                    pendingRows[0] = 0;
+                    yield null;
+                }
+                case "executeBatch", "executeLargeBatch" -> {
+                    int[] counts = roundTrip(pendingRows[0], rowsUpdated);
+                    pendingRows[0] = 0;
+                    yield name.equals("executeBatch") ? counts : Arrays.stream(counts).asLongStream().toArray();
+                }
+                case "executeUpdate", "executeLargeUpdate" -> {
+                    roundTrip(1, rowsUpdated);
+                    yield name.equals("executeUpdate") ? (Object) rowsUpdated : (Object) (long) rowsUpdated;
+                }
+                case "execute" -> {
+                    roundTrip(bound[0] ? 1 : 0, rowsUpdated);
+                    yield false;
+                }
+                case "executeQuery", "getResultSet" -> {
+                    if (name.equals("executeQuery")) {
+                        roundTrip(0, rowsUpdated);
+                    }
+                    yield proxy(ResultSet.class, NullDatabaseConfig::defaultValue);
+                }
+                case "getUpdateCount" -> -1;
+                case "getConnection" -> connection;
+                default -> defaultValue(proxy, method, args);
+            };
+        });
+    }
+
+    @Override
+    public ConnectionFactory createConnectionFactory() {
+        io.r2dbc.spi.Connection connection = proxy(io.r2dbc.spi.Connection.class, (proxy, method, args) ->
+            switch (method.getName()) {
+                case "createStatement" -> createReactiveStatement(rowsUpdated((String) args[0]));
+                case "validate" -> Mono.just(true);
+                case "isAutoCommit" -> true;
+                default -> defaultValue(proxy, method, args);
+            });
+        return proxy(ConnectionFactory.class, (proxy, method, args) -> switch (method.getName()) {
+            case "create" -> Mono.just(connection);
+            default -> defaultValue(proxy, method, args);
+        });
+    }
+
+    private io.r2dbc.spi.Statement createReactiveStatement(int rowsUpdated) {
+        int[] addedRows = new int[1];
+        boolean[] bound = new boolean[1];
+        return proxy(io.r2dbc.spi.Statement.class, (proxy, method, args) -> switch (method.getName()) {
+            case "bind", "bindNull" -> {
+                bound[0] = true;
+                yield proxy;
+            }
+            case "add" -> {
+                addedRows[0]++;
+                bound[0] = false;
+                yield proxy;
+            }
+            case "execute" -> {
+                // Bindings after the last add() form one more row
+                long rowCount = addedRows[0] + (bound[0] ? 1 : 0);
+                yield Mono.defer(() -> {
+                        beginRoundTrip();
+                        return Mono.delay(Duration.ofNanos(latency.sampleNanos()));
+                    })
+                    // Before completion propagates, so the next round trip it triggers is not counted as overlapping
+                    .doOnTerminate(() -> endRoundTrip(rowCount))
+                    .thenReturn(createResult(rowCount * rowsUpdated));
+            }
+            default -> defaultValue(proxy, method, args);
+        });
+    }
+
+    private io.r2dbc.spi.Result createResult(long rowsUpdated) {
+        return proxy(io.r2dbc.spi.Result.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getRowsUpdated" -> Mono.just(rowsUpdated);
+            case "map", "flatMap" -> Flux.empty();
+            default -> defaultValue(proxy, method, args);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    /**
+     * Accepts any call that is not simulated: fluent methods return the proxy, publishers complete
+     * empty and everything else returns the zero value of its type.
+     */
+    private static Object defaultValue(Object proxy, Method method, Object[] args) {
+        Class<?> type = method.getReturnType();
+        return switch (method.getName()) {
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> "Null database " + method.getDeclaringClass().getSimpleName();
+            default -> {
+                if (type.isInstance(proxy)) {
+                    yield proxy;
+                } else if (Publisher.class.isAssignableFrom(type)) {
+                    yield Mono.empty();
+                } else if (type.isPrimitive() && type != void.class) {
+                    // The element of a new primitive array is the boxed zero value of that type
+                    yield Array.get(Array.newInstance(type, 1), 0);
+                }
+                yield null;
+            }
+        };
+    }
+}
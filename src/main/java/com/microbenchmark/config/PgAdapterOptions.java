@@ -0,0 +1,49 @@
+package com.microbenchmark.config;
+
+public class PgAdapterOptions {
+    private final String host;
+    private final int port;
+    private final String unixSocketDirectory;
+    private final String emulatorHost;
+
+    /**
+     * @param host Host of an external pgAdapter; ignored for an embedded one, which always runs on localhost
+     * @param port Port to connect to, or for an embedded pgAdapter the port to listen on (0 picks a free port)
+     * @param unixSocketDirectory Directory for the Unix domain socket of an embedded pgAdapter, or null to use TCP
+     * @param emulatorHost host:port of a Spanner emulator for an embedded pgAdapter, or null for Cloud Spanner
+     */
+    public PgAdapterOptions(String host, int port, String unixSocketDirectory, String emulatorHost) {
+        this.host = host;
+        this.port = port;
+        this.unixSocketDirectory = emptyToNull(unixSocketDirectory);
+        this.emulatorHost = emptyToNull(emulatorHost);
+    }
+
+    public static PgAdapterOptions defaults() {
+        return new PgAdapterOptions("localhost", 5432, null, null);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUnixSocketDirectory() {
+        return unixSocketDirectory;
+    }
+
+    public boolean isUnixSocket() {
+        return unixSocketDirectory != null;
+    }
+
+    public String getEmulatorHost() {
+        return emulatorHost;
+    }
+}
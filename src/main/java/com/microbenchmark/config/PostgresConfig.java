@@ -1,5 +1,9 @@
 package com.microbenchmark.config;
 
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -34,4 +38,19 @@ public class PostgresConfig implements DatabaseConfig {
     public Connection createConnection() throws SQLException {
         return DriverManager.getConnection(jdbcUrl, username, password);
     }
-} 
\ No newline at end of file
+
+    @Override
+    public ConnectionFactory createConnectionFactory() {
+        // jdbc:postgresql://host:port/db maps directly onto r2dbc:postgresql://host:port/db
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions
+            .parse("r2dbc:" + jdbcUrl.substring("jdbc:".length()))
+            .mutate();
+        if (username != null) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        if (password != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        return ConnectionFactories.get(options.build());
+    }
+}
@@ -0,0 +1,60 @@
+package com.microbenchmark.config;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter for retrying failed batches.
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double multiplier;
+
+    public RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff, double multiplier) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.multiplier = multiplier;
+    }
+
+    public static RetryPolicy defaultPolicy() {
+        return new RetryPolicy(3, Duration.ofMillis(50), Duration.ofSeconds(2), 2.0);
+    }
+
+    public static RetryPolicy noRetries() {
+        return new RetryPolicy(1, Duration.ZERO, Duration.ZERO, 1.0);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * @param attempt The attempt that just failed (1-based)
+     * @return A random delay between zero and the capped exponential backoff for that attempt
+     */
+    public Duration backoff(int attempt) {
+        double cap = Math.min(maxBackoff.toNanos(), initialBackoff.toNanos() * Math.pow(multiplier, attempt - 1));
+        if (cap <= 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(ThreadLocalRandom.current().nextLong((long) cap + 1));
+    }
+}
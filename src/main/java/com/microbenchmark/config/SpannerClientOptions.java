@@ -0,0 +1,59 @@
+package com.microbenchmark.config;
+
+/**
+ * Credentials and session pool bounds for every way of reaching Spanner: the JDBC driver, the native client
+ * and an embedded pgAdapter, so results from the different APIs are comparable.
+ */
+public class SpannerClientOptions {
+    private final String credentialsFile;
+    private final int minSessions;
+    private final int maxSessions;
+
+    /**
+     * @param credentialsFile Service account key file, or null for the application default credentials
+     * @param minSessions Sessions the pool creates up front
+     * @param maxSessions Sessions the pool may grow to; a connection waits for a session beyond that
+     */
+    public SpannerClientOptions(String credentialsFile, int minSessions, int maxSessions) {
+        if (minSessions < 0 || maxSessions < 1 || minSessions > maxSessions) {
+            throw new IllegalArgumentException("Invalid Spanner session pool: min " + minSessions + ", max " + maxSessions);
+        }
+        this.credentialsFile = credentialsFile == null || credentialsFile.isEmpty() ? null : credentialsFile;
+        this.minSessions = minSessions;
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * The client library's own defaults, with the application default credentials.
+     */
+    public static SpannerClientOptions defaults() {
+        return new SpannerClientOptions(null, 100, 400);
+    }
+
+    /**
+     * @return These options with the pool allowed to grow to at least {@code sessions}, e.g. one per concurrent worker
+     */
+    public SpannerClientOptions withMaxSessionsAtLeast(int sessions) {
+        return sessions <= maxSessions ? this : new SpannerClientOptions(credentialsFile, minSessions, sessions);
+    }
+
+    public String getCredentialsFile() {
+        return credentialsFile;
+    }
+
+    public int getMinSessions() {
+        return minSessions;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * @return The settings for a report header, e.g. "sessions 10-100, application default credentials"
+     */
+    public String describe() {
+        return String.format("sessions %d-%d, %s", minSessions, maxSessions,
+            credentialsFile != null ? "credentials " + credentialsFile : "application default credentials");
+    }
+}
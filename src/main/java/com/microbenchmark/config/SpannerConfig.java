@@ -1,8 +1,21 @@
 package com.microbenchmark.config;
 
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.SessionPoolOptions;
+import com.google.cloud.spanner.Spanner;
+import com.google.cloud.spanner.SpannerOptions;
+import io.r2dbc.postgresql.PostgresqlConnectionConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Properties;
 
 public class SpannerConfig implements DatabaseConfig {
@@ -10,12 +23,71 @@ public class SpannerConfig implements DatabaseConfig {
     private final String instanceId;
     private final String databaseId;
     private final SpannerConnectionType connectionType;
+    private final PgAdapterOptions pgAdapterOptions;
+    private final SpannerClientOptions clientOptions;
+    private EmbeddedPgAdapter embeddedPgAdapter;
 
     public SpannerConfig(String projectId, String instanceId, String databaseId, SpannerConnectionType connectionType) {
+        this(projectId, instanceId, databaseId, connectionType, PgAdapterOptions.defaults(), SpannerClientOptions.defaults());
+    }
+
+    public SpannerConfig(String projectId, String instanceId, String databaseId, SpannerConnectionType connectionType,
+                         PgAdapterOptions pgAdapterOptions, SpannerClientOptions clientOptions) {
         this.projectId = projectId;
         this.instanceId = instanceId;
         this.databaseId = databaseId;
         this.connectionType = connectionType;
+        this.pgAdapterOptions = pgAdapterOptions;
+        this.clientOptions = clientOptions;
+    }
+
+    /**
+     * @return A config whose session pools can grow to at least {@code sessions}, so that many concurrent
+     *         connections do not queue for a session; it starts its own embedded pgAdapter if it uses one
+     */
+    public SpannerConfig withMaxSessionsAtLeast(int sessions) {
+        SpannerClientOptions options = clientOptions.withMaxSessionsAtLeast(sessions);
+        return options == clientOptions ? this
+            : new SpannerConfig(projectId, instanceId, databaseId, connectionType, pgAdapterOptions, options);
+    }
+
+    /**
+     * Starts the embedded pgAdapter on first use; all connections of this config share it.
+     * @return The port pgAdapter is listening on
+     */
+    private synchronized int embeddedPort() {
+        if (embeddedPgAdapter == null) {
+            embeddedPgAdapter = EmbeddedPgAdapter.start(projectId, instanceId, pgAdapterOptions, clientOptions);
+        }
+        return embeddedPgAdapter.getPort();
+    }
+
+    /**
+     * Stops the embedded pgAdapter, if it is running, and starts a new one, so the next connection finds no
+     * sessions or connections left from earlier ones.
+     */
+    public synchronized void restartEmbeddedPgAdapter() {
+        if (connectionType != SpannerConnectionType.PGADAPTER_EMBEDDED) {
+            throw new IllegalStateException("Connection type " + connectionType + " has no embedded pgAdapter");
+        }
+        close();
+        embeddedPort();
+    }
+
+    private boolean isPgAdapter() {
+        return connectionType != SpannerConnectionType.JDBC_DIRECT;
+    }
+
+    private boolean usesUnixSocket() {
+        return connectionType == SpannerConnectionType.PGADAPTER_EMBEDDED && pgAdapterOptions.isUnixSocket();
+    }
+
+    private String pgAdapterHost() {
+        return connectionType == SpannerConnectionType.PGADAPTER_EMBEDDED ? "localhost" : pgAdapterOptions.getHost();
+    }
+
+    private int pgAdapterPort() {
+        return connectionType == SpannerConnectionType.PGADAPTER_EMBEDDED ? embeddedPort() : pgAdapterOptions.getPort();
     }
 
     @Override
@@ -30,19 +102,22 @@ public class SpannerConfig implements DatabaseConfig {
             // Set emulator-specific properties
             // props.setProperty("usePlainText", "true");
             // props.setProperty("autoConfigEmulator", "true");
-            props.setProperty("minSessions", "1");
-            props.setProperty("maxSessions", "4");
-            props.setProperty("credentials", "/Users/shobhitgup/Downloads/span-cloud-testing.json");
+            props.setProperty("minSessions", String.valueOf(clientOptions.getMinSessions()));
+            props.setProperty("maxSessions", String.valueOf(clientOptions.getMaxSessions()));
+            if (clientOptions.getCredentialsFile() != null) {
+                props.setProperty("credentials", clientOptions.getCredentialsFile());
+            }
         } else {
             // PGAdapter connection
-            jdbcUrl = String.format("jdbc:postgresql://localhost:5432/%s?options=-c%%20spanner.project_id=%s%%20-c%%20spanner.instance_id=%s%%20-c%%20spanner.database_id=%s",
-                databaseId, projectId, instanceId, databaseId);
+            jdbcUrl = getJdbcUrl();
             
             // Set PGAdapter-specific properties
             props.setProperty("user", "postgres");
             props.setProperty("password", "");
             props.setProperty("socketTimeout", "30");
-            props.setProperty("tcpKeepAlive", "true");
+            if (!usesUnixSocket()) {
+                props.setProperty("tcpKeepAlive", "true");
+            }
             props.setProperty("ssl", "false");
             props.setProperty("sslmode", "disable");
             props.setProperty("reWriteBatchedInserts", "true");
@@ -58,28 +133,95 @@ public class SpannerConfig implements DatabaseConfig {
         return DriverManager.getConnection(jdbcUrl, props);
     }
 
+    @Override
+    public ConnectionFactory createConnectionFactory() {
+        if (!isPgAdapter()) {
+            return DatabaseConfig.super.createConnectionFactory();
+        }
+
+        // Reactive connections always go through PGAdapter, using the same startup options as JDBC
+        PostgresqlConnectionConfiguration.Builder builder = PostgresqlConnectionConfiguration.builder();
+        if (usesUnixSocket()) {
+            builder.socket(EmbeddedPgAdapter.socketPath(pgAdapterOptions.getUnixSocketDirectory(), pgAdapterPort()));
+        } else {
+            builder.host(pgAdapterHost()).port(pgAdapterPort());
+        }
+        return new PostgresqlConnectionFactory(builder
+            .database(databaseId)
+            .username("postgres")
+            .password("")
+            .applicationName("microbenchmark")
+            .options(Map.of(
+                "spanner.project_id", projectId,
+                "spanner.instance_id", instanceId,
+                "spanner.database_id", databaseId))
+            .build());
+    }
+
     @Override
     public String getJdbcUrl() {
         if (connectionType == SpannerConnectionType.JDBC_DIRECT) {
             return String.format("jdbc:cloudspanner:/projects/%s/instances/%s/databases/%s",
                 projectId, instanceId, databaseId);
-        } else {
-            return String.format("jdbc:postgresql://localhost:5432/%s?options=-c%%20spanner.project_id=%s%%20-c%%20spanner.instance_id=%s%%20-c%%20spanner.database_id=%s",
-                databaseId, projectId, instanceId, databaseId);
         }
+        String jdbcUrl = String.format("jdbc:postgresql://%s:%d/%s?options=-c%%20spanner.project_id=%s%%20-c%%20spanner.instance_id=%s%%20-c%%20spanner.database_id=%s",
+            pgAdapterHost(), pgAdapterPort(), databaseId, projectId, instanceId, databaseId);
+        if (usesUnixSocket()) {
+            // pgJDBC has no native Unix socket support, so connect through junixsocket's socket factory
+            jdbcUrl += "&socketFactory=org.newsclub.net.unix.AFUNIXSocketFactory$FactoryArg&socketFactoryArg="
+                + EmbeddedPgAdapter.socketPath(pgAdapterOptions.getUnixSocketDirectory(), pgAdapterPort());
+        }
+        return jdbcUrl;
     }
 
     @Override
     public String getUsername() {
-        return connectionType == SpannerConnectionType.PGADAPTER_JDBC ? "postgres" : null;
+        return isPgAdapter() ? "postgres" : null;
     }
 
     @Override
     public String getPassword() {
-        return connectionType == SpannerConnectionType.PGADAPTER_JDBC ? "" : null;
+        return isPgAdapter() ? "" : null;
+    }
+
+    /**
+     * Creates a client for the native Spanner API, with the same credentials and session pool bounds as the
+     * JDBC connections. The caller closes it.
+     */
+    public Spanner createSpanner() {
+        SpannerOptions.Builder builder = SpannerOptions.newBuilder()
+            .setProjectId(projectId)
+            .setSessionPoolOption(SessionPoolOptions.newBuilder()
+                .setMinSessions(clientOptions.getMinSessions())
+                .setMaxSessions(clientOptions.getMaxSessions())
+                .build());
+        if (clientOptions.getCredentialsFile() != null) {
+            try (InputStream input = new FileInputStream(clientOptions.getCredentialsFile())) {
+                builder.setCredentials(GoogleCredentials.fromStream(input));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read Spanner credentials from " + clientOptions.getCredentialsFile(), e);
+            }
+        }
+        return builder.build().getService();
+    }
+
+    public DatabaseId getDatabaseId() {
+        return DatabaseId.of(projectId, instanceId, databaseId);
     }
 
     public SpannerConnectionType getConnectionType() {
         return connectionType;
     }
-} 
\ No newline at end of file
+
+    public SpannerClientOptions getClientOptions() {
+        return clientOptions;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (embeddedPgAdapter != null) {
+            embeddedPgAdapter.close();
+            embeddedPgAdapter = null;
+        }
+    }
+}
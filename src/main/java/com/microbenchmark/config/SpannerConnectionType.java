@@ -1,6 +1,7 @@
 package com.microbenchmark.config;
 
 public enum SpannerConnectionType {
-    JDBC_DIRECT,    // Direct Spanner JDBC connection
-    PGADAPTER_JDBC  // PostgreSQL JDBC via pgAdapter
-} 
\ No newline at end of file
+    JDBC_DIRECT,        // Direct Spanner JDBC connection
+    PGADAPTER_JDBC,     // PostgreSQL JDBC via an external pgAdapter
+    PGADAPTER_EMBEDDED  // PostgreSQL JDBC via a pgAdapter started inside this JVM
+}
@@ -0,0 +1,39 @@
+package com.microbenchmark.keys;
+
+/**
+ * Writes keys as lowercase hex with a fixed width, so that their string order matches their numeric order.
+ */
+final class KeyFormat {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private KeyFormat() {
+    }
+
+    /**
+     * Writes the lowest {@code digits} hex digits of the value at the offset.
+     * @return The offset after the last digit
+     */
+    static int writeHex(long value, int digits, char[] buffer, int offset) {
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[offset + i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return offset + digits;
+    }
+
+    /**
+     * Writes a UUID in its canonical 8-4-4-4-12 form.
+     * @return The length of the UUID, 36
+     */
+    static int writeUuid(long mostSigBits, long leastSigBits, char[] buffer) {
+        int offset = writeHex(mostSigBits >>> 32, 8, buffer, 0);
+        buffer[offset++] = '-';
+        offset = writeHex(mostSigBits >>> 16, 4, buffer, offset);
+        buffer[offset++] = '-';
+        offset = writeHex(mostSigBits, 4, buffer, offset);
+        buffer[offset++] = '-';
+        offset = writeHex(leastSigBits >>> 48, 4, buffer, offset);
+        buffer[offset++] = '-';
+        return writeHex(leastSigBits, 12, buffer, offset);
+    }
+}
@@ -0,0 +1,76 @@
+package com.microbenchmark.keys;
+
+import java.util.UUID;
+
+/**
+ * Generates primary keys for new rows. Each key is 128 bits, which can be written as text into a
+ * buffer owned by the caller, so generating a key allocates nothing and the caller decides when to
+ * turn it into a String for binding, or bound in binary form as 16 bytes or a {@link UUID}.
+ * Generators are not thread-safe.
+ */
+public interface KeyGenerator {
+    /**
+     * The longest text key any strategy produces; every key fits the STRING(36) / VARCHAR(36) id columns.
+     */
+    int MAX_LENGTH = 36;
+    /**
+     * The length of a key in binary form, which fits the BYTES(16) / uuid id columns.
+     */
+    int BINARY_LENGTH = 16;
+
+    /**
+     * Moves on to the next key.
+     */
+    void advance();
+
+    /**
+     * @return The first 64 bits of the current key
+     */
+    long high();
+
+    /**
+     * @return The last 64 bits of the current key
+     */
+    long low();
+
+    /**
+     * Writes the current key as text into the start of the buffer, which must hold at least {@link #MAX_LENGTH} chars.
+     * @return The length of the key
+     */
+    int format(char[] buffer);
+
+    /**
+     * Writes the next key as text into the start of the buffer.
+     * @return The length of the key
+     */
+    default int next(char[] buffer) {
+        advance();
+        return format(buffer);
+    }
+
+    /**
+     * @return The next key as 16 big-endian bytes, which sort in the same order as its text form. JDBC
+     *         drivers keep a reference to bound arrays until the batch executes, so the array is always new.
+     */
+    default byte[] nextBytes() {
+        advance();
+        byte[] bytes = new byte[BINARY_LENGTH];
+        long high = high();
+        long low = low();
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) high;
+            bytes[i + 8] = (byte) low;
+            high >>>= 8;
+            low >>>= 8;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The next key as a UUID, for native uuid columns. Only UUID strategies produce valid version bits.
+     */
+    default UUID nextUuid() {
+        advance();
+        return new UUID(high(), low());
+    }
+}
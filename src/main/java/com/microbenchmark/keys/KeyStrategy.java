@@ -0,0 +1,187 @@
+package com.microbenchmark.keys;
+
+import java.util.Random;
+
+/**
+ * How new rows get their primary key. Random keys spread writes over the whole key space, while
+ * sequential keys all land at its end: cheap for a B-tree, but a hotspot for Spanner, which splits
+ * tables by key range. As text, keys are lowercase hex strings of a fixed width per strategy.
+ */
+public enum KeyStrategy {
+    UUID_V4,        // random UUID
+    UUID_V7,        // UUID that starts with the current time in milliseconds, so keys are roughly ordered
+    MONOTONIC,      // a counter, 16 hex digits: every write goes to the end of the key space
+    BIT_REVERSED,   // the bits of a counter reversed, like a Spanner bit-reversed sequence: unique and spread out
+    HASH_PREFIXED;  // a counter behind a 4 hex digit hash of itself, like an application-level shard prefix
+
+    /**
+     * @param random Source of the random bits, and of the start of the sequential strategies' counters,
+     *               so that a seeded source gives the same keys on every run (apart from UUID_V7's timestamp)
+     */
+    public KeyGenerator create(Random random) {
+        return switch (this) {
+            case UUID_V4 -> new RandomUuidGenerator(random);
+            case UUID_V7 -> new TimeOrderedUuidGenerator(random);
+            case MONOTONIC -> new MonotonicGenerator(startOfSequence(random));
+            case BIT_REVERSED -> new BitReversedGenerator(startOfSequence(random));
+            case HASH_PREFIXED -> new HashPrefixedGenerator(startOfSequence(random));
+        };
+    }
+
+    /**
+     * Starts sequences at a random point of a 2^48 range, so that unseeded runs against the same tables
+     * do not conflict, while leaving room for the counter to grow.
+     */
+    private static long startOfSequence(Random random) {
+        return random.nextLong() >>> 16;
+    }
+
+    /**
+     * Holds the current key as two longs; subclasses choose the bits and how they are written as text.
+     */
+    private abstract static class Generator implements KeyGenerator {
+        protected long high;
+        protected long low;
+
+        @Override
+        public long high() {
+            return high;
+        }
+
+        @Override
+        public long low() {
+            return low;
+        }
+    }
+
+    private static final class RandomUuidGenerator extends Generator {
+        private final Random random;
+
+        RandomUuidGenerator(Random random) {
+            this.random = random;
+        }
+
+        @Override
+        public void advance() {
+            high = (random.nextLong() & ~0xF000L) | 0x4000L;
+            low = (random.nextLong() & ~(0xC0L << 56)) | (0x80L << 56);
+        }
+
+        @Override
+        public int format(char[] buffer) {
+            return KeyFormat.writeUuid(high, low, buffer);
+        }
+    }
+
+    /**
+     * RFC 9562 version 7. The 12 bits after the version count up within a millisecond, so keys generated
+     * by one generator are strictly increasing even when many fall in the same millisecond.
+     */
+    private static final class TimeOrderedUuidGenerator extends Generator {
+        private final Random random;
+        private long lastMillis;
+        private int counter;
+
+        TimeOrderedUuidGenerator(Random random) {
+            this.random = random;
+        }
+
+        @Override
+        public void advance() {
+            long millis = Math.max(System.currentTimeMillis(), lastMillis);
+            if (millis == lastMillis && ++counter > 0xFFF) {
+                // Borrow the next millisecond rather than wrap, which would break the ordering
+                millis++;
+                counter = 0;
+            } else if (millis != lastMillis) {
+                counter = 0;
+            }
+            lastMillis = millis;
+            high = (millis << 16) | 0x7000L | counter;
+            low = (random.nextLong() & ~(0xC0L << 56)) | (0x80L << 56);
+        }
+
+        @Override
+        public int format(char[] buffer) {
+            return KeyFormat.writeUuid(high, low, buffer);
+        }
+    }
+
+    /**
+     * The counter is the last 64 bits, so the binary form sorts the same way as the text form.
+     */
+    private static final class MonotonicGenerator extends Generator {
+        private long sequence;
+
+        MonotonicGenerator(long start) {
+            this.sequence = start;
+        }
+
+        @Override
+        public void advance() {
+            low = sequence++;
+        }
+
+        @Override
+        public int format(char[] buffer) {
+            return KeyFormat.writeHex(low, 16, buffer, 0);
+        }
+    }
+
+    /**
+     * Reverses the 63 value bits of a positive counter, so consecutive values differ in their highest bits.
+     * The reversed value is the first 64 bits, so the binary form is spread out as well.
+     */
+    private static final class BitReversedGenerator extends Generator {
+        private long sequence;
+
+        BitReversedGenerator(long start) {
+            this.sequence = start;
+        }
+
+        @Override
+        public void advance() {
+            high = Long.reverse(sequence++) >>> 1;
+        }
+
+        @Override
+        public int format(char[] buffer) {
+            return KeyFormat.writeHex(high, 16, buffer, 0);
+        }
+    }
+
+    /**
+     * The hash is the first 16 bits and the counter the last 64, in binary as in text.
+     */
+    private static final class HashPrefixedGenerator extends Generator {
+        private long sequence;
+
+        HashPrefixedGenerator(long start) {
+            this.sequence = start;
+        }
+
+        @Override
+        public void advance() {
+            low = sequence++;
+            high = mix(low) << 48;
+        }
+
+        @Override
+        public int format(char[] buffer) {
+            int offset = KeyFormat.writeHex(high >>> 48, 4, buffer, 0);
+            buffer[offset++] = '-';
+            return KeyFormat.writeHex(low, 16, buffer, offset);
+        }
+
+        /**
+         * The MurmurHash3 64-bit finalizer.
+         */
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            value *= 0xc4ceb3fe1a85ec53L;
+            return value ^ (value >>> 33);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.microbenchmark.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning one executed batch, from the start of executeBatch until it returns or fails.
+ * Stack traces are disabled so the event is cheap enough to leave on for every batch.
+ */
+@Name("com.microbenchmark.BatchExecution")
+@Label("Batch Execution")
+@Category({"Microbenchmark", "Database"})
+@Description("A batch of statements sent to the database by a benchmark executor")
+@StackTrace(false)
+public class BatchExecutionEvent extends Event {
+    @Label("Batch Index")
+    public long batchIndex;
+
+    @Label("Statement Type")
+    public String statementType;
+
+    @Label("Row Count")
+    public int rowCount;
+
+    @Label("Connection Id")
+    public String connectionId;
+
+    @Label("Outcome")
+    public String outcome;
+}
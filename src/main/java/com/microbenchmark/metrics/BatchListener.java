@@ -0,0 +1,21 @@
+package com.microbenchmark.metrics;
+
+/**
+ * Receives every batch recorded by {@link MetricsService}, e.g. to keep it in rolling windows or next to
+ * other samples. Called from the benchmark threads, so implementations must be thread-safe and cheap.
+ */
+public interface BatchListener {
+    void recordBatch(int batchRows, long nanos);
+
+    /**
+     * Records the execution time of one statement type's part of a batch.
+     */
+    default void recordStatement(String statementType, long nanos) {
+    }
+
+    /**
+     * Records rows of a batch that failed for good, after any retries.
+     */
+    default void recordFailure(long rowCount) {
+    }
+}
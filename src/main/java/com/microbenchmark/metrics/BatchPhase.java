@@ -0,0 +1,11 @@
+package com.microbenchmark.metrics;
+
+/**
+ * The parts a batch's latency is split into, so a regression can be placed in the client, the driver or the server.
+ */
+public enum BatchPhase {
+    BIND,       // parameter generation and binding on the client
+    ACQUIRE,    // obtaining a connection
+    EXECUTE,    // sending the batch and waiting for the update counts
+    COMMIT      // committing an explicit transaction
+}
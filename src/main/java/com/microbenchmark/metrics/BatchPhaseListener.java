@@ -0,0 +1,9 @@
+package com.microbenchmark.metrics;
+
+/**
+ * Receives the duration of one phase of a batch, e.g. {@link MetricsService#recordPhase}.
+ */
+@FunctionalInterface
+public interface BatchPhaseListener {
+    void onPhase(BatchPhase phase, String statementType, long nanos);
+}
@@ -0,0 +1,47 @@
+package com.microbenchmark.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batch latency in microseconds and rows since the last interval was closed. Closing an interval swaps in
+ * the previous interval's histogram, reset, so no histogram is allocated after the first intervals.
+ */
+class IntervalRecorder {
+    static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final Recorder recorder = new Recorder(1, HIGHEST_TRACKABLE_MICROS, 3);
+    private final LongAdder rows = new LongAdder();
+    private Histogram intervalHistogram;
+    private long intervalRows;
+
+    void record(int batchRows, long nanos) {
+        recorder.recordValue(Math.min(Math.max(1, nanos / 1000), HIGHEST_TRACKABLE_MICROS));
+        rows.add(batchRows);
+    }
+
+    void reset() {
+        recorder.reset();
+        rows.reset();
+    }
+
+    /**
+     * Starts a new interval. Not thread-safe; callers close intervals from a single thread or synchronize.
+     * @return The histogram of the interval just closed, valid until the next call
+     */
+    Histogram closeInterval() {
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        intervalRows = rows.sumThenReset();
+        return intervalHistogram;
+    }
+
+    /**
+     * @return The rows recorded in the interval last closed
+     */
+    long getIntervalRows() {
+        return intervalRows;
+    }
+}
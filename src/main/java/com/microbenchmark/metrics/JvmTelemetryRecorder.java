@@ -0,0 +1,325 @@
+package com.microbenchmark.metrics;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams JFR events from the benchmark JVM itself (GC pauses, safepoints, allocation and CPU load)
+ * and keeps them on the same wall-clock timeline as the batch latencies, so that latency outliers
+ * can be attributed to the client or to the database. Memory is bounded for runs of any length: pause and CPU
+ * totals are kept as running sums, and only the longest pauses and a CPU timeline of bounded resolution are kept.
+ */
+public class JvmTelemetryRecorder implements BatchListener, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(JvmTelemetryRecorder.class);
+    private static final Duration SAMPLE_PERIOD = Duration.ofSeconds(1);
+    private static final double OUTLIER_PERCENTILE = 0.99;
+    private static final int MAX_REPORTED_OUTLIERS = 20;
+    // Slowest batches kept for correlation with pauses; the rest only go into the latency histogram
+    private static final int MAX_TRACKED_OUTLIERS = 1000;
+    // Longest pauses kept for correlation with the slowest batches; every pause still counts in the totals
+    private static final int MAX_TRACKED_PAUSES = 10_000;
+    // CPU samples kept for correlation; beyond this, neighbouring samples are merged, halving the resolution
+    private static final int MAX_CPU_SAMPLES = 3600;
+
+    private final Map<String, PauseTotals> pauseTotals = new TreeMap<>();
+    private final PriorityQueue<Pause> longestPauses = new PriorityQueue<>(Comparator.comparing(Pause::duration));
+    private final List<CpuSample> cpuSamples = new ArrayList<>();
+    private final CpuTotals cpuTotals = new CpuTotals();
+    private Duration cpuSamplePeriod = SAMPLE_PERIOD;
+    private final Histogram batchLatency = new Histogram(3);
+    private final PriorityQueue<BatchSample> slowestBatches = new PriorityQueue<>(Comparator.comparing(BatchSample::duration));
+    private final Map<String, ThreadCpu> threadCpu = new ConcurrentHashMap<>();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final RecordingStream stream;
+    private volatile CountDownLatch flushLatch;
+    private Instant startTime;
+    private Instant endTime;
+
+    public record Pause(Instant start, Duration duration, String kind) {
+        Instant end() {
+            return start.plus(duration);
+        }
+    }
+
+    public record CpuSample(Instant time, double jvmUser, double jvmSystem, double machineTotal) {
+    }
+
+    public record BatchSample(Instant start, Duration duration) {
+        Instant end() {
+            return start.plus(duration);
+        }
+    }
+
+    private static class PauseTotals {
+        private int count;
+        private double totalMillis;
+        private double maxMillis;
+    }
+
+    private static class CpuTotals {
+        private int samples;
+        private double jvmTotal;
+        private double jvmMax;
+        private double machineMax;
+    }
+
+    private static class ThreadCpu {
+        private double total;
+        private int samples;
+    }
+
+    public JvmTelemetryRecorder() {
+        this.stream = new RecordingStream();
+        stream.enable("jdk.GCPhasePause").withoutThreshold();
+        stream.enable("jdk.SafepointBegin").withoutThreshold();
+        stream.enable("jdk.ObjectAllocationSample").with("throttle", "150/s");
+        stream.enable("jdk.CPULoad").withPeriod(SAMPLE_PERIOD);
+        stream.enable("jdk.ThreadCPULoad").withPeriod(SAMPLE_PERIOD);
+
+        stream.onEvent("jdk.GCPhasePause", event -> addPause(event, event.getString("name")));
+        stream.onEvent("jdk.SafepointBegin", event -> addPause(event, "Safepoint"));
+        stream.onEvent("jdk.ObjectAllocationSample", event -> allocatedBytes.addAndGet(event.getLong("weight")));
+        stream.onEvent("jdk.CPULoad", this::addCpuSample);
+        stream.onEvent("jdk.ThreadCPULoad", this::addThreadCpuSample);
+        stream.onFlush(() -> {
+            CountDownLatch latch = flushLatch;
+            if (latch != null) {
+                latch.countDown();
+            }
+        });
+    }
+
+    public void start() {
+        startTime = Instant.now();
+        stream.startAsync();
+        logger.info("JVM telemetry recording started");
+    }
+
+    /**
+     * Stops sampling, waiting for one more JFR flush so events from the last second are not lost.
+     */
+    public void stop() {
+        endTime = Instant.now();
+        flushLatch = new CountDownLatch(1);
+        try {
+            if (!flushLatch.await(5, TimeUnit.SECONDS)) {
+                logger.warn("Timed out waiting for the final JFR flush; the last events may be missing");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stream.close();
+    }
+
+    /**
+     * Places the batch, which ended now, on the telemetry timeline, so outliers can be matched against client-side pauses.
+     */
+    @Override
+    public void recordBatch(int batchRows, long nanos) {
+        recordBatch(Instant.now().minusNanos(nanos), Duration.ofNanos(nanos));
+    }
+
+    public void recordBatch(Instant start, Duration duration) {
+        synchronized (slowestBatches) {
+            batchLatency.recordValue(Math.max(1, duration.toNanos() / 1000));
+            if (slowestBatches.size() < MAX_TRACKED_OUTLIERS) {
+                slowestBatches.add(new BatchSample(start, duration));
+            } else if (duration.compareTo(slowestBatches.peek().duration()) > 0) {
+                slowestBatches.poll();
+                slowestBatches.add(new BatchSample(start, duration));
+            }
+        }
+    }
+
+    private void addPause(RecordedEvent event, String kind) {
+        Pause pause = new Pause(event.getStartTime(), event.getDuration(), kind);
+        synchronized (pauseTotals) {
+            PauseTotals totals = pauseTotals.computeIfAbsent(kind, k -> new PauseTotals());
+            totals.count++;
+            totals.totalMillis += millis(pause.duration());
+            totals.maxMillis = Math.max(totals.maxMillis, millis(pause.duration()));
+            if (longestPauses.size() < MAX_TRACKED_PAUSES) {
+                longestPauses.add(pause);
+            } else if (pause.duration().compareTo(longestPauses.peek().duration()) > 0) {
+                longestPauses.poll();
+                longestPauses.add(pause);
+            }
+        }
+    }
+
+    private void addCpuSample(RecordedEvent event) {
+        CpuSample sample = new CpuSample(event.getStartTime(),
+            event.getFloat("jvmUser"), event.getFloat("jvmSystem"), event.getFloat("machineTotal"));
+        synchronized (cpuSamples) {
+            double jvm = sample.jvmUser() + sample.jvmSystem();
+            cpuTotals.samples++;
+            cpuTotals.jvmTotal += jvm;
+            cpuTotals.jvmMax = Math.max(cpuTotals.jvmMax, jvm);
+            cpuTotals.machineMax = Math.max(cpuTotals.machineMax, sample.machineTotal());
+            cpuSamples.add(sample);
+            if (cpuSamples.size() > MAX_CPU_SAMPLES) {
+                halveCpuResolution();
+            }
+        }
+    }
+
+    /**
+     * Merges each pair of neighbouring CPU samples into one that starts with the first and keeps the higher
+     * load of the two, so the timeline stays bounded however long the run lasts.
+     */
+    private void halveCpuResolution() {
+        List<CpuSample> merged = new ArrayList<>(cpuSamples.size() / 2 + 1);
+        for (int i = 0; i < cpuSamples.size(); i += 2) {
+            CpuSample first = cpuSamples.get(i);
+            if (i + 1 == cpuSamples.size()) {
+                merged.add(first);
+                break;
+            }
+            CpuSample second = cpuSamples.get(i + 1);
+            merged.add(new CpuSample(first.time(), Math.max(first.jvmUser(), second.jvmUser()),
+                Math.max(first.jvmSystem(), second.jvmSystem()), Math.max(first.machineTotal(), second.machineTotal())));
+        }
+        cpuSamples.clear();
+        cpuSamples.addAll(merged);
+        cpuSamplePeriod = cpuSamplePeriod.multipliedBy(2);
+    }
+
+    private void addThreadCpuSample(RecordedEvent event) {
+        RecordedThread thread = event.getThread("eventThread");
+        if (thread == null) {
+            return;
+        }
+        String name = thread.getJavaName() != null ? thread.getJavaName() : thread.getOSName();
+        ThreadCpu cpu = threadCpu.computeIfAbsent(name, n -> new ThreadCpu());
+        synchronized (cpu) {
+            cpu.total += event.getFloat("user") + event.getFloat("system");
+            cpu.samples++;
+        }
+    }
+
+    /**
+     * @param cpuMicrosPerOperation Process CPU time per operation over the run, as measured by
+     *                              {@link MetricsService#getCpuMicrosPerOperation()}, or negative if unknown
+     */
+    public void printReport(double cpuMicrosPerOperation) {
+        List<Pause> pauseSnapshot;
+        List<CpuSample> cpuSnapshot;
+        Duration cpuPeriod;
+        List<BatchSample> batchSnapshot;
+        long batchCount;
+        synchronized (pauseTotals) {
+            pauseSnapshot = new ArrayList<>(longestPauses);
+        }
+        synchronized (cpuSamples) {
+            cpuSnapshot = new ArrayList<>(cpuSamples);
+            cpuPeriod = cpuSamplePeriod;
+        }
+        synchronized (slowestBatches) {
+            batchSnapshot = new ArrayList<>(slowestBatches);
+            batchCount = batchLatency.getTotalCount();
+            if (batchCount > 0) {
+                logger.info(String.format("Batch latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms over %d batches",
+                    batchLatency.getValueAtPercentile(50) / 1000.0, batchLatency.getValueAtPercentile(99) / 1000.0,
+                    batchLatency.getMaxValue() / 1000.0, batchCount));
+            }
+        }
+        double seconds = Duration.between(startTime, endTime != null ? endTime : Instant.now()).toMillis() / 1000.0;
+
+        logger.info("\nJVM Telemetry:");
+        logger.info("--------------");
+        synchronized (pauseTotals) {
+            pauseTotals.forEach((kind, totals) -> logger.info(String.format("%s: %d pauses, total %.2f ms, max %.2f ms",
+                kind, totals.count, totals.totalMillis, totals.maxMillis)));
+        }
+        logger.info(String.format("Allocation rate: %.2f MB/s (sampled)", allocatedBytes.get() / 1_048_576.0 / seconds));
+        synchronized (cpuSamples) {
+            logger.info(String.format("JVM CPU: avg %.1f%%, max %.1f%%; machine CPU max %.1f%%",
+                cpuTotals.jvmTotal / Math.max(1, cpuTotals.samples) * 100, cpuTotals.jvmMax * 100,
+                cpuTotals.machineMax * 100));
+        }
+        threadCpu.entrySet().stream()
+            .sorted(Comparator.comparingDouble((Map.Entry<String, ThreadCpu> e) -> -e.getValue().total))
+            .limit(5)
+            .forEach(e -> logger.info(String.format("  Thread %s: avg %.1f%% CPU",
+                e.getKey(), e.getValue().total / Math.max(1, e.getValue().samples) * 100)));
+        if (cpuMicrosPerOperation >= 0) {
+            logger.info(String.format("Client CPU time per operation: %.2f us", cpuMicrosPerOperation));
+        }
+
+        printOutliers(batchSnapshot, batchCount, pauseSnapshot, cpuSnapshot, cpuPeriod);
+    }
+
+    /**
+     * @param batchSnapshot The slowest batches, at most {@link #MAX_TRACKED_OUTLIERS} of them
+     * @param batchCount Every batch of the run
+     * @param pauseSnapshot The longest pauses, at most {@link #MAX_TRACKED_PAUSES} of them
+     * @param cpuPeriod The time each CPU sample covers, longer than the sampling period once samples were merged
+     */
+    private void printOutliers(List<BatchSample> batchSnapshot, long batchCount, List<Pause> pauseSnapshot,
+                               List<CpuSample> cpuSnapshot, Duration cpuPeriod) {
+        if (batchSnapshot.isEmpty()) {
+            return;
+        }
+        List<BatchSample> sorted = new ArrayList<>(batchSnapshot);
+        sorted.sort(Comparator.comparing(BatchSample::duration).reversed());
+        long outlierCount = Math.max(1, (long) Math.ceil(batchCount * (1 - OUTLIER_PERCENTILE)));
+        if (outlierCount > sorted.size()) {
+            logger.info("Only the slowest {} of {} outlier batches are correlated with pauses", sorted.size(), outlierCount);
+        }
+        List<BatchSample> outliers = sorted.subList(0, (int) Math.min(outlierCount, sorted.size()));
+
+        int overlapping = 0;
+        List<String> lines = new ArrayList<>();
+        for (BatchSample batch : outliers) {
+            List<Pause> overlaps = pauseSnapshot.stream()
+                .filter(p -> p.start().isBefore(batch.end()) && p.end().isAfter(batch.start()))
+                .toList();
+            if (!overlaps.isEmpty()) {
+                overlapping++;
+            }
+            if (lines.size() < MAX_REPORTED_OUTLIERS) {
+                double cpu = cpuSnapshot.stream()
+                    .filter(s -> !s.time().isBefore(batch.start().minus(cpuPeriod)) && !s.time().isAfter(batch.end().plus(SAMPLE_PERIOD)))
+                    .mapToDouble(CpuSample::machineTotal)
+                    .max().orElse(0);
+                lines.add(String.format("  %s %.2f ms: %s, machine CPU %.1f%%",
+                    batch.start(), millis(batch.duration()),
+                    overlaps.isEmpty() ? "no client pause"
+                        : String.format("overlapped %d client pause(s) totalling %.2f ms (%s)", overlaps.size(),
+                            overlaps.stream().mapToDouble(p -> millis(p.duration())).sum(),
+                            String.join(", ", overlaps.stream().map(Pause::kind).distinct().toList())),
+                    cpu * 100));
+            }
+        }
+
+        logger.info(String.format("\nOutlier batches (slowest %.0f%%): %d, of which %d overlapped a client-side pause",
+            (1 - OUTLIER_PERCENTILE) * 100, outliers.size(), overlapping));
+        lines.forEach(logger::info);
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
@@ -3,33 +3,64 @@ package com.microbenchmark.metrics;
 import com.microbenchmark.config.MonitoringConfig;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.micrometer.stackdriver.StackdriverConfig;
 import io.micrometer.stackdriver.StackdriverMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 public class MetricsService {
     private static final Logger logger = LoggerFactory.getLogger(MetricsService.class);
+    private static final int MAX_REPORTED_BATCH_SIZES = 20;
+    // Batch sizes beyond this many distinct ones share one timer and counter, so memory stays bounded
+    // however the sizes vary over a long run
+    private static final int MAX_TRACKED_BATCH_SIZES = 64;
+    private static final int OTHER_BATCH_SIZES = -1;
     private final MonitoringConfig config;
     private final MeterRegistry registry;
     private final Map<Integer, Timer> batchTimers;
     private final MeterRegistry cloudRegistry;
     private final Counter totalOperations;
     private final Counter failedOperations;
+    private final Counter succeededOperations;
+    private final Timer batchLatency;
+    private final Map<String, Counter> errorCounts = new ConcurrentHashMap<>();
+    private final Map<String, Counter> retryCounts = new ConcurrentHashMap<>();
+    private final Map<String, Timer> queryTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> phaseTimers = new ConcurrentHashMap<>();
+    private final LongAdder recordedRows = new LongAdder();
+    private volatile long runStart;
+    private volatile long runEnd;
+    private volatile long runStartCpuNanos;
+    private volatile long runEndCpuNanos;
     private final Timer.Builder timerBuilder;
     private final Map<Integer, Counter> batchSizeCounts;
     private final String databaseType;
     private final boolean enableCloudMetrics;
+    private final List<BatchListener> batchListeners = new CopyOnWriteArrayList<>();
 
     public MetricsService(MonitoringConfig config, String databaseType, String projectId) {
+        this(config, databaseType, projectId, Tags.empty());
+    }
+
+    /**
+     * @param commonTags Added to every metric, e.g. the scenario phase a run belongs to
+     */
+    public MetricsService(MonitoringConfig config, String databaseType, String projectId, Tags commonTags) {
         this.config = config;
         this.databaseType = databaseType;
         this.enableCloudMetrics = projectId != null && !projectId.isEmpty();
@@ -45,6 +76,10 @@ public class MetricsService {
             this.cloudRegistry = null;
             logger.info("Google Cloud Monitoring disabled");
         }
+        registry.config().commonTags(commonTags);
+        if (cloudRegistry != null) {
+            cloudRegistry.config().commonTags(commonTags);
+        }
 
         Tags tags = Tags.of(
             "database", databaseType,
@@ -61,13 +96,25 @@ public class MetricsService {
                 .description("Number of failed operations")
                 .register(registry);
 
+        this.succeededOperations = Counter.builder("operations.succeeded")
+                .tags(tags)
+                .description("Number of operations the database confirmed")
+                .register(registry);
+
+        this.batchLatency = Timer.builder("batch.latency")
+                .tags(tags)
+                .description("Time taken to execute a batch, across all batch sizes")
+                .publishPercentiles(0.5, 0.75, 0.90, 0.95, 0.99)
+                .register(registry);
+
         this.timerBuilder = Timer.builder("query.execution")
                 .tags(tags)
                 .description("Time taken to execute individual queries")
                 .publishPercentiles(0.5, 0.75, 0.90, 0.95, 0.99);
 
-        this.batchTimers = new HashMap<>();
-        this.batchSizeCounts = new HashMap<>();
+        // Concurrent maps, since reactive executors record from several event-loop threads
+        this.batchTimers = new ConcurrentHashMap<>();
+        this.batchSizeCounts = new ConcurrentHashMap<>();
 
         // Register with cloud if enabled
         if (enableCloudMetrics) {
@@ -80,6 +127,11 @@ public class MetricsService {
                   .tags(tags)
                   .description("Number of failed operations")
                   .register(cloudRegistry);
+
+            Counter.builder("operations.succeeded")
+                  .tags(tags)
+                  .description("Number of operations the database confirmed")
+                  .register(cloudRegistry);
         }
     }
 
@@ -110,10 +162,53 @@ public class MetricsService {
     }
 
     public Timer getQueryTimer(String queryType) {
-        Timer localTimer = timerBuilder.tags("type", queryType).register(registry);
-        
+        return queryTimers.computeIfAbsent(queryType, type -> {
+            // The shared builder is mutable, so tag and register one timer at a time
+            synchronized (timerBuilder) {
+                timerBuilder.tags("type", type);
+                return register(timerBuilder);
+            }
+        });
+    }
+
+    /**
+     * @return A timer for one phase of a batch, tagged with the statement type the phase belongs to
+     */
+    public Timer getPhaseTimer(BatchPhase phase, String statementType) {
+        return phaseTimers.computeIfAbsent(phase.name() + ":" + statementType, key -> register(
+            Timer.builder("batch.phase")
+                .tags(Tags.of(
+                    "database", databaseType,
+                    "phase", phase.name().toLowerCase(),
+                    "type", statementType,
+                    "application", "microbenchmark"
+                ))
+                .description("Time spent in one phase of a batch")
+                .publishPercentiles(0.5, 0.75, 0.90, 0.95, 0.99)));
+    }
+
+    /**
+     * Records one phase of a batch. Execute times are also recorded as query executions of that statement type.
+     * Matches {@link BatchPhaseListener}, so providers can report per-statement-type phases directly.
+     */
+    public void recordPhase(BatchPhase phase, String statementType, long nanos) {
+        getPhaseTimer(phase, statementType).record(nanos, TimeUnit.NANOSECONDS);
+        if (phase == BatchPhase.EXECUTE) {
+            getQueryTimer(statementType).record(nanos, TimeUnit.NANOSECONDS);
+            for (BatchListener listener : batchListeners) {
+                listener.recordStatement(statementType, nanos);
+            }
+        }
+    }
+
+    /**
+     * Registers the timer locally and, when enabled, with Cloud Monitoring; recordings go to both.
+     */
+    private Timer register(Timer.Builder builder) {
+        Timer localTimer = builder.register(registry);
+
         if (enableCloudMetrics) {
-            Timer cloudTimer = timerBuilder.tags("type", queryType).register(cloudRegistry);
+            Timer cloudTimer = builder.register(cloudRegistry);
             return new Timer() {
                 @Override
                 public void record(long amount, TimeUnit unit) {
@@ -179,21 +274,38 @@ public class MetricsService {
                 }
             };
         }
-        
+
         return localTimer;
     }
 
+    /**
+     * Also passes every subsequent batch, statement execution and failure to the listener, e.g. the JVM
+     * telemetry timeline, the soak recorder's rolling windows or the server statistics sampler.
+     */
+    public void addBatchListener(BatchListener listener) {
+        batchListeners.add(listener);
+    }
+
     public void recordBatchExecution(int batchSize, Duration duration) {
-        Timer timer = batchTimers.computeIfAbsent(batchSize,
+        long nanos = duration.toNanos();
+        for (BatchListener listener : batchListeners) {
+            listener.recordBatch(batchSize, nanos);
+        }
+        recordedRows.add(batchSize);
+
+        int trackedSize = trackedBatchSize(batchSize);
+        Timer timer = batchTimers.computeIfAbsent(trackedSize,
             size -> Timer.builder("batch.execution")
-                .tag("batch.size", String.valueOf(size))
+                .tag("batch.size", batchSizeTag(size))
+                .publishPercentiles(0.5, 0.75, 0.90, 0.95, 0.99)
                 .register(registry));
         timer.record(duration);
+        batchLatency.record(duration);
 
-        Counter counter = batchSizeCounts.computeIfAbsent(batchSize, size -> {
+        Counter counter = batchSizeCounts.computeIfAbsent(trackedSize, size -> {
             Tags tags = Tags.of(
                 "database", databaseType,
-                "batch_size", String.valueOf(size),
+                "batch_size", batchSizeTag(size),
                 "application", "microbenchmark"
             );
 
@@ -214,49 +326,214 @@ public class MetricsService {
         counter.increment();
     }
 
+    private int trackedBatchSize(int batchSize) {
+        if (batchTimers.containsKey(batchSize) || batchTimers.size() < MAX_TRACKED_BATCH_SIZES) {
+            return batchSize;
+        }
+        return OTHER_BATCH_SIZES;
+    }
+
+    private static String batchSizeTag(int size) {
+        return size == OTHER_BATCH_SIZES ? "other" : String.valueOf(size);
+    }
+
     public void incrementTotalOperations(long count) {
         totalOperations.increment(count);
     }
 
+    /**
+     * Counts rows the database confirmed, as opposed to rows that were only sent.
+     */
+    public void incrementSucceededOperations(long count) {
+        succeededOperations.increment(count);
+    }
+
+    /**
+     * @return Operations counted by the executor, or the statements implied by the recorded batches if it counts none
+     */
+    public long getTotalOperations() {
+        long counted = (long) totalOperations.count();
+        if (counted > 0) {
+            return counted;
+        }
+        return recordedRows.sum();
+    }
+
+    public long getSucceededOperations() {
+        return (long) succeededOperations.count();
+    }
+
+    public long getFailedOperations() {
+        return (long) failedOperations.count();
+    }
+
     public void incrementFailedOperations() {
         failedOperations.increment();
     }
 
+    /**
+     * Records a batch that failed for good, after any retries.
+     * @param category The error classification, used as a tag
+     * @param failedRows The rows of the batch that were not applied
+     */
+    public void recordFailedBatch(String category, long failedRows) {
+        failedOperations.increment(failedRows);
+        for (BatchListener listener : batchListeners) {
+            listener.recordFailure(failedRows);
+        }
+        categoryCounter(errorCounts, "batch.errors", category, "Batches that failed after all retries").increment();
+    }
+
+    public void recordRetry(String category) {
+        categoryCounter(retryCounts, "batch.retries", category, "Batch attempts that failed and were retried").increment();
+    }
+
+    private Counter categoryCounter(Map<String, Counter> counters, String name, String category, String description) {
+        return counters.computeIfAbsent(category, c -> {
+            Tags tags = Tags.of(
+                "database", databaseType,
+                "category", c,
+                "application", "microbenchmark"
+            );
+            if (enableCloudMetrics) {
+                Counter.builder(name).tags(tags).description(description).register(cloudRegistry);
+            }
+            return Counter.builder(name).tags(tags).description(description).register(registry);
+        });
+    }
+
+    /**
+     * Marks the start of the measured run; throughput and goodput are computed over wall-clock time from here.
+     */
+    public void startRun() {
+        runStart = System.nanoTime();
+        runEnd = 0;
+        runStartCpuNanos = processCpuNanos();
+        runEndCpuNanos = 0;
+    }
+
+    public void finishRun() {
+        runEnd = System.nanoTime();
+        runEndCpuNanos = processCpuNanos();
+    }
+
+    /**
+     * @return Process CPU time spent per operation during the run in microseconds, or -1 if it is not available
+     */
+    public double getCpuMicrosPerOperation() {
+        long total = getTotalOperations();
+        if (runStartCpuNanos < 0 || runEndCpuNanos <= 0 || total <= 0) {
+            return -1;
+        }
+        return (runEndCpuNanos - runStartCpuNanos) / 1000.0 / total;
+    }
+
+    static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * @param percentile One of the published percentiles, e.g. 0.99
+     * @return The batch latency at that percentile across all batch sizes, or NaN if it is not published
+     */
+    public double getBatchLatencyPercentile(double percentile, TimeUnit unit) {
+        for (ValueAtPercentile value : batchLatency.takeSnapshot().percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(unit);
+            }
+        }
+        return Double.NaN;
+    }
+
+    public long getBatchCount() {
+        return batchLatency.count();
+    }
+
+    /**
+     * @return Wall-clock seconds between startRun and finishRun, or the summed batch time if the run was not marked
+     */
+    public double getWallTimeSeconds() {
+        if (runStart == 0) {
+            return getTotalTimeSeconds();
+        }
+        long end = runEnd != 0 ? runEnd : System.nanoTime();
+        return (end - runStart) / 1_000_000_000.0;
+    }
+
     public void printMetrics() {
         logger.info("Google Cloud Monitoring {}", config.isCloudMonitoringEnabled() ? "enabled" : "disabled");
-        if (batchTimers.isEmpty()) {
+        if (batchTimers.isEmpty() && failedOperations.count() == 0) {
             return;
         }
 
         logger.info("\nMetrics Summary:");
         logger.info("---------------");
 
-        for (Map.Entry<Integer, Timer> entry : batchTimers.entrySet()) {
-            int batchSize = entry.getKey();
-            Timer timer = entry.getValue();
-            HistogramSnapshot snapshot = timer.takeSnapshot();
-
-            logger.info("\nBatch Size: {} statements", batchSize);
-            logger.info("Number of batches: {}", timer.count());
-            logger.info("Execution Times:");
-            logger.info("  P50: {:.2f} ms", snapshot.percentileValues()[0].value());
-            logger.info("  P75: {:.2f} ms", snapshot.percentileValues()[1].value());
-            logger.info("  P90: {:.2f} ms", snapshot.percentileValues()[2].value());
-            logger.info("  P95: {:.2f} ms", snapshot.percentileValues()[3].value());
-            logger.info("  P99: {:.2f} ms", snapshot.percentileValues()[4].value());
-            logger.info("  Mean: {:.2f} ms", snapshot.mean());
-            logger.info("  Max: {:.2f} ms", snapshot.max());
-            logger.info("  Throughput: {:.2f} statements/second", calculateThroughput(timer, batchSize));
+        if (batchTimers.size() > MAX_REPORTED_BATCH_SIZES) {
+            logger.info(String.format("\n%s distinct batch sizes between %d and %d rows; see overall latency below",
+                batchTimers.containsKey(OTHER_BATCH_SIZES) ? "More than " + MAX_TRACKED_BATCH_SIZES : String.valueOf(batchTimers.size()),
+                batchTimers.keySet().stream().mapToInt(Integer::intValue).filter(size -> size >= 0).min().orElse(0),
+                batchTimers.keySet().stream().mapToInt(Integer::intValue).max().orElse(0)));
+        } else {
+            for (Map.Entry<Integer, Timer> entry : new TreeMap<>(batchTimers).entrySet()) {
+                int batchSize = entry.getKey();
+                Timer timer = entry.getValue();
+
+                logger.info("\nBatch Size: {} statements", batchSize);
+                logger.info("Number of batches: {}", timer.count());
+                logLatency(timer.takeSnapshot());
+                logger.info(String.format("  Throughput: %.2f statements/second", calculateThroughput(timer, batchSize)));
+            }
         }
 
         logger.info("\nOverall Statistics:");
-        double totalOperations = batchTimers.entrySet().stream()
-            .mapToDouble(e -> e.getKey() * e.getValue().count())
-            .sum();
-        logger.info("Total Operations: {}", totalOperations);
-        logger.info("Failed Operations: {}", 0.0); // We're not tracking failures yet
-        logger.info("Total Time: {:.2f} seconds", getTotalTimeSeconds());
-        logger.info("Overall Throughput: {:.2f} statements/second", totalOperations / getTotalTimeSeconds());
+        logger.info("Batches: {}", batchLatency.count());
+        logLatency(batchLatency.takeSnapshot());
+        double wallTime = getWallTimeSeconds();
+        long total = getTotalOperations();
+        long succeeded = getSucceededOperations();
+        logger.info("Total Operations: {}", total);
+        logger.info("Succeeded Operations: {}", succeeded);
+        logger.info("Failed Operations: {}", getFailedOperations());
+        errorCounts.forEach((category, counter) -> logger.info("  Failed batches ({}): {}", category, (long) counter.count()));
+        retryCounts.forEach((category, counter) -> logger.info("  Retried attempts ({}): {}", category, (long) counter.count()));
+        logger.info(String.format("Total Time: %.2f seconds (%.2f seconds executing batches)", wallTime, getTotalTimeSeconds()));
+        logger.info(String.format("Raw Throughput: %.2f statements/second", total / wallTime));
+        logger.info(String.format("Goodput: %.2f statements/second", succeeded / wallTime));
+        printPhaseBreakdown();
+    }
+
+    private void printPhaseBreakdown() {
+        if (phaseTimers.isEmpty()) {
+            return;
+        }
+        logger.info("\nPhase Breakdown (per statement type):");
+        new TreeMap<>(phaseTimers).entrySet().stream()
+            .sorted(Comparator.comparing((Map.Entry<String, Timer> e) -> e.getValue().getId().getTag("type"))
+                .thenComparing(e -> BatchPhase.valueOf(e.getKey().substring(0, e.getKey().indexOf(':')))))
+            .forEach(e -> {
+                Timer timer = e.getValue();
+                HistogramSnapshot snapshot = timer.takeSnapshot();
+                ValueAtPercentile[] percentiles = snapshot.percentileValues();
+                logger.info(String.format("  %-14s %-8s count %8d  mean %9.3f ms  p50 %9.3f ms  p99 %9.3f ms  total %9.2f s",
+                    timer.getId().getTag("type"), timer.getId().getTag("phase"), timer.count(),
+                    snapshot.mean(TimeUnit.MILLISECONDS),
+                    percentiles[0].value(TimeUnit.MILLISECONDS),
+                    percentiles[percentiles.length - 1].value(TimeUnit.MILLISECONDS),
+                    timer.totalTime(TimeUnit.SECONDS)));
+            });
+    }
+
+    private void logLatency(HistogramSnapshot snapshot) {
+        logger.info("Execution Times:");
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            logger.info(String.format("  P%.0f: %.2f ms", percentile.percentile() * 100, percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        logger.info(String.format("  Mean: %.2f ms", snapshot.mean(TimeUnit.MILLISECONDS)));
+        logger.info(String.format("  Max: %.2f ms", snapshot.max(TimeUnit.MILLISECONDS)));
     }
 
     private double calculateThroughput(Timer timer, int batchSize) {
@@ -0,0 +1,114 @@
+package com.microbenchmark.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Samples pg_stat_database (commits, rollbacks, cache hits, deadlocks), pg_stat_activity (backends
+ * and what they are waiting on) and, if the extension is installed, pg_stat_statements (statement
+ * execution and planning time) for the current database. Execution time per second approximates how
+ * busy the server is, as PostgreSQL does not report its own CPU use.
+ */
+public class PostgresStatsSource implements ServerStatsSource {
+    private static final Logger logger = LoggerFactory.getLogger(PostgresStatsSource.class);
+    private static final List<String> COLUMNS = List.of(
+        "commits_per_s", "rollbacks_per_s", "deadlocks", "cache_hit_ratio",
+        "statements_per_s", "exec_ms_per_s", "plan_ms_per_s", "mean_exec_ms",
+        "active_backends", "lock_waits", "lwlock_waits", "io_waits");
+    private static final String DATABASE_SQL = "SELECT xact_commit, xact_rollback, deadlocks, blks_hit, blks_read "
+        + "FROM pg_stat_database WHERE datname = current_database()";
+    // The sampler's own backend is left out; it is never waiting on anything interesting
+    private static final String ACTIVITY_SQL = "SELECT "
+        + "count(*) FILTER (WHERE state = 'active'), "
+        + "count(*) FILTER (WHERE wait_event_type = 'Lock'), "
+        + "count(*) FILTER (WHERE wait_event_type = 'LWLock'), "
+        + "count(*) FILTER (WHERE wait_event_type = 'IO') "
+        + "FROM pg_stat_activity WHERE datname = current_database() AND pid <> pg_backend_pid()";
+    // total_plan_time is only filled in with pg_stat_statements.track_planning = on
+    private static final String STATEMENTS_SQL = "SELECT COALESCE(sum(calls), 0), COALESCE(sum(total_exec_time), 0), "
+        + "COALESCE(sum(total_plan_time), 0) FROM pg_stat_statements "
+        + "WHERE dbid = (SELECT oid FROM pg_database WHERE datname = current_database())";
+
+    // Counters from the previous poll
+    private double[] previousDatabase;
+    private double[] previousStatements;
+    private boolean statementsAvailable = true;
+
+    @Override
+    public List<String> columns() {
+        return COLUMNS;
+    }
+
+    @Override
+    public double[] poll(Connection conn, double elapsedSeconds) throws SQLException {
+        double[] values = new double[COLUMNS.size()];
+        try (Statement stmt = conn.createStatement()) {
+            double[] database = readRow(stmt, DATABASE_SQL, 5);
+            if (previousDatabase != null && elapsedSeconds > 0) {
+                values[0] = (database[0] - previousDatabase[0]) / elapsedSeconds;
+                values[1] = (database[1] - previousDatabase[1]) / elapsedSeconds;
+                values[2] = database[2] - previousDatabase[2];
+                double hits = database[3] - previousDatabase[3];
+                double reads = database[4] - previousDatabase[4];
+                values[3] = hits + reads > 0 ? hits / (hits + reads) : Double.NaN;
+            } else {
+                fill(values, 0, 4);
+            }
+            previousDatabase = database;
+
+            double[] statements = statementsAvailable ? readStatements(stmt) : null;
+            if (statements != null && previousStatements != null && elapsedSeconds > 0) {
+                double calls = statements[0] - previousStatements[0];
+                double execMillis = statements[1] - previousStatements[1];
+                values[4] = calls / elapsedSeconds;
+                values[5] = execMillis / elapsedSeconds;
+                values[6] = (statements[2] - previousStatements[2]) / elapsedSeconds;
+                values[7] = calls > 0 ? execMillis / calls : Double.NaN;
+            } else {
+                fill(values, 4, 8);
+            }
+            previousStatements = statements;
+
+            double[] activity = readRow(stmt, ACTIVITY_SQL, 4);
+            System.arraycopy(activity, 0, values, 8, 4);
+        }
+        return values;
+    }
+
+    private double[] readStatements(Statement stmt) {
+        try {
+            return readRow(stmt, STATEMENTS_SQL, 3);
+        } catch (SQLException e) {
+            statementsAvailable = false;
+            logger.warn("pg_stat_statements is not available, so statement and plan times are not sampled: {}",
+                e.getMessage());
+            return null;
+        }
+    }
+
+    private static double[] readRow(Statement stmt, String sql, int columns) throws SQLException {
+        double[] row = new double[columns];
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next()) {
+                fill(row, 0, columns);
+                return row;
+            }
+            for (int i = 0; i < columns; i++) {
+                row[i] = rs.getDouble(i + 1);
+            }
+        }
+        return row;
+    }
+
+    private static void fill(double[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            values[i] = Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.microbenchmark.metrics;
+
+import com.microbenchmark.config.DatabaseConfig;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the database's own statistics on a separate connection at a low, fixed rate while a benchmark runs,
+ * and writes each sample to a CSV on the same row as the client metrics for the same interval: batches and
+ * rows per second and batch latency percentiles. That way server CPU or busy time, lock waits and plan
+ * times can be read next to the client percentiles they explain. A summary of every column is logged on close.
+ */
+public class ServerStatsSampler implements BatchListener, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ServerStatsSampler.class);
+    private static final List<String> CLIENT_COLUMNS = List.of(
+        "epoch_ms", "elapsed_s", "client_batches_per_s", "client_rows_per_s", "client_p50_ms", "client_p99_ms", "client_max_ms");
+
+    private final DatabaseConfig databaseConfig;
+    private final ServerStatsSource source;
+    private final Duration interval;
+    private final String outputPath;
+    private final IntervalRecorder recorder = new IntervalRecorder();
+    private final ScheduledExecutorService scheduler;
+    private final int columnCount;
+    // Sum, count and maximum of every column, for the summary
+    private final double[] sums;
+    private final long[] counts;
+    private final double[] maxima;
+    private PrintStream csv;
+    private Connection connection;
+    private long startNanos;
+    private long lastSampleNanos;
+    private boolean failed;
+
+    /**
+     * @param interval   Time between samples; several seconds at least, so sampling does not load the database
+     * @param outputPath Path of the CSV file
+     */
+    public ServerStatsSampler(DatabaseConfig databaseConfig, ServerStatsSource source, Duration interval, String outputPath) {
+        if (interval.toMillis() < 1000) {
+            throw new IllegalArgumentException("Server statistics must be sampled at most once per second");
+        }
+        this.databaseConfig = databaseConfig;
+        this.source = source;
+        this.interval = interval;
+        this.outputPath = outputPath;
+        this.columnCount = CLIENT_COLUMNS.size() + source.columns().size();
+        this.sums = new double[columnCount];
+        this.counts = new long[columnCount];
+        this.maxima = new double[columnCount];
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "server-stats-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the sampler's connection and takes the first sample, which only sets the starting point for rates.
+     */
+    public void start() {
+        try {
+            csv = new PrintStream(outputPath);
+            connection = databaseConfig.createConnection();
+            source.poll(connection, 0);
+        } catch (FileNotFoundException | SQLException e) {
+            closeQuietly();
+            throw new RuntimeException("Failed to start sampling server statistics", e);
+        }
+        csv.println(String.join(",", CLIENT_COLUMNS) + "," + String.join(",", source.columns()));
+        startNanos = System.nanoTime();
+        lastSampleNanos = startNanos;
+        recorder.reset();
+        scheduler.scheduleAtFixedRate(this::sample, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Sampling server statistics every {}s into {}", interval.toSeconds(), outputPath);
+    }
+
+    @Override
+    public void recordBatch(int batchRows, long nanos) {
+        recorder.record(batchRows, nanos);
+    }
+
+    /**
+     * Writes one CSV row with the client metrics since the previous sample and the server statistics now.
+     */
+    synchronized void sample() {
+        if (failed) {
+            return;
+        }
+        long now = System.nanoTime();
+        double elapsed = (now - lastSampleNanos) / 1_000_000_000.0;
+        lastSampleNanos = now;
+        Histogram intervalHistogram = recorder.closeInterval();
+        long intervalRows = recorder.getIntervalRows();
+
+        double[] server;
+        try {
+            server = source.poll(connection, elapsed);
+        } catch (SQLException e) {
+            // Stop sampling rather than fail the benchmark
+            failed = true;
+            logger.warn("Sampling server statistics failed, no more samples will be taken: {}", e.getMessage());
+            return;
+        }
+        double[] values = new double[columnCount];
+        values[0] = System.currentTimeMillis();
+        values[1] = (now - startNanos) / 1_000_000_000.0;
+        values[2] = intervalHistogram.getTotalCount() / elapsed;
+        values[3] = intervalRows / elapsed;
+        boolean empty = intervalHistogram.getTotalCount() == 0;
+        values[4] = empty ? Double.NaN : intervalHistogram.getValueAtPercentile(50) / 1000.0;
+        values[5] = empty ? Double.NaN : intervalHistogram.getValueAtPercentile(99) / 1000.0;
+        values[6] = empty ? Double.NaN : intervalHistogram.getMaxValue() / 1000.0;
+        System.arraycopy(server, 0, values, CLIENT_COLUMNS.size(), server.length);
+
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < columnCount; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            double value = values[i];
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            line.append(value == Math.rint(value) && Math.abs(value) < 1e15
+                ? String.valueOf((long) value)
+                : String.format(Locale.ROOT, "%.3f", value));
+            // The timestamps are not worth summarizing
+            if (i >= 2) {
+                sums[i] += value;
+                counts[i]++;
+                maxima[i] = counts[i] == 1 ? value : Math.max(maxima[i], value);
+            }
+        }
+        csv.println(line);
+        csv.flush();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (csv == null) {
+            return;
+        }
+        // A last sample for the partial interval since the previous one
+        sample();
+        closeQuietly();
+        logSummary();
+    }
+
+    /**
+     * Closes the CSV and the connection, either of which may not have been opened if {@link #start()} failed.
+     */
+    private void closeQuietly() {
+        if (csv != null) {
+            csv.close();
+            csv = null;
+        }
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.debug("Closing the sampler connection failed", e);
+            }
+            connection = null;
+        }
+    }
+
+    private void logSummary() {
+        logger.info("\nServer Statistics ({}):", outputPath);
+        logger.info(String.format("  %-28s %14s %14s", "column", "mean", "max"));
+        for (int i = 2; i < columnCount; i++) {
+            String name = i < CLIENT_COLUMNS.size() ? CLIENT_COLUMNS.get(i) : source.columns().get(i - CLIENT_COLUMNS.size());
+            if (name.endsWith("epoch_ms")) {
+                continue;
+            }
+            if (counts[i] == 0) {
+                logger.info(String.format("  %-28s %14s %14s", name, "-", "-"));
+            } else {
+                logger.info(String.format(Locale.ROOT, "  %-28s %14.3f %14.3f", name, sums[i] / counts[i], maxima[i]));
+            }
+        }
+    }
+}
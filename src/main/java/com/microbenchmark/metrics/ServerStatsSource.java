@@ -0,0 +1,35 @@
+package com.microbenchmark.metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Reads the statistics a database keeps about itself, for {@link ServerStatsSampler}. Sources turn
+ * cumulative counters into per-second rates between two polls, so the first poll only sets the starting
+ * point and returns NaN for rates.
+ */
+public interface ServerStatsSource {
+    /**
+     * @return The names of the values {@link #poll} returns, in order, used as CSV columns
+     */
+    List<String> columns();
+
+    /**
+     * @param elapsedSeconds Seconds since the previous poll, or 0 for the first one
+     * @return One value per column, NaN where a statistic is not available
+     * @throws SQLException if the statistics cannot be read at all
+     */
+    double[] poll(Connection conn, double elapsedSeconds) throws SQLException;
+
+    /**
+     * @return The source for a database profile, or null if the database keeps no statistics to sample
+     */
+    static ServerStatsSource forDatabase(String database) {
+        return switch (database) {
+            case "postgres" -> new PostgresStatsSource();
+            case "spanner", "pgadapter", "pgadapter-embedded" -> new SpannerStatsSource();
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,272 @@
+package com.microbenchmark.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records batch latency in fixed-length rolling windows for long soak runs. Each window's histogram is
+ * archived to an HdrHistogram log (.hlog), together with one histogram per statement type tagged with
+ * the type, and summarized in a CSV, then reset, so memory stays the same however long the run lasts.
+ * Windows are compared against a baseline taken from the first windows to flag throughput decay and
+ * latency creep.
+ */
+public class SoakRecorder implements BatchListener, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SoakRecorder.class);
+    /**
+     * Prefix of the .hlog comment that describes the run, read back by the report generator.
+     */
+    public static final String RUN_COMMENT = "Run: ";
+    private static final String CSV_HEADER =
+        "window,start_epoch_ms,end_epoch_ms,batches,rows,failed_rows,rows_per_second,p50_ms,p99_ms,max_ms,heap_after_gc_mb,flags";
+
+    public enum Trend {
+        THROUGHPUT_DECAY,   // the recent throughput is below the baseline by more than the threshold
+        LATENCY_CREEP       // the recent P99 batch latency is above the baseline by more than the threshold
+    }
+
+    private final Duration window;
+    private final int baselineWindows;
+    private final double decayThreshold;
+    private final double creepThreshold;
+    private final IntervalRecorder recorder = new IntervalRecorder();
+    // One recorder per statement type, of which there are only a few
+    private final Map<String, IntervalRecorder> statementRecorders = new ConcurrentHashMap<>();
+    private final LongAdder failedRows = new LongAdder();
+    private final ScheduledExecutorService scheduler;
+    private final PrintStream hlog;
+    private final PrintStream csv;
+    private final HistogramLogWriter logWriter;
+    private final String outputPrefix;
+    private final String description;
+    // Only the last trendWindows windows are kept, for the rolling means
+    private final double[] recentThroughput;
+    private final double[] recentP99;
+    private long windowIndex;
+    private long windowStartMillis;
+    private double baselineThroughput;
+    private double baselineP99;
+    private long flaggedWindows;
+    private boolean decaying;
+    private boolean creeping;
+    private double firstHeapMb = -1;
+    private double lastHeapMb;
+
+    /**
+     * @param window          Length of each window
+     * @param baselineWindows Windows averaged into the baseline, after which trends are checked
+     * @param trendWindows    Windows averaged into the recent values that are compared with the baseline
+     * @param decayThreshold  Fraction by which recent throughput may fall below the baseline before it is flagged
+     * @param creepThreshold  Fraction by which the recent P99 may rise above the baseline before it is flagged
+     * @param outputPrefix    Path prefix of the {@code .hlog} and {@code .csv} files
+     * @param description     What was run (database, executor, workload), written to the .hlog for reports
+     */
+    public SoakRecorder(Duration window, int baselineWindows, int trendWindows, double decayThreshold,
+                        double creepThreshold, String outputPrefix, String description) {
+        if (window.toMillis() < 1000) {
+            throw new IllegalArgumentException("Soak windows must be at least one second long");
+        }
+        if (baselineWindows < 1 || trendWindows < 1) {
+            throw new IllegalArgumentException("Soak baseline and trend windows must be at least 1");
+        }
+        this.window = window;
+        this.baselineWindows = baselineWindows;
+        this.decayThreshold = decayThreshold;
+        this.creepThreshold = creepThreshold;
+        this.outputPrefix = outputPrefix;
+        this.description = description;
+        this.recentThroughput = new double[trendWindows];
+        this.recentP99 = new double[trendWindows];
+        try {
+            this.hlog = new PrintStream(outputPrefix + ".hlog");
+            this.csv = new PrintStream(outputPrefix + ".csv");
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("Failed to create soak output files " + outputPrefix + ".*", e);
+        }
+        this.logWriter = new HistogramLogWriter(hlog);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "soak-recorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        windowStartMillis = System.currentTimeMillis();
+        recorder.reset();
+        logWriter.outputComment(RUN_COMMENT + description);
+        logWriter.outputComment("Batch latency in microseconds, one histogram per " + window.toSeconds() + "s window");
+        logWriter.outputLogFormatVersion();
+        logWriter.outputStartTime(windowStartMillis);
+        logWriter.setBaseTime(windowStartMillis);
+        logWriter.outputLegend();
+        csv.println(CSV_HEADER);
+        scheduler.scheduleAtFixedRate(() -> closeWindow(false), window.toMillis(), window.toMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Soak recording started: {}s windows, written to {}.hlog and {}.csv",
+            window.toSeconds(), outputPrefix, outputPrefix);
+    }
+
+    @Override
+    public void recordBatch(int batchRows, long nanos) {
+        recorder.record(batchRows, nanos);
+    }
+
+    @Override
+    public void recordStatement(String statementType, long nanos) {
+        statementRecorders.computeIfAbsent(statementType, type -> new IntervalRecorder()).record(0, nanos);
+    }
+
+    @Override
+    public void recordFailure(long rowCount) {
+        failedRows.add(rowCount);
+    }
+
+    /**
+     * @param last Whether this is the partial window at the end of the run, which is archived but, being
+     *             shorter, left out of the trends
+     */
+    private synchronized void closeWindow(boolean last) {
+        try {
+            Histogram intervalHistogram = recorder.closeInterval();
+            long endMillis = System.currentTimeMillis();
+            long windowRows = recorder.getIntervalRows();
+            long windowFailures = failedRows.sumThenReset();
+            double seconds = Math.max(1, endMillis - windowStartMillis) / 1000.0;
+            double throughput = windowRows / seconds;
+            double p50 = intervalHistogram.getValueAtPercentile(50) / 1000.0;
+            double p99 = intervalHistogram.getValueAtPercentile(99) / 1000.0;
+            double max = intervalHistogram.getMaxValue() / 1000.0;
+            double heapMb = heapAfterGcMb();
+
+            double startSeconds = (windowStartMillis - logWriter.getBaseTime()) / 1000.0;
+            double endSeconds = (endMillis - logWriter.getBaseTime()) / 1000.0;
+            logWriter.outputIntervalHistogram(startSeconds, endSeconds, intervalHistogram, 1000.0);
+            for (Map.Entry<String, IntervalRecorder> entry : statementRecorders.entrySet()) {
+                Histogram histogram = entry.getValue().closeInterval();
+                histogram.setTag(entry.getKey());
+                logWriter.outputIntervalHistogram(startSeconds, endSeconds, histogram, 1000.0);
+            }
+            String flags = last ? "" : checkTrends(throughput, p99);
+            csv.printf("%d,%d,%d,%d,%d,%d,%.2f,%.3f,%.3f,%.3f,%.1f,%s%n", windowIndex, windowStartMillis, endMillis,
+                intervalHistogram.getTotalCount(), windowRows, windowFailures, throughput, p50, p99, max, heapMb, flags);
+            hlog.flush();
+            csv.flush();
+            logger.info(String.format("Soak window %d: %.2f rows/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d failed rows, heap after GC %.1f MB%s",
+                windowIndex, throughput, p50, p99, max, windowFailures, heapMb, flags.isEmpty() ? "" : " [" + flags + "]"));
+
+            if (firstHeapMb < 0) {
+                firstHeapMb = heapMb;
+            }
+            lastHeapMb = heapMb;
+            windowIndex++;
+            windowStartMillis = endMillis;
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule, and with it every later window
+            logger.error("Failed to close soak window {}", windowIndex, e);
+        }
+    }
+
+    /**
+     * Averages the first windows into the baseline, then compares the mean of the most recent windows with it.
+     * @return The trends flagged for this window, separated by spaces
+     */
+    private String checkTrends(double throughput, double p99) {
+        if (windowIndex < baselineWindows) {
+            baselineThroughput += throughput / baselineWindows;
+            baselineP99 += p99 / baselineWindows;
+            return "";
+        }
+        int slot = (int) ((windowIndex - baselineWindows) % recentThroughput.length);
+        recentThroughput[slot] = throughput;
+        recentP99[slot] = p99;
+        int filled = (int) Math.min(windowIndex - baselineWindows + 1, recentThroughput.length);
+        double meanThroughput = 0;
+        double meanP99 = 0;
+        for (int i = 0; i < filled; i++) {
+            meanThroughput += recentThroughput[i] / filled;
+            meanP99 += recentP99[i] / filled;
+        }
+
+        boolean decay = meanThroughput < baselineThroughput * (1 - decayThreshold);
+        boolean creep = meanP99 > baselineP99 * (1 + creepThreshold);
+        if (decay != decaying) {
+            logTrendChange(Trend.THROUGHPUT_DECAY, decay, String.format("%.2f rows/s against a baseline of %.2f rows/s",
+                meanThroughput, baselineThroughput));
+            decaying = decay;
+        }
+        if (creep != creeping) {
+            logTrendChange(Trend.LATENCY_CREEP, creep, String.format("p99 %.2f ms against a baseline of %.2f ms",
+                meanP99, baselineP99));
+            creeping = creep;
+        }
+        if (decay || creep) {
+            flaggedWindows++;
+        }
+        return decay && creep ? Trend.THROUGHPUT_DECAY + " " + Trend.LATENCY_CREEP
+            : decay ? Trend.THROUGHPUT_DECAY.name() : creep ? Trend.LATENCY_CREEP.name() : "";
+    }
+
+    private void logTrendChange(Trend trend, boolean raised, String detail) {
+        if (raised) {
+            logger.warn("Soak window {}: {} over the last {} windows, {}", windowIndex, trend, recentThroughput.length, detail);
+        } else {
+            logger.info("Soak window {}: {} cleared, {}", windowIndex, trend, detail);
+        }
+    }
+
+    /**
+     * @return Heap in use right after the last collection, summed over the heap pools; unlike the current
+     *         heap use it does not swing with allocation, so a rising value means retained memory is growing
+     */
+    private static double heapAfterGcMb() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used / (1024.0 * 1024.0);
+    }
+
+    public long getWindowCount() {
+        return windowIndex;
+    }
+
+    public long getFlaggedWindows() {
+        return flaggedWindows;
+    }
+
+    /**
+     * Closes the current, partial window and the output files, and logs a summary.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeWindow(true);
+        hlog.close();
+        csv.close();
+        logger.info(String.format("Soak summary: %d windows, %d flagged, baseline %.2f rows/s with p99 %.2f ms, heap after GC %.1f MB first and %.1f MB last",
+            windowIndex, flaggedWindows, baselineThroughput, baselineP99, Math.max(firstHeapMb, 0), lastHeapMb));
+    }
+}
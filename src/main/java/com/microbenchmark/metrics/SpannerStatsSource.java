@@ -0,0 +1,88 @@
+package com.microbenchmark.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Samples the SPANNER_SYS query, transaction and lock statistics. Spanner aggregates these per minute,
+ * so every poll reads the most recent complete minute and reports its end as stats_interval_end_epoch_ms;
+ * polls within the same minute repeat its values. The queries work through both the JDBC driver and
+ * PGAdapter, as unquoted names resolve to the same tables in either dialect. The emulator has no
+ * SPANNER_SYS tables, so a table that cannot be read is reported as NaN.
+ */
+public class SpannerStatsSource implements ServerStatsSource {
+    private static final Logger logger = LoggerFactory.getLogger(SpannerStatsSource.class);
+    private static final double SECONDS_PER_INTERVAL = 60;
+    private static final List<String> COLUMNS = List.of(
+        "stats_interval_end_epoch_ms", "query_cpu_s_per_s", "queries_per_s", "query_avg_latency_ms",
+        "commits_per_s", "commit_aborts_per_s", "avg_commit_latency_ms", "lock_wait_s_per_s");
+    private static final String QUERY_SQL = "SELECT INTERVAL_END, EXECUTION_COUNT, AVG_CPU_SECONDS, AVG_LATENCY_SECONDS "
+        + "FROM SPANNER_SYS.QUERY_STATS_TOTAL_MINUTE ORDER BY INTERVAL_END DESC LIMIT 1";
+    private static final String TRANSACTION_SQL = "SELECT INTERVAL_END, COMMIT_ATTEMPT_COUNT, COMMIT_ABORT_COUNT, "
+        + "AVG_COMMIT_LATENCY_SECONDS FROM SPANNER_SYS.TXN_STATS_TOTAL_MINUTE ORDER BY INTERVAL_END DESC LIMIT 1";
+    private static final String LOCK_SQL = "SELECT INTERVAL_END, TOTAL_LOCK_WAIT_SECONDS "
+        + "FROM SPANNER_SYS.LOCK_STATS_TOTAL_MINUTE ORDER BY INTERVAL_END DESC LIMIT 1";
+
+    private boolean warned;
+
+    @Override
+    public List<String> columns() {
+        return COLUMNS;
+    }
+
+    @Override
+    public double[] poll(Connection conn, double elapsedSeconds) throws SQLException {
+        double[] values = new double[COLUMNS.size()];
+        try (Statement stmt = conn.createStatement()) {
+            double[] queries = readLatest(stmt, QUERY_SQL, 3);
+            values[0] = queries[0];
+            values[1] = queries[1] * queries[2] / SECONDS_PER_INTERVAL;
+            values[2] = queries[1] / SECONDS_PER_INTERVAL;
+            values[3] = queries[3] * 1000;
+
+            double[] transactions = readLatest(stmt, TRANSACTION_SQL, 3);
+            values[4] = transactions[1] / SECONDS_PER_INTERVAL;
+            values[5] = transactions[2] / SECONDS_PER_INTERVAL;
+            values[6] = transactions[3] * 1000;
+
+            double[] locks = readLatest(stmt, LOCK_SQL, 1);
+            values[7] = locks[1] / SECONDS_PER_INTERVAL;
+            if (Double.isNaN(values[0])) {
+                values[0] = Double.isNaN(transactions[0]) ? locks[0] : transactions[0];
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return The interval end in epoch milliseconds followed by the given number of values, all NaN if the table
+     *         has no rows yet or cannot be read
+     */
+    private double[] readLatest(Statement stmt, String sql, int columns) {
+        double[] row = new double[columns + 1];
+        Arrays.fill(row, Double.NaN);
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                Timestamp end = rs.getTimestamp(1);
+                row[0] = end != null ? end.getTime() : Double.NaN;
+                for (int i = 1; i <= columns; i++) {
+                    row[i] = rs.getDouble(i + 1);
+                }
+            }
+        } catch (SQLException e) {
+            if (!warned) {
+                warned = true;
+                logger.warn("Cannot read SPANNER_SYS statistics, they are reported as NaN: {}", e.getMessage());
+            }
+        }
+        return row;
+    }
+}
@@ -0,0 +1,30 @@
+package com.microbenchmark.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a single statement's batch inside a larger batch, e.g. the USER_INSERT part of a MIXED batch.
+ */
+@Name("com.microbenchmark.StatementExecution")
+@Label("Statement Execution")
+@Category({"Microbenchmark", "Database"})
+@Description("The rows of one statement type executed as part of a benchmark batch")
+@StackTrace(false)
+public class StatementExecutionEvent extends Event {
+    @Label("Statement Type")
+    public String statementType;
+
+    @Label("Row Count")
+    public int rowCount;
+
+    @Label("Connection Id")
+    public String connectionId;
+
+    @Label("Outcome")
+    public String outcome;
+}
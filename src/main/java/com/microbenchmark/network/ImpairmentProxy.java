@@ -0,0 +1,261 @@
+package com.microbenchmark.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A local TCP proxy that forwards to a PostgreSQL or pgAdapter endpoint while adding latency, jitter,
+ * a bandwidth cap and connection resets, so remote-network effects can be measured on one machine.
+ * Each direction of each connection is delayed independently; bytes are delivered in order.
+ */
+public class ImpairmentProxy implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ImpairmentProxy.class);
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final Chunk END_OF_STREAM = new Chunk(new byte[0], 0, 0);
+
+    private final String upstreamHost;
+    private final int upstreamPort;
+    private final NetworkImpairment impairment;
+    private final ServerSocket serverSocket;
+    private final ExecutorService pumps;
+    private final ScheduledExecutorService resets;
+    private final Random random;
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong resetConnections = new AtomicLong();
+    private final AtomicLong bytesForwarded = new AtomicLong();
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private record Chunk(byte[] data, int length, long dueNanos) {
+    }
+
+    /**
+     * Binds the proxy to a free local port; it accepts connections once {@link #start()} is called.
+     */
+    public ImpairmentProxy(String upstreamHost, int upstreamPort, NetworkImpairment impairment) {
+        this.upstreamHost = upstreamHost;
+        this.upstreamPort = upstreamPort;
+        this.impairment = impairment;
+        this.random = new Random(impairment.getSeed());
+        this.pumps = Executors.newCachedThreadPool(daemon("impairment-proxy"));
+        this.resets = Executors.newSingleThreadScheduledExecutor(daemon("impairment-proxy-reset"));
+        try {
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start impairment proxy", e);
+        }
+    }
+
+    /**
+     * Starts accepting connections and forwarding them upstream.
+     */
+    public void start() {
+        pumps.execute(this::acceptLoop);
+        logger.info("Impairment proxy listening on port {} for {}:{} ({})",
+            getPort(), upstreamHost, upstreamPort, impairment);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket client = serverSocket.accept();
+                Socket upstream = new Socket();
+                try {
+                    upstream.connect(new InetSocketAddress(upstreamHost, upstreamPort));
+                } catch (IOException e) {
+                    logger.warn("Impairment proxy could not reach {}:{}: {}", upstreamHost, upstreamPort, e.getMessage());
+                    client.close();
+                    continue;
+                }
+                client.setTcpNoDelay(true);
+                upstream.setTcpNoDelay(true);
+                openSockets.add(client);
+                openSockets.add(upstream);
+                connections.incrementAndGet();
+                // Close both sockets once each direction has seen its end of stream
+                AtomicInteger openDirections = new AtomicInteger(2);
+                Runnable onEndOfStream = () -> {
+                    if (openDirections.decrementAndGet() == 0) {
+                        closeQuietly(client);
+                        closeQuietly(upstream);
+                    }
+                };
+                forward(client, upstream, onEndOfStream);
+                forward(upstream, client, onEndOfStream);
+                scheduleReset(client, upstream);
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.warn("Impairment proxy failed to accept a connection", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads from one socket and writes to the other on separate threads, so that a delayed chunk does
+     * not stop the next one from being read, as on a real link.
+     */
+    private void forward(Socket from, Socket to, Runnable onEndOfStream) {
+        BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+        pumps.execute(() -> {
+            long lastDue = 0;
+            try {
+                // Not closed here: closing a socket's stream closes the socket, and the other direction may still be open
+                InputStream in = from.getInputStream();
+                while (true) {
+                    byte[] buffer = new byte[CHUNK_SIZE];
+                    int read = in.read(buffer);
+                    if (read < 0) {
+                        break;
+                    }
+                    // Never let a chunk overtake the previous one, whatever its jitter
+                    lastDue = Math.max(lastDue, System.nanoTime() + sampleDelayNanos());
+                    queue.add(new Chunk(buffer, read, lastDue));
+                }
+            } catch (IOException e) {
+                logger.debug("Impairment proxy read ended: {}", e.getMessage());
+            } finally {
+                queue.add(END_OF_STREAM);
+            }
+        });
+        pumps.execute(() -> {
+            long bandwidth = impairment.getBandwidthBytesPerSecond();
+            long linkFreeNanos = System.nanoTime();
+            try {
+                OutputStream out = to.getOutputStream();
+                while (true) {
+                    Chunk chunk = queue.take();
+                    if (chunk == END_OF_STREAM) {
+                        to.shutdownOutput();
+                        onEndOfStream.run();
+                        return;
+                    }
+                    long sendAt = chunk.dueNanos();
+                    if (bandwidth > 0) {
+                        // The link is busy until the previous chunk has been transmitted
+                        sendAt = Math.max(sendAt, linkFreeNanos);
+                        linkFreeNanos = sendAt + chunk.length() * 1_000_000_000L / bandwidth;
+                    }
+                    sleepUntil(sendAt);
+                    out.write(chunk.data(), 0, chunk.length());
+                    out.flush();
+                    bytesForwarded.addAndGet(chunk.length());
+                }
+            } catch (IOException e) {
+                logger.debug("Impairment proxy write ended: {}", e.getMessage());
+                closeQuietly(from);
+                closeQuietly(to);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private long sampleDelayNanos() {
+        long latency = impairment.getLatency().toNanos();
+        long jitter = impairment.getJitter().toNanos();
+        if (jitter == 0) {
+            return latency;
+        }
+        synchronized (random) {
+            return Math.max(0, latency + (long) ((random.nextDouble() * 2 - 1) * jitter));
+        }
+    }
+
+    private void scheduleReset(Socket client, Socket upstream) {
+        if (!impairment.isResetting()) {
+            return;
+        }
+        long lifetimeMillis;
+        synchronized (random) {
+            lifetimeMillis = (long) (-Math.log(1 - random.nextDouble()) * impairment.getMeanTimeBetweenResets().toMillis());
+        }
+        resets.schedule(() -> {
+            if (client.isClosed()) {
+                return;
+            }
+            resetConnections.incrementAndGet();
+            logger.debug("Impairment proxy resetting a connection after {} ms", lifetimeMillis);
+            reset(client);
+            reset(upstream);
+        }, lifetimeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes with a zero linger time, so the peer sees a RST rather than an orderly FIN.
+     */
+    private void reset(Socket socket) {
+        try {
+            socket.setSoLinger(true, 0);
+        } catch (SocketException e) {
+            logger.debug("Could not set linger before reset", e);
+        }
+        closeQuietly(socket);
+    }
+
+    private void closeQuietly(Socket socket) {
+        openSockets.remove(socket);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("Error closing proxied socket", e);
+        }
+    }
+
+    private static void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.debug("Error closing impairment proxy", e);
+        }
+        // Socket reads are not interruptible, so close the sockets to stop the pumps
+        openSockets.forEach(this::closeQuietly);
+        pumps.shutdownNow();
+        resets.shutdownNow();
+        logger.info("Impairment proxy closed: {} connections, {} reset, {} bytes forwarded",
+            connections.get(), resetConnections.get(), bytesForwarded.get());
+    }
+}
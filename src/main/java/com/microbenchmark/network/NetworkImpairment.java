@@ -0,0 +1,59 @@
+package com.microbenchmark.network;
+
+import java.time.Duration;
+
+public class NetworkImpairment {
+    private final Duration latency;
+    private final Duration jitter;
+    private final long bandwidthBytesPerSecond;
+    private final Duration meanTimeBetweenResets;
+    private final long seed;
+
+    /**
+     * @param latency One-way delay added in each direction, so the round trip grows by twice this
+     * @param jitter Each chunk is delayed by up to this much more or less; bytes are never reordered
+     * @param bandwidthBytesPerSecond Cap per direction of each connection, or 0 for no cap
+     * @param meanTimeBetweenResets Mean of the exponentially distributed lifetime after which a connection
+     *                              is reset, or null/zero to never reset
+     */
+    public NetworkImpairment(Duration latency, Duration jitter, long bandwidthBytesPerSecond,
+                             Duration meanTimeBetweenResets, long seed) {
+        this.latency = latency;
+        this.jitter = jitter;
+        this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+        this.meanTimeBetweenResets = meanTimeBetweenResets;
+        this.seed = seed;
+    }
+
+    public Duration getLatency() {
+        return latency;
+    }
+
+    public Duration getJitter() {
+        return jitter;
+    }
+
+    public long getBandwidthBytesPerSecond() {
+        return bandwidthBytesPerSecond;
+    }
+
+    public boolean isResetting() {
+        return meanTimeBetweenResets != null && !meanTimeBetweenResets.isZero();
+    }
+
+    public Duration getMeanTimeBetweenResets() {
+        return meanTimeBetweenResets;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("latency %d ms, jitter %d ms, bandwidth %s, resets %s",
+            latency.toMillis(), jitter.toMillis(),
+            bandwidthBytesPerSecond > 0 ? bandwidthBytesPerSecond + " B/s" : "unlimited",
+            isResetting() ? "every ~" + meanTimeBetweenResets.toSeconds() + " s" : "never");
+    }
+}
@@ -0,0 +1,183 @@
+package com.microbenchmark.report;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Builds a self-contained HTML report (inline CSS and SVG) from one or more recorded runs: a summary,
+ * throughput and P99 over time, batch latency percentile curves and per-statement-type breakdowns,
+ * with every run overlaid on the same charts.
+ */
+public class HtmlReport {
+    private static final Logger logger = LoggerFactory.getLogger(HtmlReport.class);
+    // Percentile curves are plotted against log10(1 / (1 - percentile)), up to 99.9999%
+    private static final double MAX_NINES = 6;
+    private static final List<SvgChart.Tick> PERCENTILE_TICKS = List.of(
+        new SvgChart.Tick(0, "0%"),
+        new SvgChart.Tick(1, "90%"),
+        new SvgChart.Tick(2, "99%"),
+        new SvgChart.Tick(3, "99.9%"),
+        new SvgChart.Tick(4, "99.99%"),
+        new SvgChart.Tick(5, "99.999%"),
+        new SvgChart.Tick(6, "99.9999%"));
+    private static final double[] SUMMARY_PERCENTILES = {50, 90, 99, 99.9};
+
+    private final List<RecordedRun> runs;
+
+    public HtmlReport(List<RecordedRun> runs) {
+        if (runs.isEmpty()) {
+            throw new IllegalArgumentException("A report needs at least one run");
+        }
+        this.runs = runs;
+    }
+
+    public void write(String path) {
+        try {
+            Files.writeString(Path.of(path), render());
+            logger.info("Wrote report for {} runs to {}", runs.size(), path);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write report to " + path, e);
+        }
+    }
+
+    public String render() {
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Benchmark report</title>\n")
+            .append("<style>body{font-family:sans-serif;margin:24px;color:#222}")
+            .append("table{border-collapse:collapse;margin:8px 0 24px}")
+            .append("th,td{border:1px solid #ccc;padding:4px 8px;text-align:right}")
+            .append("th:first-child,td:first-child{text-align:left}")
+            .append(".swatch{display:inline-block;width:12px;height:12px;margin-right:6px}</style>\n")
+            .append("</head><body>\n<h1>Benchmark report</h1>\n");
+
+        html.append("<h2>Runs</h2>\n<table><tr><th>Run</th><th>Description</th><th>Duration (s)</th><th>Windows</th>")
+            .append("<th>Flagged</th><th>Batches</th><th>Rows</th><th>Failed rows</th><th>Throughput</th>");
+        for (double percentile : SUMMARY_PERCENTILES) {
+            html.append("<th>P").append(formatPercentile(percentile)).append(" (ms)</th>");
+        }
+        html.append("<th>Max (ms)</th></tr>\n");
+        for (int i = 0; i < runs.size(); i++) {
+            RecordedRun run = runs.get(i);
+            Histogram latency = run.getBatchLatency();
+            double seconds = Math.max(run.getDurationSeconds(), 1e-9);
+            html.append("<tr><td><span class=\"swatch\" style=\"background:").append(SvgChart.color(i)).append("\"></span>")
+                .append(escape(run.getName())).append("</td><td>").append(escape(run.getDescription())).append("</td>")
+                .append(cell("%.0f", run.getDurationSeconds()))
+                .append(cell("%d", run.getWindows()))
+                .append(run.isRowThroughput() ? cell("%d", run.getFlaggedWindows()) : "<td>-</td>")
+                .append(cell("%d", latency.getTotalCount()))
+                .append(run.isRowThroughput() ? cell("%d", run.getRows()) : "<td>-</td>")
+                .append(run.isRowThroughput() ? cell("%d", run.getFailedRows()) : "<td>-</td>")
+                .append(run.isRowThroughput()
+                    ? cell("%.1f rows/s", run.getRows() / seconds)
+                    : cell("%.1f batches/s", latency.getTotalCount() / seconds));
+            for (double percentile : SUMMARY_PERCENTILES) {
+                html.append(cell("%.2f", latency.getValueAtPercentile(percentile) / 1000.0));
+            }
+            html.append(cell("%.2f", latency.getMaxValue() / 1000.0)).append("</tr>\n");
+        }
+        html.append("</table>\n");
+
+        boolean rows = runs.stream().allMatch(RecordedRun::isRowThroughput);
+        html.append("<h2>Over time</h2>\n")
+            .append(SvgChart.lineChart("Throughput", "seconds since start", rows ? "rows/s" : "batches/s",
+                timeSeries(true), null))
+            .append(SvgChart.lineChart("P99 batch latency per window", "seconds since start", "ms",
+                timeSeries(false), null));
+        html.append("<h2>Batch latency distribution</h2>\n")
+            .append(SvgChart.lineChart("Batch latency by percentile", "percentile", "ms",
+                percentileCurves(null), PERCENTILE_TICKS));
+
+        Set<String> statementTypes = new TreeSet<>();
+        runs.forEach(run -> statementTypes.addAll(run.getStatementLatency().keySet()));
+        if (!statementTypes.isEmpty()) {
+            html.append("<h2>Statement types</h2>\n<table><tr><th>Run</th><th>Statement type</th><th>Executions</th>");
+            for (double percentile : SUMMARY_PERCENTILES) {
+                html.append("<th>P").append(formatPercentile(percentile)).append(" (ms)</th>");
+            }
+            html.append("<th>Max (ms)</th></tr>\n");
+            for (String type : statementTypes) {
+                for (RecordedRun run : runs) {
+                    Histogram latency = run.getStatementLatency().get(type);
+                    if (latency == null) {
+                        continue;
+                    }
+                    html.append("<tr><td>").append(escape(run.getName())).append("</td><td>").append(escape(type)).append("</td>")
+                        .append(cell("%d", latency.getTotalCount()));
+                    for (double percentile : SUMMARY_PERCENTILES) {
+                        html.append(cell("%.2f", latency.getValueAtPercentile(percentile) / 1000.0));
+                    }
+                    html.append(cell("%.2f", latency.getMaxValue() / 1000.0)).append("</tr>\n");
+                }
+            }
+            html.append("</table>\n");
+            for (String type : statementTypes) {
+                html.append(SvgChart.lineChart(type + " execution latency by percentile", "percentile", "ms",
+                    percentileCurves(type), PERCENTILE_TICKS));
+            }
+        }
+        html.append("</body></html>\n");
+        return html.toString();
+    }
+
+    private List<SvgChart.Series> timeSeries(boolean throughput) {
+        List<SvgChart.Series> series = new ArrayList<>();
+        for (RecordedRun run : runs) {
+            TimeSeries points = throughput ? run.getThroughput() : run.getP99();
+            series.add(new SvgChart.Series(run.getName(), points.times(), points.values()));
+        }
+        return series;
+    }
+
+    /**
+     * @param statementType The statement type to plot, or null for batch latency
+     */
+    private List<SvgChart.Series> percentileCurves(String statementType) {
+        List<SvgChart.Series> series = new ArrayList<>();
+        for (RecordedRun run : runs) {
+            Histogram histogram = statementType == null ? run.getBatchLatency() : run.getStatementLatency().get(statementType);
+            if (histogram == null || histogram.getTotalCount() == 0) {
+                // Keep the run's colour the same as in the other charts
+                series.add(new SvgChart.Series(run.getName(), new double[0], new double[0]));
+                continue;
+            }
+            List<double[]> points = new ArrayList<>();
+            for (HistogramIterationValue value : histogram.percentiles(5)) {
+                double percentile = value.getPercentileLevelIteratedTo();
+                double nines = percentile >= 100 ? MAX_NINES : Math.min(MAX_NINES, -Math.log10(1 - percentile / 100));
+                points.add(new double[] {nines, value.getValueIteratedTo() / 1000.0});
+            }
+            double[] x = new double[points.size()];
+            double[] y = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                x[i] = points.get(i)[0];
+                y[i] = points.get(i)[1];
+            }
+            series.add(new SvgChart.Series(run.getName(), x, y));
+        }
+        return series;
+    }
+
+    private static String cell(String format, Object value) {
+        return "<td>" + String.format(Locale.ROOT, format, value) + "</td>";
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+
+    static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
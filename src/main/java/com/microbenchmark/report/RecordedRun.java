@@ -0,0 +1,202 @@
+package com.microbenchmark.report;
+
+import com.microbenchmark.metrics.SoakRecorder;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One run recorded by {@link SoakRecorder}, read from its .hlog file and, if present, its .csv file.
+ * Both are streamed: only the merged histograms and bounded time series are kept, so reading a
+ * multi-hour run takes as much memory as reading a short one.
+ */
+public class RecordedRun {
+    private static final Logger logger = LoggerFactory.getLogger(RecordedRun.class);
+
+    private final String name;
+    private final String description;
+    private final Histogram batchLatency = new Histogram(3);
+    private final Map<String, Histogram> statementLatency = new TreeMap<>();
+    private final TimeSeries throughput = new TimeSeries();
+    private final TimeSeries p99 = new TimeSeries();
+    private final boolean rowThroughput;
+    private double durationSeconds;
+    private long rows;
+    private long failedRows;
+    private long windows;
+    private long flaggedWindows;
+
+    private RecordedRun(String name, String description, boolean rowThroughput) {
+        this.name = name;
+        this.description = description;
+        this.rowThroughput = rowThroughput;
+    }
+
+    /**
+     * @param path A soak output prefix, or the path of its .hlog file
+     */
+    public static RecordedRun read(String path) {
+        String prefix = path.endsWith(".hlog") ? path.substring(0, path.length() - ".hlog".length()) : path;
+        Path hlog = Path.of(prefix + ".hlog");
+        Path csv = Path.of(prefix + ".csv");
+        if (!Files.exists(hlog)) {
+            throw new IllegalArgumentException("No histogram log at " + hlog);
+        }
+        long start = System.nanoTime();
+        RecordedRun run = new RecordedRun(hlog.getFileName().toString().replace(".hlog", ""),
+            readDescription(hlog), Files.exists(csv));
+        run.readHistograms(hlog);
+        if (run.rowThroughput) {
+            run.readWindows(csv);
+        }
+        logger.info("Read {} windows of {} in {} ms", run.windows, hlog, (System.nanoTime() - start) / 1_000_000);
+        return run;
+    }
+
+    /**
+     * @return The run description the soak recorder wrote among the leading comments, or "" if there is none
+     */
+    private static String readDescription(Path hlog) {
+        try (BufferedReader reader = Files.newBufferedReader(hlog)) {
+            String line;
+            while ((line = reader.readLine()) != null && line.startsWith("#")) {
+                if (line.startsWith("#" + SoakRecorder.RUN_COMMENT)) {
+                    return line.substring(1 + SoakRecorder.RUN_COMMENT.length());
+                }
+            }
+            return "";
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + hlog, e);
+        }
+    }
+
+    private void readHistograms(Path hlog) {
+        HistogramLogReader reader;
+        try {
+            reader = new HistogramLogReader(hlog.toFile());
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("Failed to read " + hlog, e);
+        }
+        long firstStart = -1;
+        EncodableHistogram encoded;
+        while ((encoded = reader.nextIntervalHistogram()) != null) {
+            if (!(encoded instanceof Histogram histogram)) {
+                continue;
+            }
+            if (firstStart < 0) {
+                firstStart = histogram.getStartTimeStamp();
+            }
+            if (histogram.getTag() != null) {
+                statementLatency.computeIfAbsent(histogram.getTag(), tag -> new Histogram(3)).add(histogram);
+                continue;
+            }
+            batchLatency.add(histogram);
+            double time = (histogram.getStartTimeStamp() - firstStart) / 1000.0;
+            double length = Math.max(1, histogram.getEndTimeStamp() - histogram.getStartTimeStamp()) / 1000.0;
+            durationSeconds = (histogram.getEndTimeStamp() - firstStart) / 1000.0;
+            windows++;
+            if (!rowThroughput) {
+                throughput.add(time, histogram.getTotalCount() / length);
+            }
+            p99.add(time, histogram.getValueAtPercentile(99) / 1000.0);
+        }
+        reader.close();
+    }
+
+    /**
+     * Reads rows per second from the CSV, which, unlike the histograms, knows how many rows each batch had.
+     */
+    private void readWindows(Path csv) {
+        try (BufferedReader reader = Files.newBufferedReader(csv)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return;
+            }
+            long firstStart = -1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // window,start_epoch_ms,end_epoch_ms,batches,rows,failed_rows,rows_per_second,p50_ms,p99_ms,max_ms,heap_after_gc_mb,flags
+                String[] fields = line.split(",", -1);
+                long startMillis = Long.parseLong(fields[1]);
+                if (firstStart < 0) {
+                    firstStart = startMillis;
+                }
+                rows += Long.parseLong(fields[4]);
+                failedRows += Long.parseLong(fields[5]);
+                throughput.add((startMillis - firstStart) / 1000.0, Double.parseDouble(fields[6]));
+                if (!fields[11].isEmpty()) {
+                    flaggedWindows++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Failed to read " + csv, e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return Batch latency in microseconds over the whole run
+     */
+    public Histogram getBatchLatency() {
+        return batchLatency;
+    }
+
+    /**
+     * @return Execution latency in microseconds over the whole run, per statement type
+     */
+    public Map<String, Histogram> getStatementLatency() {
+        return statementLatency;
+    }
+
+    TimeSeries getThroughput() {
+        return throughput;
+    }
+
+    TimeSeries getP99() {
+        return p99;
+    }
+
+    /**
+     * @return Whether throughput is in rows per second, from the CSV, rather than batches per second
+     */
+    public boolean isRowThroughput() {
+        return rowThroughput;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getFailedRows() {
+        return failedRows;
+    }
+
+    public long getWindows() {
+        return windows;
+    }
+
+    public long getFlaggedWindows() {
+        return flaggedWindows;
+    }
+}
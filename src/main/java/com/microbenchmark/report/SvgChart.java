@@ -0,0 +1,141 @@
+package com.microbenchmark.report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders line charts as inline SVG, so the report needs no scripts or external files.
+ */
+final class SvgChart {
+    private static final int WIDTH = 860;
+    private static final int HEIGHT = 320;
+    private static final int LEFT = 70;
+    private static final int RIGHT = 20;
+    private static final int TOP = 30;
+    private static final int BOTTOM = 45;
+    private static final String[] COLORS = {
+        "#1f77b4", "#d62728", "#2ca02c", "#ff7f0e", "#9467bd", "#8c564b", "#e377c2", "#17becf"
+    };
+
+    record Series(String name, double[] x, double[] y) {
+    }
+
+    record Tick(double value, String label) {
+    }
+
+    private SvgChart() {
+    }
+
+    static String color(int index) {
+        return COLORS[index % COLORS.length];
+    }
+
+    /**
+     * @param xTicks Tick marks for the x axis, or null to place them evenly
+     */
+    static String lineChart(String title, String xLabel, String yLabel, List<Series> series, List<Tick> xTicks) {
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = 0;
+        for (Series s : series) {
+            for (int i = 0; i < s.x().length; i++) {
+                minX = Math.min(minX, s.x()[i]);
+                maxX = Math.max(maxX, s.x()[i]);
+                maxY = Math.max(maxY, s.y()[i]);
+            }
+        }
+        if (minX > maxX) {
+            minX = 0;
+            maxX = 1;
+        }
+        if (xTicks != null) {
+            for (Tick tick : xTicks) {
+                minX = Math.min(minX, tick.value());
+                maxX = Math.max(maxX, tick.value());
+            }
+        }
+        if (maxX == minX) {
+            maxX = minX + 1;
+        }
+        double yStep = niceStep(maxY > 0 ? maxY : 1, 5);
+        maxY = Math.ceil((maxY > 0 ? maxY : 1) / yStep) * yStep;
+
+        StringBuilder svg = new StringBuilder();
+        svg.append(String.format(Locale.ROOT, "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\" "
+            + "font-family=\"sans-serif\" font-size=\"11\">%n", WIDTH, HEIGHT));
+        svg.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"18\" font-size=\"13\" font-weight=\"bold\">%s</text>%n",
+            LEFT, HtmlReport.escape(title)));
+        // Legend, right-aligned above the plot
+        int legendX = WIDTH - RIGHT;
+        for (int s = series.size() - 1; s >= 0; s--) {
+            String name = series.get(s).name();
+            legendX -= 20 + 7 * name.length();
+            svg.append(String.format(Locale.ROOT, "<rect x=\"%d\" y=\"9\" width=\"10\" height=\"10\" fill=\"%s\"/>"
+                + "<text x=\"%d\" y=\"18\">%s</text>%n", legendX, color(s), legendX + 14, HtmlReport.escape(name)));
+        }
+
+        // Axes, grid lines and labels
+        int plotWidth = WIDTH - LEFT - RIGHT;
+        int plotHeight = HEIGHT - TOP - BOTTOM;
+        for (double y = 0; y <= maxY + yStep / 2; y += yStep) {
+            double py = TOP + plotHeight - y / maxY * plotHeight;
+            svg.append(String.format(Locale.ROOT, "<line x1=\"%d\" y1=\"%.1f\" x2=\"%d\" y2=\"%.1f\" stroke=\"#ddd\"/>"
+                + "<text x=\"%d\" y=\"%.1f\" text-anchor=\"end\">%s</text>%n",
+                LEFT, py, WIDTH - RIGHT, py, LEFT - 5, py + 4, format(y)));
+        }
+        List<Tick> ticks = xTicks != null ? xTicks : evenTicks(minX, maxX);
+        for (Tick tick : ticks) {
+            double px = LEFT + (tick.value() - minX) / (maxX - minX) * plotWidth;
+            svg.append(String.format(Locale.ROOT, "<line x1=\"%.1f\" y1=\"%d\" x2=\"%.1f\" y2=\"%d\" stroke=\"#eee\"/>"
+                + "<text x=\"%.1f\" y=\"%d\" text-anchor=\"middle\">%s</text>%n",
+                px, TOP, px, TOP + plotHeight, px, TOP + plotHeight + 15, HtmlReport.escape(tick.label())));
+        }
+        svg.append(String.format(Locale.ROOT, "<rect x=\"%d\" y=\"%d\" width=\"%d\" height=\"%d\" fill=\"none\" stroke=\"#888\"/>%n",
+            LEFT, TOP, plotWidth, plotHeight));
+        svg.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\" text-anchor=\"middle\">%s</text>%n",
+            LEFT + plotWidth / 2, HEIGHT - 8, HtmlReport.escape(xLabel)));
+        svg.append(String.format(Locale.ROOT, "<text x=\"14\" y=\"%d\" text-anchor=\"middle\" transform=\"rotate(-90 14 %d)\">%s</text>%n",
+            TOP + plotHeight / 2, TOP + plotHeight / 2, HtmlReport.escape(yLabel)));
+
+        for (int s = 0; s < series.size(); s++) {
+            Series line = series.get(s);
+            StringBuilder points = new StringBuilder();
+            for (int i = 0; i < line.x().length; i++) {
+                points.append(String.format(Locale.ROOT, "%.1f,%.1f ",
+                    LEFT + (line.x()[i] - minX) / (maxX - minX) * plotWidth,
+                    TOP + plotHeight - line.y()[i] / maxY * plotHeight));
+            }
+            svg.append(String.format(Locale.ROOT, "<polyline fill=\"none\" stroke=\"%s\" stroke-width=\"1.5\" points=\"%s\">"
+                + "<title>%s</title></polyline>%n", color(s), points.toString().trim(), HtmlReport.escape(line.name())));
+        }
+        svg.append("</svg>\n");
+        return svg.toString();
+    }
+
+    private static List<Tick> evenTicks(double min, double max) {
+        List<Tick> ticks = new ArrayList<>();
+        double step = niceStep(max - min, 6);
+        for (double x = Math.ceil(min / step) * step; x <= max; x += step) {
+            ticks.add(new Tick(x, format(x)));
+        }
+        return ticks;
+    }
+
+    /**
+     * @return A step of 1, 2 or 5 times a power of ten that divides the range into about the given number of steps
+     */
+    private static double niceStep(double range, int steps) {
+        double raw = range / steps;
+        double magnitude = Math.pow(10, Math.floor(Math.log10(raw)));
+        double normalized = raw / magnitude;
+        return (normalized <= 1 ? 1 : normalized <= 2 ? 2 : normalized <= 5 ? 5 : 10) * magnitude;
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.format(Locale.ROOT, "%d", (long) value);
+        }
+        return String.format(Locale.ROOT, "%.3g", value);
+    }
+}
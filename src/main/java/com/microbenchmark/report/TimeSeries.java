@@ -0,0 +1,58 @@
+package com.microbenchmark.report;
+
+import java.util.Arrays;
+
+/**
+ * A series of (time, value) points with a fixed capacity. When it fills up, neighbouring points are
+ * averaged in pairs and later points are averaged over twice as many windows, so a run of any length
+ * is plotted with at most {@link #CAPACITY} points.
+ */
+final class TimeSeries {
+    static final int CAPACITY = 1000;
+
+    private final double[] times = new double[CAPACITY];
+    private final double[] values = new double[CAPACITY];
+    private int size;
+    private int stride = 1;
+    private int pending;
+    private double pendingTime;
+    private double pendingSum;
+
+    void add(double time, double value) {
+        if (pending == 0) {
+            pendingTime = time;
+        }
+        pendingSum += value;
+        if (++pending < stride) {
+            return;
+        }
+        if (size == CAPACITY) {
+            halve();
+        }
+        times[size] = pendingTime;
+        values[size++] = pendingSum / pending;
+        pending = 0;
+        pendingSum = 0;
+    }
+
+    private void halve() {
+        for (int i = 0; i < size / 2; i++) {
+            times[i] = times[2 * i];
+            values[i] = (values[2 * i] + values[2 * i + 1]) / 2;
+        }
+        size /= 2;
+        stride *= 2;
+    }
+
+    int size() {
+        return size;
+    }
+
+    double[] times() {
+        return Arrays.copyOf(times, size);
+    }
+
+    double[] values() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,29 @@
+-- Compact variant of schema.sql (schema.variant=compact): native uuid ids and amounts in cents
+-- Users table
+CREATE TABLE users (
+    id UUID PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL
+);
+
+-- Orders table with foreign key to users
+CREATE TABLE oorder (
+    id UUID PRIMARY KEY,
+    user_id UUID NOT NULL,
+    order_status VARCHAR(20) NOT NULL,
+    total_amount BIGINT NOT NULL, -- cents
+    items_count INT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users(id)
+);
+
+-- Indexes for better performance
+CREATE INDEX idx_users_email ON users(email);
+CREATE INDEX idx_users_status ON users(status);
+CREATE INDEX idx_orders_user_id ON oorder(user_id);
+CREATE INDEX idx_orders_status ON oorder(order_status);
+CREATE INDEX idx_orders_created_at ON oorder(created_at);
@@ -23,6 +23,6 @@ CREATE TABLE oorder (
 -- Indexes for better performance
 CREATE INDEX idx_users_email ON users(email);
 CREATE INDEX idx_users_status ON users(status);
-CREATE INDEX idx_orders_user_id ON orders(user_id);
-CREATE INDEX idx_orders_status ON orders(order_status);
-CREATE INDEX idx_orders_created_at ON orders(created_at); 
\ No newline at end of file
+CREATE INDEX idx_orders_user_id ON oorder(user_id);
+CREATE INDEX idx_orders_status ON oorder(order_status);
+CREATE INDEX idx_orders_created_at ON oorder(created_at); 
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.microbenchmark.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchSplitterTest {
+
+    @Test
+    void testSchemaColumnsAndKeys() {
+        SchemaDefinition postgres = SchemaDefinition.load("schema.sql");
+        assertEquals(List.of("id", "user_id", "order_status", "total_amount", "items_count", "created_at", "updated_at"),
+            List.copyOf(postgres.getColumns("oorder").keySet()));
+        assertEquals("NUMERIC(10,2)", postgres.getColumns("oorder").get("total_amount"));
+        assertEquals(List.of("id"), postgres.getPrimaryKey("oorder"));
+
+        SchemaDefinition spanner = SchemaDefinition.load("spanner-schema.sql");
+        assertEquals(7, spanner.getColumns("orders").size());
+        assertEquals(List.of("id"), spanner.getPrimaryKey("orders"));
+        assertEquals(List.of("order_status"), spanner.getIndexColumns("idx_orders_status"));
+    }
+
+    @Test
+    void testIndexEntriesCountAsMutations() {
+        SchemaDefinition schema = SchemaDefinition.load("spanner-schema.sql");
+        // Six columns, and an entry of (column, id) in each of the two user indexes
+        String insert = "INSERT INTO users (id, name, email, status, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+        BatchSplitter.RowEstimate users = BatchSplitter.estimate(schema, insert);
+        assertEquals(10, users.mutations());
+        assertEquals(insert.length() + 6 * 16 + 36 + 255 + 255 + 20 + 30 + 30, users.bytes());
+
+        // Four set columns and the key, and the status index entry replaced; the other indexes are untouched
+        String update = "UPDATE orders SET order_status = ?, total_amount = ?, items_count = ?, updated_at = ? WHERE id = ?";
+        assertEquals(9, BatchSplitter.estimate(schema, update).mutations());
+
+        assertEquals(4, BatchSplitter.estimate(schema, "DELETE FROM orders WHERE id = ?").mutations());
+    }
+
+    @Test
+    void testSubBatchesStayUnderTheLimit() {
+        SchemaDefinition schema = SchemaDefinition.load("spanner-schema.sql");
+        String insert = "INSERT INTO users (id, name, email, status, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+        BatchSplitter splitter = new BatchSplitter(schema, List.of(insert), 15, 1_000, BatchSplitter.SPANNER_MAX_REQUEST_BYTES);
+        assertEquals(100, splitter.getRowLimit());
+        assertTrue(splitter.hasRoomFor(0));
+        assertTrue(splitter.hasRoomFor(85));
+        assertFalse(splitter.hasRoomFor(86));
+
+        // A call that alone exceeds the limit still gets a sub-batch of its own
+        BatchSplitter tight = new BatchSplitter(schema, List.of(insert), 15, 10, BatchSplitter.SPANNER_MAX_REQUEST_BYTES);
+        assertTrue(tight.hasRoomFor(0));
+        assertFalse(tight.hasRoomFor(1));
+
+        splitter.recordBatch(1, 10, 10_000_000);
+        splitter.recordBatch(3, 10, 30_000_000);
+        assertEquals(1, splitter.getSplitBatches());
+        assertTrue(splitter.summary().startsWith("1 of 2 batches split (50.0%) into 3.0 sub-batches on average, "
+            + "3.000 ms per call when split, 1.000 ms when not"), splitter.summary());
+    }
+
+    @Test
+    void testWorkloadStatementsMapOntoTheSpannerSchema() {
+        SchemaDefinition schema = SchemaDefinition.load("spanner-schema.sql");
+        List<String> statements = new ComplexQueryProvider(ComplexQueryProvider.OperationType.MIXED).getStatements();
+        assertTrue(statements.stream().anyMatch(sql -> sql.contains("oorder")), statements.toString());
+
+        // oorder is not in the Spanner schema, so its index entries could not be counted
+        assertThrows(IllegalArgumentException.class,
+            () -> new BatchSplitter(schema, statements, 15, BatchSplitter.SPANNER_MAX_MUTATIONS, BatchSplitter.SPANNER_MAX_REQUEST_BYTES));
+
+        Map<String, String> tables = Map.of("oorder", "orders");
+        String update = "UPDATE oorder SET order_status = ?, total_amount = ?, items_count = ?, updated_at = ? WHERE id = ?";
+        BatchSplitter.RowEstimate estimate = BatchSplitter.estimate(schema, update, tables);
+        assertEquals("orders", estimate.table());
+        assertEquals(9, estimate.mutations());
+        // Seven order columns and three index entries of (column, id)
+        assertEquals(13, BatchSplitter.estimate(schema, "INSERT INTO oorder (id, user_id, order_status, total_amount, "
+            + "items_count, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)", tables).mutations());
+
+        BatchSplitter splitter = new BatchSplitter(schema, statements, tables, 15, BatchSplitter.SPANNER_MAX_MUTATIONS,
+            BatchSplitter.SPANNER_MAX_REQUEST_BYTES);
+        assertTrue(splitter.getRowLimit() > 0);
+    }
+}
@@ -0,0 +1,68 @@
+package com.microbenchmark.benchmark;
+
+import com.google.rpc.Code;
+import io.r2dbc.spi.R2dbcTransientResourceException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ErrorCategoryTest {
+
+    @Test
+    void testSqlStatesMapToCategories() {
+        assertEquals(ErrorCategory.ABORTED, ErrorCategory.fromSqlState("40001"));
+        assertEquals(ErrorCategory.ABORTED, ErrorCategory.fromSqlState("40P01"));
+        assertEquals(ErrorCategory.TIMEOUT, ErrorCategory.fromSqlState("57014"));
+        assertEquals(ErrorCategory.UNAVAILABLE, ErrorCategory.fromSqlState("08006"));
+        assertEquals(ErrorCategory.UNAVAILABLE, ErrorCategory.fromSqlState("57P01"));
+        assertEquals(ErrorCategory.RESOURCE_EXHAUSTED, ErrorCategory.fromSqlState("53300"));
+        assertEquals(ErrorCategory.CONSTRAINT_VIOLATION, ErrorCategory.fromSqlState("23505"));
+        assertEquals(ErrorCategory.INVALID_STATEMENT, ErrorCategory.fromSqlState("42P01"));
+        assertEquals(ErrorCategory.OTHER, ErrorCategory.fromSqlState("XX000"));
+        assertEquals(ErrorCategory.OTHER, ErrorCategory.fromSqlState("4"));
+    }
+
+    @Test
+    void testSpannerCodesMapToCategories() {
+        assertEquals(ErrorCategory.ABORTED, ErrorCategory.fromSpannerCode(Code.ABORTED));
+        assertEquals(ErrorCategory.UNAVAILABLE, ErrorCategory.fromSpannerCode(Code.UNAVAILABLE));
+        assertEquals(ErrorCategory.TIMEOUT, ErrorCategory.fromSpannerCode(Code.DEADLINE_EXCEEDED));
+        assertEquals(ErrorCategory.TIMEOUT, ErrorCategory.fromSpannerCode(Code.CANCELLED));
+        assertEquals(ErrorCategory.RESOURCE_EXHAUSTED, ErrorCategory.fromSpannerCode(Code.RESOURCE_EXHAUSTED));
+        assertEquals(ErrorCategory.CONSTRAINT_VIOLATION, ErrorCategory.fromSpannerCode(Code.ALREADY_EXISTS));
+        assertEquals(ErrorCategory.CONSTRAINT_VIOLATION, ErrorCategory.fromSpannerCode(Code.FAILED_PRECONDITION));
+        assertEquals(ErrorCategory.INVALID_STATEMENT, ErrorCategory.fromSpannerCode(Code.INVALID_ARGUMENT));
+        assertEquals(ErrorCategory.INVALID_STATEMENT, ErrorCategory.fromSpannerCode(Code.NOT_FOUND));
+        assertEquals(ErrorCategory.OTHER, ErrorCategory.fromSpannerCode(Code.INTERNAL));
+    }
+
+    @Test
+    void testOnlyTransientCategoriesAreRetryable() {
+        assertTrue(ErrorCategory.ABORTED.isRetryable());
+        assertTrue(ErrorCategory.UNAVAILABLE.isRetryable());
+        assertTrue(ErrorCategory.TIMEOUT.isRetryable());
+        assertTrue(ErrorCategory.RESOURCE_EXHAUSTED.isRetryable());
+        assertFalse(ErrorCategory.CONSTRAINT_VIOLATION.isRetryable());
+        assertFalse(ErrorCategory.INVALID_STATEMENT.isRetryable());
+        assertFalse(ErrorCategory.OTHER.isRetryable());
+    }
+
+    @Test
+    void testClassifyFollowsTheCauseChain() {
+        assertEquals(ErrorCategory.ABORTED, ErrorCategory.classify(new SQLException("conflict", "40001")));
+        assertEquals(ErrorCategory.CONSTRAINT_VIOLATION,
+            ErrorCategory.classify(new BatchUpdateException("duplicate", "23505", new int[0])));
+        assertEquals(ErrorCategory.UNAVAILABLE,
+            ErrorCategory.classify(new RuntimeException(new SQLException("connection lost", "08006"))));
+        assertEquals(ErrorCategory.RESOURCE_EXHAUSTED,
+            ErrorCategory.classify(new IllegalStateException(new R2dbcTransientResourceException("too many", "53300"))));
+        // An exception without a SQLState defers to its cause
+        assertEquals(ErrorCategory.TIMEOUT,
+            ErrorCategory.classify(new SQLException("wrapped", null, new SQLException("cancelled", "57014"))));
+        assertEquals(ErrorCategory.OTHER, ErrorCategory.classify(new RuntimeException("no state")));
+        assertEquals(ErrorCategory.OTHER, ErrorCategory.classify(null));
+    }
+}
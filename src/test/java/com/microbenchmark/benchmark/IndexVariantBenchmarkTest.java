@@ -0,0 +1,48 @@
+package com.microbenchmark.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexVariantBenchmarkTest {
+
+    @Test
+    void testIndexesReferenceTablesInTheirSchemaFile() {
+        for (String file : List.of("schema.sql", "spanner-schema.sql", "schema-compact.sql", "spanner-schema-compact.sql")) {
+            SchemaDefinition schema = SchemaDefinition.load(file);
+            assertEquals(2, schema.getTables().size(), file);
+            assertEquals(5, schema.getIndexes().size(), file);
+            for (String index : schema.getIndexNames()) {
+                assertTrue(schema.getTables().containsKey(schema.getIndexedTable(index)),
+                    file + ": " + index + " is on unknown table " + schema.getIndexedTable(index));
+            }
+        }
+    }
+
+    @Test
+    void testInterleavedSpannerSchema() {
+        SchemaDefinition schema = SchemaDefinition.load("spanner-schema.sql");
+        List<String> ddl = IndexVariantBenchmark.tableDdl(schema, "orders",
+            new IndexVariantBenchmark.Variant("interleaved", List.of(), 0, true), true);
+
+        String users = ddl.get(0);
+        assertTrue(users.contains("user_id STRING(36) NOT NULL"), users);
+        assertTrue(users.endsWith("PRIMARY KEY (user_id)"), users);
+
+        String orders = ddl.get(1);
+        assertFalse(orders.contains("FOREIGN KEY"), orders);
+        assertTrue(orders.contains("updated_at TIMESTAMP NOT NULL\n)"), orders);
+        assertTrue(orders.endsWith("PRIMARY KEY (user_id, id),\n    INTERLEAVE IN PARENT users ON DELETE CASCADE"), orders);
+    }
+
+    @Test
+    void testPostgresFillfactor() {
+        SchemaDefinition schema = SchemaDefinition.load("schema.sql");
+        List<String> ddl = IndexVariantBenchmark.tableDdl(schema, "oorder",
+            new IndexVariantBenchmark.Variant("ff70", List.of(), 70, false), false);
+        assertEquals(2, ddl.size());
+        ddl.forEach(table -> assertTrue(table.endsWith(") WITH (fillfactor = 70)"), table));
+    }
+}
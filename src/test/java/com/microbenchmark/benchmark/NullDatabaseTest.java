@@ -0,0 +1,85 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.BenchmarkProfile;
+import com.microbenchmark.config.LatencyDistribution;
+import com.microbenchmark.config.MonitoringConfig;
+import com.microbenchmark.config.NullDatabaseConfig;
+import com.microbenchmark.metrics.MetricsService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NullDatabaseTest {
+    private final MonitoringConfig monitoringConfig = new MonitoringConfig(false, "", "test");
+    private final BenchmarkProfile profile = new BenchmarkProfile(10, 600, Duration.ofMinutes(1));
+
+    @Test
+    void testBlockingExecutorCountsEveryRow() {
+        NullDatabaseConfig config = new NullDatabaseConfig(LatencyDistribution.fixed(Duration.ZERO));
+        MetricsService metricsService = new MetricsService(monitoringConfig, "null", null);
+
+        new BatchStatementExecutor(config, profile, metricsService,
+            new ComplexQueryProvider(ComplexQueryProvider.OperationType.MIXED, 42, 10, 600)).execute();
+
+        // Every operation binds a variable number of rows, and every row reaches the database
+        assertEquals(config.getRows(), metricsService.getTotalOperations());
+        assertEquals(config.getRows(), metricsService.getSucceededOperations());
+        assertEquals(0, metricsService.getFailedOperations());
+        assertEquals(60, metricsService.getBatchCount());
+    }
+
+    @Test
+    void testReactiveExecutorBoundsInFlightBatches() {
+        NullDatabaseConfig config = new NullDatabaseConfig(LatencyDistribution.fixed(Duration.ofMillis(5)));
+        MetricsService metricsService = new MetricsService(monitoringConfig, "null", null);
+
+        new ReactiveBatchExecutor(config, profile, metricsService,
+            new ComplexQueryProvider(ComplexQueryProvider.OperationType.USER_INSERT, 42, 10, 600), 2, 3).execute();
+
+        assertEquals(config.getRows(), metricsService.getSucceededOperations());
+        assertEquals(60, config.getRoundTrips());
+        assertTrue(config.getMaxInFlight() > 1, "batches should be pipelined");
+        assertTrue(config.getMaxInFlight() <= 6, "at most concurrency * maxInFlight batches may be in flight");
+    }
+
+    @Test
+    void testReactiveExecutorCountsRowsLikeBlockingExecutor() {
+        NullDatabaseConfig blockingConfig = new NullDatabaseConfig(LatencyDistribution.fixed(Duration.ZERO));
+        MetricsService blocking = new MetricsService(monitoringConfig, "null", null);
+        new BatchStatementExecutor(blockingConfig, profile, blocking,
+            new ComplexQueryProvider(ComplexQueryProvider.OperationType.MIXED, 42, 10, 600)).execute();
+
+        NullDatabaseConfig reactiveConfig = new NullDatabaseConfig(LatencyDistribution.fixed(Duration.ZERO));
+        MetricsService reactive = new MetricsService(monitoringConfig, "null", null);
+        new ReactiveBatchExecutor(reactiveConfig, profile, reactive,
+            new ComplexQueryProvider(ComplexQueryProvider.OperationType.MIXED, 42, 10, 600), 2, 3).execute();
+
+        // The null database matches no rows with UPDATE, but those rows still ran without an error
+        assertEquals(blockingConfig.getRows(), reactiveConfig.getRows());
+        assertEquals(reactiveConfig.getRows(), reactive.getTotalOperations());
+        assertEquals(blocking.getSucceededOperations(), reactive.getSucceededOperations());
+        assertEquals(0, reactive.getFailedOperations());
+        assertEquals(60, reactive.getBatchCount());
+    }
+
+    @Test
+    void testLatencyDistributionsAreSeeded() {
+        LatencyDistribution first = LatencyDistribution.logNormal(Duration.ofMillis(1), 0.5, 7);
+        LatencyDistribution second = LatencyDistribution.logNormal(Duration.ofMillis(1), 0.5, 7);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first.sampleNanos(), second.sampleNanos());
+        }
+
+        LatencyDistribution bimodal = LatencyDistribution.bimodal(
+            LatencyDistribution.fixed(Duration.ofMillis(1)), Duration.ofMillis(100), 0.1, 7);
+        int stalls = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (bimodal.sampleNanos() == Duration.ofMillis(100).toNanos()) {
+                stalls++;
+            }
+        }
+        assertTrue(stalls > 800 && stalls < 1200, "about 10% of calls should stall, got " + stalls);
+    }
+}
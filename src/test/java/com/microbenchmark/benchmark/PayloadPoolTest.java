@@ -0,0 +1,51 @@
+package com.microbenchmark.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PayloadPoolTest {
+
+    @Test
+    void testJsonDocumentsHaveTheirExactSize() {
+        Random random = new Random(1);
+        for (int size : new int[] {PayloadPool.MIN_SIZE, 49, 50, 51, 1024, 65536}) {
+            String document = PayloadPool.jsonDocument(size, random);
+            assertEquals(size, document.length());
+            assertTrue(document.startsWith("{\"items\":["), document);
+            assertTrue(document.endsWith("\"}"), document);
+        }
+        assertEquals("{\"items\":[],\"note\":\"\"}", PayloadPool.jsonDocument(PayloadPool.MIN_SIZE, random));
+    }
+
+    @Test
+    void testSizesFollowTheDistribution() {
+        PayloadPool fixed = new PayloadPool(PayloadKind.BYTES, "fixed:4096", 16, 42);
+        for (int size : fixed.sizes()) {
+            assertEquals(4096, size);
+        }
+        assertEquals(4096, fixed.getMeanSize(), 0);
+
+        PayloadPool uniform = new PayloadPool(PayloadKind.JSON, "uniform:1000-2000", 64, 42);
+        for (int i = 0; i < uniform.sizes().length; i++) {
+            assertTrue(uniform.sizes()[i] >= 1000 && uniform.sizes()[i] <= 2000);
+            assertEquals(uniform.sizes()[i], uniform.json(i).length());
+        }
+        // Seeded, so every run generates the same pool
+        assertEquals(uniform.json(0), new PayloadPool(PayloadKind.JSON, "uniform:1000-2000", 64, 42).json(0));
+
+        assertThrows(IllegalArgumentException.class, () -> new PayloadPool(PayloadKind.JSON, "normal:10", 1, 42));
+        assertThrows(IllegalArgumentException.class, () -> new PayloadPool(PayloadKind.JSON, "uniform:10", 1, 42));
+    }
+
+    @Test
+    void testBatchingStopsPayingOffAtTheFirstSmallGain() {
+        List<Integer> batchSizes = List.of(1, 10, 50, 100, 250);
+        assertEquals(2, PayloadBenchmark.lastPayingBatch(batchSizes, new double[] {100, 500, 900, 950, 1500}, 0.1));
+        assertEquals(4, PayloadBenchmark.lastPayingBatch(batchSizes, new double[] {100, 200, 300, 400, 500}, 0.1));
+        assertEquals(0, PayloadBenchmark.lastPayingBatch(batchSizes, new double[] {100, 90, 300, 400, 500}, 0.1));
+    }
+}
@@ -0,0 +1,68 @@
+package com.microbenchmark.benchmark;
+
+import com.microbenchmark.config.LatencyDistribution;
+import com.microbenchmark.config.MonitoringConfig;
+import com.microbenchmark.config.NullDatabaseConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScenarioRunnerTest {
+
+    private static ScenarioPhase phase(String name, double startRate, double endRate) {
+        return new ScenarioPhase(name, Duration.ofSeconds(1), startRate, endRate, 2,
+            ComplexQueryProvider.OperationType.USER_INSERT, 5);
+    }
+
+    @Test
+    void testScheduleFollowsTheRate() {
+        ScenarioPhase constant = phase("constant", 20, 20);
+        assertEquals(0, constant.scheduledStart(0));
+        assertEquals(0.5, constant.scheduledStart(10), 1e-9);
+
+        // A ramp from 0 to 40 batches/s schedules 20 batches in its second, denser towards the end
+        ScenarioPhase ramp = phase("ramp", 0, 40);
+        assertEquals(Math.sqrt(0.5), ramp.scheduledStart(10), 1e-9);
+        assertTrue(ramp.scheduledStart(19) < 1);
+        assertTrue(ramp.scheduledStart(20) >= 1 - 1e-9);
+
+        // A rate that falls to 0 never reaches batches beyond its area
+        ScenarioPhase down = new ScenarioPhase("down", Duration.ofSeconds(1), 10, 0, 1,
+            ComplexQueryProvider.OperationType.USER_INSERT, 5);
+        assertEquals(Double.POSITIVE_INFINITY, down.scheduledStart(6));
+    }
+
+    @Test
+    void testSettleSeconds() {
+        double nan = Double.NaN;
+        // Three slow seconds after a spike, then steady at 10 ms
+        assertEquals(3, ScenarioRunner.settleSeconds(new double[] {80, 50, 20, 10, 11, 10, 10, 10, 10, 10}, 0.2));
+        // A single good second inside the backlog does not count, and neither do seconds without batches
+        assertEquals(4, ScenarioRunner.settleSeconds(new double[] {80, 10, 50, nan, 10, 10, 10, 10, 10, 10}, 0.2));
+        assertEquals(0, ScenarioRunner.settleSeconds(new double[] {10, 10, 10, 10}, 0.2));
+        assertTrue(Double.isNaN(ScenarioRunner.settleSeconds(new double[] {nan, nan}, 0.2)));
+    }
+
+    @Test
+    void testPacedPhasesRunTheirScheduledBatches() {
+        NullDatabaseConfig config = new NullDatabaseConfig(LatencyDistribution.fixed(Duration.ZERO));
+        ScenarioRunner runner = new ScenarioRunner(config, "null", new MonitoringConfig(false, "", "test"), null,
+            List.of(phase("plateau", 20, 20), phase("ramp", 0, 40)),
+            (phase, seed) -> new ComplexQueryProvider(phase.getWorkload(), seed, phase.getBatchSize(), Long.MAX_VALUE),
+            42, 0.2, List.of("oorder", "users"));
+
+        List<ScenarioRunner.PhaseResult> results = runner.run();
+
+        assertEquals(2, results.size());
+        for (ScenarioRunner.PhaseResult result : results) {
+            assertEquals(20, result.batches(), result.phase().getName());
+            assertEquals(0, result.failedOperations());
+            assertTrue(result.operations() >= 20 * 5 * 5, "every operation binds at least 5 rows");
+        }
+        assertEquals(config.getRows(), results.get(0).operations() + results.get(1).operations());
+        assertTrue(runner.formatReport().contains("0.0 -> 40.0 batches/s"));
+    }
+}
@@ -0,0 +1,54 @@
+package com.microbenchmark.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetryPolicyTest {
+    private static final int SAMPLES = 10_000;
+
+    private static long maxBackoffMillis(RetryPolicy policy, int attempt) {
+        long max = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            Duration backoff = policy.backoff(attempt);
+            assertFalse(backoff.isNegative(), "negative backoff " + backoff);
+            max = Math.max(max, backoff.toMillis());
+        }
+        return max;
+    }
+
+    @Test
+    void testBackoffGrowsExponentiallyUpToTheCap() {
+        RetryPolicy policy = new RetryPolicy(10, Duration.ofMillis(100), Duration.ofMillis(1000), 2.0);
+        // Full jitter: each attempt's delay is uniform in [0, min(cap, initial * multiplier^(attempt - 1))]
+        long[] caps = {100, 200, 400, 800, 1000, 1000};
+        for (int attempt = 1; attempt <= caps.length; attempt++) {
+            long max = maxBackoffMillis(policy, attempt);
+            assertTrue(max <= caps[attempt - 1], "attempt " + attempt + " waited " + max + " ms");
+            assertTrue(max >= caps[attempt - 1] * 9 / 10, "attempt " + attempt + " never came near its cap: " + max + " ms");
+        }
+    }
+
+    @Test
+    void testJitterSpreadsDelays() {
+        RetryPolicy policy = new RetryPolicy(3, Duration.ofMillis(100), Duration.ofSeconds(1), 2.0);
+        long below = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            if (policy.backoff(1).toMillis() < 50) {
+                below++;
+            }
+        }
+        // About half of uniform delays in [0, 100] ms fall below 50 ms
+        assertTrue(below > SAMPLES * 0.4 && below < SAMPLES * 0.6, below + " of " + SAMPLES + " below 50 ms");
+    }
+
+    @Test
+    void testNoRetries() {
+        RetryPolicy policy = RetryPolicy.noRetries();
+        assertEquals(1, policy.getMaxAttempts());
+        assertEquals(Duration.ZERO, policy.backoff(1));
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(0, Duration.ZERO, Duration.ZERO, 1.0));
+    }
+}
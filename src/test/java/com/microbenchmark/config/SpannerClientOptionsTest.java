@@ -0,0 +1,25 @@
+package com.microbenchmark.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpannerClientOptionsTest {
+    @Test
+    void testMaxSessionsIsOnlyRaised() {
+        SpannerClientOptions options = new SpannerClientOptions("", 10, 100);
+        assertSame(options, options.withMaxSessionsAtLeast(64));
+
+        SpannerClientOptions raised = options.withMaxSessionsAtLeast(128);
+        assertEquals(10, raised.getMinSessions());
+        assertEquals(128, raised.getMaxSessions());
+        assertNull(raised.getCredentialsFile());
+        assertEquals("sessions 10-128, application default credentials", raised.describe());
+    }
+
+    @Test
+    void testInvalidPoolIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SpannerClientOptions(null, 10, 4));
+        assertThrows(IllegalArgumentException.class, () -> new SpannerClientOptions(null, 0, 0));
+    }
+}
@@ -0,0 +1,118 @@
+package com.microbenchmark.keys;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyStrategyTest {
+    private static final int KEYS = 10_000;
+
+    private static String next(KeyGenerator generator, char[] buffer) {
+        return new String(buffer, 0, generator.next(buffer));
+    }
+
+    @Test
+    void testKeysAreUniqueAndFitTheIdColumn() {
+        for (KeyStrategy strategy : KeyStrategy.values()) {
+            KeyGenerator generator = strategy.create(new Random(42));
+            char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+            Set<String> keys = new HashSet<>();
+            for (int i = 0; i < KEYS; i++) {
+                String key = next(generator, buffer);
+                assertTrue(key.length() <= KeyGenerator.MAX_LENGTH, strategy + " key too long: " + key);
+                assertTrue(keys.add(key), strategy + " repeated " + key);
+            }
+        }
+    }
+
+    @Test
+    void testUuidsAreValid() {
+        char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+        UUID random = UUID.fromString(next(KeyStrategy.UUID_V4.create(new Random(42)), buffer));
+        assertEquals(4, random.version());
+        assertEquals(2, random.variant());
+
+        long before = System.currentTimeMillis();
+        UUID timeOrdered = UUID.fromString(next(KeyStrategy.UUID_V7.create(new Random(42)), buffer));
+        assertEquals(7, timeOrdered.version());
+        assertEquals(2, timeOrdered.variant());
+        assertTrue(timeOrdered.getMostSignificantBits() >>> 16 >= before);
+    }
+
+    @Test
+    void testOrderedStrategiesIncrease() {
+        for (KeyStrategy strategy : new KeyStrategy[] {KeyStrategy.UUID_V7, KeyStrategy.MONOTONIC}) {
+            KeyGenerator generator = strategy.create(new Random(42));
+            char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+            String previous = next(generator, buffer);
+            for (int i = 0; i < KEYS; i++) {
+                String key = next(generator, buffer);
+                assertTrue(key.compareTo(previous) > 0, strategy + ": " + key + " after " + previous);
+                previous = key;
+            }
+        }
+    }
+
+    @Test
+    void testSpreadStrategiesCoverTheKeySpace() {
+        // Bit-reversed values stay positive, so their first hex digit is at most 7
+        assertEquals(8, firstDigits(KeyStrategy.BIT_REVERSED).size());
+        assertEquals(16, firstDigits(KeyStrategy.HASH_PREFIXED).size());
+        assertEquals(1, firstDigits(KeyStrategy.MONOTONIC).size());
+    }
+
+    /**
+     * @return The first hex digits of 256 consecutive keys
+     */
+    private static Set<Character> firstDigits(KeyStrategy strategy) {
+        KeyGenerator generator = strategy.create(new Random(42));
+        char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+        Set<Character> firstDigits = new HashSet<>();
+        for (int i = 0; i < 256; i++) {
+            generator.next(buffer);
+            firstDigits.add(buffer[0]);
+        }
+        return firstDigits;
+    }
+
+    @Test
+    void testBinaryKeysSortLikeTextKeys() {
+        for (KeyStrategy strategy : KeyStrategy.values()) {
+            KeyGenerator text = strategy.create(new Random(42));
+            KeyGenerator binary = strategy.create(new Random(42));
+            char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+            String previousText = next(text, buffer);
+            byte[] previousBytes = binary.nextBytes();
+            for (int i = 0; i < 1000; i++) {
+                String key = next(text, buffer);
+                byte[] bytes = binary.nextBytes();
+                assertEquals(KeyGenerator.BINARY_LENGTH, bytes.length);
+                assertEquals(Integer.signum(key.compareTo(previousText)),
+                    Integer.signum(Arrays.compareUnsigned(bytes, previousBytes)), strategy.name());
+                previousText = key;
+                previousBytes = bytes;
+            }
+        }
+    }
+
+    @Test
+    void testSeededGeneratorsRepeat() {
+        for (KeyStrategy strategy : KeyStrategy.values()) {
+            if (strategy == KeyStrategy.UUID_V7) {
+                continue;
+            }
+            KeyGenerator first = strategy.create(new Random(7));
+            KeyGenerator second = strategy.create(new Random(7));
+            char[] buffer = new char[KeyGenerator.MAX_LENGTH];
+            for (int i = 0; i < 100; i++) {
+                assertEquals(next(first, buffer), next(second, buffer));
+            }
+        }
+    }
+}
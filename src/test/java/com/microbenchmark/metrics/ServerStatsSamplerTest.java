@@ -0,0 +1,90 @@
+package com.microbenchmark.metrics;
+
+import com.microbenchmark.config.LatencyDistribution;
+import com.microbenchmark.config.NullDatabaseConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerStatsSamplerTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Counts its polls and reports a lock wait only on the second one.
+     */
+    private static class CountingSource implements ServerStatsSource {
+        int polls;
+
+        @Override
+        public List<String> columns() {
+            return List.of("polls", "lock_waits");
+        }
+
+        @Override
+        public double[] poll(Connection conn, double elapsedSeconds) {
+            polls++;
+            return new double[] {polls, polls == 2 ? 1 : Double.NaN};
+        }
+    }
+
+    @Test
+    void testSamplesAreWrittenNextToClientMetrics() throws Exception {
+        Path output = directory.resolve("server.csv");
+        CountingSource source = new CountingSource();
+        ServerStatsSampler sampler = new ServerStatsSampler(new NullDatabaseConfig(LatencyDistribution.fixed(Duration.ZERO)),
+            source, Duration.ofMinutes(1), output.toString());
+        sampler.start();
+        for (int i = 1; i <= 100; i++) {
+            sampler.recordBatch(10, i * 1_000_000L);
+        }
+        sampler.sample();
+        // No batches in the last interval
+        sampler.close();
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals("epoch_ms,elapsed_s,client_batches_per_s,client_rows_per_s,client_p50_ms,client_p99_ms,client_max_ms,"
+            + "polls,lock_waits", lines.get(0));
+        assertEquals(3, lines.size());
+
+        String[] first = lines.get(1).split(",", -1);
+        assertEquals(9, first.length);
+        assertEquals(50.0, Double.parseDouble(first[4]), 0.1);
+        assertEquals(99.0, Double.parseDouble(first[5]), 0.1);
+        assertEquals("2", first[7]);
+        assertEquals("1", first[8]);
+
+        String[] last = lines.get(2).split(",", -1);
+        assertEquals("0", last[2]);
+        assertEquals("", last[4]);
+        assertEquals("3", last[7]);
+        assertEquals("", last[8]);
+    }
+
+    @Test
+    void testCloseAfterFailedStart() {
+        ServerStatsSource failing = new ServerStatsSource() {
+            @Override
+            public List<String> columns() {
+                return List.of("polls");
+            }
+
+            @Override
+            public double[] poll(Connection conn, double elapsedSeconds) throws SQLException {
+                throw new SQLException("no statistics view");
+            }
+        };
+        ServerStatsSampler sampler = new ServerStatsSampler(new NullDatabaseConfig(LatencyDistribution.fixed(Duration.ZERO)),
+            failing, Duration.ofMinutes(1), directory.resolve("server.csv").toString());
+        assertThrows(RuntimeException.class, sampler::start);
+        assertDoesNotThrow(sampler::close);
+    }
+}
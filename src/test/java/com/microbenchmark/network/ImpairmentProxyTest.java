@@ -0,0 +1,115 @@
+package com.microbenchmark.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImpairmentProxyTest {
+    private ServerSocket echoServer;
+
+    /**
+     * Starts a local server that echoes every byte back on each connection.
+     */
+    @BeforeEach
+    void startEchoServer() throws IOException {
+        echoServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!echoServer.isClosed()) {
+                try {
+                    Socket socket = echoServer.accept();
+                    Thread echo = new Thread(() -> {
+                        try (socket; InputStream in = socket.getInputStream(); OutputStream out = socket.getOutputStream()) {
+                            in.transferTo(out);
+                        } catch (IOException e) {
+                            // The proxy reset or closed the connection
+                        }
+                    });
+                    echo.setDaemon(true);
+                    echo.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void stopEchoServer() throws IOException {
+        echoServer.close();
+    }
+
+    private ImpairmentProxy proxy(Duration latency, Duration meanTimeBetweenResets) {
+        ImpairmentProxy proxy = new ImpairmentProxy("localhost", echoServer.getLocalPort(),
+            new NetworkImpairment(latency, Duration.ZERO, 0, meanTimeBetweenResets, 42));
+        proxy.start();
+        return proxy;
+    }
+
+    private static long roundTripMillis(Socket socket) throws IOException {
+        long start = System.nanoTime();
+        socket.getOutputStream().write(7);
+        socket.getOutputStream().flush();
+        assertEquals(7, socket.getInputStream().read());
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    @Test
+    void testLatencyIsAddedInEachDirection() throws IOException {
+        try (ImpairmentProxy proxy = proxy(Duration.ofMillis(50), Duration.ZERO);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), proxy.getPort())) {
+            socket.setSoTimeout(5000);
+            for (int i = 0; i < 3; i++) {
+                long millis = roundTripMillis(socket);
+                assertTrue(millis >= 100, "round trip of " + millis + " ms is shorter than twice the latency");
+                assertTrue(millis < 1000, "round trip of " + millis + " ms");
+            }
+        }
+    }
+
+    @Test
+    void testUnimpairedProxyForwardsUnchanged() throws IOException {
+        byte[] message = new byte[100_000];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) i;
+        }
+        try (ImpairmentProxy proxy = proxy(Duration.ZERO, Duration.ZERO);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), proxy.getPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(message);
+            socket.shutdownOutput();
+            assertArrayEquals(message, socket.getInputStream().readAllBytes());
+        }
+    }
+
+    @Test
+    void testConnectionsAreReset() throws IOException, InterruptedException {
+        try (ImpairmentProxy proxy = proxy(Duration.ZERO, Duration.ofMillis(20));
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), proxy.getPort())) {
+            socket.setSoTimeout(5000);
+            roundTripMillis(socket);
+            // Lifetimes are exponential with a 20 ms mean, so the reset has almost certainly happened by now
+            Thread.sleep(1000);
+            assertThrows(SocketException.class, () -> {
+                for (int i = 0; i < 10; i++) {
+                    socket.getOutputStream().write(7);
+                    if (socket.getInputStream().read() < 0) {
+                        throw new SocketException("Connection closed");
+                    }
+                }
+            });
+        }
+    }
+}
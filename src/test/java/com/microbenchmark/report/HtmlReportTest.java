@@ -0,0 +1,53 @@
+package com.microbenchmark.report;
+
+import com.microbenchmark.metrics.SoakRecorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HtmlReportTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReportReadsRecordedRuns() {
+        String prefix = directory.resolve("run").toString();
+        SoakRecorder recorder = new SoakRecorder(Duration.ofMinutes(1), 1, 1, 0.2, 0.5, prefix, "null, blocking executor");
+        recorder.start();
+        for (int i = 1; i <= 1000; i++) {
+            recorder.recordBatch(10, i * 1000L);
+            recorder.recordStatement(i % 2 == 0 ? "USER_INSERT" : "ORDER_UPDATE", i * 500L);
+        }
+        recorder.close();
+
+        RecordedRun run = RecordedRun.read(prefix + ".hlog");
+        assertEquals("run", run.getName());
+        assertEquals("null, blocking executor", run.getDescription());
+        assertEquals(1000, run.getBatchLatency().getTotalCount());
+        assertEquals(10_000, run.getRows());
+        assertEquals(1000, run.getBatchLatency().getValueAtPercentile(100), 1);
+        assertEquals(List.of("ORDER_UPDATE", "USER_INSERT"), List.copyOf(run.getStatementLatency().keySet()));
+        assertEquals(500, run.getStatementLatency().get("USER_INSERT").getTotalCount());
+
+        String html = new HtmlReport(List.of(run, run)).render();
+        assertTrue(html.contains("null, blocking executor"));
+        assertTrue(html.contains("USER_INSERT execution latency by percentile"));
+    }
+
+    @Test
+    void testTimeSeriesStaysBounded() {
+        TimeSeries series = new TimeSeries();
+        for (int i = 0; i < 100 * TimeSeries.CAPACITY; i++) {
+            series.add(i, 1);
+        }
+        assertTrue(series.size() <= TimeSeries.CAPACITY);
+        assertTrue(series.size() >= TimeSeries.CAPACITY / 2);
+        assertEquals(1, series.values()[series.size() - 1]);
+        assertEquals(0, series.times()[0]);
+    }
+}